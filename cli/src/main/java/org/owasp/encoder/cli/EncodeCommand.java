@@ -0,0 +1,460 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder.cli;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import org.owasp.encoder.Encoder;
+import org.owasp.encoder.Encoders;
+import org.owasp.encoder.ParallelEncode;
+import org.owasp.encoder.TransferResult;
+import org.owasp.encoder.UnsupportedContextException;
+
+/**
+ * EncodeCommand -- encodes standard input or a file for a context, from
+ * the command line.  Example usage:
+ *
+ * <pre>
+ *     java -jar encoder-cli.jar xml-content comments.txt &gt; comments.xml
+ *     export-comments | java -jar encoder-cli.jar -q html-attribute
+ * </pre>
+ *
+ * <p>The context is any of the names of {@link Encoders}, as listed by
+ * {@code -l}.  Small inputs and standard input are copied through
+ * {@link Encoders#transfer}.  A file of {@value #MAP_THRESHOLD} bytes or
+ * more is mapped into memory a region at a time, and each region is
+ * decoded and encoded in parallel chunks by
+ * {@link ParallelEncode#encode(Encoder, Writer, CharSequence, ForkJoinPool, boolean)},
+ * which writes the chunks in order.  Characters whose encoding depends on
+ * what follows them, such as a {@code "]]"} in CDATA or a high
+ * surrogate, are carried over to the next region, and bytes of a
+ * character cut by the end of a region are mapped again with the next
+ * one, so the output is the same as encoding the file in one pass.</p>
+ *
+ * <p>Unless {@code -q} is given, the number of bytes read and written and
+ * the throughput are printed to standard error.</p>
+ */
+public final class EncodeCommand {
+    /**
+     * Files of this many bytes or more are mapped into memory and encoded
+     * in parallel.
+     */
+    static final long MAP_THRESHOLD = 1L << 20;
+
+    /**
+     * The number of bytes of a file mapped at a time.
+     */
+    static final int REGION_SIZE = 1 << 25;
+
+    /**
+     * Size of the buffer of the writer encoding the output charset.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Character decoded from malformed input.  As a lone high surrogate it
+     * is invalid, so the encoder replaces it as it does any other invalid
+     * character, the same as {@link Encoders#transfer} does.
+     */
+    private static final String MALFORMED_REPLACEMENT = "\ud800";
+
+    /** Exit status on success. */
+    static final int EXIT_OK = 0;
+    /** Exit status after an I/O error. */
+    static final int EXIT_IO_ERROR = 1;
+    /** Exit status after an error in the arguments. */
+    static final int EXIT_USAGE = 2;
+
+    /**
+     * The usage message.
+     */
+    private static final String USAGE
+        = "usage: java -jar encoder-cli.jar [options] <context> [file]\n"
+        + "Encodes the file, or standard input if it is absent or \"-\", for the context.\n"
+        + "\n"
+        + "  -c, --charset <name>   charset of the input and output (default UTF-8)\n"
+        + "  -o, --output <file>    write to the file instead of standard output\n"
+        + "  -t, --threads <n>      threads encoding large files (default: processors)\n"
+        + "  -q, --quiet            do not print statistics to standard error\n"
+        + "  -l, --list             list the context names and exit\n"
+        + "  -h, --help             print this message and exit\n";
+
+    /** The encoder of the context. */
+    private Encoder _encoder;
+    /** The name of the context. */
+    private String _contextName;
+    /** The charset of the input and output. */
+    private Charset _charset = StandardCharsets.UTF_8;
+    /** The input file, or null for standard input. */
+    private String _input;
+    /** The output file, or null for standard output. */
+    private String _output;
+    /** The number of threads encoding a mapped file. */
+    private int _threads = Runtime.getRuntime().availableProcessors();
+    /** True if statistics are not printed. */
+    private boolean _quiet;
+    /** Files of this many bytes or more are mapped, which tests lower. */
+    long _mapThreshold = MAP_THRESHOLD;
+    /** The number of bytes mapped at a time, which tests lower. */
+    int _regionSize = REGION_SIZE;
+
+    /**
+     * Runs the command and exits with its status.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        final int status = new EncodeCommand().run(
+            args, new FileInputStream(FileDescriptor.in), new FileOutputStream(FileDescriptor.out), System.err);
+        System.exit(status);
+    }
+
+    /**
+     * Runs the command.
+     *
+     * @param args the command line arguments
+     * @param stdin the standard input
+     * @param stdout the standard output
+     * @param stderr the standard error
+     * @return the exit status
+     */
+    int run(String[] args, InputStream stdin, OutputStream stdout, PrintStream stderr) {
+        try {
+            if (!parse(args, stdout)) {
+                return EXIT_OK;
+            }
+        } catch (IllegalArgumentException ex) {
+            stderr.println("encoder: " + ex.getMessage());
+            stderr.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        try {
+            final long start = System.nanoTime();
+            final long bytesRead;
+            final CountingChannel out;
+            if (_output == null) {
+                out = new CountingChannel(Channels.newChannel(stdout));
+                bytesRead = encode(stdin, out);
+            } else {
+                final FileOutputStream file = new FileOutputStream(_output);
+                try {
+                    out = new CountingChannel(file.getChannel());
+                    bytesRead = encode(stdin, out);
+                } finally {
+                    file.close();
+                }
+            }
+            stdout.flush();
+            if (!_quiet) {
+                printStatistics(stderr, bytesRead, out._count, System.nanoTime() - start);
+            }
+            return EXIT_OK;
+        } catch (IOException ex) {
+            stderr.println("encoder: " + ex);
+            return EXIT_IO_ERROR;
+        }
+    }
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the command line arguments
+     * @param stdout where to print the usage or the list of contexts
+     * @return false if there is nothing to encode, after {@code -h} or
+     * {@code -l}
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    private boolean parse(String[] args, OutputStream stdout) {
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-") && args[i].length() > 1; ++i) {
+            final String option = args[i];
+            if ("--".equals(option)) {
+                ++i;
+                break;
+            } else if ("-h".equals(option) || "--help".equals(option)) {
+                final PrintStream out = new PrintStream(stdout);
+                out.print(USAGE);
+                out.flush();
+                return false;
+            } else if ("-l".equals(option) || "--list".equals(option)) {
+                final PrintStream out = new PrintStream(stdout);
+                for (String name : contextNames()) {
+                    out.println(name);
+                }
+                out.flush();
+                return false;
+            } else if ("-q".equals(option) || "--quiet".equals(option)) {
+                _quiet = true;
+            } else if ("-c".equals(option) || "--charset".equals(option)) {
+                final String name = value(args, ++i, option);
+                try {
+                    _charset = Charset.forName(name);
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("unsupported charset: " + name, ex);
+                }
+            } else if ("-o".equals(option) || "--output".equals(option)) {
+                _output = value(args, ++i, option);
+            } else if ("-t".equals(option) || "--threads".equals(option)) {
+                final String value = value(args, ++i, option);
+                try {
+                    _threads = Integer.parseInt(value);
+                } catch (NumberFormatException ex) {
+                    _threads = 0;
+                }
+                if (_threads < 1) {
+                    throw new IllegalArgumentException("invalid number of threads: " + value);
+                }
+            } else {
+                throw new IllegalArgumentException("unknown option: " + option);
+            }
+        }
+
+        if (i == args.length) {
+            throw new IllegalArgumentException("missing context");
+        }
+        _contextName = args[i++];
+        try {
+            _encoder = Encoders.forName(_contextName);
+        } catch (UnsupportedContextException ex) {
+            throw new IllegalArgumentException("unknown context: " + _contextName, ex);
+        }
+        if (i < args.length && !"-".equals(args[i])) {
+            _input = args[i];
+        }
+        if (i + 1 < args.length) {
+            throw new IllegalArgumentException("more than one input file");
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param args the command line arguments
+     * @param i the index of the value
+     * @param option the option
+     * @return the value
+     * @throws IllegalArgumentException if the value is missing
+     */
+    private static String value(String[] args, int i, String option) {
+        if (i == args.length) {
+            throw new IllegalArgumentException("missing value of " + option);
+        }
+        return args[i];
+    }
+
+    /**
+     * Returns the context names, from the constants of {@link Encoders}.
+     *
+     * @return the names of all contexts
+     */
+    static String[] contextNames() {
+        final StringBuilder names = new StringBuilder();
+        for (Field field : Encoders.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    names.append(field.get(null)).append('\n');
+                } catch (IllegalAccessException ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+        }
+        return names.toString().split("\n");
+    }
+
+    /**
+     * Encodes the input.
+     *
+     * @param stdin the standard input
+     * @param out the channel to write
+     * @return the number of bytes read
+     * @throws IOException from the input or output
+     */
+    private long encode(InputStream stdin, WritableByteChannel out) throws IOException {
+        if (_input == null) {
+            return transfer(Channels.newChannel(stdin), out).bytesRead();
+        }
+        final FileChannel in = FileChannel.open(Paths.get(_input), StandardOpenOption.READ);
+        try {
+            final long size = in.size();
+            if (size < _mapThreshold) {
+                return transfer(in, out).bytesRead();
+            }
+            encodeMapped(in, size, out);
+            return size;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Encodes a channel through {@link Encoders#transfer}.
+     *
+     * @param in the channel to read
+     * @param out the channel to write
+     * @return the number of bytes read and written
+     * @throws IOException from either channel
+     */
+    private TransferResult transfer(ReadableByteChannel in, WritableByteChannel out)
+        throws IOException
+    {
+        return Encoders.transfer(in, _charset, out, _charset, _encoder);
+    }
+
+    /**
+     * Encodes a file a mapped region at a time, encoding each region in
+     * parallel.
+     *
+     * @param in the file to read
+     * @param size the size of the file
+     * @param out the channel to write
+     * @throws IOException from the file or the output
+     */
+    private void encodeMapped(FileChannel in, long size, WritableByteChannel out) throws IOException {
+        final CharsetDecoder decoder = _charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .replaceWith(MALFORMED_REPLACEMENT);
+        final Writer writer = Channels.newWriter(out, _charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE);
+        final CharBuffer chars = CharBuffer.allocate(_regionSize);
+        final ForkJoinPool pool = new ForkJoinPool(_threads);
+        try {
+            long position = 0;
+            for (;;) {
+                final long length = Math.min(_regionSize, size - position);
+                final MappedByteBuffer region = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                final boolean last = position + length == size;
+                for (;;) {
+                    // decoding stops when the characters fill, or before
+                    // the bytes of a character cut by the end of the region
+                    final CoderResult cr = decoder.decode(region, chars, last);
+                    final boolean endOfInput = last && cr.isUnderflow() && decoder.flush(chars).isUnderflow();
+                    chars.flip();
+                    final int consumed = ParallelEncode.encode(_encoder, writer, chars, pool, endOfInput);
+                    chars.position(chars.position() + consumed);
+                    chars.compact();
+                    if (endOfInput) {
+                        writer.flush();
+                        return;
+                    }
+                    if (cr.isUnderflow() && !last) {
+                        break;
+                    }
+                }
+                position += region.position();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Prints the number of bytes read and written, and the throughput.
+     *
+     * @param stderr where to print
+     * @param bytesRead the number of bytes read
+     * @param bytesWritten the number of bytes written
+     * @param nanos the time taken
+     */
+    private void printStatistics(PrintStream stderr, long bytesRead, long bytesWritten, long nanos) {
+        final double seconds = Math.max(nanos, 1) / 1e9;
+        stderr.println(String.format(Locale.ROOT,
+            "encoder: %s: %d bytes in, %d bytes out, %.3f s, %.1f MB/s",
+            _contextName, bytesRead, bytesWritten, seconds, bytesRead / seconds / 1e6));
+    }
+
+    /**
+     * A channel counting the bytes written to another.
+     */
+    static final class CountingChannel implements WritableByteChannel {
+        /** The channel to write. */
+        private final WritableByteChannel _out;
+        /** The number of bytes written. */
+        long _count;
+
+        /**
+         * Creates a counting channel.
+         *
+         * @param out the channel to write
+         */
+        CountingChannel(WritableByteChannel out) {
+            _out = out;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            final int n = _out.write(src);
+            _count += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return _out.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            _out.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder.cli;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.owasp.encoder.Encode;
+import org.owasp.encoder.Encoders;
+import org.owasp.encoder.ParallelEncode;
+
+/**
+ * EncodeCommandTest -- checks that the command encodes standard input and
+ * files, including files mapped in many small regions, as in one pass.
+ */
+public class EncodeCommandTest extends TestCase {
+    /**
+     * Fragments the inputs are built from: the sequences encoders look
+     * across, surrogate pairs, and characters of one to four bytes in
+     * UTF-8.
+     */
+    private static final String[] FRAGMENTS = {
+        "a", "]", "]]", "]]>", ">", "-", "--", "\ud83d\ude00", "&", "<", "\\",
+        "0", "\1", " ", "\u2028", "\u00e9", "\u4e2d", "\"", "'", "%",
+    };
+
+    private File _file;
+
+    public static Test suite() {
+        return new TestSuite(EncodeCommandTest.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        _file = File.createTempFile("encode-command", ".txt");
+    }
+
+    @Override
+    protected void tearDown() {
+        _file.delete();
+    }
+
+    private static String randomInput(Random random, int length) {
+        StringBuilder buf = new StringBuilder(length + 4);
+        while (buf.length() < length) {
+            buf.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return buf.toString();
+    }
+
+    private static byte[] run(EncodeCommand command, byte[] stdin, int expectedStatus, String... args) {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        int status = command.run(args, new ByteArrayInputStream(stdin), stdout, new PrintStream(stderr));
+        assertEquals(stderr.toString(), expectedStatus, status);
+        return stdout.toByteArray();
+    }
+
+    private void write(byte[] content) throws Exception {
+        FileOutputStream out = new FileOutputStream(_file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    public void testStandardInput() {
+        byte[] input = "<a href='x'>caf\u00e9</a>".getBytes(StandardCharsets.UTF_8);
+        byte[] output = run(new EncodeCommand(), input, EncodeCommand.EXIT_OK, "-q", Encoders.XML);
+        assertEquals(Encode.forXml("<a href='x'>caf\u00e9</a>"), new String(output, StandardCharsets.UTF_8));
+    }
+
+    public void testMappedMatchesEncode() throws Exception {
+        Random random = new Random(42);
+        String input = randomInput(random, 4000);
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        write(bytes);
+        for (String contextName : EncodeCommand.contextNames()) {
+            String expected = ParallelEncode.encode(Encoders.forName(contextName), input);
+            // odd region sizes, so regions end inside UTF-8 sequences
+            for (int regionSize : new int[] { 16, 61, 997 }) {
+                EncodeCommand command = new EncodeCommand();
+                command._mapThreshold = 0;
+                command._regionSize = regionSize;
+                byte[] output = run(command, new byte[0], EncodeCommand.EXIT_OK,
+                    "-q", "-t", "3", contextName, _file.getPath());
+                assertEquals(contextName + " " + regionSize, expected, new String(output, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    public void testMappedMatchesTransfer() throws Exception {
+        // malformed UTF-8 is replaced the same way in both paths
+        byte[] bytes = "]]\u00e9\ud83d\ude00]]>".getBytes(StandardCharsets.UTF_8);
+        bytes = Arrays.copyOf(bytes, bytes.length + 3);
+        bytes[bytes.length - 3] = (byte) 0xff;
+        bytes[bytes.length - 2] = (byte) 0xe4;
+        bytes[bytes.length - 1] = '>';
+        write(bytes);
+        for (String contextName : EncodeCommand.contextNames()) {
+            byte[] expected = run(new EncodeCommand(), bytes, EncodeCommand.EXIT_OK, "-q", contextName);
+            EncodeCommand command = new EncodeCommand();
+            command._mapThreshold = 0;
+            command._regionSize = 5;
+            byte[] output = run(command, new byte[0], EncodeCommand.EXIT_OK, "-q", contextName, _file.getPath());
+            assertTrue(contextName, Arrays.equals(expected, output));
+        }
+    }
+
+    public void testOutputFileAndCharset() throws Exception {
+        write("\u00e9<".getBytes(StandardCharsets.ISO_8859_1));
+        File output = File.createTempFile("encode-command", ".out");
+        try {
+            run(new EncodeCommand(), new byte[0], EncodeCommand.EXIT_OK,
+                "-q", "-c", "ISO-8859-1", "-o", output.getPath(), Encoders.HTML_CONTENT, _file.getPath());
+            assertEquals("\u00e9&lt;", new String(Files.readAllBytes(output.toPath()), StandardCharsets.ISO_8859_1));
+        } finally {
+            output.delete();
+        }
+    }
+
+    public void testUsageErrors() {
+        EncodeCommand command = new EncodeCommand();
+        run(command, new byte[0], EncodeCommand.EXIT_USAGE);
+        run(command, new byte[0], EncodeCommand.EXIT_USAGE, "no-such-context");
+        run(command, new byte[0], EncodeCommand.EXIT_USAGE, "-x", Encoders.XML);
+        run(command, new byte[0], EncodeCommand.EXIT_USAGE, "-t", "0", Encoders.XML);
+        run(command, new byte[0], EncodeCommand.EXIT_USAGE, Encoders.XML, "a", "b");
+        run(command, new byte[0], EncodeCommand.EXIT_IO_ERROR, Encoders.XML, _file.getPath() + ".missing");
+    }
+
+    public void testList() {
+        String list = new String(run(new EncodeCommand(), new byte[0], EncodeCommand.EXIT_OK, "-l"),
+            StandardCharsets.UTF_8);
+        assertTrue(list, list.contains(Encoders.CDATA + System.lineSeparator()));
+    }
+}
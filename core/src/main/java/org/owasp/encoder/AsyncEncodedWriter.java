@@ -0,0 +1,225 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * AsyncEncodedWriter -- an {@link EncodedWriter} that writes its encoded
+ * output to the wrapped writer in the background.  It encodes into one
+ * buffer while an executor writes the other, so that encoding a large
+ * page overlaps with sending it to a slow client.
+ *
+ * <p>Memory is bounded by the two buffers: when the encoder fills a
+ * buffer before the other has been written, the writing thread waits
+ * for it.  A failure of a background write is thrown, wrapped in an
+ * IOException, from the next write, flush or close, and from every one
+ * after that.  A flush or close waits for all background writes before
+ * flushing or closing the wrapped writer on the calling thread.</p>
+ *
+ * <p>The writer locks itself rather than the wrapped writer, which the
+ * background writes may need to lock.  If the executor rejects a write,
+ * the calling thread writes the buffer itself.</p>
+ * @see Encoders#asyncWriter(Writer, Encoder, Executor)
+ */
+final class AsyncEncodedWriter extends EncodedWriter {
+
+    /**
+     * Size of each of the two buffers for encoded output.  Larger than
+     * the buffer of a synchronous EncodedWriter, so that the cost of
+     * handing a buffer to the executor is spread over more output.
+     */
+    static final int ASYNC_BUFFER_SIZE = 8192;
+
+    /**
+     * Runs the background writes.
+     */
+    private final Executor _executor;
+
+    /**
+     * Has a permit while no background write is in progress.
+     */
+    private final Semaphore _idle = new Semaphore(1);
+
+    /**
+     * The buffer to encode into after the current one fills.  While a
+     * background write is in progress, it is the buffer being written.
+     */
+    private CharBuffer _spare = CharBuffer.allocate(ASYNC_BUFFER_SIZE);
+
+    /**
+     * The buffer being written in the background, and its writer.
+     * Handed to the background write, and back, through {@link #_idle}.
+     */
+    private CharBuffer _pending;
+
+    /**
+     * The writer for {@link #_pending}.
+     */
+    private Writer _pendingOut;
+
+    /**
+     * The first failure of a background write, or null.
+     */
+    private volatile Throwable _failure;
+
+    /**
+     * The background write, reused for every buffer since only one is
+     * in progress at a time.
+     */
+    private final Runnable _write = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                _pendingOut.write(_pending.array(), 0, _pending.position());
+            } catch (Throwable t) {
+                _failure = t;
+            } finally {
+                _pending.clear();
+                _pending = null;
+                _pendingOut = null;
+                _idle.release();
+            }
+        }
+    };
+
+    /**
+     * Creates an asynchronous writer.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     * @param executor runs the writes to {@code out}
+     */
+    AsyncEncodedWriter(Writer out, Encoder encoder, Executor executor) {
+        super(ASYNC_BUFFER_SIZE);
+        if (executor == null) {
+            throw new NullPointerException("executor must not be null");
+        }
+        bind(out, encoder);
+        _executor = executor;
+    }
+
+    // A write that fits in the current buffer never reaches writeBuffer,
+    // so each write checks for a failed background write first.
+
+    @Override
+    public void write(int c) throws IOException {
+        checkFailure();
+        super.write(c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        checkFailure();
+        super.write(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        checkFailure();
+        super.write(str, off, len);
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        checkFailure();
+        return super.append(csq, start, end);
+    }
+
+    @Override
+    CharBuffer writeBuffer(CharBuffer buffer, Writer out) throws IOException {
+        if (buffer.position() == 0) {
+            checkFailure();
+            return buffer;
+        }
+
+        acquireIdle();
+        final CharBuffer next = _spare;
+        _spare = buffer;
+        _pending = buffer;
+        _pendingOut = out;
+        try {
+            _executor.execute(_write);
+        } catch (RejectedExecutionException e) {
+            _write.run();
+            checkFailure();
+        }
+        return next;
+    }
+
+    @Override
+    void awaitWritten() throws IOException {
+        acquireIdle();
+        _idle.release();
+    }
+
+    /**
+     * Waits until no background write is in progress, and takes the
+     * permit to start one.
+     *
+     * @throws IOException if a background write has failed.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    private void acquireIdle() throws IOException {
+        try {
+            _idle.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for a background write");
+        }
+        if (_failure != null) {
+            _idle.release();
+            checkFailure();
+        }
+    }
+
+    /**
+     * Throws the failure of a background write, if any.
+     *
+     * @throws IOException wrapping the failure.
+     */
+    private void checkFailure() throws IOException {
+        final Throwable failure = _failure;
+        if (failure != null) {
+            throw new IOException("background write failed", failure);
+        }
+    }
+}
@@ -69,15 +69,15 @@ class CDATAEncoder extends Encoder {
     private static final int CDATA_END_LENGTH = 3;
 
     @Override
-    protected int maxEncodedLength(int n) {
+    protected long maxEncodedLength(long n) {
         // "]" becomes "]" (1 -> 1)
         // "]]" becomes "]]" (2 -> 2)
         // "]]>" becomes "]]]]><![CDATA[>" (3 -> 15)
         // "]]>]" becomes "]]]]><![CDATA[>]" (3 -> 15 + 1 -> 1)
         // ...
 
-        int worstCase = n / CDATA_END_LENGTH;
-        int remainder = n % CDATA_END_LENGTH;
+        long worstCase = n / CDATA_END_LENGTH;
+        long remainder = n % CDATA_END_LENGTH;
 
         return worstCase * CDATA_END_ENCODED_LENGTH + remainder;
 
@@ -162,6 +162,92 @@ class CDATAEncoder extends Encoder {
         return n;
     }
 
+    /**
+     * {@inheritDoc}  Unlike the String scan, this stops at a "]" that ends
+     * the range, since the range may be only part of the input that
+     * {@code encodeArrays} copies in runs.
+     */
+    @Override
+    protected int firstEncodedOffset(char[] input, int off, int len) {
+        final int n = off + len;
+        //int closeCount = 0; //unused...
+        for (int i = off; i < n; ++i) {
+            char ch = input[i];
+            if (ch <= Unicode.MAX_ASCII) {
+                if (ch != ']') {
+                    if (ch < ' ' && ch != '\n' && ch != '\r' && ch != '\t') {
+                        return i;
+//                    } else {
+//                        // valid
+                    }
+
+                } else if (i + 1 < n) {
+                    if (input[i + 1] != ']') {
+                        // "]x" (next character is safe for this to be ']')
+                    } else {
+                        // "]]?"
+                        // keep looping through ']'
+                        for (; i + 2 < n && input[i + 2] == ']'; ++i) {
+                            // valid
+                        }
+                        // at this point we've looped through a sequence
+                        // of 2 or more "]", if the next character is ">"
+                        // we need to encode "]]>".
+                        if (i + 2 < n) {
+                            if (input[i + 2] == '>') {
+                                return i;
+//                                } else {
+//                                    // valid
+                            }
+
+                        } else {
+                            // "]]" at the end of the range could start
+                            // "]]>" with what follows.
+                            return i;
+                        }
+                    }
+                } else {
+                    // likewise "]" at the end of the range.
+                    return i;
+                }
+            } else if (ch < Character.MIN_HIGH_SURROGATE) {
+                if (ch <= Unicode.MAX_C1_CTRL_CHAR && ch != Unicode.NEL) {
+                    return i;
+//                } else {
+//                    // valid
+                }
+            } else if (ch <= Character.MAX_HIGH_SURROGATE) {
+                if (i + 1 < n) {
+                    if (Character.isLowSurrogate(input[i + 1])) {
+                        int cp = Character.toCodePoint(ch, input[i + 1]);
+                        if (Unicode.isNonCharacter(cp)) {
+                            return i;
+                        } else {
+                            ++i;
+                            // valid pair
+                        }
+                    } else {
+                        return i;
+                    }
+                } else {
+                    // end of input, high without low = invalid
+                    return i;
+                }
+            } else if (// low surrogate without preceding high surrogate
+                    ch <= Character.MAX_LOW_SURROGATE
+                    // or non-characters
+                    || ch > '\ufffd'
+                    || ('\ufdd0' <= ch && ch <= '\ufdef'))
+            {
+                return i;
+//            } else {
+//                // valid
+            }
+
+        }
+        return n;
+    }
+
     @Override
     protected CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
         final char[] in = input.array();
@@ -179,7 +265,9 @@ class CDATAEncoder extends Encoder {
                         return overflow(input, i, output, j);
                     }
                     if (ch >= ' ' || ch == '\n' || ch == '\r' || ch == '\t') {
-                        out[j++] = ch;
+                        final int k = copyCleanRun(in, i, n, out, j, m);
+                        i += k - 1;
+                        j += k;
                     } else {
                         out[j++] = XMLEncoder.INVALID_CHARACTER_REPLACEMENT;
                     }
@@ -244,7 +332,9 @@ class CDATAEncoder extends Encoder {
                     if (j >= m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
+                    final int k = copyCleanRun(in, i, n, out, j, m);
+                    i += k - 1;
+                    j += k;
                 } else {
                     // C1 control code
                     if (j >= m) {
@@ -299,7 +389,9 @@ class CDATAEncoder extends Encoder {
                 if (j >= m) {
                     return overflow(input, i, output, j);
                 }
-                out[j++] = ch;
+                final int k = copyCleanRun(in, i, n, out, j, m);
+                i += k - 1;
+                j += k;
             }
         }
         return underflow(input, i, output, j);
@@ -124,12 +124,22 @@ class CSSEncoder extends Encoder {
      */
     static final char INVALID_REPLACEMENT_CHARACTER = '_';
 
+    /** The escape of the line separator (U+2028). */
+    private static final char[] LINE_SEPARATOR_ESCAPE = hexEscape(Unicode.LINE_SEPARATOR).toCharArray();
+
+    /** The escape of the paragraph separator (U+2029). */
+    private static final char[] PARAGRAPH_SEPARATOR_ESCAPE = hexEscape(Unicode.PARAGRAPH_SEPARATOR).toCharArray();
+
     /** The bit-mask of unescaped characters in the range 0 to 63. */
     final long _lowMask;
     /** The bit-mask of unescaped characters in the range 64 to 127. */
     final long _highMask;
     /** The mode of operation, used primarily for toString. */
     final Mode _mode;
+    /** The hex escapes of the characters in the range 0 to 255, or null. */
+    final char[][] _replacements;
+    /** The vector scan for runs of unescaped characters, or null. */
+    final VectorScan _vectorScan;
 
     /**
      * Creates an encoder for the specified mode of operation.
@@ -140,44 +150,100 @@ class CSSEncoder extends Encoder {
         _mode = mode;
         _lowMask = mode.lowMask();
         _highMask = mode.highMask();
+        _replacements = buildTable(_lowMask, _highMask).replacements();
+        _vectorScan = VectorScan.forMasks(
+            _lowMask, _highMask, '\240', Unicode.LINE_SEPARATOR);
+    }
+
+    /**
+     * Builds the hex escapes, without the trailing space, of the
+     * characters in the range 0 to 255 that are escaped.
+     *
+     * @param lowMask the mask of unescaped characters in the range 0 to 63
+     * @param highMask the mask of unescaped characters in the range 64 to 127
+     * @return the escapes.
+     */
+    private static EncodingTable buildTable(long lowMask, long highMask) {
+        final EncodingTable table = new EncodingTable();
+        for (int ch = 0; ch < EncodingTable.SIZE; ++ch) {
+            if (ch < 2*LONG_BITS
+                ? ((ch < LONG_BITS ? lowMask & (1L << ch) : highMask & (1L << (ch - LONG_BITS))) == 0)
+                : ch <= '\237')
+            {
+                table.replace(ch, hexEscape(ch));
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the hex escape of a character without a trailing space,
+     * e.g. "\\22".
+     *
+     * @param ch the character to escape
+     * @return the escape.
+     */
+    static String hexEscape(int ch) {
+        return "\\" + Integer.toHexString(ch);
     }
 
     @Override
-    protected int maxEncodedLength(int n) {
+    protected long maxEncodedLength(long n) {
         return HEX_ENCODED_LENGTH * n;
     }
 
     @Override
     protected int firstEncodedOffset(String input, int off, int len) {
         final int n = off + len;
-        for (int i = off ; i<n ; ++i) {
-            char ch = input.charAt(i);
-            if (ch < 2*LONG_BITS) {
-                if ((ch < LONG_BITS ? _lowMask & (1L << ch) : _highMask & (1L << (ch - LONG_BITS))) != 0) {
-                    continue;
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
+        final char[][] replacements = _replacements;
+        for ( ; i<n ; ++i) {
+            final char ch = input.charAt(i);
+            if (ch < EncodingTable.SIZE) {
+                if (replacements[ch] != null) {
+                    return i;
                 }
-            } else if (ch > '\237' && ch < Unicode.LINE_SEPARATOR || ch > Unicode.PARAGRAPH_SEPARATOR) {
-                // "nonascii"
-                if (ch < Character.MIN_HIGH_SURROGATE || ch > Character.MAX_LOW_SURROGATE) {
-                    // valid
-                } else if (ch <= Character.MAX_HIGH_SURROGATE) {
-                    if (i+1 < n) {
-                        if (Character.isLowSurrogate(input.charAt(i+1))) {
-                            // valid
-                            ++i;
-                        } else {
-                            return i;
-                        }
-                    } else {
-                        return i;
-                    }
+            } else if (ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR) {
+                return i;
+            } else if (Character.isSurrogate(ch)) {
+                // "nonascii" only as a valid pair
+                if (ch <= Character.MAX_HIGH_SURROGATE && i+1 < n && Character.isLowSurrogate(input.charAt(i+1))) {
+                    ++i;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    protected int firstEncodedOffset(char[] input, int off, int len) {
+        final int n = off + len;
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
+        final char[][] replacements = _replacements;
+        for ( ; i<n ; ++i) {
+            final char ch = input[i];
+            if (ch < EncodingTable.SIZE) {
+                if (replacements[ch] != null) {
+                    return i;
+                }
+            } else if (ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR) {
+                return i;
+            } else if (Character.isSurrogate(ch)) {
+                // "nonascii" only as a valid pair
+                if (ch <= Character.MAX_HIGH_SURROGATE && i+1 < n && Character.isLowSurrogate(input[i+1])) {
+                    ++i;
                 } else {
-                    // invalid
                     return i;
                 }
-                continue;
             }
-            return i;
         }
         return n;
     }
@@ -191,23 +257,35 @@ class CSSEncoder extends Encoder {
         int j = output.arrayOffset() + output.position();
         final int m = output.arrayOffset() + output.limit();
 
+        final char[][] replacements = _replacements;
+
         for ( ; i<n ; ++i) {
             char ch = in[i];
-            if (ch < 2*LONG_BITS) {
-                if ((ch < LONG_BITS ? _lowMask & (1L << ch) : _highMask & (1L << (ch - LONG_BITS))) != 0) {
+            final char[] escape;
+            if (ch < EncodingTable.SIZE) {
+                escape = replacements[ch];
+                if (escape == null) {
                     if (j >= m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
+                    final int k = copyCleanRun(in, i, n, out, j, m);
+                    i += k - 1;
+                    j += k;
                     continue;
                 }
-            } else if (ch > '\237' && ch < Unicode.LINE_SEPARATOR || ch > Unicode.PARAGRAPH_SEPARATOR) {
+            } else if (ch == Unicode.LINE_SEPARATOR) {
+                escape = LINE_SEPARATOR_ESCAPE;
+            } else if (ch == Unicode.PARAGRAPH_SEPARATOR) {
+                escape = PARAGRAPH_SEPARATOR_ESCAPE;
+            } else {
                 // "nonascii"
                 if (ch < Character.MIN_HIGH_SURROGATE || ch > Character.MAX_LOW_SURROGATE) {
                     if (j >= m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
+                    final int k = copyCleanRun(in, i, n, out, j, m);
+                    i += k - 1;
+                    j += k;
                 } else if (ch <= Character.MAX_HIGH_SURROGATE) {
                     if (i+1 < n) {
                         if (Character.isLowSurrogate(in[i+1])) {
@@ -242,14 +320,6 @@ class CSSEncoder extends Encoder {
 
             // if here, we need to hex escape the character
 
-            // calculate k, the value of j after encoding the character
-            int k = j + 1; // +1 for '\\'
-            int tmp = ch;
-            do {
-                tmp >>>= HEX_SHIFT;
-                k++;
-            } while (tmp != 0);
-
             // need to look ahead one character to see if we need to
             // introduce a whitespace after the escape to prevent
             // the escape from merging with the following character
@@ -266,7 +336,6 @@ class CSSEncoder extends Encoder {
                         || la == '\f')
                 {
                     needsSpace = true;
-                    k++;
                 }
             } else if (!endOfInput) {
                 // CoderResult.UNDERFLOW;
@@ -274,23 +343,14 @@ class CSSEncoder extends Encoder {
             }
 
             // check for overflow before writing anything
-            if (k > m) {
+            if (j + escape.length + (needsSpace ? 1 : 0) > m) {
                 return overflow(input, i, output, j);
             }
 
-            out[j] = '\\';
-            j = k;
-            // write the escape backwards from the end.
+            j = EncodingTable.append(escape, out, j);
             if (needsSpace) {
-                out[--k] = ' ';
+                out[j++] = ' ';
             }
-            tmp = ch;
-            do {
-                out[--k] = HEX[tmp & HEX_MASK];
-                tmp >>>= HEX_SHIFT;
-            } while (tmp != 0);
-
-            assert out[k-1] == '\\';
         }
 
         return underflow(input, i, output, j);
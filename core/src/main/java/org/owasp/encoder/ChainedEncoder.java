@@ -39,27 +39,54 @@ import java.nio.charset.CoderResult;
 
 /**
  * ChainedEncoder -- An encoder that chains together two encoders in
- * order.  This is included as an example, but not actually exposed or
- * used as it requires an internal buffer making it not thread-safe.
+ * order, as returned by {@link Encoders#chain(Encoder, Encoder)}.
+ * The output of the first encoder passes to the last through a small
+ * window held only for the call, so that like every other encoder, a
+ * chained encoder holds no state between calls and is thread-safe.
  * Sequences of 3 or more encodings require chaining together chained
  * encoders.
  *
  * @author Jeff Ichnowski
  */
 class ChainedEncoder extends Encoder {
+    /**
+     * The size of the window holding the output of the first encoder
+     * on its way to the last, unless a single escape of the first
+     * encoder requires more.
+     */
+    static final int WINDOW_SIZE = 256;
+
+    /**
+     * Pool of windows of {@link #WINDOW_SIZE} for {@link
+     * #encodeArrays(CharBuffer, CharBuffer, boolean)}.  The windows are
+     * pooled apart from {@link Encode.Buffer}, as most callers already
+     * hold a buffer from its pool while calling the encoder.
+     */
+    private static final StripedPool<CharBuffer> WINDOWS = new StripedPool<CharBuffer>() {
+        @Override
+        CharBuffer create() {
+            return CharBuffer.allocate(WINDOW_SIZE);
+        }
+    };
+
     /** The first encoder to apply in sequence. */
     final Encoder _first;
     /** The second encoder to apply in sequence. */
     final Encoder _last;
 
     /**
-     * The buffer used to store the output of the first encoder before
-     * sending as input to the second encoder.
+     * The size of the window.  Even half of it is large enough that a
+     * full window always holds more than the first escape and the
+     * lookahead of the last encoder after it, so every round makes
+     * progress.
      */
-    // TODO: because of this buffer, the ChainedEncoder is the only stateful
-    // encoder.  This needs to be removed somehow, or state control APIs need
-    // to be added (E.g. reset/flush)
-    final CharBuffer _buffer = CharBuffer.allocate(1024);
+    private final int _windowSize;
+
+    /**
+     * The most characters the last encoder writes for each character of
+     * the window, used to size a window that will fit in the output.
+     */
+    private final int _lastRatio;
 
     /**
      * Creates an ChainedEncoder that applies the encoding sequence
@@ -71,6 +98,12 @@ class ChainedEncoder extends Encoder {
     ChainedEncoder(Encoder first, Encoder last) {
         _first = first;
         _last = last;
+
+        // the longest output of the first encoder for what it consumes
+        // in one step, which is at most a character and its lookahead.
+        final long escape = first.maxEncodedLength(1 + first.maxLookahead());
+        _windowSize = (int) Math.max(WINDOW_SIZE, 2 * (2 * escape + last.maxLookahead()));
+        _lastRatio = (int) ((last.maxEncodedLength(_windowSize) + _windowSize - 1) / _windowSize);
     }
 
     /**
@@ -80,37 +113,7 @@ class ChainedEncoder extends Encoder {
      * @return the encoded string.
      */
     public String encode(String str) {
-        if (str == null) {
-            str = "null";
-        }
-
-        int n = str.length();
-        int j = _first.firstEncodedOffset(str, 0, n);
-        if (j == n) {
-            // string is unchanged after encoding with the first encoder
-            return Encode.encode(_last, str);
-        }
-
-        final int remaining = n - j;
-        final int m = j + _first.maxEncodedLength(n);
-        CharBuffer input = CharBuffer.allocate(m);
-        str.getChars(0, j, input.array(), 0);
-        str.getChars(j, n, input.array(), m - remaining);
-
-        input.limit(m).position(m - remaining);
-        CharBuffer tmp = input.duplicate();
-        tmp.position(j);
-
-        CoderResult cr = _first.encode(input, tmp, true);
-        assert cr.isUnderflow() : "maxEncodedLength was incorrect";
-
-        CharBuffer output = CharBuffer.allocate(_last.maxEncodedLength(tmp.position()));
-        tmp.flip();
-
-        cr = _last.encode(tmp, output, true);
-        assert cr.isUnderflow() : "maxEncodedLength was incorrect";
-
-        return new String(output.array(), 0, output.position());
+        return Encode.encode(this, str);
     }
 
     @Override
@@ -120,43 +123,113 @@ class ChainedEncoder extends Encoder {
     }
 
     @Override
-    protected int maxEncodedLength(int n) {
+    protected int firstEncodedOffset(char[] input, int off, int len) {
+        int i = _first.firstEncodedOffset(input, off, len);
+        return _last.firstEncodedOffset(input, off, i - off);
+    }
+
+    @Override
+    int maxLookahead() {
+        return _first.maxLookahead() + _last.maxLookahead();
+    }
+
+    @Override
+    protected long maxEncodedLength(long n) {
         return _last.maxEncodedLength(
             _first.maxEncodedLength(n));
     }
 
-//    @Override
-//    protected int encode(char[] input, int off, int len, char[] buffer, int j, boolean endOfInput) {
-//        char[] tmp = new char[_first.maxEncodedLength(len)];
-//        int i = _first.encode(input, off, len, tmp, 0, endOfInput);
-//        return _last.encode(tmp, 0, i, buffer, j, endOfInput);
-//    }
-
+    /**
+     * Encodes through a window local to the call.  Each round the first
+     * encoder fills the window and the last encoder empties it into the
+     * output.  When the last encoder stops short of the end of the
+     * window, either for lack of output space or to look past the end of
+     * the window, the characters left in the window cannot be held for
+     * the next call.  The round is instead encoded again, with the first
+     * encoder limited to where the last stopped, until both encoders
+     * stop at the same point.  The input is then left where an encoding
+     * of the rest on its own continues the same output.
+     *
+     * @param input the input buffer
+     * @param output the output buffer
+     * @param endOfInput when true, this is the last input to encode
+     * @return UNDERFLOW or OVERFLOW
+     */
     @Override
-    public CoderResult encode(CharBuffer input, CharBuffer output, boolean endOfInput) {
-        for (;;) {
-            CoderResult cr1 = _first.encode(input, _buffer, endOfInput);
-            _buffer.flip();
-            CoderResult cr2 = _last.encode(_buffer, output, endOfInput && cr1.isUnderflow());
-            _buffer.compact();
+    protected CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
+        if (_windowSize > WINDOW_SIZE) {
+            return encodeArrays(input, output, endOfInput, newWindow());
+        }
+        final CharBuffer window = WINDOWS.acquire();
+        try {
+            return encodeArrays(input, output, endOfInput, window);
+        } finally {
+            WINDOWS.release(window);
+        }
+    }
 
-            if (cr2.isOverflow()) {
-                // no more room in output, even if we still have buffered input.
-                return cr2;
+    /**
+     * Allocates a window for {@link #encodeArrays(CharBuffer, CharBuffer,
+     * boolean, CharBuffer)}.
+     *
+     * @return the window.
+     */
+    CharBuffer newWindow() {
+        return CharBuffer.allocate(_windowSize);
+    }
+
+    /**
+     * Implementation of {@link #encodeArrays(CharBuffer, CharBuffer,
+     * boolean)} through a window that a caller encoding many short
+     * ranges allocates once.
+     *
+     * @param input the input buffer
+     * @param output the output buffer
+     * @param endOfInput when true, this is the last input to encode
+     * @param window a window of at least the size of one from {@link
+     * #newWindow()}, not shared with other threads
+     * @return UNDERFLOW or OVERFLOW
+     */
+    CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput, CharBuffer window) {
+        for (;;) {
+            final int inStart = input.position();
+            final int outStart = output.position();
+
+            // a window that the last encoder can always empty into the
+            // output, unless that is too small to make progress.
+            final int fits = output.remaining() / _lastRatio;
+            window.clear().limit(Math.max(Math.min(fits, _windowSize), _windowSize / 2));
+
+            final CoderResult cr1 = _first.encodeArrays(input, window, endOfInput);
+            window.flip();
+            final CoderResult cr2 = _last.encodeArrays(window, output, endOfInput && cr1.isUnderflow());
+
+            if (!window.hasRemaining()) {
+                if (cr1.isUnderflow()) {
+                    return cr2;
+                }
+                continue;
             }
 
-            if (cr1.isUnderflow()) {
-                // we've consumed everything from input
+            // back off to where both encoders stop together.  Each pass
+            // stops the first encoder at or before where the last stopped
+            // in the pass before.
+            do {
+                final int limit = window.position();
+                input.position(inStart);
+                output.position(outStart);
+                window.clear().limit(limit);
+                _first.encodeArrays(input, window, false);
+                window.flip();
+                _last.encodeArrays(window, output, false);
+            } while (window.hasRemaining());
+
+            if (cr2.isOverflow() || cr1.isUnderflow()) {
                 return cr2;
             }
         }
     }
 
-    @Override
-    protected CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
-        return encode(input, output, endOfInput); // TODO: invert.
-    }
-
     @Override
     public String toString() {
         return "["+_first+","+_last+"]";
@@ -0,0 +1,364 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ChannelTransfer -- copies the text of one byte channel to another,
+ * encoding it for a context on the way.  Each chunk read is decoded from
+ * the input charset, encoded by the encoder, and encoded again in the
+ * output charset.  When both channels use the same charset and a whole
+ * chunk needs no encoding, the bytes read are written as they are,
+ * without decoding them again.
+ *
+ * <p>Malformed and unmappable input decodes to
+ * {@link UTF8#MALFORMED_REPLACEMENT}, so it is replaced as the encoder
+ * replaces any other invalid character, and a chunk containing it is
+ * never written as it is.  Characters the output charset cannot encode
+ * are written as its replacement (usually {@code '?'}).</p>
+ */
+final class ChannelTransfer {
+    /**
+     * Size of each of the buffers, in bytes or chars.
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The buffers of a transfer.  The byte buffers are direct, so that
+     * channels read and write them without an extra copy, the char
+     * buffers are arrays for the encoders to scan.
+     */
+    static final class Buffers {
+        /**
+         * Pool of buffers, to save allocating direct buffers on every
+         * transfer.
+         */
+        static final StripedPool<Buffers> POOL = new StripedPool<Buffers>() {
+            @Override
+            Buffers create() {
+                return new Buffers();
+            }
+        };
+
+        /**
+         * Bytes read from the input channel.
+         */
+        final ByteBuffer _input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * Characters decoded from {@link #_input}, including any held
+         * back for the lookahead of the encoder.
+         */
+        final CharBuffer _decoded = CharBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Output of the encoder, not yet in the output charset.
+         */
+        final CharBuffer _encoded = CharBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Bytes to write to the output channel.
+         */
+        final ByteBuffer _output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * Clears all buffers for the next transfer.
+         */
+        void clear() {
+            _input.clear();
+            _decoded.clear();
+            _encoded.clear();
+            _output.clear();
+        }
+    }
+
+    /** No instances. */
+    private ChannelTransfer() {
+    }
+
+    /**
+     * Transfers and encodes the remaining contents of a channel.  See
+     * {@link Encoders#transfer(ReadableByteChannel, Charset, WritableByteChannel, Charset, Encoder)}.
+     *
+     * @param in the channel to read
+     * @param inCharset the charset of the input
+     * @param out the channel to write
+     * @param outCharset the charset of the output
+     * @param encoder the encoder to use
+     * @return the number of bytes read and written
+     * @throws IOException from either channel
+     */
+    static TransferResult transfer(
+        ReadableByteChannel in, Charset inCharset,
+        WritableByteChannel out, Charset outCharset,
+        Encoder encoder)
+        throws IOException
+    {
+        if (in == null || out == null) {
+            throw new NullPointerException("channel must not be null");
+        }
+        if (inCharset == null || outCharset == null) {
+            throw new NullPointerException("charset must not be null");
+        }
+        if (encoder == null) {
+            throw new NullPointerException("encoder must not be null");
+        }
+        checkBlocking(in);
+        checkBlocking(out);
+
+        final CharsetDecoder decoder = inCharset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .replaceWith(String.valueOf(UTF8.MALFORMED_REPLACEMENT));
+        final CharsetEncoder charsetEncoder = outCharset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        // Clean chunks are written as they are only when the number of
+        // bytes of a prefix of their characters is known: one per
+        // character in a single-byte charset, or the UTF-8 length.
+        final boolean utf8 = StandardCharsets.UTF_8.equals(inCharset);
+        final boolean verbatim = inCharset.equals(outCharset)
+            && (utf8 || decoder.maxCharsPerByte() == 1f && charsetEncoder.maxBytesPerChar() == 1f);
+
+        final Buffers buffers = Buffers.POOL.acquire();
+        try {
+            buffers.clear();
+            return transfer(in, decoder, out, charsetEncoder, encoder, buffers, verbatim, utf8);
+        } finally {
+            Buffers.POOL.release(buffers);
+        }
+    }
+
+    /**
+     * The main loop of a transfer.
+     *
+     * @param in the channel to read
+     * @param decoder decoder of the input charset
+     * @param out the channel to write
+     * @param charsetEncoder encoder of the output charset
+     * @param encoder the encoder to use
+     * @param buffers the buffers to use, cleared
+     * @param verbatim true if clean chunks may be written as they are
+     * @param utf8 true if the input is UTF-8
+     * @return the number of bytes read and written
+     * @throws IOException from either channel
+     */
+    private static TransferResult transfer(
+        ReadableByteChannel in, CharsetDecoder decoder,
+        WritableByteChannel out, CharsetEncoder charsetEncoder,
+        Encoder encoder, Buffers buffers, boolean verbatim, boolean utf8)
+        throws IOException
+    {
+        final ByteBuffer input = buffers._input;
+        final CharBuffer decoded = buffers._decoded;
+        final CharBuffer encoded = buffers._encoded;
+        final ByteBuffer output = buffers._output;
+
+        long bytesRead = 0;
+        long bytesWritten = 0;
+        boolean endOfInput = false;
+
+        for (;;) {
+            if (!endOfInput) {
+                final int n = in.read(input);
+                if (n < 0) {
+                    endOfInput = true;
+                } else {
+                    bytesRead += n;
+                }
+            }
+
+            input.flip();
+            final int mark = input.position();
+            // the decoded characters start at mark only if none are
+            // held back from the previous chunk.
+            final boolean aligned = decoded.position() == 0 && encoded.position() == 0;
+            decoder.decode(input, decoded, endOfInput);
+            boolean last = endOfInput && !input.hasRemaining();
+            if (last && decoder.flush(decoded).isOverflow()) {
+                last = false;
+            }
+            decoded.flip();
+
+            final int clean = verbatim && aligned ? cleanLength(encoder, decoded, last) : 0;
+            if (clean > 0) {
+                // write the bytes of the clean characters as they are.
+                // Those after them are decoded again with the next chunk.
+                final int cleanBytes = utf8 ? UTF8.encodedLength(decoded.array(), 0, clean) : clean;
+                output.flip();
+                bytesWritten += write(out, output);
+                output.clear();
+
+                final int limit = input.limit();
+                input.limit(mark + cleanBytes).position(mark);
+                bytesWritten += write(out, input);
+                input.limit(limit);
+                decoded.clear();
+            } else {
+                for (;;) {
+                    final CoderResult cr = encoder.encode(decoded, encoded, last);
+                    encoded.flip();
+                    bytesWritten += encode(charsetEncoder, encoded, output, out, false);
+                    encoded.compact();
+                    if (cr.isUnderflow()) {
+                        break;
+                    }
+                }
+                decoded.compact();
+            }
+            input.compact();
+
+            if (last) {
+                encoded.flip();
+                bytesWritten += encode(charsetEncoder, encoded, output, out, true);
+                while (charsetEncoder.flush(output).isOverflow()) {
+                    output.flip();
+                    bytesWritten += write(out, output);
+                    output.clear();
+                }
+                output.flip();
+                bytesWritten += write(out, output);
+                return new TransferResult(bytesRead, bytesWritten);
+            }
+        }
+    }
+
+    /**
+     * Returns how many of the decoded characters may be written as they
+     * were read.  This is zero unless the encoder would leave all the
+     * characters as they are.  Unless they are the last, the characters
+     * the encoder may yet need to look past are excluded, and a
+     * surrogate pair is never split.
+     *
+     * @param encoder the encoder to use
+     * @param decoded the decoded characters, from index 0
+     * @param last true if no characters follow
+     * @return the number of characters to write as they are
+     */
+    private static int cleanLength(Encoder encoder, CharBuffer decoded, boolean last) {
+        final char[] chars = decoded.array();
+        final int n = decoded.remaining();
+        if (n == 0 || encoder.firstEncodedOffset(chars, 0, n) != n) {
+            return 0;
+        }
+        for (int i = 0; i < n; ++i) {
+            // an encoder that leaves malformed input as it is still has
+            // it replaced in the output charset, so it is never copied
+            if (chars[i] == UTF8.MALFORMED_REPLACEMENT
+                && (i + 1 == n || !Character.isLowSurrogate(chars[i + 1])))
+            {
+                return 0;
+            }
+        }
+        if (last) {
+            return n;
+        }
+        int clean = n - encoder.maxLookahead();
+        if (clean > 0 && Character.isLowSurrogate(chars[clean])) {
+            --clean;
+        }
+        return clean;
+    }
+
+    /**
+     * Encodes characters in the output charset, writing the output
+     * buffer to the channel whenever it fills.
+     *
+     * @param charsetEncoder encoder of the output charset
+     * @param src the characters to encode
+     * @param dst the output buffer
+     * @param out the channel to write
+     * @param endOfInput true if no characters follow
+     * @return the number of bytes written to the channel
+     * @throws IOException from the channel
+     */
+    private static long encode(
+        CharsetEncoder charsetEncoder, CharBuffer src, ByteBuffer dst,
+        WritableByteChannel out, boolean endOfInput)
+        throws IOException
+    {
+        long written = 0;
+        while (charsetEncoder.encode(src, dst, endOfInput).isOverflow()) {
+            dst.flip();
+            written += write(out, dst);
+            dst.clear();
+        }
+        return written;
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer to a channel.
+     *
+     * @param out the channel to write
+     * @param src the bytes to write
+     * @return the number of bytes written
+     * @throws IOException from the channel
+     */
+    private static long write(WritableByteChannel out, ByteBuffer src) throws IOException {
+        long written = 0;
+        while (src.hasRemaining()) {
+            written += out.write(src);
+        }
+        return written;
+    }
+
+    /**
+     * Rejects a channel in non-blocking mode, which could make a transfer
+     * spin on reads and writes that transfer nothing.
+     *
+     * @param channel the channel to check
+     * @throws IllegalBlockingModeException if the channel is non-blocking
+     */
+    private static void checkBlocking(Channel channel) {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+    }
+}
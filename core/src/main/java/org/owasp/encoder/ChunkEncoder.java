@@ -0,0 +1,186 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.util.Queue;
+
+/**
+ * ChunkEncoder -- encodes a stream of input that arrives as a sequence of
+ * CharBuffers, such as the items of a reactive stream, into a sequence
+ * of output CharBuffers.  The input buffers are not kept between calls:
+ * characters the encoder needs to see past are copied to a small carry
+ * buffer and encoded with the start of the next chunk, as the
+ * {@link Encoder#encode(CharBuffer, CharBuffer, boolean)} contract
+ * requires.  The output buffers come from a pool, and may be handed back
+ * with {@link #recycle(CharBuffer)} once consumed.
+ *
+ * <p>Instances are not thread-safe.</p>
+ */
+final class ChunkEncoder {
+    /**
+     * Capacity of each output buffer.
+     */
+    static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Pool of output buffers.
+     */
+    static final StripedPool<CharBuffer> POOL = new StripedPool<CharBuffer>() {
+        @Override
+        CharBuffer create() {
+            return CharBuffer.allocate(BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * The encoder to use.
+     */
+    private final Encoder _encoder;
+
+    /**
+     * Characters of earlier chunks not yet consumed by the encoder,
+     * between position zero and the position of the buffer.
+     */
+    private final CharBuffer _carry;
+
+    /**
+     * The output buffer being filled, or null.
+     */
+    private CharBuffer _output;
+
+    /**
+     * Creates a ChunkEncoder.
+     *
+     * @param encoder the encoder to use
+     */
+    ChunkEncoder(Encoder encoder) {
+        if (encoder == null) {
+            throw new NullPointerException("encoder must not be null");
+        }
+        _encoder = encoder;
+        _carry = CharBuffer.allocate(Math.max(EncodedWriter.LEFT_OVER_BUFFER, 2 * (encoder.maxLookahead() + 1)));
+    }
+
+    /**
+     * Encodes the next chunk of input, and adds the output to a queue,
+     * flipped for reading.  All output produced so far is added, so a
+     * chunk that adds nothing is one whose characters were all held
+     * back.  The input is consumed entirely.
+     *
+     * @param input the next chunk, of any kind of CharBuffer
+     * @param endOfInput true if no chunks follow
+     * @param output the queue to add output buffers to
+     */
+    void encode(CharBuffer input, boolean endOfInput, Queue<CharBuffer> output) {
+        // finish the characters held back from the last chunk first,
+        // feeding them from this one until the encoder has decided
+        while (_carry.position() > 0) {
+            final int n = Math.min(input.remaining(), _carry.remaining());
+            final int limit = input.limit();
+            input.limit(input.position() + n);
+            _carry.put(input);
+            input.limit(limit);
+
+            _carry.flip();
+            encodeInto(_carry, endOfInput && !input.hasRemaining(), output);
+            _carry.compact();
+            if (!input.hasRemaining()) {
+                break;
+            }
+        }
+
+        if (input.hasRemaining()) {
+            encodeInto(input, endOfInput, output);
+            _carry.put(input);
+        }
+
+        if (_output != null && _output.position() > 0) {
+            _output.flip();
+            output.add(_output);
+            _output = null;
+        }
+    }
+
+    /**
+     * Encodes from a buffer into output buffers, adding those that fill
+     * to the queue.
+     *
+     * @param input the input
+     * @param endOfInput true if no input follows
+     * @param output the queue to add full output buffers to
+     */
+    private void encodeInto(CharBuffer input, boolean endOfInput, Queue<CharBuffer> output) {
+        for (;;) {
+            if (_output == null) {
+                _output = POOL.acquire();
+            }
+            final CoderResult cr = _encoder.encode(input, _output, endOfInput);
+            if (cr.isUnderflow()) {
+                return;
+            }
+            _output.flip();
+            output.add(_output);
+            _output = null;
+        }
+    }
+
+    /**
+     * Returns an output buffer to the pool.  The caller must not use the
+     * buffer afterwards.  Buffers of another size are ignored.
+     *
+     * @param buffer a buffer from {@link #encode(CharBuffer, boolean, Queue)}
+     * that its consumer is done with
+     */
+    static void recycle(CharBuffer buffer) {
+        if (buffer != null && buffer.capacity() == BUFFER_SIZE && buffer.hasArray() && !buffer.isReadOnly()) {
+            buffer.clear();
+            POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Returns the output buffer being filled, if any, to the pool, for
+     * a stream that ends early.
+     */
+    void discard() {
+        if (_output != null) {
+            recycle(_output);
+            _output = null;
+        }
+        _carry.clear();
+    }
+}
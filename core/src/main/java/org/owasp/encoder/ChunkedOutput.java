@@ -0,0 +1,232 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * ChunkedOutput -- accumulates encoded output in a sequence of char arrays
+ * ("chunks") so that a result can be built at its exact size without first
+ * allocating for the worst case of {@link Encoder#maxEncodedLength(long)}.
+ * Chunks start small and double in size up to {@link #MAX_CHUNK_SIZE}, which
+ * bounds the unused space at the end of the last chunk.
+ *
+ * <p>Instances are not thread-safe, and are meant to live for the duration
+ * of a single encode call.</p>
+ */
+final class ChunkedOutput {
+    /**
+     * The size of the first chunk allocated by {@link #next(CharBuffer)}.
+     */
+    static final int MIN_CHUNK_SIZE = 2048;
+
+    /**
+     * The maximum size of an allocated chunk.
+     */
+    static final int MAX_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Initial capacity of the chunk list.
+     */
+    private static final int INITIAL_CHUNK_COUNT = 8;
+
+    /**
+     * The filled chunks.
+     */
+    private char[][] _chunks = new char[INITIAL_CHUNK_COUNT][];
+
+    /**
+     * The number of characters used in each filled chunk.
+     */
+    private int[] _lengths = new int[INITIAL_CHUNK_COUNT];
+
+    /**
+     * The number of filled chunks.
+     */
+    private int _count;
+
+    /**
+     * The total number of characters in all filled chunks.
+     */
+    private int _length;
+
+    /**
+     * Adds the contents of a chunk.  The array is retained (not copied),
+     * the caller must not modify it after this call.
+     *
+     * @param chunk the array holding the characters.
+     * @param len the number of characters, starting at index 0, to add.
+     * @throws OutOfMemoryError if the output would be longer than a
+     * String can be.
+     */
+    void add(char[] chunk, int len) {
+        checkLength(_length, len);
+        if (_count == _chunks.length) {
+            char[][] chunks = new char[_count * 2][];
+            System.arraycopy(_chunks, 0, chunks, 0, _count);
+            _chunks = chunks;
+            int[] lengths = new int[_count * 2];
+            System.arraycopy(_lengths, 0, lengths, 0, _count);
+            _lengths = lengths;
+        }
+        _chunks[_count] = chunk;
+        _lengths[_count] = len;
+        _count++;
+        _length += len;
+    }
+
+    /**
+     * Adds the contents of a full output buffer, and returns a new
+     * (larger) buffer to continue encoding into.  The buffer's backing
+     * array is retained.
+     *
+     * @param full the array-backed output buffer that overflowed.
+     * @return an empty buffer to continue encoding into.
+     */
+    CharBuffer next(CharBuffer full) {
+        add(full.array(), full.position());
+        final int size = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, full.capacity() * 2));
+        return CharBuffer.allocate(size);
+    }
+
+    /**
+     * Adds the chunks of another output after the chunks of this one.  The
+     * arrays are shared, not copied.
+     *
+     * @param other the output to add.
+     * @throws OutOfMemoryError if the output would be longer than a
+     * String can be.
+     */
+    void addAll(ChunkedOutput other) {
+        for (int i = 0; i < other._count; ++i) {
+            add(other._chunks[i], other._lengths[i]);
+        }
+    }
+
+    /**
+     * Writes the contents of all chunks, in order.
+     *
+     * @param out the writer to write to.
+     * @throws IOException if thrown by the writer.
+     */
+    void writeTo(Writer out) throws IOException {
+        for (int i = 0; i < _count; ++i) {
+            out.write(_chunks[i], 0, _lengths[i]);
+        }
+    }
+
+    /**
+     * Returns the number of characters added so far.
+     *
+     * @return the length of the output.
+     */
+    int length() {
+        return _length;
+    }
+
+    /**
+     * Builds the result string: the first {@code prefixLength} characters of
+     * {@code prefix} followed by the contents of all chunks.  The result is
+     * allocated at its exact size.
+     *
+     * @param prefix a sequence whose leading characters precede the chunks.
+     * @param prefixLength the number of characters of {@code prefix} to use.
+     * @return the assembled string.
+     * @throws OutOfMemoryError if the result would be longer than a String
+     * can be.
+     */
+    String toString(CharSequence prefix, int prefixLength) {
+        checkLength(prefixLength, _length);
+        final StringBuilder buf = new StringBuilder(prefixLength + _length);
+        buf.append(prefix, 0, prefixLength);
+        return appendChunks(buf);
+    }
+
+    /**
+     * Builds the result string: {@code prefixLength} characters of
+     * {@code prefix} starting at {@code off} followed by the contents of
+     * all chunks.  The result is allocated at its exact size.
+     *
+     * @param prefix an array holding the characters that precede the chunks.
+     * @param off the offset of the first prefix character.
+     * @param prefixLength the number of characters of {@code prefix} to use.
+     * @return the assembled string.
+     * @throws OutOfMemoryError if the result would be longer than a String
+     * can be.
+     */
+    String toString(char[] prefix, int off, int prefixLength) {
+        checkLength(prefixLength, _length);
+        final StringBuilder buf = new StringBuilder(prefixLength + _length);
+        buf.append(prefix, off, prefixLength);
+        return appendChunks(buf);
+    }
+
+    /**
+     * Checks that two lengths add up to no more than the longest String
+     * that can be allocated.  This is checked as the output grows, so
+     * encoding stops at the limit instead of after the whole input, and
+     * before a sum that overflows an int reaches an allocation.
+     *
+     * @param a the first length
+     * @param b the second length
+     * @throws OutOfMemoryError if the sum is too long.
+     */
+    private static void checkLength(int a, int b) {
+        if ((long) a + b > Encoder.MAX_ARRAY_LENGTH) {
+            throw new OutOfMemoryError(
+                "encoded output exceeds the maximum String length, encode to a Writer instead");
+        }
+    }
+
+    /**
+     * Appends all chunks to a builder and returns the result.
+     *
+     * @param buf the builder holding the prefix.
+     * @return the contents of the builder.
+     */
+    private String appendChunks(StringBuilder buf) {
+        for (int i = 0; i < _count; ++i) {
+            buf.append(_chunks[i], 0, _lengths[i]);
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toString("", 0);
+    }
+}
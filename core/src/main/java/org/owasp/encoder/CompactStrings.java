@@ -0,0 +1,60 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+/**
+ * CompactStrings -- encodes strings that are stored in the compact
+ * Latin-1 representation used by Java 9 and later.  Java 8 stores every
+ * String as UTF-16, so this version never takes the Latin-1 path.  The
+ * Java 9 version of this class is in the multi-release part of the jar.
+ */
+final class CompactStrings {
+    /** No instances. */
+    private CompactStrings() {}
+
+    /**
+     * Encodes {@code str} one Latin-1 byte per character, or returns
+     * {@code null} so that the caller falls back to encoding chars.
+     *
+     * @param encoder the encoder to use
+     * @param str the string to encode
+     * @param j the offset of the first character requiring encoding
+     * @param buffer the pooled buffer of the caller
+     * @return the encoded string, or {@code null}.
+     */
+    static String encode(Encoder encoder, String str, int j, Encode.Buffer buffer) {
+        return null;
+    }
+}
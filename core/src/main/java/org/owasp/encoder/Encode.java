@@ -35,7 +35,9 @@
 package org.owasp.encoder;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CoderResult;
 
@@ -51,6 +53,12 @@ import java.nio.charset.CoderResult;
  * {@code String}.  The second version writes the encoded version directly
  * to a {@code Writer}.</p>
  *
+ * <p>Both versions use a bounded amount of working memory however long the
+ * input is.  The {@code String} version also holds the whole result, which
+ * fails with an {@code OutOfMemoryError} if it is longer than the largest
+ * possible String; the {@code Writer} version streams its output, and is the
+ * one to use for very large inputs.</p>
+ *
  * <p>Please make sure to read and understand the context that the method encodes
  * for.  Encoding for the incorrect context will likely lead to exposing a
  * cross-site scripting vulnerability. Those new to XSS mitigation may find it
@@ -157,6 +165,110 @@ public final class Encode {
         forXml(out, input);
     }
 
+    /**
+     * See {@link #forHtml(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forHtml(CharSequence input) {
+        return forXml(input);
+    }
+
+    /**
+     * See {@link #forHtml(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forHtml(Writer out, CharSequence input)
+        throws IOException
+    {
+        forXml(out, input);
+    }
+
+    /**
+     * See {@link #forHtml(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forHtml(char[] input, int off, int len) {
+        return forXml(input, off, len);
+    }
+
+    /**
+     * See {@link #forHtml(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forHtml(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        forXml(out, input, off, len);
+    }
+
+    /**
+     * See {@link #forHtml(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forHtml(StringBuilder out, CharSequence input) {
+        forXml(out, input);
+    }
+
+    /**
+     * See {@link #forHtml(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forHtml(Appendable out, CharSequence input)
+        throws IOException
+    {
+        forXml(out, input);
+    }
+
+    /**
+     * See {@link #forHtml(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forHtml(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        forXml(out, input);
+    }
+
     /**
      * <p>This method encodes for HTML text content.  It does not escape
      * quotation characters and is thus unsafe for use with
@@ -236,6 +348,110 @@ public final class Encode {
         forXmlContent(out, input);
     }
 
+    /**
+     * See {@link #forHtmlContent(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forHtmlContent(CharSequence input) {
+        return forXmlContent(input);
+    }
+
+    /**
+     * See {@link #forHtmlContent(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forHtmlContent(Writer out, CharSequence input)
+        throws IOException
+    {
+        forXmlContent(out, input);
+    }
+
+    /**
+     * See {@link #forHtmlContent(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forHtmlContent(char[] input, int off, int len) {
+        return forXmlContent(input, off, len);
+    }
+
+    /**
+     * See {@link #forHtmlContent(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forHtmlContent(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        forXmlContent(out, input, off, len);
+    }
+
+    /**
+     * See {@link #forHtmlContent(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forHtmlContent(StringBuilder out, CharSequence input) {
+        forXmlContent(out, input);
+    }
+
+    /**
+     * See {@link #forHtmlContent(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forHtmlContent(Appendable out, CharSequence input)
+        throws IOException
+    {
+        forXmlContent(out, input);
+    }
+
+    /**
+     * See {@link #forHtmlContent(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forHtmlContent(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        forXmlContent(out, input);
+    }
+
     /**
      * <p>This method encodes for HTML text attributes. Do not use for JavaScript event attributes or for attributes
      * that are interpreted as a URL. Instead use {@link #forJavaScript(String)} and {@link #forUriComponent(String)}
@@ -323,6 +539,110 @@ public final class Encode {
         forXmlAttribute(out, input);
     }
 
+    /**
+     * See {@link #forHtmlAttribute(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forHtmlAttribute(CharSequence input) {
+        return forXmlAttribute(input);
+    }
+
+    /**
+     * See {@link #forHtmlAttribute(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forHtmlAttribute(Writer out, CharSequence input)
+        throws IOException
+    {
+        forXmlAttribute(out, input);
+    }
+
+    /**
+     * See {@link #forHtmlAttribute(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forHtmlAttribute(char[] input, int off, int len) {
+        return forXmlAttribute(input, off, len);
+    }
+
+    /**
+     * See {@link #forHtmlAttribute(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forHtmlAttribute(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        forXmlAttribute(out, input, off, len);
+    }
+
+    /**
+     * See {@link #forHtmlAttribute(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forHtmlAttribute(StringBuilder out, CharSequence input) {
+        forXmlAttribute(out, input);
+    }
+
+    /**
+     * See {@link #forHtmlAttribute(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forHtmlAttribute(Appendable out, CharSequence input)
+        throws IOException
+    {
+        forXmlAttribute(out, input);
+    }
+
+    /**
+     * See {@link #forHtmlAttribute(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forHtmlAttribute(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        forXmlAttribute(out, input);
+    }
+
 
     /**
      * <p>Encodes for unquoted HTML attribute values.  {@link
@@ -451,35 +771,139 @@ public final class Encode {
         encode(Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, out, input);
     }
 
+    /**
+     * See {@link #forHtmlUnquotedAttribute(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forHtmlUnquotedAttribute(CharSequence input) {
+        return encode(Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, input);
+    }
 
-    // HTML comment encoding is not currently supported because
-    // of the number of vendor-specific sequences that would need
-    // to be handled (e.g. "<!--[if IE]-->"
-
-//    public static String forHtmlComment(String input) {
-//        // only alphanumeric and space, everything else becomes a space
-//
-//        // HTML comment context needs to avoid browser extensions
-//        // such as "<!--[if IE]-->"
-//        throw new UnsupportedOperationException();
-//    }
+    /**
+     * See {@link #forHtmlUnquotedAttribute(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forHtmlUnquotedAttribute(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, out, input);
+    }
 
     /**
-     * Encodes for CSS strings.  The context must be surrounded by quotation
-     * characters.  It is safe for use in both style blocks and attributes in
-     * HTML.
+     * See {@link #forHtmlUnquotedAttribute(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
      *
-     * <b>Example JSP Usage</b>
-     * <pre>
-     *     &lt;div style="background: url('&lt;=Encode.forCssString(...)%&gt;');"&gt;
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forHtmlUnquotedAttribute(char[] input, int off, int len) {
+        return encode(Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forHtmlUnquotedAttribute(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
      *
-     *     &lt;style type="text/css"&gt;
-     *         background: url('&lt;%=Encode.forCssString(...)%&gt;');
-     *     &lt;/style&gt;
-     * </pre>
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forHtmlUnquotedAttribute(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forHtmlUnquotedAttribute(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
      *
-     * <b>Encoding  Notes</b>
-     * <ul>
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forHtmlUnquotedAttribute(StringBuilder out, CharSequence input) {
+        encode(Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forHtmlUnquotedAttribute(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forHtmlUnquotedAttribute(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forHtmlUnquotedAttribute(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forHtmlUnquotedAttribute(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, out, input);
+    }
+
+
+    // HTML comment encoding is not currently supported because
+    // of the number of vendor-specific sequences that would need
+    // to be handled (e.g. "<!--[if IE]-->"
+
+//    public static String forHtmlComment(String input) {
+//        // only alphanumeric and space, everything else becomes a space
+//
+//        // HTML comment context needs to avoid browser extensions
+//        // such as "<!--[if IE]-->"
+//        throw new UnsupportedOperationException();
+//    }
+
+    /**
+     * Encodes for CSS strings.  The context must be surrounded by quotation
+     * characters.  It is safe for use in both style blocks and attributes in
+     * HTML.
+     *
+     * <b>Example JSP Usage</b>
+     * <pre>
+     *     &lt;div style="background: url('&lt;=Encode.forCssString(...)%&gt;');"&gt;
+     *
+     *     &lt;style type="text/css"&gt;
+     *         background: url('&lt;%=Encode.forCssString(...)%&gt;');
+     *     &lt;/style&gt;
+     * </pre>
+     *
+     * <b>Encoding  Notes</b>
+     * <ul>
      *
      * <li>The following characters are encoded using hexadecimal
      * encodings: {@code U+0000} - {@code U+001f},
@@ -539,6 +963,250 @@ public final class Encode {
         encode(Encoders.CSS_STRING_ENCODER, out, input);
     }
 
+    /**
+     * See {@link #forCssString(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forCssString(CharSequence input) {
+        // need to watch out for CSS expressions
+        return encode(Encoders.CSS_STRING_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forCssString(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forCssString(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssString(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forCssString(char[] input, int off, int len) {
+        // need to watch out for CSS expressions
+        return encode(Encoders.CSS_STRING_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forCssString(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forCssString(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forCssString(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forCssString(StringBuilder out, CharSequence input) {
+        encode(Encoders.CSS_STRING_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssString(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forCssString(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssString(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forCssString(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_ENCODER, out, input);
+    }
+
+    /**
+     * Encodes for a CSS string in an HTML attribute, such as a {@code
+     * style} attribute.  The result is the same as that of {@code
+     * forHtmlAttribute(forCssString(input))}, produced in a single pass
+     * without the intermediate string.
+     *
+     * <b>Example JSP Usage</b>
+     * <pre>
+     *     &lt;div style="background: url('&lt;%=Encode.forCssStringInHtmlAttribute(...)%&gt;');"&gt;
+     * </pre>
+     *
+     * @param input the input to encode
+     * @return the encoded result
+     * @see #forCssString(String)
+     * @see #forHtmlAttribute(String)
+     */
+    public static String forCssStringInHtmlAttribute(String input) {
+        return encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forCssStringInHtmlAttribute(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forCssStringInHtmlAttribute(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssStringInHtmlAttribute(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forCssStringInHtmlAttribute(CharSequence input) {
+        return encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forCssStringInHtmlAttribute(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forCssStringInHtmlAttribute(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssStringInHtmlAttribute(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forCssStringInHtmlAttribute(char[] input, int off, int len) {
+        return encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forCssStringInHtmlAttribute(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forCssStringInHtmlAttribute(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forCssStringInHtmlAttribute(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forCssStringInHtmlAttribute(StringBuilder out, CharSequence input) {
+        encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssStringInHtmlAttribute(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forCssStringInHtmlAttribute(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssStringInHtmlAttribute(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forCssStringInHtmlAttribute(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
     /**
      * Encodes for CSS URL contexts.  The context must be surrounded by {@code "url("}
      * and {@code ")"}.  It is safe for use in both style blocks and attributes in HTML.
@@ -614,6 +1282,110 @@ public final class Encode {
         encode(Encoders.CSS_URL_ENCODER, out, input);
     }
 
+    /**
+     * See {@link #forCssUrl(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forCssUrl(CharSequence input) {
+        return encode(Encoders.CSS_URL_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forCssUrl(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forCssUrl(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_URL_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssUrl(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forCssUrl(char[] input, int off, int len) {
+        return encode(Encoders.CSS_URL_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forCssUrl(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forCssUrl(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.CSS_URL_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forCssUrl(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forCssUrl(StringBuilder out, CharSequence input) {
+        encode(Encoders.CSS_URL_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssUrl(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forCssUrl(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_URL_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCssUrl(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forCssUrl(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CSS_URL_ENCODER, out, input);
+    }
+
     /**
      * <p>Performs percent-encoding of a URL according to RFC 3986.  The provided
      * URL is assumed to a valid URL.  This method does not do any checking on
@@ -745,620 +1517,2650 @@ public final class Encode {
     }
 
     /**
-     * Encoder for XML and XHTML.  See {@link #forHtml(String)} for a
-     * description of the encoding and context.
+     * See {@link #forUriComponent(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
      *
-     * @see #forHtml(String)
      * @param input the input to encode
-     * @return the encoded result
+     * @return the encoded input
      */
-    public static String forXml(String input) {
-        return encode(Encoders.XML_ENCODER, input);
+    public static String forUriComponent(CharSequence input) {
+        return encode(Encoders.URI_COMPONENT_ENCODER, input);
     }
 
     /**
-     * See {@link #forXml(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forUriComponent(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
      *
      * @param out where to write encoded output
-     * @param input the input string to encode
+     * @param input the input to encode
      * @throws IOException if thrown by writer
      */
-    public static void forXml(Writer out, String input)
+    public static void forUriComponent(Writer out, CharSequence input)
         throws IOException
     {
-        encode(Encoders.XML_ENCODER, out, input);
+        encode(Encoders.URI_COMPONENT_ENCODER, out, input);
     }
 
     /**
-     * Encoder for XML and XHTML text content.  See {@link
-     * #forHtmlContent(String)} for description of encoding and
-     * context.
+     * See {@link #forUriComponent(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
      *
-     * @see #forHtmlContent(String)
-     * @param input the input to encode
-     * @return the encoded result
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
      */
-    public static String forXmlContent(String input) {
-        return encode(Encoders.XML_CONTENT_ENCODER, input);
+    public static String forUriComponent(char[] input, int off, int len) {
+        return encode(Encoders.URI_COMPONENT_ENCODER, input, off, len);
     }
 
     /**
-     * See {@link #forXmlContent(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forUriComponent(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
      *
      * @param out where to write encoded output
-     * @param input the input string to encode
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
      * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
      */
-    public static void forXmlContent(Writer out, String input)
+    public static void forUriComponent(Writer out, char[] input, int off, int len)
         throws IOException
     {
-        encode(Encoders.XML_CONTENT_ENCODER, out, input);
+        encode(Encoders.URI_COMPONENT_ENCODER, out, input, off, len);
     }
 
     /**
-     * Encoder for XML and XHTML attribute content.  See {@link
-     * #forHtmlAttribute(String)} for description of encoding and
-     * context.
+     * See {@link #forUriComponent(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
      *
-     * @see #forHtmlAttribute(String)
+     * @param out where to append encoded output
      * @param input the input to encode
-     * @return the encoded result
      */
-    public static String forXmlAttribute(String input) {
-        return encode(Encoders.XML_ATTRIBUTE_ENCODER, input);
+    public static void forUriComponent(StringBuilder out, CharSequence input) {
+        encode(Encoders.URI_COMPONENT_ENCODER, out, input);
     }
 
     /**
-     * See {@link #forXmlAttribute(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forUriComponent(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
      *
-     * @param out where to write encoded output
-     * @param input the input string to encode
-     * @throws IOException if thrown by writer
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
      */
-    public static void forXmlAttribute(Writer out, String input)
+    public static void forUriComponent(Appendable out, CharSequence input)
         throws IOException
     {
-        encode(Encoders.XML_ATTRIBUTE_ENCODER, out, input);
+        encode(Encoders.URI_COMPONENT_ENCODER, out, input);
     }
 
     /**
-     * Encoder for XML comments.  <strong>NOT FOR USE WITH
-     * (X)HTML CONTEXTS.</strong>  (X)HTML comments may be interpreted by
-     * browsers as something other than a comment, typically in vendor
-     * specific extensions (e.g. {@code <--if[IE]-->}).
-     * For (X)HTML it is recommend that unsafe content never be included
-     * in a comment.
-     *
-     * <p>The caller must provide the comment start and end sequences.</p>
+     * See {@link #forUriComponent(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
      *
-     * <p>This method replaces all invalid XML characters with spaces,
-     * and replaces the "--" sequence (which is invalid in XML comments)
-     * with "-~" (hyphen-tilde).  <b>This encoding behavior may change
-     * in future releases.</b>  If the comments need to be decoded, the
-     * caller will need to come up with their own encode/decode system.</p>
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forUriComponent(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.URI_COMPONENT_ENCODER, out, input);
+    }
+
+    /**
+     * Encodes for a component of a URI in an HTML attribute, such as a
+     * parameter of an {@code href}.  The result is the same as that of
+     * {@code forHtmlAttribute(forUriComponent(input))}, produced in a
+     * single pass without the intermediate string.
      *
+     * <b>Example JSP Usage</b>
      * <pre>
-     *     out.println("&lt;?xml version='1.0'?&gt;");
-     *     out.println("&lt;data&gt;");
-     *     out.println("&lt;!-- "+Encode.forXmlComment(comment)+" --&gt;");
-     *     out.println("&lt;/data&gt;");
+     *     &lt;a href="http://www.owasp.org/search?q=&lt;%=Encode.forUriComponentInHtmlAttribute(...)%&gt;"&gt;
      * </pre>
      *
      * @param input the input to encode
      * @return the encoded result
+     * @see #forUriComponent(String)
+     * @see #forHtmlAttribute(String)
      */
-    public static String forXmlComment(String input) {
-        return encode(Encoders.XML_COMMENT_ENCODER, input);
+    public static String forUriComponentInHtmlAttribute(String input) {
+        return encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, input);
     }
 
     /**
-     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * See {@link #forUriComponentInHtmlAttribute(String)} for description of encoding.  This
      * version writes directly to a Writer without an intervening string.
      *
      * @param out where to write encoded output
      * @param input the input string to encode
      * @throws IOException if thrown by writer
      */
-    public static void forXmlComment(Writer out, String input)
+    public static void forUriComponentInHtmlAttribute(Writer out, String input)
         throws IOException
     {
-        encode(Encoders.XML_COMMENT_ENCODER, out, input);
+        encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
     }
 
     /**
-     * Encoder for XML 1.1 contexts.  Similar to {@link #forXml(String)} but
-     * follows the XML 1.1 specification which allows all control characters
-     * (except null) to be encoded as character references.  This method encodes
-     * control characters in the ranges [#x1-#x8, #xB-#xC, #xE-#x1F, #x7F-#x9F]
-     * as character references (e.g., {@code &#x01;}), while tab, line feed,
-     * and carriage return are passed through unencoded. This is safe for use
-     * in both XML 1.1 content and attributes.
+     * See {@link #forUriComponentInHtmlAttribute(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
      *
      * @param input the input to encode
-     * @return the encoded result
+     * @return the encoded input
      */
-    public static String forXml11(String input) {
-        return encode(Encoders.XML_11_ENCODER, input);
+    public static String forUriComponentInHtmlAttribute(CharSequence input) {
+        return encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, input);
     }
 
     /**
-     * See {@link #forXml11(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forUriComponentInHtmlAttribute(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
      *
      * @param out where to write encoded output
-     * @param input the input string to encode
+     * @param input the input to encode
      * @throws IOException if thrown by writer
      */
-    public static void forXml11(Writer out, String input)
+    public static void forUriComponentInHtmlAttribute(Writer out, CharSequence input)
         throws IOException
     {
-        encode(Encoders.XML_11_ENCODER, out, input);
+        encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
     }
 
     /**
-     * Encoder for XML 1.1 content.  Similar to {@link #forXmlContent(String)}
-     * but follows the XML 1.1 specification for control character handling.
+     * See {@link #forUriComponentInHtmlAttribute(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
      *
-     * @param input the input to encode
-     * @return the encoded result
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
      */
-    public static String forXml11Content(String input) {
-        return encode(Encoders.XML_11_CONTENT_ENCODER, input);
+    public static String forUriComponentInHtmlAttribute(char[] input, int off, int len) {
+        return encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, input, off, len);
     }
 
     /**
-     * See {@link #forXml11Content(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forUriComponentInHtmlAttribute(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
      *
      * @param out where to write encoded output
-     * @param input the input string to encode
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
      * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
      */
-    public static void forXml11Content(Writer out, String input)
+    public static void forUriComponentInHtmlAttribute(Writer out, char[] input, int off, int len)
         throws IOException
     {
-        encode(Encoders.XML_11_CONTENT_ENCODER, out, input);
+        encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, out, input, off, len);
     }
 
     /**
-     * Encoder for XML 1.1 attribute content.  Similar to
-     * {@link #forXmlAttribute(String)} but follows the XML 1.1 specification
-     * for control character handling.
+     * See {@link #forUriComponentInHtmlAttribute(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forUriComponentInHtmlAttribute(StringBuilder out, CharSequence input) {
+        encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forUriComponentInHtmlAttribute(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forUriComponentInHtmlAttribute(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forUriComponentInHtmlAttribute(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forUriComponentInHtmlAttribute(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * Encoder for XML and XHTML.  See {@link #forHtml(String)} for a
+     * description of the encoding and context.
      *
+     * @see #forHtml(String)
      * @param input the input to encode
      * @return the encoded result
      */
-    public static String forXml11Attribute(String input) {
-        return encode(Encoders.XML_11_ATTRIBUTE_ENCODER, input);
+    public static String forXml(String input) {
+        return encode(Encoders.XML_ENCODER, input);
     }
 
     /**
-     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * See {@link #forXml(String)} for description of encoding.  This
      * version writes directly to a Writer without an intervening string.
      *
      * @param out where to write encoded output
      * @param input the input string to encode
      * @throws IOException if thrown by writer
      */
-    public static void forXml11Attribute(Writer out, String input)
+    public static void forXml(Writer out, String input)
         throws IOException
     {
-        encode(Encoders.XML_11_ATTRIBUTE_ENCODER, out, input);
+        encode(Encoders.XML_ENCODER, out, input);
     }
 
     /**
-     * Encodes data for an XML CDATA section.  On the chance that the input
-     * contains a terminating {@code "]]>"}, it will be replaced by
-     * {@code "]]>]]<![CDATA[>"}.
-     * As with all XML contexts, characters that are invalid according to the
-     * XML specification will be replaced by a space character.   Caller must
-     * provide the CDATA section boundaries.
+     * See {@link #forXml(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
      *
-     * <pre>
-     *     &lt;xml-data&gt;&lt;![CDATA[&lt;%=Encode.forCDATA(...)%&gt;]]&gt;&lt;/xml-data&gt;
-     * </pre>
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forXml(CharSequence input) {
+        return encode(Encoders.XML_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXml(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
      *
+     * @param out where to write encoded output
      * @param input the input to encode
-     * @return the encoded result
+     * @throws IOException if thrown by writer
      */
-    public static String forCDATA(String input) {
-        return encode(Encoders.CDATA_ENCODER, input);
+    public static void forXml(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_ENCODER, out, input);
     }
 
     /**
-     * See {@link #forCDATA(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forXml(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forXml(char[] input, int off, int len) {
+        return encode(Encoders.XML_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forXml(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
      *
      * @param out where to write encoded output
-     * @param input the input string to encode
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
      * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
      */
-    public static void forCDATA(Writer out, String input)
+    public static void forXml(Writer out, char[] input, int off, int len)
         throws IOException
     {
-        encode(Encoders.CDATA_ENCODER, out, input);
+        encode(Encoders.XML_ENCODER, out, input, off, len);
     }
 
     /**
-     * Encodes for a Java string.  This method will use "\b", "\t", "\r", "\f",
-     * "\n", "\"", "\'", "\\", octal and unicode escapes.  Valid surrogate
-     * pairing is not checked.   The caller must provide the enclosing quotation
-     * characters.  This method is useful for when writing code generators and
-     * outputting debug messages.
+     * See {@link #forXml(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
      *
-     * <pre>
-     *     out.println("public class Hello {");
-     *     out.println("    public static void main(String[] args) {");
-     *     out.println("        System.out.println(\"" + Encode.forJava(message) + "\");");
-     *     out.println("    }");
-     *     out.println("}");
-     * </pre>
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forXml(StringBuilder out, CharSequence input) {
+        encode(Encoders.XML_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
      *
+     * @param out where to append encoded output
      * @param input the input to encode
-     * @return the input encoded for java strings.
+     * @throws IOException if thrown by {@code out}
      */
-    public static String forJava(String input) {
-        return encode(Encoders.JAVA_ENCODER, input);
+    public static void forXml(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_ENCODER, out, input);
     }
 
     /**
-     * See {@link #forJava(String)} for description of encoding.  This
+     * See {@link #forXml(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forXml(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_ENCODER, out, input);
+    }
+
+    /**
+     * Encoder for XML and XHTML text content.  See {@link
+     * #forHtmlContent(String)} for description of encoding and
+     * context.
+     *
+     * @see #forHtmlContent(String)
+     * @param input the input to encode
+     * @return the encoded result
+     */
+    public static String forXmlContent(String input) {
+        return encode(Encoders.XML_CONTENT_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXmlContent(String)} for description of encoding.  This
      * version writes directly to a Writer without an intervening string.
      *
      * @param out where to write encoded output
      * @param input the input string to encode
      * @throws IOException if thrown by writer
      */
-    public static void forJava(Writer out, String input)
+    public static void forXmlContent(Writer out, String input)
         throws IOException
     {
-        encode(Encoders.JAVA_ENCODER, out, input);
+        encode(Encoders.XML_CONTENT_ENCODER, out, input);
     }
 
     /**
-     * <p>Encodes for a JavaScript string.  It is safe for use in HTML
-     * script attributes (such as {@code onclick}), script
-     * blocks, JSON files, and JavaScript source.  The caller MUST
-     * provide the surrounding quotation characters for the string.
-     * Since this performs additional encoding so it can work in all
-     * of the JavaScript contexts listed, it may be slightly less
-     * efficient than using one of the methods targeted to a specific
-     * JavaScript context ({@link #forJavaScriptAttribute(String)},
-     * {@link #forJavaScriptBlock}, {@link #forJavaScriptSource}).
-     * Unless you are interested in saving a few bytes of output or
-     * are writing a framework on top of this library, it is recommend
-     * that you use this method over the others.</p>
+     * See {@link #forXmlContent(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
      *
-     * <b>Example JSP Usage:</b>
-     * <pre>
-     *    &lt;button onclick="alert('&lt;%=Encode.forJavaScript(data)%&gt;');"&gt;
-     *    &lt;script type="text/javascript"&gt;
-     *        var data = "&lt;%=Encode.forJavaScript(data)%&gt;";
-     *    &lt;/script&gt;
-     * </pre>
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forXmlContent(CharSequence input) {
+        return encode(Encoders.XML_CONTENT_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXmlContent(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
      *
-     * <table cellspacing="1" class="memberSummary" cellpadding="1" border="0">
-     *   <caption><b>Encoding Description</b></caption>
-     *   <thead>
-     *     <tr>
-     *       <th align="left" colspan="2" class="colFirst">Input Character</th>
-     *       <th align="left" class="colLast">Encoded Result</th>
-     *       <th align="left" class="colLast">Notes</th>
-     *     </tr>
-     *   </thead>
-     *   <tbody>
-     *     <tr class="altColor">
-     *       <td class="colFirst">U+0008</td><td><i>BS</i></td>
-     *       <td class="colLast"><code>\b</code></td>
-     *       <td class="colLast">Backspace character</td>
-     *     </tr>
-     *     <tr class="rowColor">
-     *       <td class="colFirst">U+0009</td><td><i>HT</i></td>
-     *       <td class="colLast"><code>\t</code></td>
-     *       <td class="colLast">Horizontal tab character</td>
-     *     </tr>
-     *     <tr class="altColor">
-     *       <td class="colFirst">U+000A</td><td><i>LF</i></td>
-     *       <td class="colLast"><code>\n</code></td>
-     *       <td class="colLast">Line feed character</td>
-     *     </tr>
-     *     <tr class="rowColor">
-     *       <td class="colFirst">U+000C</td><td><i>FF</i></td>
-     *       <td class="colLast"><code>\f</code></td>
-     *       <td class="colLast">Form feed character</td>
-     *     </tr>
-     *     <tr class="altColor">
-     *       <td class="colFirst">U+000D</td><td><i>CR</i></td>
-     *       <td class="colLast"><code>\r</code></td>
-     *       <td class="colLast">Carriage return character</td>
-     *     </tr>
-     *     <tr class="rowColor">
-     *       <td class="colFirst">U+0022</td><td><code>"</code></td>
-     *       <td class="colLast"><code>\x22</code></td>
-     *       <td class="colLast">The encoding <code>\"</code> is not used here because
-     *       it is not safe for use in HTML attributes.  (In HTML
-     *       attributes, it would also be correct to use
-     *       "\&amp;quot;".)</td>
-     *     </tr>
-     *     <tr class="altColor">
-     *       <td class="colFirst">U+0026</td><td><code>&amp;</code></td>
-     *       <td class="colLast"><code>\x26</code></td>
-     *       <td class="colLast">Ampersand character</td>
-     *     </tr>
-     *     <tr class="rowColor">
-     *       <td class="colFirst">U+0027</td><td><code>'</code></td>
-     *       <td class="colLast"><code>\x27</code></td>
-     *       <td class="colLast">The encoding <code>\'</code> is not used here because
-     *       it is not safe for use in HTML attributes.  (In HTML
-     *       attributes, it would also be correct to use
-     *       "\&amp;#39;".)</td>
-     *     </tr>
-     *     <tr class="altColor">
-     *       <td class="colFirst">U+002F</td><td><code>/</code></td>
-     *       <td class="colLast"><code>\/</code></td>
-     *       <td class="colLast">This encoding is used to avoid an input sequence
-     *       "&lt;/" from prematurely terminating a &lt;/script&gt;
-     *       block.</td>
-     *     </tr>
-     *     <tr class="rowColor">
-     *       <td class="colFirst">U+005C</td><td><code>\</code></td>
-     *       <td class="colLast"><code>\\</code></td>
-     *       <td class="colLast"></td>
-     *     </tr>
-     *     <tr class="altColor">
-     *       <td class="colFirst" colspan="2">U+0000&nbsp;to&nbsp;U+001F</td>
-     *       <td class="colLast"><code>\x##</code></td>
-     *       <td class="colLast">Hexadecimal encoding is used for characters in this
-     *       range that were not already mentioned in above.</td>
-     *     </tr>
-     *   </tbody>
-     * </table>
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXmlContent(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_CONTENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlContent(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
      *
-     * @param input the input string to encode
-     * @return the input encoded for JavaScript
-     * @see #forJavaScriptAttribute(String)
-     * @see #forJavaScriptBlock(String)
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
      */
-    public static String forJavaScript(String input) {
-        return encode(Encoders.JAVASCRIPT_ENCODER, input);
+    public static String forXmlContent(char[] input, int off, int len) {
+        return encode(Encoders.XML_CONTENT_ENCODER, input, off, len);
     }
 
     /**
-     * See {@link #forJavaScript(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forXmlContent(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
      *
      * @param out where to write encoded output
-     * @param input the input string to encode
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
      * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
      */
-    public static void forJavaScript(Writer out, String input)
+    public static void forXmlContent(Writer out, char[] input, int off, int len)
         throws IOException
     {
-        encode(Encoders.JAVASCRIPT_ENCODER, out, input);
+        encode(Encoders.XML_CONTENT_ENCODER, out, input, off, len);
     }
 
     /**
-     * <p>This method encodes for JavaScript strings contained within
-     * HTML script attributes (such as {@code onclick}).  It is
-     * NOT safe for use in script blocks.  The caller MUST provide the
-     * surrounding quotation characters.  This method performs the
-     * same encode as {@link #forJavaScript(String)} with the
-     * exception that <code>/</code> is not escaped.</p>
+     * See {@link #forXmlContent(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
      *
-     * <p><strong>Unless you are interested in saving a few bytes of
-     * output or are writing a framework on top of this library, it is
-     * recommend that you use {@link #forJavaScript(String)} over this
-     * method.</strong></p>
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forXmlContent(StringBuilder out, CharSequence input) {
+        encode(Encoders.XML_CONTENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlContent(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
      *
-     * <b>Example JSP Usage:</b>
-     * <pre>
-     *    &lt;button onclick="alert('&lt;%=Encode.forJavaScriptAttribute(data)%&gt;');"&gt;
-     * </pre>
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forXmlContent(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_CONTENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlContent(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
      *
-     * @param input the input string to encode
-     * @return the input encoded for JavaScript
-     * @see #forJavaScript(String)
-     * @see #forJavaScriptBlock(String)
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
      */
-    public static String forJavaScriptAttribute(String input) {
-        return encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, input);
+    public static void forXmlContent(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_CONTENT_ENCODER, out, input);
     }
 
     /**
-     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * Encoder for XML and XHTML attribute content.  See {@link
+     * #forHtmlAttribute(String)} for description of encoding and
+     * context.
+     *
+     * @see #forHtmlAttribute(String)
+     * @param input the input to encode
+     * @return the encoded result
+     */
+    public static String forXmlAttribute(String input) {
+        return encode(Encoders.XML_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXmlAttribute(String)} for description of encoding.  This
      * version writes directly to a Writer without an intervening string.
      *
      * @param out where to write encoded output
      * @param input the input string to encode
      * @throws IOException if thrown by writer
      */
-    public static void forJavaScriptAttribute(Writer out, String input)
+    public static void forXmlAttribute(Writer out, String input)
         throws IOException
     {
-        encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, out, input);
+        encode(Encoders.XML_ATTRIBUTE_ENCODER, out, input);
     }
 
     /**
-     * <p>This method encodes for JavaScript strings contained within
-     * HTML script blocks.  It is NOT safe for use in script
-     * attributes (such as <code>onclick</code>).  The caller must
-     * provide the surrounding quotation characters.  This method
-     * performs the same encode as {@link #forJavaScript(String)} with
-     * the exception that <code>"</code> and <code>'</code> are
-     * encoded as <code>\"</code> and <code>\'</code>
-     * respectively.</p>
-     *
-     * <p><strong>Unless you are interested in saving a few bytes of
-     * output or are writing a framework on top of this library, it is
-     * recommend that you use {@link #forJavaScript(String)} over this
-     * method.</strong></p>
-     *
-     * <b>Example JSP Usage:</b>
-     * <pre>
-     *    &lt;script type="text/javascript"&gt;
-     *        var data = "&lt;%=Encode.forJavaScriptBlock(data)%&gt;";
-     *    &lt;/script&gt;
-     * </pre>
+     * See {@link #forXmlAttribute(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
      *
-     * @param input the input string to encode
-     * @return the input encoded for JavaScript
-     * @see #forJavaScript(String)
-     * @see #forJavaScriptAttribute(String)
+     * @param input the input to encode
+     * @return the encoded input
      */
-    public static String forJavaScriptBlock(String input) {
-        return encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, input);
+    public static String forXmlAttribute(CharSequence input) {
+        return encode(Encoders.XML_ATTRIBUTE_ENCODER, input);
     }
 
     /**
-     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forXmlAttribute(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
      *
      * @param out where to write encoded output
-     * @param input the input string to encode
+     * @param input the input to encode
      * @throws IOException if thrown by writer
      */
-    public static void forJavaScriptBlock(Writer out, String input)
+    public static void forXmlAttribute(Writer out, CharSequence input)
         throws IOException
     {
-        encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, out, input);
+        encode(Encoders.XML_ATTRIBUTE_ENCODER, out, input);
     }
 
     /**
-     * <p>This method encodes for JavaScript strings contained within
-     * a JavaScript or JSON file.  <strong>This method is NOT safe for
-     * use in ANY context embedded in HTML.</strong> The caller must
-     * provide the surrounding quotation characters.  This method
-     * performs the same encode as {@link #forJavaScript(String)} with
-     * the exception that <code>/</code> and <code>&amp;</code> are not
-     * escaped and <code>"</code> and <code>'</code> are encoded as
-     * <code>\"</code> and <code>\'</code> respectively.</p>
+     * See {@link #forXmlAttribute(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
      *
-     * <p><strong>Unless you are interested in saving a few bytes of
-     * output or are writing a framework on top of this library, it is
-     * recommend that you use {@link #forJavaScript(String)} over this
-     * method.</strong></p>
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forXmlAttribute(char[] input, int off, int len) {
+        return encode(Encoders.XML_ATTRIBUTE_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forXmlAttribute(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
      *
-     * <b>Example JSP Usage:</b>
-     * This example is serving up JavaScript source directly:
-     * <pre>
-     *    &lt;%@page contentType="text/javascript; charset=UTF-8"%&gt;
-     *    var data = "&lt;%=Encode.forJavaScriptSource(data)%&gt;";
-     * </pre>
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forXmlAttribute(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.XML_ATTRIBUTE_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forXmlAttribute(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
      *
-     * This example is serving up JSON data (users of this use-case
-     * are encouraged to read up on "JSON Hijacking"):
-     * <pre>
-     *    &lt;%@page contentType="application/json; charset=UTF-8"%&gt;
-     *    &lt;% myapp.jsonHijackingPreventionMeasure(); %&gt;
-     *    {"data":"&lt;%=Encode.forJavaScriptSource(data)%&gt;"}
-     * </pre>
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forXmlAttribute(StringBuilder out, CharSequence input) {
+        encode(Encoders.XML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlAttribute(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
      *
-     * @param input the input string to encode
-     * @return the input encoded for JavaScript
-     * @see #forJavaScript(String)
-     * @see #forJavaScriptAttribute(String)
-     * @see #forJavaScriptBlock(String)
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forXmlAttribute(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlAttribute(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forXmlAttribute(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * Encoder for XML comments.  <strong>NOT FOR USE WITH
+     * (X)HTML CONTEXTS.</strong>  (X)HTML comments may be interpreted by
+     * browsers as something other than a comment, typically in vendor
+     * specific extensions (e.g. {@code <--if[IE]-->}).
+     * For (X)HTML it is recommend that unsafe content never be included
+     * in a comment.
+     *
+     * <p>The caller must provide the comment start and end sequences.</p>
+     *
+     * <p>This method replaces all invalid XML characters with spaces,
+     * and replaces the "--" sequence (which is invalid in XML comments)
+     * with "-~" (hyphen-tilde).  <b>This encoding behavior may change
+     * in future releases.</b>  If the comments need to be decoded, the
+     * caller will need to come up with their own encode/decode system.</p>
+     *
+     * <pre>
+     *     out.println("&lt;?xml version='1.0'?&gt;");
+     *     out.println("&lt;data&gt;");
+     *     out.println("&lt;!-- "+Encode.forXmlComment(comment)+" --&gt;");
+     *     out.println("&lt;/data&gt;");
+     * </pre>
+     *
+     * @param input the input to encode
+     * @return the encoded result
+     */
+    public static String forXmlComment(String input) {
+        return encode(Encoders.XML_COMMENT_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXmlComment(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.XML_COMMENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forXmlComment(CharSequence input) {
+        return encode(Encoders.XML_COMMENT_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXmlComment(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_COMMENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forXmlComment(char[] input, int off, int len) {
+        return encode(Encoders.XML_COMMENT_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forXmlComment(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.XML_COMMENT_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forXmlComment(StringBuilder out, CharSequence input) {
+        encode(Encoders.XML_COMMENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forXmlComment(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_COMMENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXmlComment(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forXmlComment(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_COMMENT_ENCODER, out, input);
+    }
+
+    /**
+     * Encoder for XML 1.1 contexts.  Similar to {@link #forXml(String)} but
+     * follows the XML 1.1 specification which allows all control characters
+     * (except null) to be encoded as character references.  This method encodes
+     * control characters in the ranges [#x1-#x8, #xB-#xC, #xE-#x1F, #x7F-#x9F]
+     * as character references (e.g., {@code &#x01;}), while tab, line feed,
+     * and carriage return are passed through unencoded. This is safe for use
+     * in both XML 1.1 content and attributes.
+     *
+     * @param input the input to encode
+     * @return the encoded result
+     */
+    public static String forXml11(String input) {
+        return encode(Encoders.XML_11_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXml11(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXml11(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forXml11(CharSequence input) {
+        return encode(Encoders.XML_11_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXml11(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXml11(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forXml11(char[] input, int off, int len) {
+        return encode(Encoders.XML_11_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forXml11(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forXml11(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forXml11(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forXml11(StringBuilder out, CharSequence input) {
+        encode(Encoders.XML_11_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forXml11(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forXml11(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ENCODER, out, input);
+    }
+
+    /**
+     * Encoder for XML 1.1 content.  Similar to {@link #forXmlContent(String)}
+     * but follows the XML 1.1 specification for control character handling.
+     *
+     * @param input the input to encode
+     * @return the encoded result
+     */
+    public static String forXml11Content(String input) {
+        return encode(Encoders.XML_11_CONTENT_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXml11Content(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXml11Content(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_CONTENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11Content(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forXml11Content(CharSequence input) {
+        return encode(Encoders.XML_11_CONTENT_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXml11Content(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXml11Content(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_CONTENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11Content(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forXml11Content(char[] input, int off, int len) {
+        return encode(Encoders.XML_11_CONTENT_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forXml11Content(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forXml11Content(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.XML_11_CONTENT_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forXml11Content(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forXml11Content(StringBuilder out, CharSequence input) {
+        encode(Encoders.XML_11_CONTENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11Content(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forXml11Content(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_CONTENT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11Content(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forXml11Content(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_CONTENT_ENCODER, out, input);
+    }
+
+    /**
+     * Encoder for XML 1.1 attribute content.  Similar to
+     * {@link #forXmlAttribute(String)} but follows the XML 1.1 specification
+     * for control character handling.
+     *
+     * @param input the input to encode
+     * @return the encoded result
+     */
+    public static String forXml11Attribute(String input) {
+        return encode(Encoders.XML_11_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXml11Attribute(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forXml11Attribute(CharSequence input) {
+        return encode(Encoders.XML_11_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forXml11Attribute(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forXml11Attribute(char[] input, int off, int len) {
+        return encode(Encoders.XML_11_ATTRIBUTE_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forXml11Attribute(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ATTRIBUTE_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forXml11Attribute(StringBuilder out, CharSequence input) {
+        encode(Encoders.XML_11_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forXml11Attribute(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forXml11Attribute(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forXml11Attribute(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.XML_11_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * Encodes data for an XML CDATA section.  On the chance that the input
+     * contains a terminating {@code "]]>"}, it will be replaced by
+     * {@code "]]>]]<![CDATA[>"}.
+     * As with all XML contexts, characters that are invalid according to the
+     * XML specification will be replaced by a space character.   Caller must
+     * provide the CDATA section boundaries.
+     *
+     * <pre>
+     *     &lt;xml-data&gt;&lt;![CDATA[&lt;%=Encode.forCDATA(...)%&gt;]]&gt;&lt;/xml-data&gt;
+     * </pre>
+     *
+     * @param input the input to encode
+     * @return the encoded result
+     */
+    public static String forCDATA(String input) {
+        return encode(Encoders.CDATA_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forCDATA(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forCDATA(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.CDATA_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCDATA(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forCDATA(CharSequence input) {
+        return encode(Encoders.CDATA_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forCDATA(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forCDATA(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CDATA_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCDATA(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forCDATA(char[] input, int off, int len) {
+        return encode(Encoders.CDATA_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forCDATA(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forCDATA(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.CDATA_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forCDATA(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forCDATA(StringBuilder out, CharSequence input) {
+        encode(Encoders.CDATA_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCDATA(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forCDATA(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CDATA_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forCDATA(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forCDATA(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.CDATA_ENCODER, out, input);
+    }
+
+    /**
+     * Encodes for a Java string.  This method will use "\b", "\t", "\r", "\f",
+     * "\n", "\"", "\'", "\\", octal and unicode escapes.  Valid surrogate
+     * pairing is not checked.   The caller must provide the enclosing quotation
+     * characters.  This method is useful for when writing code generators and
+     * outputting debug messages.
+     *
+     * <pre>
+     *     out.println("public class Hello {");
+     *     out.println("    public static void main(String[] args) {");
+     *     out.println("        System.out.println(\"" + Encode.forJava(message) + "\");");
+     *     out.println("    }");
+     *     out.println("}");
+     * </pre>
+     *
+     * @param input the input to encode
+     * @return the input encoded for java strings.
+     */
+    public static String forJava(String input) {
+        return encode(Encoders.JAVA_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJava(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJava(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.JAVA_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJava(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forJava(CharSequence input) {
+        return encode(Encoders.JAVA_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJava(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJava(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVA_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJava(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forJava(char[] input, int off, int len) {
+        return encode(Encoders.JAVA_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forJava(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forJava(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.JAVA_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forJava(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forJava(StringBuilder out, CharSequence input) {
+        encode(Encoders.JAVA_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJava(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forJava(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVA_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJava(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forJava(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVA_ENCODER, out, input);
+    }
+
+    /**
+     * <p>Encodes for a JavaScript string.  It is safe for use in HTML
+     * script attributes (such as {@code onclick}), script
+     * blocks, JSON files, and JavaScript source.  The caller MUST
+     * provide the surrounding quotation characters for the string.
+     * Since this performs additional encoding so it can work in all
+     * of the JavaScript contexts listed, it may be slightly less
+     * efficient than using one of the methods targeted to a specific
+     * JavaScript context ({@link #forJavaScriptAttribute(String)},
+     * {@link #forJavaScriptBlock}, {@link #forJavaScriptSource}).
+     * Unless you are interested in saving a few bytes of output or
+     * are writing a framework on top of this library, it is recommend
+     * that you use this method over the others.</p>
+     *
+     * <b>Example JSP Usage:</b>
+     * <pre>
+     *    &lt;button onclick="alert('&lt;%=Encode.forJavaScript(data)%&gt;');"&gt;
+     *    &lt;script type="text/javascript"&gt;
+     *        var data = "&lt;%=Encode.forJavaScript(data)%&gt;";
+     *    &lt;/script&gt;
+     * </pre>
+     *
+     * <table cellspacing="1" class="memberSummary" cellpadding="1" border="0">
+     *   <caption><b>Encoding Description</b></caption>
+     *   <thead>
+     *     <tr>
+     *       <th align="left" colspan="2" class="colFirst">Input Character</th>
+     *       <th align="left" class="colLast">Encoded Result</th>
+     *       <th align="left" class="colLast">Notes</th>
+     *     </tr>
+     *   </thead>
+     *   <tbody>
+     *     <tr class="altColor">
+     *       <td class="colFirst">U+0008</td><td><i>BS</i></td>
+     *       <td class="colLast"><code>\b</code></td>
+     *       <td class="colLast">Backspace character</td>
+     *     </tr>
+     *     <tr class="rowColor">
+     *       <td class="colFirst">U+0009</td><td><i>HT</i></td>
+     *       <td class="colLast"><code>\t</code></td>
+     *       <td class="colLast">Horizontal tab character</td>
+     *     </tr>
+     *     <tr class="altColor">
+     *       <td class="colFirst">U+000A</td><td><i>LF</i></td>
+     *       <td class="colLast"><code>\n</code></td>
+     *       <td class="colLast">Line feed character</td>
+     *     </tr>
+     *     <tr class="rowColor">
+     *       <td class="colFirst">U+000C</td><td><i>FF</i></td>
+     *       <td class="colLast"><code>\f</code></td>
+     *       <td class="colLast">Form feed character</td>
+     *     </tr>
+     *     <tr class="altColor">
+     *       <td class="colFirst">U+000D</td><td><i>CR</i></td>
+     *       <td class="colLast"><code>\r</code></td>
+     *       <td class="colLast">Carriage return character</td>
+     *     </tr>
+     *     <tr class="rowColor">
+     *       <td class="colFirst">U+0022</td><td><code>"</code></td>
+     *       <td class="colLast"><code>\x22</code></td>
+     *       <td class="colLast">The encoding <code>\"</code> is not used here because
+     *       it is not safe for use in HTML attributes.  (In HTML
+     *       attributes, it would also be correct to use
+     *       "\&amp;quot;".)</td>
+     *     </tr>
+     *     <tr class="altColor">
+     *       <td class="colFirst">U+0026</td><td><code>&amp;</code></td>
+     *       <td class="colLast"><code>\x26</code></td>
+     *       <td class="colLast">Ampersand character</td>
+     *     </tr>
+     *     <tr class="rowColor">
+     *       <td class="colFirst">U+0027</td><td><code>'</code></td>
+     *       <td class="colLast"><code>\x27</code></td>
+     *       <td class="colLast">The encoding <code>\'</code> is not used here because
+     *       it is not safe for use in HTML attributes.  (In HTML
+     *       attributes, it would also be correct to use
+     *       "\&amp;#39;".)</td>
+     *     </tr>
+     *     <tr class="altColor">
+     *       <td class="colFirst">U+002F</td><td><code>/</code></td>
+     *       <td class="colLast"><code>\/</code></td>
+     *       <td class="colLast">This encoding is used to avoid an input sequence
+     *       "&lt;/" from prematurely terminating a &lt;/script&gt;
+     *       block.</td>
+     *     </tr>
+     *     <tr class="rowColor">
+     *       <td class="colFirst">U+005C</td><td><code>\</code></td>
+     *       <td class="colLast"><code>\\</code></td>
+     *       <td class="colLast"></td>
+     *     </tr>
+     *     <tr class="altColor">
+     *       <td class="colFirst" colspan="2">U+0000&nbsp;to&nbsp;U+001F</td>
+     *       <td class="colLast"><code>\x##</code></td>
+     *       <td class="colLast">Hexadecimal encoding is used for characters in this
+     *       range that were not already mentioned in above.</td>
+     *     </tr>
+     *   </tbody>
+     * </table>
+     *
+     * @param input the input string to encode
+     * @return the input encoded for JavaScript
+     * @see #forJavaScriptAttribute(String)
+     * @see #forJavaScriptBlock(String)
+     */
+    public static String forJavaScript(String input) {
+        return encode(Encoders.JAVASCRIPT_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScript(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScript(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScript(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forJavaScript(CharSequence input) {
+        return encode(Encoders.JAVASCRIPT_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScript(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScript(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScript(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forJavaScript(char[] input, int off, int len) {
+        return encode(Encoders.JAVASCRIPT_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScript(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forJavaScript(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScript(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forJavaScript(StringBuilder out, CharSequence input) {
+        encode(Encoders.JAVASCRIPT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScript(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forJavaScript(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScript(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forJavaScript(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ENCODER, out, input);
+    }
+
+    /**
+     * <p>This method encodes for JavaScript strings contained within
+     * HTML script attributes (such as {@code onclick}).  It is
+     * NOT safe for use in script blocks.  The caller MUST provide the
+     * surrounding quotation characters.  This method performs the
+     * same encode as {@link #forJavaScript(String)} with the
+     * exception that <code>/</code> is not escaped.</p>
+     *
+     * <p><strong>Unless you are interested in saving a few bytes of
+     * output or are writing a framework on top of this library, it is
+     * recommend that you use {@link #forJavaScript(String)} over this
+     * method.</strong></p>
+     *
+     * <b>Example JSP Usage:</b>
+     * <pre>
+     *    &lt;button onclick="alert('&lt;%=Encode.forJavaScriptAttribute(data)%&gt;');"&gt;
+     * </pre>
+     *
+     * @param input the input string to encode
+     * @return the input encoded for JavaScript
+     * @see #forJavaScript(String)
+     * @see #forJavaScriptBlock(String)
+     */
+    public static String forJavaScriptAttribute(String input) {
+        return encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScriptAttribute(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forJavaScriptAttribute(CharSequence input) {
+        return encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScriptAttribute(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forJavaScriptAttribute(char[] input, int off, int len) {
+        return encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forJavaScriptAttribute(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forJavaScriptAttribute(StringBuilder out, CharSequence input) {
+        encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forJavaScriptAttribute(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptAttribute(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forJavaScriptAttribute(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * <p>This method encodes for JavaScript strings contained within
+     * HTML script blocks.  It is NOT safe for use in script
+     * attributes (such as <code>onclick</code>).  The caller must
+     * provide the surrounding quotation characters.  This method
+     * performs the same encode as {@link #forJavaScript(String)} with
+     * the exception that <code>"</code> and <code>'</code> are
+     * encoded as <code>\"</code> and <code>\'</code>
+     * respectively.</p>
+     *
+     * <p><strong>Unless you are interested in saving a few bytes of
+     * output or are writing a framework on top of this library, it is
+     * recommend that you use {@link #forJavaScript(String)} over this
+     * method.</strong></p>
+     *
+     * <b>Example JSP Usage:</b>
+     * <pre>
+     *    &lt;script type="text/javascript"&gt;
+     *        var data = "&lt;%=Encode.forJavaScriptBlock(data)%&gt;";
+     *    &lt;/script&gt;
+     * </pre>
+     *
+     * @param input the input string to encode
+     * @return the input encoded for JavaScript
+     * @see #forJavaScript(String)
+     * @see #forJavaScriptAttribute(String)
+     */
+    public static String forJavaScriptBlock(String input) {
+        return encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScriptBlock(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forJavaScriptBlock(CharSequence input) {
+        return encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScriptBlock(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forJavaScriptBlock(char[] input, int off, int len) {
+        return encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forJavaScriptBlock(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forJavaScriptBlock(StringBuilder out, CharSequence input) {
+        encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forJavaScriptBlock(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptBlock(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forJavaScriptBlock(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_BLOCK_ENCODER, out, input);
+    }
+
+    /**
+     * <p>This method encodes for JavaScript strings contained within
+     * a JavaScript or JSON file.  <strong>This method is NOT safe for
+     * use in ANY context embedded in HTML.</strong> The caller must
+     * provide the surrounding quotation characters.  This method
+     * performs the same encode as {@link #forJavaScript(String)} with
+     * the exception that <code>/</code> and <code>&amp;</code> are not
+     * escaped and <code>"</code> and <code>'</code> are encoded as
+     * <code>\"</code> and <code>\'</code> respectively.</p>
+     *
+     * <p><strong>Unless you are interested in saving a few bytes of
+     * output or are writing a framework on top of this library, it is
+     * recommend that you use {@link #forJavaScript(String)} over this
+     * method.</strong></p>
+     *
+     * <b>Example JSP Usage:</b>
+     * This example is serving up JavaScript source directly:
+     * <pre>
+     *    &lt;%@page contentType="text/javascript; charset=UTF-8"%&gt;
+     *    var data = "&lt;%=Encode.forJavaScriptSource(data)%&gt;";
+     * </pre>
+     *
+     * This example is serving up JSON data (users of this use-case
+     * are encouraged to read up on "JSON Hijacking"):
+     * <pre>
+     *    &lt;%@page contentType="application/json; charset=UTF-8"%&gt;
+     *    &lt;% myapp.jsonHijackingPreventionMeasure(); %&gt;
+     *    {"data":"&lt;%=Encode.forJavaScriptSource(data)%&gt;"}
+     * </pre>
+     *
+     * @param input the input string to encode
+     * @return the input encoded for JavaScript
+     * @see #forJavaScript(String)
+     * @see #forJavaScriptAttribute(String)
+     * @see #forJavaScriptBlock(String)
      */
     public static String forJavaScriptSource(String input) {
         return encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, input);
     }
 
     /**
-     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
-     * version writes directly to a Writer without an intervening string.
+     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScriptSource(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forJavaScriptSource(CharSequence input) {
+        return encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScriptSource(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forJavaScriptSource(char[] input, int off, int len) {
+        return encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forJavaScriptSource(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forJavaScriptSource(StringBuilder out, CharSequence input) {
+        encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forJavaScriptSource(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptSource(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forJavaScriptSource(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, out, input);
+    }
+
+    /**
+     * Encodes for JavaScript in an HTML attribute, such as an event
+     * handler in a template that encodes attributes for HTML.  The
+     * result is the same as that of {@code
+     * forHtmlAttribute(forJavaScript(input))}, produced in a single pass
+     * without the intermediate string.
+     *
+     * <b>Example JSP Usage</b>
+     * <pre>
+     *     &lt;button onclick="alert('&lt;%=Encode.forJavaScriptInHtmlAttribute(...)%&gt;');"&gt;
+     * </pre>
+     *
+     * @param input the input to encode
+     * @return the encoded result
+     * @see #forJavaScript(String)
+     * @see #forHtmlAttribute(String)
+     */
+    public static String forJavaScriptInHtmlAttribute(String input) {
+        return encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptInHtmlAttribute(String)} for description of encoding.  This
+     * version writes directly to a Writer without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input string to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScriptInHtmlAttribute(Writer out, String input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptInHtmlAttribute(String)} for description of encoding.  This
+     * version encodes any {@link CharSequence}, such as a {@code
+     * StringBuilder}, without first converting it to a String.
+     *
+     * @param input the input to encode
+     * @return the encoded input
+     */
+    public static String forJavaScriptInHtmlAttribute(CharSequence input) {
+        return encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptInHtmlAttribute(String)} for description of encoding.  This
+     * version writes any {@link CharSequence} directly to a Writer without
+     * an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by writer
+     */
+    public static void forJavaScriptInHtmlAttribute(Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptInHtmlAttribute(String)} for description of encoding.  This
+     * version encodes a range of a character array without an
+     * intervening string.
+     *
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static String forJavaScriptInHtmlAttribute(char[] input, int off, int len) {
+        return encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScriptInHtmlAttribute(String)} for description of encoding.  This
+     * version writes a range of a character array directly to a Writer
+     * without an intervening string.
+     *
+     * @param out where to write encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by writer
+     * @throws IndexOutOfBoundsException if {@code off} and {@code len}
+     * do not specify a range within {@code input}
+     */
+    public static void forJavaScriptInHtmlAttribute(Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, out, input, off, len);
+    }
+
+    /**
+     * See {@link #forJavaScriptInHtmlAttribute(String)} for description of encoding.  This
+     * version appends directly to a StringBuilder without an intervening
+     * string.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     */
+    public static void forJavaScriptInHtmlAttribute(StringBuilder out, CharSequence input) {
+        encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptInHtmlAttribute(String)} for description of encoding.  This
+     * version appends to any {@link Appendable}, directly when it is a
+     * StringBuilder or a Writer.
+     *
+     * @param out where to append encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    public static void forJavaScriptInHtmlAttribute(Appendable out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    /**
+     * See {@link #forJavaScriptInHtmlAttribute(String)} for description of encoding.  This
+     * version writes the encoded output as UTF-8 bytes directly to an
+     * OutputStream, without a separate character set encoding pass.
+     *
+     * @param out where to write the UTF-8 encoded output
+     * @param input the input to encode
+     * @throws IOException if thrown by the stream
+     */
+    public static void forJavaScriptInHtmlAttribute(OutputStream out, CharSequence input)
+        throws IOException
+    {
+        encode(Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER, out, input);
+    }
+
+    // Additional?
+    // MySQL
+    // PostreSQL
+    // Oracle
+    // ...
+
+    /**
+     * Core encoding loop shared by public methods.  It first uses the
+     * encoder to scan the input for characters that need encoding.  If
+     * no characters require encoding, the input string is returned.
+     * Otherwise a buffer is used to encode the remainder
+     * of the input.
+     *
+     * @param encoder the encoder to use
+     * @param str the string to encode
+     * @return the input string encoded with the provided encoder.
+     */
+    static String encode(Encoder encoder, String str) {
+        if (str == null) {
+            // consistent with String.valueOf(...) use "null" for null.
+            str = "null";
+        }
+
+        // quick pass--see if we need to actually encode anything, if not
+        // return the value unchanged.
+        final int n = str.length();
+        int j = encoder.firstEncodedOffset(str, 0, n);
+
+        if (j == n) {
+            return str;
+        }
+
+        // otherwise, we need to encode.  We use a pooled buffer to avoid
+        // excessive memory allocation for these calls.
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            return buffer.encode(encoder, str, j);
+        } finally {
+            Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Core encoding loop shared by public methods.  It first uses the
+     * encoder to scan the input for characters that need encoding.  If no
+     * characters require encoding, the input string is written directly to
+     * the writer.  Otherwise a buffer is used to encode the
+     * remainder of the input to the buffers.  This version saves a wrapping
+     * in an String.
+     *
+     * @param encoder the encoder to use
+     * @param out the writer for the encoded output
+     * @param str the string to encode
+     * @throws IOException if thrown by the writer
+     */
+    static void encode(Encoder encoder, Writer out, String str)
+        throws IOException
+    {
+        if (str == null) {
+            // consistent with String.valueOf(...) use "null" for null.
+            str = "null";
+        }
+
+        // quick pass--see if we need to actually encode anything, if not
+        // return the value unchanged.
+        final int n = str.length();
+        int j = encoder.firstEncodedOffset(str, 0, n);
+
+        if (j == n) {
+            out.write(str);
+            return;
+        }
+
+        out.write(str, 0, j);
+
+        // otherwise, we need to encode.  We use a pooled buffer to avoid
+        // excessive memory allocation for these calls.  The buffer is out
+        // of the pool until released, so a writer that calls back into
+        // this method gets a different buffer.
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            buffer.encode(encoder, out, str, j);
+        } finally {
+            Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Encodes a CharSequence.  Strings and array-backed CharBuffers are
+     * encoded in place, other sequences are copied into a pooled buffer in
+     * batches, so that no intermediate String is created.
+     *
+     * @param encoder the encoder to use
+     * @param input the sequence to encode
+     * @return the input encoded with the provided encoder.
+     */
+    static String encode(Encoder encoder, CharSequence input) {
+        if (input == null || input instanceof String) {
+            return encode(encoder, (String) input);
+        }
+        if (input instanceof CharBuffer && ((CharBuffer) input).hasArray()) {
+            final CharBuffer buf = (CharBuffer) input;
+            return encode(encoder, buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        }
+
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            return buffer.encode(encoder, input);
+        } finally {
+            Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Writer version of {@link #encode(Encoder, CharSequence)}.
+     *
+     * @param encoder the encoder to use
+     * @param out the writer for the encoded output
+     * @param input the sequence to encode
+     * @throws IOException if thrown by the writer
+     */
+    static void encode(Encoder encoder, Writer out, CharSequence input)
+        throws IOException
+    {
+        if (input == null || input instanceof String) {
+            encode(encoder, out, (String) input);
+            return;
+        }
+        if (input instanceof CharBuffer && ((CharBuffer) input).hasArray()) {
+            final CharBuffer buf = (CharBuffer) input;
+            encode(encoder, out, buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            return;
+        }
+
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            buffer.encode(encoder, out, input);
+        } finally {
+            Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Encodes a range of a character array.  The encoder reads directly
+     * from the array, the characters are not copied first.
+     *
+     * @param encoder the encoder to use
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @return the encoded characters.
+     */
+    static String encode(Encoder encoder, char[] input, int off, int len) {
+        checkRange(input, off, len);
+
+        final int end = off + len;
+        final int j = encoder.firstEncodedOffset(input, off, len);
+
+        if (j == end) {
+            return new String(input, off, len);
+        }
+
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            return buffer.encode(encoder, input, off, end, j);
+        } finally {
+            Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Writer version of {@link #encode(Encoder, char[], int, int)}.
+     *
+     * @param encoder the encoder to use
+     * @param out the writer for the encoded output
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException if thrown by the writer
+     */
+    static void encode(Encoder encoder, Writer out, char[] input, int off, int len)
+        throws IOException
+    {
+        checkRange(input, off, len);
+
+        final int end = off + len;
+        final int j = encoder.firstEncodedOffset(input, off, len);
+
+        out.write(input, off, j - off);
+
+        if (j == end) {
+            return;
+        }
+
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            buffer.encode(encoder, out, input, j, end);
+        } finally {
+            Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Encodes a CharSequence and appends the result to a StringBuilder.
+     * Strings and array-backed CharBuffers are scanned first, and input
+     * that needs no encoding is appended as it is.  Otherwise the clean
+     * prefix is appended straight from the input and the rest is encoded
+     * through a pooled buffer.
+     *
+     * @param encoder the encoder to use
+     * @param out the builder to append to
+     * @param input the sequence to encode
+     */
+    static void encode(Encoder encoder, StringBuilder out, CharSequence input) {
+        if (input == null) {
+            // consistent with String.valueOf(...) use "null" for null.
+            input = "null";
+        }
+        if (input instanceof CharBuffer && ((CharBuffer) input).hasArray()) {
+            final CharBuffer buf = (CharBuffer) input;
+            encode(encoder, out, buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            return;
+        }
+
+        // other sequences have no scan and go through the buffer
+        final int n = input.length();
+        final int j = input instanceof String
+            ? encoder.firstEncodedOffset((String) input, 0, n)
+            : 0;
+        if (j == n) {
+            out.append(input);
+            return;
+        }
+
+        reserve(encoder, out, n);
+        out.append(input, 0, j);
+
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            buffer.encode(encoder, out, input, j);
+        } finally {
+            Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * StringBuilder version of {@link #encode(Encoder, char[], int, int)}.
      *
-     * @param out where to write encoded output
-     * @param input the input string to encode
-     * @throws IOException if thrown by writer
+     * @param encoder the encoder to use
+     * @param out the builder to append to
+     * @param input the array holding the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
      */
-    public static void forJavaScriptSource(Writer out, String input)
-        throws IOException
-    {
-        encode(Encoders.JAVASCRIPT_SOURCE_ENCODER, out, input);
-    }
+    private static void encode(Encoder encoder, StringBuilder out, char[] input, int off, int len) {
+        final int end = off + len;
+        final int j = encoder.firstEncodedOffset(input, off, len);
+        if (j == end) {
+            out.append(input, off, len);
+            return;
+        }
 
-    // Additional?
-    // MySQL
-    // PostreSQL
-    // Oracle
-    // ...
+        reserve(encoder, out, len);
+        out.append(input, off, j - off);
+
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            buffer.encode(encoder, out, input, j, end);
+        } finally {
+            Buffer.POOL.release(buffer);
+        }
+    }
 
     /**
-     * Core encoding loop shared by public methods.  It first uses the
-     * encoder to scan the input for characters that need encoding.  If
-     * no characters require encoding, the input string is returned.
-     * Otherwise a buffer is used to encode the remainder
-     * of the input.
+     * Reserves room in a builder for the encoded form of {@code n}
+     * characters.  Short inputs reserve their worst-case encoded length,
+     * so that the builder grows at most once.  Long inputs only reserve
+     * their own length instead of over-allocating for the worst case.  A
+     * capacity past the array limit is left for the builder to fail on as
+     * it grows.
      *
      * @param encoder the encoder to use
-     * @param str the string to encode
-     * @return the input string encoded with the provided encoder.
+     * @param out the builder to append to
+     * @param n the number of characters to encode
      */
-    static String encode(Encoder encoder, String str) {
-        if (str == null) {
-            // consistent with String.valueOf(...) use "null" for null.
-            str = "null";
+    private static void reserve(Encoder encoder, StringBuilder out, int n) {
+        final long capacity = out.length()
+            + (n <= Buffer.INPUT_BUFFER_SIZE ? encoder.maxEncodedLength(n) : n);
+        if (capacity <= Encoder.MAX_ARRAY_LENGTH) {
+            out.ensureCapacity((int) capacity);
         }
+    }
 
-        // quick pass--see if we need to actually encode anything, if not
-        // return the value unchanged.
-        final int n = str.length();
-        int j = encoder.firstEncodedOffset(str, 0, n);
-
-        if (j == n) {
-            return str;
+    /**
+     * Encodes a CharSequence and appends the result to an Appendable.
+     * StringBuilders and Writers are appended to directly, any other
+     * Appendable receives the encoded String.
+     *
+     * @param encoder the encoder to use
+     * @param out where to append the encoded output
+     * @param input the sequence to encode
+     * @throws IOException if thrown by {@code out}
+     */
+    static void encode(Encoder encoder, Appendable out, CharSequence input)
+        throws IOException
+    {
+        if (out instanceof StringBuilder) {
+            encode(encoder, (StringBuilder) out, input);
+        } else if (out instanceof Writer) {
+            encode(encoder, (Writer) out, input);
+        } else {
+            out.append(encode(encoder, input));
         }
-
-        // otherwise, we need to encode.  We use a buffer to avoid
-        // excessive memory allocation for these calls.  Note: this means that
-        // an encoder implementation must NEVER call this method internally.
-        return new Buffer().encode(encoder, str, j);
     }
 
     /**
-     * Core encoding loop shared by public methods.  It first uses the
-     * encoder to scan the input for characters that need encoding.  If no
-     * characters require encoding, the input string is written directly to
-     * the writer.  Otherwise a buffer is used to encode the
-     * remainder of the input to the buffers.  This version saves a wrapping
-     * in an String.
+     * Encodes a CharSequence and writes the result as UTF-8 bytes to an
+     * OutputStream.  The input is copied into a pooled buffer in batches
+     * and each batch is encoded straight to bytes.
      *
      * @param encoder the encoder to use
-     * @param out the writer for the encoded output
-     * @param str the string to encode
-     * @throws IOException if thrown by the writer
+     * @param out the stream for the UTF-8 encoded output
+     * @param input the sequence to encode
+     * @throws IOException if thrown by the stream
      */
-    static void encode(Encoder encoder, Writer out, String str)
+    static void encode(Encoder encoder, OutputStream out, CharSequence input)
         throws IOException
     {
-        if (str == null) {
+        if (input == null) {
             // consistent with String.valueOf(...) use "null" for null.
-            str = "null";
+            input = "null";
         }
 
-        // quick pass--see if we need to actually encode anything, if not
-        // return the value unchanged.
-        final int n = str.length();
-        int j = encoder.firstEncodedOffset(str, 0, n);
-
-        if (j == n) {
-            out.write(str);
-            return;
+        final Buffer buffer = Buffer.POOL.acquire();
+        try {
+            buffer.encode(encoder, out, input);
+        } finally {
+            Buffer.POOL.release(buffer);
         }
+    }
 
-        // otherwise, we need to encode.  We use a buffer to avoid
-        // excessive memory allocation for these calls.  Note: this means that
-        // an encoder implementation must NEVER call this method internally.
-        new Buffer().encode(encoder, out, str, j);
+    /**
+     * Checks that {@code off} and {@code len} specify a range within
+     * {@code input}.
+     *
+     * @param input the array
+     * @param off the offset of the range
+     * @param len the length of the range
+     * @throws IndexOutOfBoundsException if the range is not within the array
+     */
+    private static void checkRange(char[] input, int off, int len) {
+        if (off < 0 || len < 0 || len > input.length - off) {
+            throw new IndexOutOfBoundsException(
+                "off=" + off + ", len=" + len + ", length=" + input.length);
+        }
     }
 
     /**
-     * A buffer used for encoding.
+     * A buffer used for encoding.  Instances are reused through {@link #POOL}
+     * and are not thread-safe--a buffer must be used by only one thread
+     * between acquiring and releasing it.
      */
     static class Buffer {
+        /**
+         * Pool of buffers shared by all encode calls.  The pool is striped
+         * by processor instead of being held in a ThreadLocal so that the
+         * number of retained buffers does not grow with the number of
+         * threads.
+         */
+        static final StripedPool<Buffer> POOL = new StripedPool<Buffer>() {
+            @Override
+            Buffer create() {
+                return new Buffer();
+            }
+        };
+
         /**
          * Input buffer size, used to extract a copy of the input
          * from a string and then send to the encoder.
@@ -1381,12 +4183,63 @@ public final class Encode {
          */
         final CharBuffer _output = CharBuffer.allocate(OUTPUT_BUFFER_SIZE);
 
+        /**
+         * Size of the byte output buffer.  It holds the UTF-8 form of a
+         * full output buffer.
+         */
+        static final int BYTE_BUFFER_SIZE = OUTPUT_BUFFER_SIZE * UTF8.MAX_BYTES_PER_CHAR;
+
+        /**
+         * Byte output, used for UTF-8 output and for compact Latin-1
+         * strings.  Allocated on first use.
+         */
+        private ByteBuffer _bytes;
+
+        /**
+         * Returns the reused byte output buffer, a heap buffer of
+         * BYTE_BUFFER_SIZE bytes.  Its position and limit are left as
+         * the last user left them.
+         *
+         * @return the byte output buffer
+         */
+        ByteBuffer bytes() {
+            ByteBuffer bytes = _bytes;
+            if (bytes == null) {
+                bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+                _bytes = bytes;
+            }
+            return bytes;
+        }
+
+        /**
+         * Staging for UTF-8 input that is not array-backed.  Allocated on
+         * first use.
+         */
+        private byte[] _byteInput;
+
+        /**
+         * Returns the reused array for copying UTF-8 input out of direct
+         * and read-only byte buffers, which holds INPUT_BUFFER_SIZE bytes.
+         *
+         * @return the byte input array
+         */
+        byte[] byteInput() {
+            byte[] in = _byteInput;
+            if (in == null) {
+                in = new byte[INPUT_BUFFER_SIZE];
+                _byteInput = in;
+            }
+            return in;
+        }
+
         /**
          * The core String encoding routine of this class.  It uses the input
          * and output buffers to allow the encoders to work in reuse arrays.
-         * When the input and/or output exceeds the capacity of the reused
-         * arrays, temporary ones are allocated and then discarded after
-         * the encode is done.
+         * When the output exceeds the capacity of the reused output buffer,
+         * encoding continues into a {@link ChunkedOutput} and the result is
+         * assembled at its exact size.  Unlike sizing the output with
+         * {@link Encoder#maxEncodedLength(long)}, the memory used is thus
+         * proportional to the actual encoded length.
          *
          * @param encoder the encoder to use
          * @param str the string to encode
@@ -1394,58 +4247,160 @@ public final class Encode {
          * @return the encoded result
          */
         String encode(Encoder encoder, String str, int j) {
-            final int n = str.length();
-            final int remaining = n - j;
-
-            if (remaining <= INPUT_BUFFER_SIZE && j <= OUTPUT_BUFFER_SIZE) {
-                // the remaining input to encode fits completely in the pre-
-                // allocated buffer.
-                str.getChars(0, j, _output.array(), 0);
-                str.getChars(j, n, _input.array(), 0);
+            final String latin1 = CompactStrings.encode(encoder, str, j, this);
+            if (latin1 != null) {
+                return latin1;
+            }
+            return encodeBatches(encoder, str, j);
+        }
 
-                _input.limit(remaining).position(0);
-                _output.clear().position(j);
+        /**
+         * Encodes a CharSequence that is neither a String nor backed by an
+         * array.  A short sequence is copied once into the input buffer and
+         * encoded from there, a long one is encoded in batches.
+         *
+         * @param encoder the encoder to use
+         * @param seq the sequence to encode
+         * @return the encoded result
+         */
+        String encode(Encoder encoder, CharSequence seq) {
+            final int n = seq.length();
+            if (n > INPUT_BUFFER_SIZE) {
+                return encodeBatches(encoder, seq, 0);
+            }
 
-                CoderResult cr = encoder.encodeArrays(_input, _output, true);
-                if (cr.isUnderflow()) {
-                    return new String(_output.array(), 0, _output.position());
-                }
+            final char[] inputArray = _input.array();
+            getChars(seq, 0, n, inputArray, 0);
+            final int j = encoder.firstEncodedOffset(inputArray, 0, n);
+            if (j == n) {
+                return new String(inputArray, 0, n);
+            }
+            return encode(encoder, inputArray, 0, n, j);
+        }
 
-                // else, it's an overflow, we need to use a new output buffer
-                // we'll allocate this buffer to be the exact size of the worst
-                // case, guaranteeing a second overflow would not be possible.
-                CharBuffer tmp = CharBuffer.allocate(_output.position()
-                            + encoder.maxEncodedLength(_input.remaining()));
+        /**
+         * Encodes a range of a character array.  The array is wrapped as the
+         * input buffer, so the characters are not copied before encoding.
+         *
+         * @param encoder the encoder to use
+         * @param input the array holding the characters to encode
+         * @param off the offset of the first character
+         * @param end the offset after the last character
+         * @param j the offset of the first character needing encoding
+         * @return the encoded result
+         */
+        String encode(Encoder encoder, char[] input, int off, int end, int j) {
+            final CharBuffer in = CharBuffer.wrap(input, j, end - j);
+            CharBuffer output = _output;
+            ChunkedOutput chunks = null;
 
-                // copy over everything that has been encoded so far
-                tmp.put(_output.array(), 0, _output.position());
+            int prefix = 0;
+            output.clear();
+            if (j - off <= OUTPUT_BUFFER_SIZE) {
+                System.arraycopy(input, off, output.array(), 0, j - off);
+                output.position(j - off);
+            } else {
+                prefix = j - off;
+            }
 
-                cr = encoder.encodeArrays(_input, tmp, true);
-                if (cr.isOverflow()) {
-                    throw new AssertionError("unexpected result from encoder");
+            while (encoder.encodeArrays(in, output, true).isOverflow()) {
+                if (chunks == null) {
+                    chunks = new ChunkedOutput();
                 }
+                output = chunks.next(output);
+            }
+
+            if (chunks == null && prefix == 0) {
+                return new String(output.array(), 0, output.position());
+            }
 
-                return new String(tmp.array(), 0, tmp.position());
+            if (chunks == null) {
+                chunks = new ChunkedOutput();
+            }
+            chunks.add(output.array(), output.position());
+            return chunks.toString(input, off, prefix);
+        }
+
+        /**
+         * Encodes a sequence by copying it into the input buffer in batches.
+         *
+         * @param encoder the encoder to use
+         * @param seq the sequence to encode
+         * @param j the offset in {@code seq} to start encoding
+         * @return the encoded result
+         */
+        private String encodeBatches(Encoder encoder, CharSequence seq, int j) {
+            // The characters before j do not need encoding.  A short prefix
+            // is copied into the output buffer, a long one is appended
+            // straight from the input string when assembling the result.
+            int prefix = 0;
+            _output.clear();
+            if (j <= OUTPUT_BUFFER_SIZE) {
+                getChars(seq, 0, j, _output.array(), 0);
+                _output.position(j);
             } else {
-                // the input it too large for our pre-allocated buffers
-                // we'll use a temporary direct heap allocation
-                final int m = j + encoder.maxEncodedLength(remaining);
-                CharBuffer buffer = CharBuffer.allocate(m);
-                str.getChars(0, j, buffer.array(), 0);
-                str.getChars(j, n, buffer.array(), m - remaining);
+                prefix = j;
+            }
+            return encodeBatches(encoder, seq, j, prefix);
+        }
+
+        /**
+         * Continues encoding a sequence from {@code j}, with the output
+         * buffer already holding the encoded form of the characters from
+         * {@code prefix} to {@code j}.  The first {@code prefix}
+         * characters need no encoding and are appended from the sequence
+         * when the result is assembled.
+         *
+         * @param encoder the encoder to use
+         * @param seq the sequence to encode
+         * @param j the offset in {@code seq} to continue encoding from
+         * @param prefix the number of leading characters not in the output
+         * @return the encoded result
+         */
+        String encodeBatches(Encoder encoder, CharSequence seq, int j, int prefix) {
+            final int n = seq.length();
+            final char[] inputArray = _input.array();
+            CharBuffer output = _output;
+            ChunkedOutput chunks = null;
+
+            for (;;) {
+                final int batchSize = Math.min(n - j, INPUT_BUFFER_SIZE);
+                final boolean endOfInput = j + batchSize == n;
+                getChars(seq, j, j + batchSize, inputArray, 0);
+                _input.clear().limit(batchSize);
+
+                for (;;) {
+                    CoderResult cr = encoder.encodeArrays(_input, output, endOfInput);
+                    if (cr.isUnderflow()) {
+                        break;
+                    }
 
-                CharBuffer input = buffer.duplicate();
-                input.limit(m).position(m-remaining);
-                buffer.position(j);
+                    // else, the output buffer is full.  Keep it, and
+                    // continue in the next (larger) chunk.
+                    if (chunks == null) {
+                        chunks = new ChunkedOutput();
+                    }
+                    output = chunks.next(output);
+                }
 
-                CoderResult cr = encoder.encodeArrays(input, buffer, true);
+                j += _input.position();
 
-                if (cr.isOverflow()) {
-                    throw new AssertionError("unexpected result from encoder");
+                if (endOfInput) {
+                    break;
                 }
+                // else, the encoder may have left characters that need
+                // more input to encode, they are re-read with the next batch.
+            }
 
-                return new String(buffer.array(), 0, buffer.position());
+            if (chunks == null && prefix == 0) {
+                return new String(output.array(), 0, output.position());
             }
+
+            if (chunks == null) {
+                chunks = new ChunkedOutput();
+            }
+            chunks.add(output.array(), output.position());
+            return chunks.toString(seq, prefix);
         }
 
         /**
@@ -1455,19 +4410,19 @@ public final class Encode {
          * memory, instead encoding is done in batches and flushed to the
          * writer in batches as large as possible.
          *
+         * The characters before {@code j} must already have been written.
+         *
          * @param encoder the encoder to use
          * @param out where to write the encoded output
-         * @param str the string to encode
-         * @param j the position in the string at which the first character
+         * @param seq the sequence to encode
+         * @param j the position in the sequence at which the first character
          * needs encoding.
          * @throws IOException if thrown by the writer.
          */
-        void encode(Encoder encoder, Writer out, String str, int j)
+        void encode(Encoder encoder, Writer out, CharSequence seq, int j)
             throws IOException
         {
-            out.write(str, 0, j);
-
-            final int n = str.length();
+            final int n = seq.length();
 
             _input.clear();
             _output.clear();
@@ -1479,7 +4434,7 @@ public final class Encode {
                 final int remainingInput = n - j;
                 final int startPosition = _input.position();
                 final int batchSize = Math.min(remainingInput, _input.remaining());
-                str.getChars(j, j+batchSize, inputArray, startPosition);
+                getChars(seq, j, j+batchSize, inputArray, startPosition);
 
                 _input.limit(startPosition + batchSize);
 
@@ -1509,5 +4464,190 @@ public final class Encode {
                 _input.compact();
             }
         }
+
+        /**
+         * Writer version of {@link #encode(Encoder, CharSequence)}.
+         *
+         * @param encoder the encoder to use
+         * @param out where to write the encoded output
+         * @param seq the sequence to encode
+         * @throws IOException if thrown by the writer.
+         */
+        void encode(Encoder encoder, Writer out, CharSequence seq)
+            throws IOException
+        {
+            final int n = seq.length();
+            if (n > INPUT_BUFFER_SIZE) {
+                encode(encoder, out, seq, 0);
+                return;
+            }
+
+            final char[] inputArray = _input.array();
+            getChars(seq, 0, n, inputArray, 0);
+            final int j = encoder.firstEncodedOffset(inputArray, 0, n);
+            out.write(inputArray, 0, j);
+            if (j < n) {
+                encode(encoder, out, inputArray, j, n);
+            }
+        }
+
+        /**
+         * Encodes a range of a character array to a writer.  The array is
+         * wrapped as the input buffer, and only the output is buffered.
+         *
+         * @param encoder the encoder to use
+         * @param out where to write the encoded output
+         * @param input the array holding the characters to encode
+         * @param j the offset of the first character needing encoding
+         * @param end the offset after the last character
+         * @throws IOException if thrown by the writer.
+         */
+        void encode(Encoder encoder, Writer out, char[] input, int j, int end)
+            throws IOException
+        {
+            final CharBuffer in = CharBuffer.wrap(input, j, end - j);
+            final char[] outputArray = _output.array();
+            _output.clear();
+
+            while (encoder.encodeArrays(in, _output, true).isOverflow()) {
+                out.write(outputArray, 0, _output.position());
+                _output.clear();
+            }
+            out.write(outputArray, 0, _output.position());
+        }
+
+        /**
+         * StringBuilder version of {@link #encode(Encoder, Writer,
+         * CharSequence, int)}.  The characters before {@code j} must
+         * already have been appended.
+         *
+         * @param encoder the encoder to use
+         * @param out the builder to append to
+         * @param seq the sequence to encode
+         * @param j the position in the sequence at which the first character
+         * needs encoding.
+         */
+        void encode(Encoder encoder, StringBuilder out, CharSequence seq, int j) {
+            final int n = seq.length();
+
+            _input.clear();
+            _output.clear();
+
+            final char[] inputArray = _input.array();
+            final char[] outputArray = _output.array();
+
+            for (;;) {
+                final int remainingInput = n - j;
+                final int startPosition = _input.position();
+                final int batchSize = Math.min(remainingInput, _input.remaining());
+                getChars(seq, j, j + batchSize, inputArray, startPosition);
+                _input.limit(startPosition + batchSize);
+
+                while (encoder.encodeArrays(_input, _output, batchSize == remainingInput).isOverflow()) {
+                    out.append(outputArray, 0, _output.position());
+                    _output.clear();
+                }
+
+                j += _input.position() - startPosition;
+
+                if (j == n) {
+                    out.append(outputArray, 0, _output.position());
+                    return;
+                }
+
+                _input.compact();
+            }
+        }
+
+        /**
+         * StringBuilder version of {@link #encode(Encoder, Writer, char[],
+         * int, int)}.
+         *
+         * @param encoder the encoder to use
+         * @param out the builder to append to
+         * @param input the array holding the characters to encode
+         * @param j the offset of the first character needing encoding
+         * @param end the offset after the last character
+         */
+        void encode(Encoder encoder, StringBuilder out, char[] input, int j, int end) {
+            final CharBuffer in = CharBuffer.wrap(input, j, end - j);
+            final char[] outputArray = _output.array();
+            _output.clear();
+
+            while (encoder.encodeArrays(in, _output, true).isOverflow()) {
+                out.append(outputArray, 0, _output.position());
+                _output.clear();
+            }
+            out.append(outputArray, 0, _output.position());
+        }
+
+        /**
+         * Encodes a sequence to UTF-8 bytes written to a stream.  The
+         * sequence is copied into the input buffer in batches, and the
+         * bytes are flushed to the stream whenever the byte buffer fills.
+         *
+         * @param encoder the encoder to use
+         * @param out where to write the encoded output
+         * @param seq the sequence to encode
+         * @throws IOException if thrown by the stream.
+         */
+        void encode(Encoder encoder, OutputStream out, CharSequence seq)
+            throws IOException
+        {
+            final int n = seq.length();
+            final ByteBuffer output = bytes();
+            output.clear();
+            _input.clear();
+
+            for (int j = 0;;) {
+                final int remainingInput = n - j;
+                final int startPosition = _input.position();
+                final int batchSize = Math.min(remainingInput, _input.remaining());
+                getChars(seq, j, j + batchSize, _input.array(), startPosition);
+                _input.limit(startPosition + batchSize);
+
+                while (encoder.encode(_input, output, batchSize == remainingInput, this).isOverflow()) {
+                    out.write(output.array(), 0, output.position());
+                    output.clear();
+                }
+
+                j += _input.position() - startPosition;
+
+                if (j == n) {
+                    out.write(output.array(), 0, output.position());
+                    return;
+                }
+
+                _input.compact();
+            }
+        }
+
+        /**
+         * Copies characters from a sequence into an array, using the bulk
+         * copy of the common sequence types.
+         *
+         * @param seq the source sequence
+         * @param start the index of the first character to copy
+         * @param end the index after the last character to copy
+         * @param dst the destination array
+         * @param dstBegin the offset in {@code dst} to copy to
+         */
+        static void getChars(CharSequence seq, int start, int end, char[] dst, int dstBegin) {
+            if (seq instanceof String) {
+                ((String) seq).getChars(start, end, dst, dstBegin);
+            } else if (seq instanceof StringBuilder) {
+                ((StringBuilder) seq).getChars(start, end, dst, dstBegin);
+            } else if (seq instanceof StringBuffer) {
+                ((StringBuffer) seq).getChars(start, end, dst, dstBegin);
+            } else if (seq instanceof CharBuffer) {
+                final CharBuffer buf = ((CharBuffer) seq).duplicate();
+                buf.position(buf.position() + start);
+                buf.get(dst, dstBegin, end - start);
+            } else {
+                for (int i = start; i < end; ++i) {
+                    dst[dstBegin++] = seq.charAt(i);
+                }
+            }
+        }
     }
 }
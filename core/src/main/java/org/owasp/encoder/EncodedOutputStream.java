@@ -0,0 +1,373 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * EncodedOutputStream -- An output stream that encodes all input for a
+ * specific context and writes the encoded output as UTF-8 bytes to another
+ * stream.  Characters are written with the {@code write(char[]...)} and
+ * {@code write(CharSequence)} methods.  Bytes written with the usual
+ * OutputStream methods are taken to be UTF-8 text; malformed byte
+ * sequences are treated as invalid characters and replaced as the encoder
+ * replaces any other invalid character.
+ */
+public class EncodedOutputStream extends OutputStream {
+
+    /**
+     * Size of the byte buffers to allocate.
+     */
+    static final int BUFFER_SIZE = 4096;
+
+    /**
+     * The wrapped stream.
+     */
+    private final OutputStream _out;
+
+    /**
+     * The encoder used to encode input to the output stream.
+     */
+    private final Encoder _encoder;
+
+    /**
+     * Where encoded output is buffered before sending on to the output stream.
+     */
+    private final ByteBuffer _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Characters the encoder needs more input for.  See the comment on
+     * the same field of {@link EncodedWriter}.  Created on demand.
+     */
+    private CharBuffer _leftOverBuffer;
+
+    /**
+     * True when {@link #_leftOverBuffer} holds characters.
+     */
+    private boolean _hasLeftOver;
+
+    /**
+     * Decoder for byte input, created on the first byte write.
+     */
+    private CharsetDecoder _decoder;
+
+    /**
+     * Byte input that has not been decoded yet, for example the start of a
+     * multi-byte sequence split over two writes.  Kept in write mode.
+     */
+    private ByteBuffer _byteInput;
+
+    /**
+     * Characters decoded from byte input.
+     */
+    private CharBuffer _decoded;
+
+    /**
+     * Creates an EncodedOutputStream that uses the specified encoder to
+     * encode all input before sending it to the wrapped stream.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     */
+    public EncodedOutputStream(OutputStream out, Encoder encoder) {
+        if (out == null) {
+            throw new NullPointerException("stream must not be null");
+        }
+        if (encoder == null) {
+            throw new NullPointerException("encoder must not be null");
+        }
+        _out = out;
+        _encoder = encoder;
+    }
+
+    /**
+     * Creates an EncodedOutputStream that uses the specified encoder to
+     * encode all input before sending it to the wrapped stream.  This
+     * method is equivalent to calling:
+     * <pre>
+     *     new EncodedOutputStream(out, Encoders.forName(contextName));
+     * </pre>
+     *
+     * @param out the target for all writes
+     * @param contextName the encoding context name.
+     * @throws UnsupportedContextException if the contextName is unrecognized or not supported.
+     */
+    public EncodedOutputStream(OutputStream out, String contextName) throws UnsupportedContextException {
+        this(out, Encoders.forName(contextName));
+    }
+
+    /**
+     * Encodes and writes a range of characters.
+     *
+     * @param cbuf the characters to write
+     * @param off the offset of the first character
+     * @param len the number of characters
+     * @throws IOException if thrown by the wrapped stream
+     */
+    public synchronized void write(char[] cbuf, int off, int len) throws IOException {
+        CharBuffer input = CharBuffer.wrap(cbuf);
+        input.limit(off + len).position(off);
+        flushByteInput();
+        encodeChars(input);
+    }
+
+    /**
+     * Encodes and writes an array of characters.
+     *
+     * @param cbuf the characters to write
+     * @throws IOException if thrown by the wrapped stream
+     */
+    public void write(char[] cbuf) throws IOException {
+        write(cbuf, 0, cbuf.length);
+    }
+
+    /**
+     * Encodes and writes a sequence of characters.
+     *
+     * @param csq the characters to write
+     * @throws IOException if thrown by the wrapped stream
+     */
+    public synchronized void write(CharSequence csq) throws IOException {
+        flushByteInput();
+        encodeChars(CharBuffer.wrap(csq));
+    }
+
+    /**
+     * Writes a byte of UTF-8 encoded text.
+     *
+     * @param b the byte to write
+     * @throws IOException if thrown by the wrapped stream
+     */
+    @Override
+    public synchronized void write(int b) throws IOException {
+        byteInput().put((byte) b);
+        decodeByteInput(false);
+    }
+
+    /**
+     * Writes a range of UTF-8 encoded text.  A multi-byte sequence may be
+     * split over two writes.
+     *
+     * @param b the bytes to write
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     * @throws IOException if thrown by the wrapped stream
+     */
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        final ByteBuffer byteInput = byteInput();
+        while (len > 0) {
+            final int n = Math.min(len, byteInput.remaining());
+            byteInput.put(b, off, n);
+            off += n;
+            len -= n;
+            decodeByteInput(false);
+        }
+    }
+
+    /**
+     * Returns the byte input buffer, creating the decoder on first use.
+     *
+     * @return the byte input buffer, in write mode
+     */
+    private ByteBuffer byteInput() {
+        if (_byteInput == null) {
+            _decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .replaceWith(String.valueOf(UTF8.MALFORMED_REPLACEMENT));
+            _byteInput = ByteBuffer.allocate(BUFFER_SIZE);
+            _decoded = CharBuffer.allocate(BUFFER_SIZE);
+        }
+        return _byteInput;
+    }
+
+    /**
+     * Decodes the byte input and encodes the resulting characters.
+     *
+     * @param endOfInput true if an incomplete sequence at the end of the
+     * byte input is malformed, instead of waiting for more bytes.
+     * @throws IOException from the wrapped stream
+     */
+    private void decodeByteInput(boolean endOfInput) throws IOException {
+        _byteInput.flip();
+        for (;;) {
+            final CoderResult cr = _decoder.decode(_byteInput, _decoded, endOfInput);
+            _decoded.flip();
+            encodeChars(_decoded);
+            _decoded.clear();
+            if (cr.isUnderflow()) {
+                break;
+            }
+        }
+        _byteInput.compact();
+
+        if (endOfInput) {
+            _decoder.flush(_decoded);
+            _decoded.flip();
+            encodeChars(_decoded);
+            _decoded.clear();
+            _decoder.reset();
+        }
+    }
+
+    /**
+     * Ends pending byte input before characters are written, so that the
+     * output keeps the order of the writes.  An incomplete multi-byte
+     * sequence is treated as malformed.
+     *
+     * @throws IOException from the wrapped stream
+     */
+    private void flushByteInput() throws IOException {
+        if (_byteInput != null && _byteInput.position() > 0) {
+            decodeByteInput(true);
+        }
+    }
+
+    /**
+     * Encodes characters into the output buffer, flushing the buffer to the
+     * wrapped stream as it fills.  Characters the encoder needs more input
+     * for are kept in the left-over buffer.
+     *
+     * @param input the characters to encode
+     * @throws IOException from the wrapped stream
+     */
+    private void encodeChars(CharBuffer input) throws IOException {
+        final Encode.Buffer buffer = Encode.Buffer.POOL.acquire();
+        try {
+            flushLeftOver(input, buffer);
+
+            for (;;) {
+                CoderResult cr = _encoder.encode(input, _buffer, false, buffer);
+
+                if (cr.isUnderflow()) {
+                    if (input.hasRemaining()) {
+                        if (_leftOverBuffer == null) {
+                            _leftOverBuffer = CharBuffer.allocate(EncodedWriter.LEFT_OVER_BUFFER);
+                        }
+                        _leftOverBuffer.put(input);
+                        _hasLeftOver = true;
+                    }
+                    return;
+                }
+                flushBufferToStream();
+            }
+        } finally {
+            Encode.Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Flushes the contents of the buffer to the stream and resets the buffer
+     * to make room for more input.
+     *
+     * @throws IOException thrown by the wrapped output.
+     */
+    private void flushBufferToStream() throws IOException {
+        _out.write(_buffer.array(), 0, _buffer.position());
+        _buffer.clear();
+    }
+
+    /**
+     * Flushes the left-over buffer.  Characters from the input buffer are
+     * used to add more data to the left-over buffer in order to make the
+     * flush happen.
+     *
+     * @param input the next input to encode, or null if at end of file.
+     * @param buffer the pooled buffer for the encoder's windows.
+     * @throws IOException from the underlying stream.
+     */
+    private void flushLeftOver(CharBuffer input, Encode.Buffer buffer) throws IOException {
+        if (!_hasLeftOver) {
+            return;
+        }
+
+        for (;;) {
+            if (input != null && input.hasRemaining()) {
+                _leftOverBuffer.put(input.get());
+            }
+
+            _leftOverBuffer.flip();
+            CoderResult cr = _encoder.encode(_leftOverBuffer, _buffer, input == null, buffer);
+            _leftOverBuffer.compact();
+
+            if (cr.isOverflow()) {
+                flushBufferToStream();
+            } else if (_leftOverBuffer.position() == 0) {
+                break;
+            } else if (input == null) {
+                // at the end of input the encoders encode or replace every
+                // character, drop anything an encoder still holds back
+                // rather than write it unencoded.
+                _leftOverBuffer.clear();
+                break;
+            } else if (!input.hasRemaining()) {
+                // still not enough input, keep the characters for the next write.
+                return;
+            }
+        }
+
+        _hasLeftOver = false;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        flushBufferToStream();
+        _out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flushByteInput();
+        final Encode.Buffer buffer = Encode.Buffer.POOL.acquire();
+        try {
+            flushLeftOver(null, buffer);
+        } finally {
+            Encode.Buffer.POOL.release(buffer);
+        }
+        flushBufferToStream();
+        _out.close();
+    }
+}
@@ -52,9 +52,18 @@ public class EncodedWriter extends Writer {
     static final int BUFFER_SIZE = 1024;
     /**
      * Buffer to use for handling characters remaining in the input buffer after an encode. The value is set high enough to handle
-     * the lookaheads of all the encoders in the package.
+     * the lookaheads of all the encoders in the package, and of chains of them short of several levels deep.
      */
     static final int LEFT_OVER_BUFFER = 16;
+    /**
+     * Size of the buffer of characters written but not yet encoded.
+     */
+    static final int INPUT_BUFFER_SIZE = 256;
+    /**
+     * When passing through, the shortest run of characters that need no encoding that is written straight to the wrapped
+     * writer. Shorter runs, and shorter writes, go through the buffers as usual, to save calls to the wrapped writer.
+     */
+    static final int PASS_THROUGH_MIN = 32;
 
     /**
      * The wrapped writer.
@@ -69,21 +78,32 @@ public class EncodedWriter extends Writer {
     /**
      * Where encoded output is buffered before sending on to the output writer.
      */
-    private CharBuffer _buffer = CharBuffer.allocate(BUFFER_SIZE);
+    private CharBuffer _buffer;
 
     /**
-     * Some encoders require more input or an explicit end-of-input flag before they will process the remaining characters of an
-     * input buffer. Because the writer API cannot pass this information on to the caller (e.g. by returning how many bytes were
-     * actually written), this writer implementation must buffer up the remaining characters between calls. The
-     * <code>_hasLeftOver</code> boolean is a flag used to indicate that there are left over characters in the buffer.
+     * Characters written but not yet encoded, between position zero and the position of the buffer. Small writes are copied
+     * here and encoded together once the buffer fills, or on a flush or close, so that they neither allocate nor call the
+     * encoder each time. Some encoders also require more input or an explicit end-of-input flag before they will process the
+     * last characters of their input. Because the writer API cannot pass this information on to the caller (e.g. by
+     * returning how many characters were actually written), those characters are kept here until the next write.
      */
-    private boolean _hasLeftOver;
+    private CharBuffer _input;
 
     /**
-     * See comment on _hasLeftOver. This buffer is created on-demand once. Whether it has anything to flush is determined by the
-     * _hasLeftOver flag.
+     * True if runs of characters that need no encoding are written straight to the wrapped writer.
      */
-    private CharBuffer _leftOverBuffer;
+    private boolean _passThrough;
+
+    /**
+     * The encoder, if it is a chain, so that it can be called with a window allocated once per writer rather than once per
+     * encode.
+     */
+    private ChainedEncoder _chain;
+
+    /**
+     * The window for <code>_chain</code>, created on demand.
+     */
+    private CharBuffer _window;
 
     /**
      * Creates an EncodedWriter that uses the specified encoder to encode all input before sending it to the wrapped writer.
@@ -92,19 +112,7 @@ public class EncodedWriter extends Writer {
      * @param encoder the encoder to use
      */
     public EncodedWriter(Writer out, Encoder encoder) {
-        super(out);
-
-//      Reduntant null check, super(out) checks for null and throws NPE.
-//        if (out == null) {
-//            throw new NullPointerException("writer must not be null");
-//        }
-        if (encoder == null) {
-            throw new NullPointerException("encoder must not be null");
-        }
-
-        _out = out;
-
-        _encoder = encoder;
+        this(out, encoder, out);
     }
 
     /**
@@ -122,94 +130,536 @@ public class EncodedWriter extends Writer {
         this(out, Encoders.forName(contextName));
     }
 
+    /**
+     * Creates an EncodedWriter that encodes all input for one context nested in another, such as JavaScript in an HTML
+     * attribute, before sending it to the wrapped writer. This method is equivalent to calling:
+     * <pre>
+     *     new EncodedWriter(out, Encoders.chain(
+     *         Encoders.forName(firstContextName), Encoders.forName(lastContextName)));
+     * </pre>
+     *
+     * @param out the target for all writes
+     * @param firstContextName the name of the inner context, whose encoding is applied first.
+     * @param lastContextName the name of the outer context, whose encoding is applied last.
+     * @throws UnsupportedContextException if either context name is unrecognized or not supported.
+     */
+    public EncodedWriter(Writer out, String firstContextName, String lastContextName) throws UnsupportedContextException {
+        this(out, Encoders.chain(Encoders.forName(firstContextName), Encoders.forName(lastContextName)));
+    }
+
+    /**
+     * Creates an EncodedWriter with the specified object in {@link Writer#lock}. The methods of this class synchronize on it;
+     * subclasses that guard their state some other way, or not at all, override them.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     * @param lock the object to store in {@link Writer#lock}.
+     */
+    EncodedWriter(Writer out, Encoder encoder, Object lock) {
+        super(lock);
+        _buffer = CharBuffer.allocate(BUFFER_SIZE);
+        bind(out, encoder);
+    }
+
+    /**
+     * Creates an EncodedWriter that is not yet bound to a wrapped writer or an encoder, for a pool or a subclass. It must be
+     * bound before it is used. Its lock is the writer itself.
+     *
+     * @param bufferSize the size of the buffer for encoded output.
+     */
+    EncodedWriter(int bufferSize) {
+        _buffer = CharBuffer.allocate(bufferSize);
+        _input = CharBuffer.allocate(INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Binds this writer to a wrapped writer and encoder, as if newly constructed. Any input or output still buffered is
+     * discarded, so callers finish the output first.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     */
+    final void bind(Writer out, Encoder encoder) {
+        if (out == null) {
+            throw new NullPointerException("writer must not be null");
+        }
+        if (encoder == null) {
+            throw new NullPointerException("encoder must not be null");
+        }
+
+        _out = out;
+
+        _encoder = encoder;
+
+        final int inputSize = Math.max(INPUT_BUFFER_SIZE, 2 * (encoder.maxLookahead() + 1));
+        if (_input == null || _input.capacity() < inputSize) {
+            _input = CharBuffer.allocate(inputSize);
+        } else {
+            _input.clear();
+        }
+        _buffer.clear();
+
+        final ChainedEncoder chain = encoder instanceof ChainedEncoder ? (ChainedEncoder) encoder : null;
+        if (chain != _chain) {
+            _chain = chain;
+            _window = null;
+        }
+
+        _passThrough = false;
+    }
+
+    /**
+     * Finishes the output to the current wrapped writer, then makes this writer encode with another encoder to another wrapped
+     * writer, as if newly constructed, reusing its buffers. Any characters held back for the current encoder's lookahead are
+     * encoded as the end of the input, and all buffered output is written to the current wrapped writer, which is neither
+     * flushed nor closed. A closed writer may be reset to use it again. Passing through is turned off. The
+     * {@linkplain Writer#lock lock} of this writer does not change.
+     *
+     * @param out the target for all writes from now on
+     * @param encoder the encoder to use from now on
+     * @throws IOException from the current wrapped writer, in which case this writer is not reset.
+     * @throws NullPointerException if either argument is null, in which case this writer is not reset.
+     * @see Encoders#acquireWriter(Writer, Encoder)
+     */
+    public void reset(Writer out, Encoder encoder) throws IOException {
+        synchronized (lock) {
+            implReset(out, encoder);
+        }
+    }
+
+    /**
+     * Resets without locking. Callers are responsible for any locking required.
+     *
+     * @param out the target for all writes from now on
+     * @param encoder the encoder to use from now on
+     * @throws IOException from the current wrapped writer.
+     */
+    final void implReset(Writer out, Encoder encoder) throws IOException {
+        if (out == null || encoder == null) {
+            throw new NullPointerException(out == null ? "writer must not be null" : "encoder must not be null");
+        }
+        implFinish();
+        bind(out, encoder);
+    }
+
+    /**
+     * Encodes the characters held back as the end of the input, and writes all buffered output to the wrapped writer, without
+     * flushing or closing it. Callers are responsible for any locking required.
+     *
+     * @throws IOException from the underlying writer.
+     */
+    final void implFinish() throws IOException {
+        encodeInput(true);
+        if (_buffer.position() > 0) {
+            flushBufferToWriter();
+        }
+        awaitWritten();
+    }
+
+    /**
+     * Finishes the output, and drops the reference to the wrapped writer so that a pooled writer does not keep it reachable.
+     * The writer must be bound again before it is used.
+     *
+     * @throws IOException from the underlying writer.
+     * @throws IllegalStateException if the writer was already released.
+     */
+    final void implRelease() throws IOException {
+        if (_out == null) {
+            throw new IllegalStateException("writer already released");
+        }
+        implFinish();
+        _out = null;
+    }
+
+    /**
+     * Sets whether strings and character arrays written to this writer are passed through. When passing through, runs of
+     * characters that need no encoding are written straight from the caller's string or array to the wrapped writer, and only
+     * the characters around those that need encoding go through this writer's buffers. This saves copying long clean text
+     * twice, at the cost of more, smaller, writes to the wrapped writer, so it suits a wrapped writer that is itself
+     * buffered. Single characters and other character sequences are always buffered. The order of the output is the same
+     * either way. Passing through is off by default; it should be set before the writer is used.
+     *
+     * @param passThrough true to pass through runs that need no encoding.
+     */
+    public void setPassThrough(boolean passThrough) {
+        _passThrough = passThrough;
+    }
+
+    /**
+     * Returns whether runs of characters that need no encoding are written straight to the wrapped writer.
+     *
+     * @return true if passing through.
+     * @see #setPassThrough(boolean)
+     */
+    public boolean isPassThrough() {
+        return _passThrough;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        synchronized (lock) {
+            implWrite(c);
+        }
+    }
+
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
         synchronized (lock) {
-            CharBuffer input = CharBuffer.wrap(cbuf);
-            input.limit(off + len).position(off);
+            implWrite(cbuf, off, len);
+        }
+    }
 
-            flushLeftOver(input);
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        synchronized (lock) {
+            implWrite(str, off, len);
+        }
+    }
 
-            for (;;) {
-                CoderResult cr = _encoder.encode(input, _buffer, false);
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        return append(csq, 0, csq.length());
+    }
 
-                if (cr.isUnderflow()) {
-                    if (input.hasRemaining()) {
-                        if (_leftOverBuffer == null) {
-                            _leftOverBuffer = CharBuffer.allocate(LEFT_OVER_BUFFER);
-                        }
-                        _leftOverBuffer.put(input);
-                        _hasLeftOver = true;
-                    }
-                    return;
-                }
-                if (cr.isOverflow()) {
-                    flushBufferToWriter();
-                }
-            }
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        synchronized (lock) {
+            implAppend(csq, start, end);
         }
+        return this;
+    }
+
+    @Override
+    public Writer append(char c) throws IOException {
+        write(c);
+        return this;
     }
 
     /**
-     * Flushes the contents of the buffer to the writer and resets the buffer to make room for more input.
+     * Buffers a single character without locking. Callers are responsible for any locking required.
      *
-     * @throws IOException thrown by the wrapped output.
+     * @param c the character to write, in the low 16 bits.
+     * @throws IOException from the underlying writer.
      */
-    private void flushBufferToWriter() throws IOException {
-        _out.write(_buffer.array(), 0, _buffer.position());
-        _buffer.clear();
+    final void implWrite(int c) throws IOException {
+        _input.put((char) c);
+        if (!_input.hasRemaining()) {
+            encodeInput(false);
+        }
     }
 
     /**
-     * Flushes the left-over buffer. Characters from the input buffer are used to add more data to the _leftOverBuffer in order to
-     * make the flush happen.
+     * Encodes a range of a character array without locking. Callers are responsible for any locking required. Ranges at least
+     * as long as the input buffer are encoded in place once any earlier input has been encoded.
      *
-     * @param input the next input to encode, or null if at end of file.
+     * @param cbuf the characters to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
      * @throws IOException from the underlying writer.
      */
-    private void flushLeftOver(CharBuffer input) throws IOException {
-        if (!_hasLeftOver) {
+    final void implWrite(char[] cbuf, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (_passThrough) {
+            passThrough(cbuf, null, off, off + len);
             return;
         }
 
-        for (;;) {
-            if (input != null && input.hasRemaining()) {
-                _leftOverBuffer.put(input.get());
+        while (len > 0) {
+            if (_input.position() == 0 && len >= _input.capacity()) {
+                CharBuffer input = CharBuffer.wrap(cbuf, off, len);
+                encode(input, false);
+                // keep the encoder's lookahead for the next write
+                _input.put(input);
+                return;
             }
 
-            _leftOverBuffer.flip();
-            CoderResult cr = _encoder.encode(_leftOverBuffer, _buffer, input == null);
+            final int n = Math.min(len, _input.remaining());
+            _input.put(cbuf, off, n);
+            off += n;
+            len -= n;
+            if (!_input.hasRemaining()) {
+                encodeInput(false);
+            }
+        }
+    }
 
-            if (cr.isUnderflow()) {
-                if (_leftOverBuffer.hasRemaining()) {
-                    _leftOverBuffer.compact();
+    /**
+     * Encodes a range of a string without locking, copying it directly into the input buffer. Callers are responsible for
+     * any locking required.
+     *
+     * @param str the string to encode
+     * @param off the offset of the first character to encode
+     * @param len the number of characters to encode
+     * @throws IOException from the underlying writer.
+     */
+    final void implWrite(String str, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > str.length() - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (_passThrough) {
+            passThrough(null, str, off, off + len);
+            return;
+        }
+
+        while (len > 0) {
+            final int n = Math.min(len, _input.remaining());
+            final int pos = _input.position();
+            str.getChars(off, off + n, _input.array(), _input.arrayOffset() + pos);
+            _input.position(pos + n);
+            off += n;
+            len -= n;
+            if (!_input.hasRemaining()) {
+                encodeInput(false);
+            }
+        }
+    }
+
+    /**
+     * Encodes a subsequence of a character sequence without locking, and without creating a string from it. Callers are
+     * responsible for any locking required.
+     *
+     * @param csq the sequence to encode, or null to encode <code>"null"</code>, as {@link Writer#append(CharSequence, int,
+     * int)} does.
+     * @param start the index of the first character to encode
+     * @param end the index after the last character to encode
+     * @throws IOException from the underlying writer.
+     */
+    final void implAppend(CharSequence csq, int start, int end) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        if (start < 0 || start > end || end > csq.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (csq instanceof String) {
+            implWrite((String) csq, start, end - start);
+            return;
+        }
+
+        while (start < end) {
+            final int n = Math.min(end - start, _input.remaining());
+            final char[] array = _input.array();
+            final int pos = _input.arrayOffset() + _input.position();
+            for (int i = 0; i < n; ++i) {
+                array[pos + i] = csq.charAt(start + i);
+            }
+            _input.position(_input.position() + n);
+            start += n;
+            if (!_input.hasRemaining()) {
+                encodeInput(false);
+            }
+        }
+    }
+
+    /**
+     * Writes a range of a character array or string, passing through the runs that need no encoding. Characters held back in
+     * the input buffer are encoded with the characters after them before anything is passed through, so the order of the
+     * output and the encoder's lookahead are kept.
+     *
+     * @param cbuf the characters to write, or null to write from <code>str</code>.
+     * @param str the characters to write if <code>cbuf</code> is null.
+     * @param off the index of the first character to write
+     * @param end the index after the last character to write
+     * @throws IOException from the underlying writer.
+     */
+    private void passThrough(char[] cbuf, String str, int off, int end) throws IOException {
+        while (off < end) {
+            int n = Math.min(end - off, _input.remaining());
+            if (end - off >= PASS_THROUGH_MIN) {
+                if (_input.position() > 0) {
+                    // enough to let the encoder decide on what it held back
+                    n = Math.min(n, _encoder.maxLookahead() + 1);
                 } else {
-                    break;
+                    // the scan takes the end of the write for the end of the input, so the last characters are left for the
+                    // encoder to decide on with what is written after them.
+                    final int j = Math.min(firstEncodedOffset(cbuf, str, off, end), end - _encoder.maxLookahead());
+                    if (j - off >= PASS_THROUGH_MIN) {
+                        if (_buffer.position() > 0) {
+                            flushBufferToWriter();
+                        }
+                        awaitWritten();
+                        if (cbuf != null) {
+                            _out.write(cbuf, off, j - off);
+                        } else {
+                            _out.write(str, off, j - off);
+                        }
+                        off = j;
+                        continue;
+                    }
                 }
             }
-            if (cr.isOverflow()) {
-                flushBufferToWriter();
+
+            if (cbuf != null) {
+                _input.put(cbuf, off, n);
+            } else {
+                final int pos = _input.position();
+                str.getChars(off, off + n, _input.array(), _input.arrayOffset() + pos);
+                _input.position(pos + n);
+            }
+            off += n;
+            // short writes are buffered as usual
+            if (off < end || !_input.hasRemaining()) {
+                encodeInput(false);
             }
         }
+    }
 
-        _hasLeftOver = false;
-        _leftOverBuffer.clear();
+    /**
+     * Calls the encoder's firstEncodedOffset on a range of a character array or string.
+     *
+     * @param cbuf the characters to scan, or null to scan <code>str</code>.
+     * @param str the characters to scan if <code>cbuf</code> is null.
+     * @param off the index of the first character to scan
+     * @param end the index after the last character to scan
+     * @return the index of the first character that needs encoding, or <code>end</code> if none do.
+     */
+    private int firstEncodedOffset(char[] cbuf, String str, int off, int end) {
+        return cbuf != null
+            ? _encoder.firstEncodedOffset(cbuf, off, end - off)
+            : _encoder.firstEncodedOffset(str, off, end - off);
+    }
+
+    /**
+     * Encodes the buffered input, leaving in the input buffer only what the encoder has not consumed.
+     *
+     * @param endOfInput true if no more input will follow.
+     * @throws IOException from the underlying writer.
+     */
+    private void encodeInput(boolean endOfInput) throws IOException {
+        _input.flip();
+        encode(_input, endOfInput);
+        _input.compact();
+    }
+
+    /**
+     * Encodes from the input into the output buffer, flushing the output buffer to the wrapped writer as it fills. On return
+     * the input holds only what the encoder has not consumed.
+     *
+     * @param input the input to encode
+     * @param endOfInput true if no more input will follow.
+     * @throws IOException from the underlying writer.
+     */
+    private void encode(CharBuffer input, boolean endOfInput) throws IOException {
+        while (input.hasRemaining()) {
+            final CoderResult cr;
+            if (_chain != null) {
+                if (_window == null) {
+                    _window = _chain.newWindow();
+                }
+                cr = _chain.encodeArrays(input, _buffer, endOfInput, _window);
+            } else {
+                cr = _encoder.encode(input, _buffer, endOfInput);
+            }
+
+            if (cr.isUnderflow()) {
+                return;
+            }
+            flushBufferToWriter();
+        }
+    }
+
+    /**
+     * Flushes the contents of the buffer to the writer and resets the buffer to make room for more input.
+     *
+     * @throws IOException thrown by the wrapped output.
+     */
+    private void flushBufferToWriter() throws IOException {
+        _buffer = writeBuffer(_buffer, _out);
+    }
+
+    /**
+     * Writes the encoded output in a buffer to the wrapped writer, and returns the buffer to encode into next. Subclasses
+     * that write in the background return another buffer, and write the first before {@link #awaitWritten()} returns.
+     *
+     * @param buffer the encoded output, between zero and its position
+     * @param out the wrapped writer
+     * @return an empty buffer for more output.
+     * @throws IOException from the wrapped writer.
+     */
+    CharBuffer writeBuffer(CharBuffer buffer, Writer out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Waits until all the buffers passed to {@link #writeBuffer(CharBuffer, Writer)} have been written to the wrapped
+     * writer. They already have unless a subclass writes in the background.
+     *
+     * @throws IOException from the wrapped writer.
+     */
+    void awaitWritten() throws IOException {
     }
 
     @Override
     public void flush() throws IOException {
         synchronized (lock) {
-            flushBufferToWriter();
-            _out.flush();
+            implFlush();
         }
     }
 
+    /**
+     * Flushes without locking. Callers are responsible for any locking required.
+     *
+     * @throws IOException from the underlying writer.
+     */
+    final void implFlush() throws IOException {
+        encodeInput(false);
+        flushBufferToWriter();
+        awaitWritten();
+        _out.flush();
+    }
+
     @Override
     public void close() throws IOException {
         synchronized (lock) {
-            flushLeftOver(null);
+            implClose();
+        }
+    }
+
+    /**
+     * Encodes any left-over input as the end of input, then flushes and closes the underlying writer, without locking. Callers
+     * are responsible for any locking required.
+     *
+     * @throws IOException from the underlying writer.
+     */
+    final void implClose() throws IOException {
+        try {
+            encodeInput(true);
             flushBufferToWriter();
+            awaitWritten();
+        } catch (IOException e) {
+            // the wrapped writer is closed even when the output before it could not be written, and the first failure is
+            // the one thrown.
+            closeAfterFailure(e);
+            throw e;
+        } catch (RuntimeException e) {
+            closeAfterFailure(e);
+            throw e;
+        }
+        _out.close();
+    }
+
+    /**
+     * Closes the wrapped writer after writing to it has failed, adding any failure to close it to the first one.
+     *
+     * @param failure the failure of writing the output
+     */
+    private void closeAfterFailure(Exception failure) {
+        try {
             _out.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
         }
     }
 }
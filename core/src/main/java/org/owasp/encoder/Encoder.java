@@ -34,6 +34,7 @@
 
 package org.owasp.encoder;
 
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CoderResult;
 
@@ -82,6 +83,19 @@ public abstract class Encoder {
      */
     static final int HEX_MASK = 0xf;
 
+    /**
+     * Number of entries in a Latin-1 replacement table, one for each
+     * character in the range 0 to 255.
+     */
+    static final int LATIN1_TABLE_SIZE = 0x100;
+
+    /**
+     * The most characters any encoder looks past a character before
+     * deciding how to encode it, as when the CDATA encoder checks for
+     * the {@code ">"} of {@code "]]>"}.
+     */
+    static final int MAX_LOOKAHEAD = 2;
+
     /**
      * Package-private constructor to prevent having to support
      * external implementations of this class.  This may be opened up
@@ -90,12 +104,11 @@ public abstract class Encoder {
     Encoder() {}
 
     /**
-     * <p>This is the kernel of encoding.  Currently only CharBuffers
-     * backed by arrays (i.e. {@link java.nio.CharBuffer#hasArray()}
-     * returns {@code true}) are supported.  <strong>Using a
-     * direct-mapped CharBuffer will result in an
-     * UnsupportedOperationException</strong>, though this behavior
-     * may change in future releases.</p>
+     * <p>This is the kernel of encoding.  CharBuffers backed by arrays
+     * (i.e. {@link java.nio.CharBuffer#hasArray()} returns {@code true})
+     * are encoded directly.  Direct and read-only buffers are supported
+     * as well, and are encoded through an intermediate heap buffer that
+     * is filled and drained with bulk get and put operations.</p>
      *
      * <p>This method should be called repeatedly while {@code
      * endOfInput} set to {@code false} while there is more input.
@@ -172,6 +185,260 @@ public abstract class Encoder {
         }
     }
 
+    /**
+     * <p>Encodes the input to UTF-8 bytes.  This follows the same protocol
+     * as {@link #encode(java.nio.CharBuffer, java.nio.CharBuffer, boolean)},
+     * but the output is written as UTF-8 without a separate {@link
+     * java.nio.charset.CharsetEncoder} pass.  The escapes produced by the
+     * encoders are pure ASCII and are written one byte per character.</p>
+     *
+     * @param input the input buffer to encode
+     * @param output the output buffer to receive the UTF-8 encoded results
+     * @param endOfInput set to {@code true} if there is no more input, and any
+     * remaining characters at the end of input will either be encoded or
+     * replaced as invalid.
+     * @return Either {@link java.nio.charset.CoderResult#UNDERFLOW}
+     * or {@link java.nio.charset.CoderResult#OVERFLOW}.
+     */
+    public CoderResult encode(CharBuffer input, ByteBuffer output, boolean endOfInput) {
+        final Encode.Buffer buffer = Encode.Buffer.POOL.acquire();
+        try {
+            return encode(input, output, endOfInput, buffer);
+        } finally {
+            Encode.Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Implementation of {@link #encode(CharBuffer, ByteBuffer, boolean)}
+     * using the windows of a buffer the caller already holds.  Each round
+     * encodes into a char window as large as the space left in the output,
+     * which fits whenever the output is mostly ASCII.  If the UTF-8 form
+     * does not fit, the input is rolled back and encoded again into a
+     * window of only the characters that fit.  A window never ends with
+     * a high surrogate before the end of input, as UTF-8 needs both
+     * halves of a pair at once.
+     *
+     * @param input the input buffer to encode
+     * @param output the output buffer
+     * @param endOfInput when true, this is the last input to encode
+     * @param buffer the pooled buffer providing the windows
+     * @return UNDERFLOW or OVERFLOW
+     */
+    CoderResult encode(CharBuffer input, ByteBuffer output, boolean endOfInput, Encode.Buffer buffer) {
+        final CharBuffer chars = buffer._output;
+        final byte[] staging = buffer.bytes().array();
+        final boolean copyInput = !input.hasArray();
+
+        for (;;) {
+            // encode from the input's array, or from a copy of the next chunk
+            final int start = input.position();
+            final CharBuffer in;
+            final boolean lastBatch;
+            if (copyInput) {
+                in = buffer._input;
+                final int remaining = input.remaining();
+                final int batchSize = Math.min(remaining, in.capacity());
+                lastBatch = batchSize == remaining;
+                input.get(in.array(), 0, batchSize);
+                in.clear().limit(batchSize);
+            } else {
+                in = input;
+                lastBatch = true;
+            }
+            final int inStart = in.position();
+            final int space = output.remaining();
+
+            chars.clear().limit(Math.min(space, chars.capacity()));
+            CoderResult cr = encodeArrays(in, chars, endOfInput && lastBatch);
+            final int fitting = UTF8.fittingLength(chars.array(), 0, chars.position(), space);
+            if (fitting < chars.position()) {
+                in.position(inStart);
+                chars.clear().limit(fitting);
+                cr = encodeArrays(in, chars, endOfInput && lastBatch);
+            }
+
+            final int last = chars.position() - 1;
+            if (last >= 0 && Character.isHighSurrogate(chars.get(last))
+                && !(cr.isUnderflow() && endOfInput && lastBatch))
+            {
+                // the low surrogate may follow in the next window.  Hold
+                // back the high one so the pair is written together.
+                in.position(inStart);
+                chars.clear().limit(last);
+                encodeArrays(in, chars, endOfInput && lastBatch);
+            }
+
+            UTF8.put(chars.array(), 0, chars.position(), output, staging);
+            if (copyInput) {
+                input.position(start + in.position());
+            }
+
+            if (cr.isUnderflow()) {
+                if (lastBatch) {
+                    return cr;
+                }
+            } else if (chars.position() == 0 || !output.hasRemaining()) {
+                // not even the next escape fits in the remaining space.
+                return cr;
+            }
+        }
+    }
+
+    /**
+     * <p>Encodes UTF-8 input to UTF-8 output.  This follows the same
+     * protocol as {@link #encode(java.nio.CharBuffer, java.nio.CharBuffer,
+     * boolean)}, with bytes in place of characters.  The input is
+     * validated as it is encoded: each malformed sequence is treated as
+     * a single invalid character and replaced the same way as an
+     * unpaired surrogate.  A multi-byte sequence split across the end of
+     * the input is left in the input buffer until more input arrives.</p>
+     *
+     * <p>Runs of input that need no encoding are copied to the output as
+     * they are, so mostly-clean input is not converted to characters and
+     * back.</p>
+     *
+     * @param input the buffer of UTF-8 input to encode
+     * @param output the output buffer to receive the UTF-8 encoded results
+     * @param endOfInput set to {@code true} if there is no more input, and any
+     * remaining bytes at the end of input will either be encoded or
+     * replaced as invalid.
+     * @return Either {@link java.nio.charset.CoderResult#UNDERFLOW}
+     * or {@link java.nio.charset.CoderResult#OVERFLOW}.
+     */
+    public CoderResult encode(ByteBuffer input, ByteBuffer output, boolean endOfInput) {
+        final Encode.Buffer buffer = Encode.Buffer.POOL.acquire();
+        try {
+            return encode(input, output, endOfInput, buffer);
+        } finally {
+            Encode.Buffer.POOL.release(buffer);
+        }
+    }
+
+    /**
+     * Implementation of {@link #encode(ByteBuffer, ByteBuffer, boolean)}.
+     * Each round decodes a window of input into the buffer's input
+     * window.  The prefix of the window that {@link
+     * #firstEncodedOffset(char[], int, int)} reports as clean is copied
+     * from the input bytes, and only the rest of the window is encoded.
+     * Unless the window ends the input, the prefix stops short of the
+     * last {@link #maxLookahead()} characters, as what follows the window
+     * may change how they are encoded.
+     *
+     * @param input the UTF-8 input
+     * @param output the output buffer
+     * @param endOfInput when true, this is the last input to encode
+     * @param buffer the pooled buffer providing the windows
+     * @return UNDERFLOW or OVERFLOW
+     */
+    CoderResult encode(ByteBuffer input, ByteBuffer output, boolean endOfInput, Encode.Buffer buffer) {
+        final CharBuffer chars = buffer._input;
+        final char[] charArray = chars.array();
+        final boolean copyInput = !input.hasArray();
+
+        for (;;) {
+            // decode from the input's array, or from a copy of the next chunk
+            final int position = input.position();
+            final byte[] src;
+            final int start;
+            final int end;
+            final boolean lastChunk;
+            if (copyInput) {
+                src = buffer.byteInput();
+                final int remaining = input.remaining();
+                end = Math.min(remaining, src.length);
+                lastChunk = end == remaining;
+                input.get(src, 0, end);
+                input.position(position);
+                start = 0;
+            } else {
+                src = input.array();
+                start = input.arrayOffset() + position;
+                end = input.arrayOffset() + input.limit();
+                lastChunk = true;
+            }
+
+            final boolean lastBytes = endOfInput && lastChunk;
+            chars.clear();
+            final int decodedEnd = UTF8.decode(src, start, end, lastBytes, chars);
+            final int decoded = chars.position();
+            if (decoded == 0 && !lastBytes) {
+                // no input, or only the start of a multi-byte sequence
+                return CoderResult.UNDERFLOW;
+            }
+            final boolean lastWindow = lastBytes && decodedEnd == end;
+            final boolean windowFull = decoded >= chars.capacity() - 1;
+            chars.flip();
+
+            int clean = firstEncodedOffset(charArray, 0, decoded);
+            if (!lastWindow) {
+                clean = Math.max(0, Math.min(clean, decoded - maxLookahead()));
+                if (clean > 0 && Character.isLowSurrogate(charArray[clean])) {
+                    --clean;
+                }
+            }
+            for (int i = 0; i < clean; ++i) {
+                // malformed input is not copied, even by an encoder that
+                // leaves its replacement as it is, and its bytes are not
+                // those that encodedLength counts.
+                if (charArray[i] == UTF8.MALFORMED_REPLACEMENT
+                    && (i + 1 == decoded || !Character.isLowSurrogate(charArray[i + 1])))
+                {
+                    clean = i;
+                }
+            }
+
+            if (clean > 0) {
+                // the clean prefix is valid UTF-8, its length is exact
+                final int cleanBytes = UTF8.encodedLength(charArray, 0, clean);
+                final int space = output.remaining();
+                if (cleanBytes > space) {
+                    int cut = space;
+                    while (cut > 0 && (src[start + cut] & 0xc0) == 0x80) {
+                        --cut;
+                    }
+                    output.put(src, start, cut);
+                    input.position(position + cut);
+                    return CoderResult.OVERFLOW;
+                }
+                output.put(src, start, cleanBytes);
+                chars.position(clean);
+            }
+
+            final int mark = output.position();
+            CoderResult cr = clean < decoded
+                ? encode(chars, output, lastWindow, buffer)
+                : CoderResult.UNDERFLOW;
+
+            int consumed = chars.position();
+            if (consumed < decoded && Character.isLowSurrogate(charArray[consumed])) {
+                // The output ran out between the halves of a pair, which
+                // has no byte offset.  Encode again, stopping before it.
+                output.position(mark);
+                chars.limit(consumed - 1).position(clean);
+                encode(chars, output, false, buffer);
+                consumed = chars.position();
+                cr = CoderResult.OVERFLOW;
+            }
+
+            // find the bytes making up the characters consumed
+            int consumedEnd = decodedEnd;
+            if (consumed < decoded) {
+                chars.clear().limit(consumed);
+                consumedEnd = UTF8.decode(src, start, end, lastBytes, chars);
+            }
+            input.position(position + consumedEnd - start);
+
+            if (cr.isOverflow() || lastWindow) {
+                return cr;
+            }
+            if (!windowFull && lastChunk) {
+                // what is left is lookahead or the start of a sequence
+                return CoderResult.UNDERFLOW;
+            }
+        }
+    }
+
     /**
      * The core encoding loop used when both the input and output buffers
      * are array backed.  The loop is expected to fetch the arrays and
@@ -189,32 +456,89 @@ public abstract class Encoder {
     /**
      * The core encoding loop used when either or both input and output
      * buffers are NOT array-backed.  E.g. they are direct buffers or
-     * perhaps the input buffer is a read-only wrapper.  In any case,
-     * this method is not currently implemented by any of the encoder
-     * implementations since it is not expected to be common use-case.
-     * The stub is included here for completeness and to demarcate
-     * where the non-array-backed use-case would be included.
+     * perhaps the input buffer is a read-only wrapper.  The input is
+     * copied in chunks into a pooled heap buffer and encoded with
+     * {@link #encodeArrays(CharBuffer, CharBuffer, boolean)} into a
+     * second heap buffer that is never filled beyond the space remaining
+     * in {@code output}.  The input is only advanced past the characters
+     * the encoder consumed, so characters left for lookahead are copied
+     * again with the next chunk.
      *
      * @param input the input buffer.
      * @param output the output buffer.
      * @param endOfInput when true, this is the last input to encode
-     * @return never returns.
-     * @throws UnsupportedOperationException -- always
+     * @return UNDERFLOW or OVERFLOW
      */
-    CoderResult encodeBuffers(CharBuffer input, CharBuffer output, boolean endOfInput)
-        throws UnsupportedOperationException
-    {
-        throw new UnsupportedOperationException();
+    CoderResult encodeBuffers(CharBuffer input, CharBuffer output, boolean endOfInput) {
+        final Encode.Buffer buffer = Encode.Buffer.POOL.acquire();
+        try {
+            final CharBuffer in = buffer._input;
+            final CharBuffer out = buffer._output;
+
+            for (;;) {
+                final int remaining = input.remaining();
+                final int batchSize = Math.min(remaining, in.capacity());
+                final boolean lastBatch = batchSize == remaining;
+                final int start = input.position();
+                input.get(in.array(), 0, batchSize);
+                in.clear().limit(batchSize);
+
+                // when the output has less room than the window, the
+                // encoder overflowing means the output is full.
+                final int space = output.remaining();
+                final boolean outputBound = space <= out.capacity();
+                out.clear().limit(Math.min(space, out.capacity()));
+
+                final CoderResult cr = encodeArrays(in, out, endOfInput && lastBatch);
+
+                input.position(start + in.position());
+                output.put(out.array(), 0, out.position());
+
+                if (cr.isOverflow()) {
+                    if (outputBound) {
+                        return cr;
+                    }
+                } else if (lastBatch) {
+                    return cr;
+                }
+                // else, continue with the next window.  The batch is
+                // larger than any lookahead, so each window makes progress.
+            }
+        } finally {
+            Encode.Buffer.POOL.release(buffer);
+        }
     }
 
+    /**
+     * Returns the most characters this encoder looks past a character
+     * before deciding how to encode it.  This is {@link #MAX_LOOKAHEAD}
+     * for the encoders of each context, and the sum of both for a chain
+     * of two encoders.
+     *
+     * @return the lookahead of this encoder
+     */
+    int maxLookahead() {
+        return MAX_LOOKAHEAD;
+    }
+
+    /**
+     * The largest array, and so String, length to allocate.  Some VMs
+     * reserve header words in an array and fail on lengths close to
+     * {@code Integer.MAX_VALUE}.
+     */
+    static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
     /**
      * Returns the maximum encoded length (in chars) of an input sequence of
-     * {@code n} characters.
+     * {@code n} characters.  The result is a long as the worst case of an
+     * input that fits in a String can be several times larger than an int;
+     * callers sizing an array must check it against
+     * {@link #MAX_ARRAY_LENGTH}.
      *
      * @param n the number of characters of input
      * @return the worst-case number of characters required to encode
      */
-    abstract int maxEncodedLength(int n);
+    abstract long maxEncodedLength(long n);
 
     /**
      * Scans the input string for the first character index that requires
@@ -230,6 +554,77 @@ public abstract class Encoder {
      */
     abstract int firstEncodedOffset(String input, int off, int len);
 
+    /**
+     * Scans a range of a character array for the first character index that
+     * requires encoding.  This is the same scan as {@link
+     * #firstEncodedOffset(String, int, int)}, used when encoding character
+     * arrays and other non-String input without first converting them to a
+     * String.
+     *
+     * @param input the input to check for encoding
+     * @param off the offset of the first character to check
+     * @param len the number of characters to check
+     * @return the index of the first character to encode.  The return value
+     * will be {@code off+len} if no characters in the input require encoding.
+     */
+    abstract int firstEncodedOffset(char[] input, int off, int len);
+
+    /**
+     * Returns the encoded form of each character in the range 0 to 255 as
+     * Latin-1 bytes, or {@code null} if this encoder cannot encode those
+     * characters independently of the characters around them.  An entry
+     * is {@code null} when the character is copied to the output
+     * unchanged.  The table allows strings held in the compact Latin-1
+     * representation of Java 9 and later to be encoded without widening
+     * them to UTF-16.
+     *
+     * @return the Latin-1 replacement table, or {@code null}.
+     */
+    byte[][] latin1Table() {
+        return null;
+    }
+
+    /**
+     * Builds the table returned by {@link #latin1Table()} by running the
+     * encoder on each Latin-1 character in isolation.  This is only valid
+     * for encoders whose output for a character does not depend on the
+     * surrounding characters, and must be called once the encoder is
+     * fully constructed.
+     *
+     * @param encoder the encoder to build the table for
+     * @return the replacement table, or {@code null} if some character
+     * encodes to something outside of Latin-1.
+     */
+    static byte[][] buildLatin1Table(Encoder encoder) {
+        final byte[][] table = new byte[LATIN1_TABLE_SIZE][];
+        final CharBuffer input = CharBuffer.allocate(1);
+        final CharBuffer output = CharBuffer.allocate((int) encoder.maxEncodedLength(1));
+
+        for (int ch = 0; ch < LATIN1_TABLE_SIZE; ++ch) {
+            input.clear();
+            input.put((char) ch).flip();
+            output.clear();
+            encoder.encodeArrays(input, output, true);
+            output.flip();
+
+            final int n = output.remaining();
+            if (n == 1 && output.get(0) == ch) {
+                continue;
+            }
+
+            final byte[] replacement = new byte[n];
+            for (int k = 0; k < n; ++k) {
+                final char c = output.get(k);
+                if (c >= LATIN1_TABLE_SIZE) {
+                    return null;
+                }
+                replacement[k] = (byte) c;
+            }
+            table[ch] = replacement;
+        }
+        return table;
+    }
+
     /**
      * Internal helper method to properly position buffers after encoding up
      * until an overflow.
@@ -261,4 +656,27 @@ public abstract class Encoder {
         output.position(j - output.arrayOffset());
         return CoderResult.UNDERFLOW;
     }
+
+    /**
+     * Internal helper method to copy a run of clean characters from within
+     * {@code encodeArrays}.  The character at {@code in[i]} must be clean
+     * and have room in the output; it is copied along with the characters
+     * after it that {@link #firstEncodedOffset(char[], int, int)} finds
+     * clean and that fit in the output, with a single bounds check and
+     * copy for the run.  The scan must only report characters as clean
+     * if they are clean whatever follows the end of the scanned range.
+     *
+     * @param in the input array
+     * @param i the array offset of the clean character
+     * @param n the array limit of the input
+     * @param out the output array
+     * @param j the array offset in the output
+     * @param m the array limit of the output
+     * @return the number of characters copied, at least 1.
+     */
+    final int copyCleanRun(char[] in, int i, int n, char[] out, int j, int m) {
+        final int k = firstEncodedOffset(in, i + 1, Math.min(n - i, m - j) - 1) - i;
+        System.arraycopy(in, i, out, j, k);
+        return k;
+    }
 }
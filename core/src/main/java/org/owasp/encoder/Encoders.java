@@ -33,6 +33,13 @@
 // OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.owasp.encoder;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -146,6 +153,24 @@ public final class Encoders {
      * context.
      */
     public static final String URI_COMPONENT = "uri-component";
+    /**
+     * Name of the
+     * {@linkplain Encode#forCssStringInHtmlAttribute(String) CSS string in an HTML attribute}
+     * context.
+     */
+    public static final String CSS_STRING_IN_HTML_ATTRIBUTE = "css-string-in-html-attribute";
+    /**
+     * Name of the
+     * {@linkplain Encode#forJavaScriptInHtmlAttribute(String) JavaScript in an HTML attribute}
+     * context.
+     */
+    public static final String JAVASCRIPT_IN_HTML_ATTRIBUTE = "javascript-in-html-attribute";
+    /**
+     * Name of the
+     * {@linkplain Encode#forUriComponentInHtmlAttribute(String) URI component in an HTML attribute}
+     * context.
+     */
+    public static final String URI_COMPONENT_IN_HTML_ATTRIBUTE = "uri-component-in-html-attribute";
     /**
      * Map from encoder name to encoder singleton.
      */
@@ -242,6 +267,22 @@ public final class Encoders {
      */
     static final CSSEncoder CSS_URL_ENCODER
             = map(CSS_URL, new CSSEncoder(CSSEncoder.Mode.URL));
+    // Nestings common enough to flatten into one table each
+    /**
+     * Encoder for CSS strings in HTML attributes.
+     */
+    static final NestedEncoder CSS_STRING_IN_HTML_ATTRIBUTE_ENCODER
+            = map(CSS_STRING_IN_HTML_ATTRIBUTE, new NestedEncoder(CSS_STRING_ENCODER, XML_ATTRIBUTE_ENCODER));
+    /**
+     * Encoder for JavaScript in HTML attributes.
+     */
+    static final NestedEncoder JAVASCRIPT_IN_HTML_ATTRIBUTE_ENCODER
+            = map(JAVASCRIPT_IN_HTML_ATTRIBUTE, new NestedEncoder(JAVASCRIPT_ENCODER, XML_ATTRIBUTE_ENCODER));
+    /**
+     * Encoder for URI components in HTML attributes.
+     */
+    static final NestedEncoder URI_COMPONENT_IN_HTML_ATTRIBUTE_ENCODER
+            = map(URI_COMPONENT_IN_HTML_ATTRIBUTE, new NestedEncoder(URI_COMPONENT_ENCODER, XML_ATTRIBUTE_ENCODER));
 
     /**
      * Internal method to setup and map encoder singletons.
@@ -279,6 +320,211 @@ public final class Encoders {
         return encoder;
     }
 
+    /**
+     * Returns an Encoder for a context nested in another, that applies
+     * {@code first} and then {@code last} to its input.  For example,
+     * JavaScript in an HTML attribute is encoded by:
+     * <pre>
+     *     Encoders.chain(Encoders.forName(Encoders.JAVASCRIPT),
+     *                    Encoders.forName(Encoders.HTML_ATTRIBUTE))
+     * </pre>
+     * The returned instance holds no state between calls and is
+     * thread-safe.  Deeper nesting chains a chain.
+     *
+     * @param first the encoder for the inner context, applied first
+     * @param last the encoder for the outer context, applied last
+     * @return an encoder applying both in turn.
+     * @throws NullPointerException if either encoder is null
+     */
+    public static Encoder chain(Encoder first, Encoder last) throws NullPointerException {
+        if (first == null || last == null) {
+            throw new NullPointerException("encoder must not be null");
+        }
+        return new ChainedEncoder(first, last);
+    }
+
+    /**
+     * Returns a new EncodedWriter that does no locking, for use by one
+     * thread at a time (such as the output of a single request).
+     * Unlike {@code new EncodedWriter(out, encoder)}, it does not
+     * synchronize on every write, and so never pins a virtual thread
+     * to its carrier while {@code out} blocks.  The caller must not
+     * share the returned writer between threads without its own
+     * synchronization.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     * @return an unsynchronized encoding writer.
+     * @throws NullPointerException if either argument is null
+     */
+    public static EncodedWriter unsynchronizedWriter(Writer out, Encoder encoder) throws NullPointerException {
+        return new UnsynchronizedEncodedWriter(out, encoder);
+    }
+
+    /**
+     * Returns a new EncodedWriter that may be shared between threads,
+     * and which guards its state with a
+     * {@link java.util.concurrent.locks.ReentrantLock} rather than a
+     * {@code synchronized} block.  A virtual thread blocked in a
+     * write does not pin its carrier thread.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     * @return a thread-safe encoding writer.
+     * @throws NullPointerException if either argument is null
+     */
+    public static EncodedWriter lockingWriter(Writer out, Encoder encoder) throws NullPointerException {
+        return new LockingEncodedWriter(out, encoder);
+    }
+
+    /**
+     * Returns a new EncodedWriter that writes to {@code out} in the
+     * background, so that encoding overlaps with slow output such as a
+     * client socket.  It encodes into one buffer while the executor
+     * writes the other to {@code out}, waiting for the executor when
+     * both are full.  A failure of a background write is thrown from
+     * the next write, flush or close.  A flush or close waits for the
+     * background writes, then flushes or closes {@code out} on the
+     * calling thread.  The returned writer may be shared between
+     * threads.
+     *
+     * <p>On Java 21 and later the writes may run on virtual threads, by
+     * passing {@code Executors.newVirtualThreadPerTaskExecutor()}.</p>
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     * @param executor runs the writes to {@code out}
+     * @return an asynchronous encoding writer.
+     * @throws NullPointerException if any argument is null
+     */
+    public static EncodedWriter asyncWriter(Writer out, Encoder encoder, Executor executor)
+        throws NullPointerException
+    {
+        return new AsyncEncodedWriter(out, encoder, executor);
+    }
+
+    /**
+     * Returns an EncodedWriter from a pool, bound to the specified
+     * writer and encoder.  This saves allocating a writer and its
+     * buffers for every response, or every context in one.  The
+     * returned writer does no locking, like one from
+     * {@link #unsynchronizedWriter(Writer, Encoder)}, and may be
+     * {@linkplain EncodedWriter#reset(Writer, Encoder) reset} to
+     * other writers and encoders while in use.  Pass it to
+     * {@link #releaseWriter(EncodedWriter)} when done with it, rather
+     * than closing it, if the wrapped writer is to stay open.  The pool
+     * keeps at most about one writer per processor.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     * @return an unsynchronized encoding writer from the pool.
+     * @throws NullPointerException if either argument is null
+     */
+    public static EncodedWriter acquireWriter(Writer out, Encoder encoder) throws NullPointerException {
+        if (out == null || encoder == null) {
+            throw new NullPointerException(out == null ? "writer must not be null" : "encoder must not be null");
+        }
+        UnsynchronizedEncodedWriter writer = UnsynchronizedEncodedWriter.POOL.acquire();
+        writer.bind(out, encoder);
+        return writer;
+    }
+
+    /**
+     * Finishes the output of a writer from
+     * {@link #acquireWriter(Writer, Encoder)}, and returns it to the
+     * pool.  Any characters held back for the encoder's lookahead are
+     * encoded as the end of the input, and all buffered output is
+     * written to the wrapped writer, which is neither flushed nor
+     * closed.  The writer must not be used after it is released.
+     *
+     * @param writer a writer from {@code acquireWriter} or
+     * {@link #unsynchronizedWriter(Writer, Encoder)}
+     * @throws IOException from the wrapped writer, in which case the
+     * writer is not returned to the pool.
+     * @throws IllegalArgumentException if the writer does not come
+     * from one of those methods
+     * @throws IllegalStateException if the writer was already released
+     */
+    public static void releaseWriter(EncodedWriter writer) throws IOException {
+        if (!(writer instanceof UnsynchronizedEncodedWriter)) {
+            if (writer == null) {
+                throw new NullPointerException("writer must not be null");
+            }
+            throw new IllegalArgumentException("writer is not from the pool: " + writer.getClass().getName());
+        }
+        writer.implRelease();
+        UnsynchronizedEncodedWriter.POOL.release((UnsynchronizedEncodedWriter) writer);
+    }
+
+    /**
+     * Reads the remaining bytes of one channel, and writes them to
+     * another encoded for a context.  The input is decoded from
+     * {@code inCharset}, encoded by {@code encoder}, and written in
+     * {@code outCharset}, a chunk at a time through pooled buffers.
+     * Malformed input is replaced as the encoder replaces any other
+     * invalid character.  When both charsets are the same, and are
+     * UTF-8 or a single-byte charset, each chunk that needs no encoding
+     * is written as it was read.  Neither channel is closed.
+     *
+     * <p>Example, encoding a UTF-8 file into the content of an XML
+     * document:</p>
+     *
+     * <pre>
+     *     FileChannel file = FileChannel.open(path);
+     *     TransferResult result = Encoders.transfer(
+     *         file, StandardCharsets.UTF_8,
+     *         Channels.newChannel(out), StandardCharsets.UTF_8,
+     *         Encoders.forName(Encoders.XML_CONTENT));
+     * </pre>
+     *
+     * @param in the channel to read until end of stream
+     * @param inCharset the charset of the input
+     * @param out the channel to write the encoded input to
+     * @param outCharset the charset of the output
+     * @param encoder the encoder to use
+     * @return the number of bytes read and written
+     * @throws IOException from either channel
+     * @throws NullPointerException if any argument is null
+     * @throws java.nio.channels.IllegalBlockingModeException if either
+     * channel is in non-blocking mode
+     */
+    public static TransferResult transfer(
+        ReadableByteChannel in, Charset inCharset,
+        WritableByteChannel out, Charset outCharset,
+        Encoder encoder)
+        throws IOException
+    {
+        return ChannelTransfer.transfer(in, inCharset, out, outCharset, encoder);
+    }
+
+    /**
+     * Reads the remaining characters of a Reader, and writes them to a
+     * Writer encoded for a context.  The characters are encoded a buffer
+     * at a time through pooled buffers, without the locking of an
+     * {@link EncodedWriter}.  Runs of characters that need no encoding
+     * are written straight from the buffer they were read into.  Neither
+     * the Reader nor the Writer is closed or flushed.
+     *
+     * <p>Example, encoding a template into the content of an HTML
+     * document:</p>
+     *
+     * <pre>
+     *     TransferResult result = Encoders.transfer(
+     *         reader, response.getWriter(),
+     *         Encoders.forName(Encoders.HTML_CONTENT));
+     * </pre>
+     *
+     * @param in the reader to read until end of stream
+     * @param out the writer to write the encoded input to
+     * @param encoder the encoder to use
+     * @return the number of chars read and written
+     * @throws IOException from the reader or the writer
+     * @throws NullPointerException if any argument is null
+     */
+    public static TransferResult transfer(Reader in, Writer out, Encoder encoder) throws IOException {
+        return ReaderTransfer.transfer(in, out, encoder);
+    }
+
     /**
      * No instances.
      */
@@ -0,0 +1,134 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+/**
+ * EncodingTable -- the encoded form of each character in the range 0 to
+ * 255 for one encoder's context.  Encoders that replace the same
+ * character the same way wherever it appears look up characters in this
+ * range instead of testing them one case at a time, and append the
+ * precomputed replacement.  An entry is {@code null} when the character
+ * is copied to the output unchanged.
+ */
+final class EncodingTable {
+    /**
+     * The number of characters in the table.
+     */
+    static final int SIZE = Encoder.LATIN1_TABLE_SIZE;
+
+    /**
+     * The replacement of each character, or {@code null}.
+     */
+    private final char[][] _replacements = new char[SIZE][];
+
+    /**
+     * Sets the replacement of a character.
+     *
+     * @param ch the character to replace
+     * @param replacement its replacement
+     * @return {@code this}
+     */
+    EncodingTable replace(int ch, String replacement) {
+        _replacements[ch] = replacement.toCharArray();
+        return this;
+    }
+
+    /**
+     * Sets the replacement of each character in a range to the same
+     * value.
+     *
+     * @param min the minimum (inclusive).
+     * @param max the maximum (inclusive).
+     * @param replacement the replacement of each character
+     * @return {@code this}
+     */
+    EncodingTable replace(int min, int max, String replacement) {
+        final char[] chars = replacement.toCharArray();
+        for (int ch = min; ch <= max; ++ch) {
+            _replacements[ch] = chars;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the replacements, indexed by character.  Encoders keep the
+     * array itself in a field, and must not modify it.
+     *
+     * @return the replacements.
+     */
+    char[][] replacements() {
+        return _replacements;
+    }
+
+    /**
+     * Returns the replacements as Latin-1 bytes, as returned by {@link
+     * Encoder#latin1Table()}.
+     *
+     * @return the replacements as Latin-1 bytes.
+     */
+    byte[][] latin1Table() {
+        final byte[][] table = new byte[SIZE][];
+        for (int ch = 0; ch < SIZE; ++ch) {
+            final char[] replacement = _replacements[ch];
+            if (replacement != null) {
+                final byte[] bytes = new byte[replacement.length];
+                for (int k = 0; k < bytes.length; ++k) {
+                    bytes[k] = (byte) replacement[k];
+                }
+                table[ch] = bytes;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Appends a replacement to the output array.  Caller must insure
+     * there is enough space in the array for the output.
+     *
+     * @param replacement the characters to copy
+     * @param out the output buffer
+     * @param j the offset where to write in the output buffer
+     * @return {@code j + replacement.length}
+     */
+    static int append(char[] replacement, char[] out, int j) {
+        // Replacements are a handful of characters, too few for a call
+        // to arraycopy to pay off.
+        final int n = replacement.length;
+        for (int i = 0; i < n; ++i) {
+            out[j + i] = replacement[i];
+        }
+        return j + n;
+    }
+}
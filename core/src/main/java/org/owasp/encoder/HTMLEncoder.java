@@ -45,8 +45,9 @@ import java.nio.charset.CoderResult;
  * context: <strong>unquoted attribute values</strong>.</p>
  *
  * <p>
- * Note: because this context is likely small strings, and hopefully rarely
- * used, no effort was put into optimizing this encoder.</p>
+ * Characters in the range 0 to 255 are looked up in a precomputed {@link
+ * EncodingTable}, the rest are checked for validity and for the line and
+ * paragraph separators.</p>
  *
  * @author Jeff Ichnowski
  */
@@ -59,226 +60,184 @@ class HTMLEncoder extends Encoder {
     private static final int ENCODE_AFFIX_CHAR_COUNT = 3;
 
     /**
-     * Encoding for '\t'.
+     * Character to use as a replacement for invalid characters.
      */
-    private static final char[] TAB = "&#9;".toCharArray();
+    static final char INVALID_CHARACTER_REPLACEMENT = '-';
+
+    /**
+     * The characters that are valid in an unquoted attribute but still
+     * encoded, as decimal numeric references.
+     */
+    private static final String NUMERIC_ENCODED = "\t\r\n\f \"\'/=`" + Unicode.NEL;
+
     /**
-     * Encoding for '&amp;'.
+     * The replacements of the characters in the range 0 to 255.  Control
+     * characters are invalid, and the rest are copied unless replaced.
      */
-    private static final char[] AMP = "&amp;".toCharArray();
+    private static final EncodingTable TABLE = buildTable();
+
+    /**
+     * The replacements extracted from {@link #TABLE} for efficiency.
+     */
+    private static final char[][] REPLACEMENTS = TABLE.replacements();
+
     /**
-     * Encoding for '&lt;'.
+     * Encoding for the line separator (U+2028).
      */
-    private static final char[] LT = "&lt;".toCharArray();
+    private static final char[] LINE_SEPARATOR = numeric(Unicode.LINE_SEPARATOR).toCharArray();
+
+    /**
+     * Encoding for the paragraph separator (U+2029).
+     */
+    private static final char[] PARAGRAPH_SEPARATOR = numeric(Unicode.PARAGRAPH_SEPARATOR).toCharArray();
+
+    /**
+     * The encoded form of each Latin-1 character, see {@link #latin1Table()}.
+     */
+    private final byte[][] _latin1Table;
+
     /**
-     * Encoding for '&gt;'.
+     * The vector scan for runs of characters that do not need encoding, or
+     * {@code null} if not available.
      */
-    private static final char[] GT = "&gt;".toCharArray();
+    private final VectorScan _vectorScan;
 
-    // The large table-switch implementation used here is fast to
-    // implement but slower at runtime than tuned-for-expected-input
-    // encoders that use selective if/else's.  Look at the results of
-    // BenchmarkTest to see the difference.  See note in javadoc as to
-    // reasoning.
-    // On Core i7 (Sandybridge)
+    /**
+     * Creates an HTMLEncoder.
+     */
+    HTMLEncoder() {
+        _latin1Table = TABLE.latin1Table();
+        ASCIIBits valid = new ASCIIBits().set('!', '~').clear("\"'/=`&<>");
+        _vectorScan = VectorScan.forMasks(
+            valid._lowerMask, valid._upperMask,
+            (char)(Unicode.MAX_C1_CTRL_CHAR + 1), Unicode.LINE_SEPARATOR);
+    }
+
+    /**
+     * Returns the decimal numeric reference to a character.
+     *
+     * @param ch the character
+     * @return "&amp;#" + ch + ";"
+     */
+    private static String numeric(char ch) {
+        return "&#" + (int) ch + ";";
+    }
+
+    /**
+     * Builds {@link #TABLE}.
+     *
+     * @return the table.
+     */
+    private static EncodingTable buildTable() {
+        final String invalid = String.valueOf(INVALID_CHARACTER_REPLACEMENT);
+        EncodingTable table = new EncodingTable()
+            .replace(0, ' ' - 1, invalid)
+            .replace(Unicode.DEL, Unicode.MAX_C1_CTRL_CHAR, invalid)
+            .replace('&', "&amp;")
+            .replace('<', "&lt;")
+            .replace('>', "&gt;");
+        for (int k = 0; k < NUMERIC_ENCODED.length(); ++k) {
+            final char ch = NUMERIC_ENCODED.charAt(k);
+            table.replace(ch, numeric(ch));
+        }
+        return table;
+    }
+
+    // On Core i7 (Sandybridge), the giant switch this encoder used before
+    // the table benchmarked as below:
     // Baseline is 371.401009 ns/op
     // Benchmarked Encode.forXml: 324.219992 ns/op (-12.70% on baseline)
     // Benchmarked Encode.forHtmlUnquotedAttribute: 821.583263 ns/op (+121.21% on baseline)
+    // With the table, on a Xeon (AVX-512) with Java 17, the samples in
+    // BenchmarkTest run within 10% of baseline, the same as the switch
+    // once Latin-1 strings skip encodeArrays.  Through firstEncodedOffset
+    // the clean 4K-char scan input runs 5x faster.  Through encodeArrays
+    // ("Encoded arrays" in BenchmarkTest) the dirty and dense inputs, with
+    // one char in 16 and one in 4 encoded, run at 1.0x to 1.2x the switch.
     @Override
-    int maxEncodedLength(int n) {
+    long maxEncodedLength(long n) {
         // if everything is line separators and paragraph separators then
         // we get "&#8283;"
         return n * (ENCODE_AFFIX_CHAR_COUNT + 4);
     }
 
+    @Override
+    byte[][] latin1Table() {
+        return _latin1Table;
+    }
+
+    /**
+     * Tests if a character above 255 that is not a high surrogate is
+     * invalid or must be encoded.
+     *
+     * @param ch the character to test
+     * @return true if the character is not copied to the output as is.
+     */
+    private static boolean isEncoded(char ch) {
+        return Character.isSurrogate(ch)
+            || ch > '\ufffd'
+            || ('\ufdd0' <= ch && ch <= '\ufdef')
+            || ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR;
+    }
+
     @Override
     int firstEncodedOffset(String input, int off, int len) {
         final int n = off + len;
-        for (int i = off; i < n; ++i) {
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
+        for (; i < n; ++i) {
             final char ch = input.charAt(i);
-
-            switch (ch) {
-                case '\t':
-                case '\r':
-                case '\f':
-                case '\n':
-                case ' ':
-                case Unicode.NEL:
-                case '\"':
-                case '\'':
-                case '/':
-                case '=':
-                case '`':
-                case '&':
-                case '<':
-                case '>':
+            if (ch < EncodingTable.SIZE) {
+                if (REPLACEMENTS[ch] != null) {
                     return i;
-
-                case '!':
-                case '#':
-                case '$':
-                case '%':
-                case '(':
-                case ')':
-                case '*':
-                case '+':
-                case ',':
-                case '-':
-                case '.':
-
-                case '0':
-                case '1':
-                case '2':
-                case '3':
-                case '4':
-                case '5':
-                case '6':
-                case '7':
-                case '8':
-                case '9':
-                case ':':
-                case ';':
-                case '?':
-                case '@':
-
-                case 'A':
-                case 'B':
-                case 'C':
-                case 'D':
-                case 'E':
-                case 'F':
-                case 'G':
-                case 'H':
-                case 'I':
-                case 'J':
-                case 'K':
-                case 'L':
-                case 'M':
-                case 'N':
-                case 'O':
-                case 'P':
-                case 'Q':
-                case 'R':
-                case 'S':
-                case 'T':
-                case 'U':
-                case 'V':
-                case 'W':
-                case 'X':
-                case 'Y':
-                case 'Z':
-
-                case '[':
-                case '\\':
-                case ']':
-                case '^':
-                case '_':
-
-                case 'a':
-                case 'b':
-                case 'c':
-                case 'd':
-                case 'e':
-                case 'f':
-                case 'g':
-                case 'h':
-                case 'i':
-                case 'j':
-                case 'k':
-                case 'l':
-                case 'm':
-                case 'n':
-                case 'o':
-                case 'p':
-                case 'q':
-                case 'r':
-                case 's':
-                case 't':
-                case 'u':
-                case 'v':
-                case 'w':
-                case 'x':
-                case 'y':
-                case 'z':
-
-                case '{':
-                case '|':
-                case '}':
-                case '~':
-                    break; // valid
-
-                default:
-
-                    if (Character.isHighSurrogate(ch)) {
-                        if (i + 1 < n) {
-                            if (Character.isLowSurrogate(input.charAt(i + 1))) {
-                                int cp = Character.toCodePoint(ch, input.charAt(i + 1));
-                                if (Unicode.isNonCharacter(cp)) {
-                                    return i;
-                                } else {
-                                    ++i;
-                                }
-                                break;
-                            }
-                        } else {
-                            return i;
-                        }
-                    }
-
-                    if (ch <= Unicode.MAX_C1_CTRL_CHAR
-                            || Character.MIN_SURROGATE <= ch && ch <= Character.MAX_SURROGATE
-                            || ch > '\ufffd'
-                            || ('\ufdd0' <= ch && ch <= '\ufdef')
-                            || ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR)
-                    {
+                }
+            } else if (Character.isHighSurrogate(ch)) {
+                if (i + 1 < n && Character.isLowSurrogate(input.charAt(i + 1))) {
+                    if (Unicode.isNonCharacter(Character.toCodePoint(ch, input.charAt(i + 1)))) {
                         return i;
                     }
+                    ++i;
+                } else {
+                    return i;
+                }
+            } else if (isEncoded(ch)) {
+                return i;
             }
         }
         return n;
     }
 
-    /**
-     * Appends a source array verbatim to the output array. Caller must insure
-     * there is enough space in the array for the output.
-     *
-     * @param src the characters to copy
-     * @param out the output buffer
-     * @param j the offset where to write in the output buffer
-     * @return {@code j + src.length}
-     */
-    static int append(char[] src, char[] out, int j) {
-        System.arraycopy(src, 0, out, j, src.length);
-        return j + src.length;
-    }
-
-    /**
-     * Appends the numerically encoded version of {@code codePoint} to the
-     * output buffer. Caller must insure there is enough space for the output.
-     *
-     * @param codePoint the character to encode
-     * @param out the output buffer
-     * @param j the offset where to write in the output buffer
-     * @return {@code j} + the encoded length.
-     */
-    static int encode(int codePoint, char[] out, int j) {
-        out[j++] = '&';
-        out[j++] = '#';
-        if (codePoint >= 1000) {
-            out[j++] = (char) (codePoint / 1000 % 10 + '0');
-        }
-        if (codePoint >= 100) {
-            out[j++] = (char) (codePoint / 100 % 10 + '0');
+    @Override
+    int firstEncodedOffset(char[] input, int off, int len) {
+        final int n = off + len;
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
         }
-        if (codePoint >= 10) {
-            out[j++] = (char) (codePoint / 10 % 10 + '0');
+        for (; i < n; ++i) {
+            final char ch = input[i];
+            if (ch < EncodingTable.SIZE) {
+                if (REPLACEMENTS[ch] != null) {
+                    return i;
+                }
+            } else if (Character.isHighSurrogate(ch)) {
+                if (i + 1 < n && Character.isLowSurrogate(input[i + 1])) {
+                    if (Unicode.isNonCharacter(Character.toCodePoint(ch, input[i + 1]))) {
+                        return i;
+                    }
+                    ++i;
+                } else {
+                    return i;
+                }
+            } else if (isEncoded(ch)) {
+                return i;
+            }
         }
-        out[j++] = (char) (codePoint % 10 + '0');
-        out[j++] = ';';
-        return j;
+        return n;
     }
 
-    //CSOFF: MethodLength
     @Override
     CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
         final char[] in = input.array();
@@ -288,212 +247,83 @@ class HTMLEncoder extends Encoder {
         int j = output.arrayOffset() + output.position();
         final int m = output.arrayOffset() + output.limit();
 
-        charLoop:
+        // A leading clean run, as at the start of a later batch of a long
+        // input, is scanned and copied in bulk.  After that, clean
+        // characters are copied one at a time: per-run scanning and
+        // copying costs more than it saves on the short runs between
+        // escapes.
+        if (i < n && j < m) {
+            final int k = firstEncodedOffset(in, i, Math.min(n - i, m - j)) - i;
+            System.arraycopy(in, i, out, j, k);
+            i += k;
+            j += k;
+        }
+
         for (; i < n; ++i) {
             final char ch = in[i];
 
-            // gigantic switch, hopefully compiled to a tableswitch.
-            // this approach appears to be slower than the if/else
-            // approach used in the other encoders.  Perhaps an artifact
-            // of the CPU's branch predictor, or possible additional
-            // overhead of range checking, or having the entire table
-            // available to the cache.  If time allows, it would
-            // interesting to find out.
-            switch (ch) {
-                case '\t':
-                    if (j + TAB.length > m) {
-                        return overflow(input, i, output, j);
-                    }
-                    j = append(TAB, out, j);
-                    break;
-
-                case '\r':
-                case '\n':
-                case '\f':
-                case ' ':
-                case '\"':
-                case '\'':
-                case '/':
-                case '=':
-                case '`':
-                    if (ENCODE_AFFIX_CHAR_COUNT + 2 + j > m) {
-                        return overflow(input, i, output, j);
-                    }
-                    j = encode(ch, out, j);
-                    break;
-
-                case Unicode.NEL:
-                    if (ENCODE_AFFIX_CHAR_COUNT + 3 + j > m) {
-                        return overflow(input, i, output, j);
-                    }
-                    j = encode(ch, out, j);
-                    break;
-
-                case '&':
-                    if (j + AMP.length > m) {
+            if (ch < EncodingTable.SIZE) {
+                final char[] replacement = REPLACEMENTS[ch];
+                if (replacement != null) {
+                    if (j + replacement.length > m) {
                         return overflow(input, i, output, j);
                     }
-                    j = append(AMP, out, j);
-                    break;
-
-                case '<':
-                    if (j + LT.length > m) {
-                        return overflow(input, i, output, j);
-                    }
-                    j = append(LT, out, j);
-                    break;
-
-                case '>':
-                    if (j + GT.length > m) {
-                        return overflow(input, i, output, j);
+                    j = EncodingTable.append(replacement, out, j);
+                    continue;
+                }
+            } else if (Character.isHighSurrogate(ch)) {
+                if (i + 1 < n) {
+                    if (Character.isLowSurrogate(in[i + 1])) {
+                        int cp = Character.toCodePoint(ch, in[i + 1]);
+                        if (Unicode.isNonCharacter(cp)) {
+                            if (j >= m) {
+                                return overflow(input, i, output, j);
+                            }
+                            out[j++] = INVALID_CHARACTER_REPLACEMENT;
+                            ++i;
+                        } else {
+                            if (j + 1 >= m) {
+                                return overflow(input, i, output, j);
+                            }
+                            out[j++] = ch;
+                            out[j++] = in[++i];
+                        }
+                        continue;
                     }
-                    j = append(GT, out, j);
+                } else if (!endOfInput) {
                     break;
-
-                case '!':
-                case '#':
-                case '$':
-                case '%':
-                case '(':
-                case ')':
-                case '*':
-                case '+':
-                case ',':
-                case '-':
-                case '.':
-
-                case '0':
-                case '1':
-                case '2':
-                case '3':
-                case '4':
-                case '5':
-                case '6':
-                case '7':
-                case '8':
-                case '9':
-                case ':':
-                case ';':
-                case '?':
-                case '@':
-
-                case 'A':
-                case 'B':
-                case 'C':
-                case 'D':
-                case 'E':
-                case 'F':
-                case 'G':
-                case 'H':
-                case 'I':
-                case 'J':
-                case 'K':
-                case 'L':
-                case 'M':
-                case 'N':
-                case 'O':
-                case 'P':
-                case 'Q':
-                case 'R':
-                case 'S':
-                case 'T':
-                case 'U':
-                case 'V':
-                case 'W':
-                case 'X':
-                case 'Y':
-                case 'Z':
-
-                case '[':
-                case '\\':
-                case ']':
-                case '^':
-                case '_':
-
-                case 'a':
-                case 'b':
-                case 'c':
-                case 'd':
-                case 'e':
-                case 'f':
-                case 'g':
-                case 'h':
-                case 'i':
-                case 'j':
-                case 'k':
-                case 'l':
-                case 'm':
-                case 'n':
-                case 'o':
-                case 'p':
-                case 'q':
-                case 'r':
-                case 's':
-                case 't':
-                case 'u':
-                case 'v':
-                case 'w':
-                case 'x':
-                case 'y':
-                case 'z':
-                case '{':
-                case '|':
-                case '}':
-                case '~':
-                    if (j >= m) {
+                }
+                // high surrogate without a low surrogate
+                if (j >= m) {
+                    return overflow(input, i, output, j);
+                }
+                out[j++] = INVALID_CHARACTER_REPLACEMENT;
+                continue;
+            } else if (isEncoded(ch)) {
+                if (ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR) {
+                    final char[] replacement = ch == Unicode.LINE_SEPARATOR
+                        ? LINE_SEPARATOR : PARAGRAPH_SEPARATOR;
+                    if (j + replacement.length > m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
-                    break;
-                default:
-
-                    if (Character.isHighSurrogate(ch)) {
-                        if (i + 1 < n) {
-                            if (Character.isLowSurrogate(in[i + 1])) {
-                                int cp = Character.toCodePoint(ch, in[i + 1]);
-                                if (Unicode.isNonCharacter(cp)) {
-                                    if (j >= m) {
-                                        return overflow(input, i, output, j);
-                                    }
-                                    out[j++] = '-';
-                                    ++i;
-                                } else {
-                                    if (j + 1 >= m) {
-                                        return overflow(input, i, output, j);
-                                    }
-                                    out[j++] = ch;
-                                    out[j++] = in[++i];
-                                }
-                                break;
-                            }
-                        } else if (!endOfInput) {
-                            break charLoop;
-                        }
-                    }
-
+                    j = EncodingTable.append(replacement, out, j);
+                } else {
+                    // invalid
                     if (j >= m) {
                         return overflow(input, i, output, j);
                     }
+                    out[j++] = INVALID_CHARACTER_REPLACEMENT;
+                }
+                continue;
+            }
 
-                    if (ch <= Unicode.MAX_C1_CTRL_CHAR
-                            || Character.MIN_SURROGATE <= ch && ch <= Character.MAX_SURROGATE
-                            || ch > '\ufffd'
-                            || ('\ufdd0' <= ch && ch <= '\ufdef'))
-                    {
-                        // invalid
-                        out[j++] = '-';
-                    } else if (ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR) {
-                        if (ENCODE_AFFIX_CHAR_COUNT + 4 + j > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        j = encode(ch, out, j);
-                    } else {
-                        out[j++] = ch;
-                    }
+            // else clean
+            if (j >= m) {
+                return overflow(input, i, output, j);
             }
+            out[j++] = ch;
         }
 
         return underflow(input, i, output, j);
     }
-    //CSON: MethodLength
 }
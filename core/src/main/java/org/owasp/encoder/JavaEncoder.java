@@ -67,7 +67,7 @@ class JavaEncoder extends Encoder {
     static final int OCT_MASK = 7;
 
     @Override
-    protected int maxEncodedLength(int n) {
+    protected long maxEncodedLength(long n) {
         // "\\u####"
         return n * U_ESCAPE_LENGTH;
     }
@@ -88,6 +88,22 @@ class JavaEncoder extends Encoder {
         return n;
     }
 
+    @Override
+    protected int firstEncodedOffset(char[] input, int off, int len) {
+        final int n = off + len;
+        for (int i = off; i < n; ++i) {
+            char ch = input[i];
+            if (ch >= ' ' && ch <= '~') {
+                if (ch == '\\' || ch == '\'' || ch == '\"') {
+                    return i;
+                }
+            } else {
+                return i;
+            }
+        }
+        return n;
+    }
+
     @Override
     protected CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
         final char[] in = input.array();
@@ -111,7 +127,9 @@ class JavaEncoder extends Encoder {
                     if (j >= m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
+                    final int k = copyCleanRun(in, i, n, out, j, m);
+                    i += k - 1;
+                    j += k;
                 }
             } else {
                 switch (ch) {
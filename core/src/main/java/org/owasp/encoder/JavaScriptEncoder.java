@@ -99,6 +99,23 @@ class JavaScriptEncoder extends Encoder {
      */
     private final boolean _asciiOnly;
 
+    /**
+     * The replacements of the characters in the range 0 to 255, built from
+     * the mode and masks.
+     */
+    private final char[][] _replacements;
+
+    /**
+     * The encoded form of each Latin-1 character, see {@link #latin1Table()}.
+     */
+    private final byte[][] _latin1Table;
+
+    /**
+     * The vector scan for runs of valid characters, or {@code null} if
+     * not available.
+     */
+    private final VectorScan _vectorScan;
+
     /**
      * Constructs a new JavaScriptEncoder for the specified contextual mode.
      *
@@ -143,21 +160,118 @@ class JavaScriptEncoder extends Encoder {
 
         _asciiOnly = asciiOnly;
         _hexEncodeQuotes = (mode == Mode.ATTRIBUTE || mode == Mode.HTML);
+        EncodingTable table = buildTable();
+        _replacements = table.replacements();
+        _latin1Table = table.latin1Table();
+        _vectorScan = VectorScan.forMasks(
+            (_validMasks[0] & 0xffffffffL) | ((long)_validMasks[1] << 32),
+            (_validMasks[2] & 0xffffffffL) | ((long)_validMasks[3] << 32),
+            (char)128, asciiOnly ? (char)128 : Unicode.LINE_SEPARATOR);
+    }
+
+    /**
+     * Builds the replacements of the characters in the range 0 to 255 from
+     * the valid masks and mode.  Must be called after they are set.
+     *
+     * @return the replacements.
+     */
+    private EncodingTable buildTable() {
+        final EncodingTable table = new EncodingTable();
+        for (int ch = 0; ch < EncodingTable.SIZE; ++ch) {
+            if (ch < 128 ? (_validMasks[ch >>> 5] & (1 << ch)) != 0 : !_asciiOnly) {
+                continue;
+            }
+            switch (ch) {
+                case '\b':
+                    table.replace(ch, "\\b");
+                    break;
+                case '\t':
+                    table.replace(ch, "\\t");
+                    break;
+                case '\n':
+                    table.replace(ch, "\\n");
+                    break;
+                // Per Mike Samuel "\v should not be used since some
+                // versions of IE treat it as a literal letter 'v'"
+                case '\f':
+                    table.replace(ch, "\\f");
+                    break;
+                case '\r':
+                    table.replace(ch, "\\r");
+                    break;
+                case '\'':
+                case '\"':
+                    table.replace(ch, _hexEncodeQuotes ? hexEscape(ch) : "\\" + (char) ch);
+                    break;
+                case '\\':
+                case '/':
+                case '-':
+                    // We'll only see '/' and '-' here in the BLOCK and HTML
+                    // modes otherwise it will be accepted as valid by the
+                    // bitmasks.
+                    table.replace(ch, "\\" + (char) ch);
+                    break;
+                default:
+                    table.replace(ch, hexEscape(ch));
+                    break;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the two digit hex escape of a character, e.g. "\\x1f".
+     *
+     * @param ch the character, in the range 0 to 255
+     * @return the escape.
+     */
+    private static String hexEscape(int ch) {
+        return new String(new char[] {'\\', 'x', HEX[ch >>> HEX_SHIFT], HEX[ch & HEX_MASK]});
     }
 
     @Override
-    int maxEncodedLength(int n) {
+    long maxEncodedLength(long n) {
         return n * 6;
     }
 
+    @Override
+    byte[][] latin1Table() {
+        return _latin1Table;
+    }
+
     @Override
     int firstEncodedOffset(String input, int off, int len) {
         final int n = off + len;
-        final int[] validMasks = this._validMasks;
-        for (int i = off; i < n; ++i) {
-            char ch = input.charAt(i);
-            if (ch < 128) {
-                if ((validMasks[ch >>> 5] & (1 << ch)) == 0) {
+        final char[][] replacements = _replacements;
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
+        for (; i < n; ++i) {
+            final char ch = input.charAt(i);
+            if (ch < EncodingTable.SIZE) {
+                if (replacements[ch] != null) {
+                    return i;
+                }
+            } else if (_asciiOnly || ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    int firstEncodedOffset(char[] input, int off, int len) {
+        final int n = off + len;
+        final char[][] replacements = _replacements;
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
+        for (; i < n; ++i) {
+            final char ch = input[i];
+            if (ch < EncodingTable.SIZE) {
+                if (replacements[ch] != null) {
                     return i;
                 }
             } else if (_asciiOnly || ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR) {
@@ -176,116 +290,39 @@ class JavaScriptEncoder extends Encoder {
         int j = output.arrayOffset() + output.position();
         final int m = output.arrayOffset() + output.limit();
 
-        final int[] validMasks = this._validMasks;
+        final char[][] replacements = _replacements;
 
         for (; i < n; ++i) {
             char ch = in[i];
 
-            hexEncoded:
-            {
-                encoded:
-                {
-                    if (ch < 128) {
-                        if ((validMasks[ch >>> 5] & (1 << ch)) == 0) {
-                            break encoded;
-                        }
-                    } else if (_asciiOnly || ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR) {
-                        if (ch <= 0xff) {
-                            break hexEncoded;
-                        }
-                        if (j + 6 > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = '\\';
-                        out[j++] = 'u';
-                        out[j++] = HEX[ch >>> 3 * HEX_SHIFT];
-                        out[j++] = HEX[ch >>> 2 * HEX_SHIFT & HEX_MASK];
-                        out[j++] = HEX[ch >>> HEX_SHIFT & HEX_MASK];
-                        out[j++] = HEX[ch & HEX_MASK];
-                        continue;
-                    }
-                    if (j >= m) {
+            if (ch < EncodingTable.SIZE) {
+                final char[] replacement = replacements[ch];
+                if (replacement != null) {
+                    if (j + replacement.length > m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
+                    j = EncodingTable.append(replacement, out, j);
                     continue;
                 }
-
-                switch (ch) {
-                    case '\b':
-                        if (j + 2 > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = '\\';
-                        out[j++] = 'b';
-                        continue;
-                    case '\t':
-                        if (j + 2 > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = '\\';
-                        out[j++] = 't';
-                        continue;
-                    case '\n':
-                        if (j + 2 > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = '\\';
-                        out[j++] = 'n';
-                        continue;
-                    // Per Mike Samuel "\v should not be used since some
-                    // versions of IE treat it as a literal letter 'v'"
-//                case 0x0b: // '\v'
-//                    if (j+1 >= m) {
-//                        return overflow(input, i, output, j);
-//                    }
-//                    out[j++] = '\\';
-//                    out[j++] = 'v';
-//                    break;
-                    case '\f':
-                        if (j + 2 > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = '\\';
-                        out[j++] = 'f';
-                        continue;
-                    case '\r':
-                        if (j + 2 > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = '\\';
-                        out[j++] = 'r';
-                        continue;
-                    case '\'':
-                    case '\"':
-                        if (_hexEncodeQuotes) {
-                            break hexEncoded;
-                        }
-                    // fall through
-                    case '\\':
-                    case '/':
-                    case '-':
-                        // We'll only see '/' and '-' here in the BLOCK and HTML
-                        // modes otherwise it will be accepted as valid by the
-                        // bitmasks.
-                        if (j + 2 > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = '\\';
-                        out[j++] = ch;
-                        continue;
-                    default:
-                        break;
+            } else if (_asciiOnly || ch == Unicode.LINE_SEPARATOR || ch == Unicode.PARAGRAPH_SEPARATOR) {
+                if (j + 6 > m) {
+                    return overflow(input, i, output, j);
                 }
+                out[j++] = '\\';
+                out[j++] = 'u';
+                out[j++] = HEX[ch >>> 3 * HEX_SHIFT];
+                out[j++] = HEX[ch >>> 2 * HEX_SHIFT & HEX_MASK];
+                out[j++] = HEX[ch >>> HEX_SHIFT & HEX_MASK];
+                out[j++] = HEX[ch & HEX_MASK];
+                continue;
             }
 
-            if (j + 4 > m) {
+            if (j >= m) {
                 return overflow(input, i, output, j);
             }
-            out[j++] = '\\';
-            out[j++] = 'x';
-            out[j++] = HEX[ch >>> HEX_SHIFT];
-            out[j++] = HEX[ch & HEX_MASK];
+            final int k = copyCleanRun(in, i, n, out, j, m);
+            i += k - 1;
+            j += k;
         }
 
         return underflow(input, i, output, j);
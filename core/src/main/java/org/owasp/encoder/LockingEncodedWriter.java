@@ -0,0 +1,150 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LockingEncodedWriter -- an {@link EncodedWriter} that may be shared
+ * between threads, and guards its state with a {@link ReentrantLock}
+ * instead of a {@code synchronized} block.  A virtual thread waiting
+ * on the lock, or blocked in the wrapped writer while holding it, is
+ * unmounted from its carrier rather than pinning it.
+ *
+ * <p>All the methods of {@code Writer} that {@code EncodedWriter}
+ * synchronizes are overridden to use the lock instead.</p>
+ * @see Encoders#lockingWriter(Writer, Encoder)
+ */
+final class LockingEncodedWriter extends EncodedWriter {
+
+    /**
+     * Guards all writes, flushes and the close.
+     */
+    private final ReentrantLock _lock;
+
+    /**
+     * Creates a writer guarded by a new lock.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     */
+    LockingEncodedWriter(Writer out, Encoder encoder) {
+        this(out, encoder, new ReentrantLock());
+    }
+
+    /**
+     * Creates a writer guarded by the specified lock.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     * @param lock the lock guarding the writer's state.
+     */
+    private LockingEncodedWriter(Writer out, Encoder encoder, ReentrantLock lock) {
+        super(out, encoder, lock);
+        _lock = lock;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        _lock.lock();
+        try {
+            implWrite(c);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        _lock.lock();
+        try {
+            implWrite(cbuf, off, len);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        _lock.lock();
+        try {
+            implWrite(str, off, len);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        _lock.lock();
+        try {
+            implAppend(csq, start, end);
+        } finally {
+            _lock.unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public void reset(Writer out, Encoder encoder) throws IOException {
+        _lock.lock();
+        try {
+            implReset(out, encoder);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _lock.lock();
+        try {
+            implFlush();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _lock.lock();
+        try {
+            implClose();
+        } finally {
+            _lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,460 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.encoder;
+
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * NestedEncoder -- an encoder for one context nested in another, such
+ * as JavaScript in an HTML attribute.  The output is the same as that
+ * of a {@link ChainedEncoder} of the two encoders, but the characters
+ * in the range 0 to 255 are encoded in a single pass: when the encoder
+ * is created, each one is run through the chain and the result kept in
+ * a table.  A character whose encoding depends on the character after
+ * it, such as one with a hexadecimal escape in CSS, has a row of its
+ * encodings by the character that follows, built the first time it is
+ * encoded.  The rest, characters above 255 that are not copied as they
+ * are, go through the chain.  The tables are built on first use, so
+ * that loading {@link Encoders} does not pay for nested contexts that
+ * are never used.
+ */
+class NestedEncoder extends Encoder {
+
+    /**
+     * The table entry of a character whose encoding depends on what
+     * follows it.  Compared by identity.
+     */
+    private static final char[] LOOKAHEAD = new char[0];
+
+    /** The number of ASCII characters. */
+    private static final int ASCII_SIZE = 0x80;
+
+    /** Mask of the bits of an unsigned byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /**
+     * The row of a character whose encoding depends on more than the
+     * character that follows it, which is left to the chain.
+     */
+    private static final Row UNTABULATED = new Row(null, null, null);
+
+    /**
+     * The encodings of a character by the character that follows it.
+     * The fields are final, so a row is safe to share once built, even
+     * when published through a plain array.
+     */
+    private static final class Row {
+        /** The distinct encodings of the character. */
+        final char[][] _encodings;
+        /** The index in {@link #_encodings} for each following character. */
+        final byte[] _byFollower;
+        /** The encoding of the character at the end of input. */
+        final char[] _atEnd;
+
+        /**
+         * Creates a row.
+         *
+         * @param encodings the distinct encodings
+         * @param byFollower the index of the encoding for each follower
+         * @param atEnd the encoding at the end of input
+         */
+        Row(char[][] encodings, byte[] byFollower, char[] atEnd) {
+            _encodings = encodings;
+            _byFollower = byFollower;
+            _atEnd = atEnd;
+        }
+    }
+
+    /**
+     * The encoders applied in turn, used to build the tables and for the
+     * characters not in them.
+     */
+    private final ChainedEncoder _chain;
+
+    /**
+     * The tables, built on first use.  The fields of {@link Tables} are
+     * final, so tables published by a racing thread are complete.
+     */
+    private Tables _tables;
+
+    /**
+     * The tables of the encoder, built from the chain.
+     */
+    private static final class Tables {
+        /**
+         * The replacement of each character in the range 0 to 255,
+         * {@code null} when it is copied, or {@link NestedEncoder#LOOKAHEAD}.
+         */
+        final char[][] _replacements;
+
+        /**
+         * The row of each {@link NestedEncoder#LOOKAHEAD} character once built.
+         * Threads racing to build a row build equal ones.
+         */
+        final Row[] _rows = new Row[EncodingTable.SIZE];
+
+        /**
+         * The encoded form of each Latin-1 character, see {@link
+         * Encoder#latin1Table()}, or {@code null} if some character
+         * depends on what follows or has a replacement outside of
+         * Latin-1.
+         */
+        final byte[][] _latin1Table;
+
+        /**
+         * The vector scan for runs of ASCII characters that are copied,
+         * or {@code null} if not available.
+         */
+        final VectorScan _vectorScan;
+
+        /**
+         * Builds the tables.
+         *
+         * @param chain the chain to flatten
+         */
+        Tables(ChainedEncoder chain) {
+            _replacements = buildTable(chain);
+            _latin1Table = buildLatin1Table(_replacements);
+
+            final ASCIIBits clean = new ASCIIBits();
+            for (int ch = 0; ch < ASCII_SIZE; ++ch) {
+                if (_replacements[ch] == null) {
+                    clean.set(ch, ch);
+                }
+            }
+            _vectorScan = VectorScan.forMasks(
+                clean._lowerMask, clean._upperMask, (char) ASCII_SIZE, (char) ASCII_SIZE);
+        }
+    }
+
+    /**
+     * Creates an encoder applying {@code inner} and then {@code outer}.
+     *
+     * @param inner the encoder for the nested context, applied first
+     * @param outer the encoder for the enclosing context, applied last
+     */
+    NestedEncoder(Encoder inner, Encoder outer) {
+        _chain = new ChainedEncoder(inner, outer);
+    }
+
+    /**
+     * Returns the tables, building them on first use.
+     *
+     * @return the tables.
+     */
+    private Tables tables() {
+        Tables tables = _tables;
+        if (tables == null) {
+            _tables = tables = new Tables(_chain);
+        }
+        return tables;
+    }
+
+    /**
+     * Builds {@link Tables#_replacements} by running the chain on each
+     * character alone, as input that is not yet at its end.  An encoder
+     * only consumes a character once it knows its encoding, so one the
+     * chain leaves in the input depends on what follows.
+     *
+     * @param chain the chain to flatten
+     * @return the table.
+     */
+    private static char[][] buildTable(ChainedEncoder chain) {
+        final char[][] table = new char[EncodingTable.SIZE][];
+        final CharBuffer window = chain.newWindow();
+        final CharBuffer input = CharBuffer.allocate(1);
+        final CharBuffer output = CharBuffer.allocate((int) chain.maxEncodedLength(1));
+
+        for (int ch = 0; ch < EncodingTable.SIZE; ++ch) {
+            input.clear();
+            input.put((char) ch).flip();
+            output.clear();
+            final CoderResult cr = chain.encodeArrays(input, output, false, window);
+            assert cr.isUnderflow() : "maxEncodedLength was incorrect";
+            output.flip();
+
+            if (input.hasRemaining()) {
+                table[ch] = LOOKAHEAD;
+            } else if (output.remaining() != 1 || output.get(0) != ch) {
+                final char[] replacement = new char[output.remaining()];
+                output.get(replacement);
+                table[ch] = replacement;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Builds {@link Tables#_latin1Table} from the replacements.
+     *
+     * @param replacements the replacements
+     * @return the table, or {@code null}.
+     */
+    private static byte[][] buildLatin1Table(char[][] replacements) {
+        final byte[][] table = new byte[EncodingTable.SIZE][];
+        for (int ch = 0; ch < EncodingTable.SIZE; ++ch) {
+            final char[] replacement = replacements[ch];
+            if (replacement == LOOKAHEAD) {
+                return null;
+            }
+            if (replacement != null) {
+                final byte[] bytes = new byte[replacement.length];
+                for (int k = 0; k < bytes.length; ++k) {
+                    if (replacement[k] >= LATIN1_TABLE_SIZE) {
+                        return null;
+                    }
+                    bytes[k] = (byte) replacement[k];
+                }
+                table[ch] = bytes;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Builds the row of a {@link #LOOKAHEAD} character, by running the
+     * chain on it followed by each character in the range 0 to 255.
+     *
+     * @param ch the character
+     * @param replacements the replacements of the characters
+     * @return the row, or {@link #UNTABULATED}.
+     */
+    private Row buildRow(char ch, char[][] replacements) {
+        final CharBuffer window = _chain.newWindow();
+        final CharBuffer input = CharBuffer.allocate(2);
+        final CharBuffer output = CharBuffer.allocate((int) _chain.maxEncodedLength(2));
+        final List<char[]> encodings = new ArrayList<char[]>();
+        final byte[] byFollower = new byte[EncodingTable.SIZE];
+
+        for (int next = 0; next < EncodingTable.SIZE; ++next) {
+            input.clear();
+            input.put(ch).put((char) next).flip();
+            output.clear();
+            _chain.encodeArrays(input, output, false, window);
+            if (input.position() == 0) {
+                return UNTABULATED;
+            }
+
+            // take off the encoding of the follower, if consumed too
+            int length = output.position();
+            if (input.position() == 2) {
+                final char[] replacement = replacements[next];
+                length -= replacement == null ? 1 : replacement.length;
+            }
+            final char[] encoding = Arrays.copyOf(output.array(), length);
+
+            int index = 0;
+            while (index < encodings.size() && !Arrays.equals(encodings.get(index), encoding)) {
+                ++index;
+            }
+            if (index == encodings.size()) {
+                encodings.add(encoding);
+            }
+            byFollower[next] = (byte) index;
+        }
+
+        input.clear();
+        input.put(ch).flip();
+        output.clear();
+        _chain.encodeArrays(input, output, true, window);
+        final char[] atEnd = Arrays.copyOf(output.array(), output.position());
+
+        return new Row(encodings.toArray(new char[encodings.size()][]), byFollower, atEnd);
+    }
+
+    /**
+     * Returns the encoding of a {@link #LOOKAHEAD} character.
+     *
+     * @param tables the tables
+     * @param ch the character
+     * @param next the character after it, or -1 at the end of input
+     * @return the encoding, or {@code null} to use the chain.
+     */
+    private char[] lookahead(Tables tables, char ch, int next) {
+        Row row = tables._rows[ch];
+        if (row == null) {
+            tables._rows[ch] = row = buildRow(ch, tables._replacements);
+        }
+        if (row == UNTABULATED || next >= EncodingTable.SIZE) {
+            return null;
+        }
+        return next < 0 ? row._atEnd : row._encodings[row._byFollower[next] & BYTE_MASK];
+    }
+
+    @Override
+    long maxEncodedLength(long n) {
+        return _chain.maxEncodedLength(n);
+    }
+
+    @Override
+    int maxLookahead() {
+        return _chain.maxLookahead();
+    }
+
+    @Override
+    byte[][] latin1Table() {
+        return tables()._latin1Table;
+    }
+
+    @Override
+    int firstEncodedOffset(String input, int off, int len) {
+        final Tables tables = tables();
+        final char[][] replacements = tables._replacements;
+        final int n = off + len;
+        int i = off;
+        if (tables._vectorScan != null) {
+            i = tables._vectorScan.firstEncodedOffset(input, i, n);
+        }
+        for (; i < n; ++i) {
+            final char ch = input.charAt(i);
+            if (ch >= EncodingTable.SIZE) {
+                return _chain.firstEncodedOffset(input, i, n - i);
+            }
+            if (replacements[ch] != null) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    int firstEncodedOffset(char[] input, int off, int len) {
+        final Tables tables = tables();
+        final char[][] replacements = tables._replacements;
+        final int n = off + len;
+        int i = off;
+        if (tables._vectorScan != null) {
+            i = tables._vectorScan.firstEncodedOffset(input, i, n);
+        }
+        for (; i < n; ++i) {
+            final char ch = input[i];
+            if (ch >= EncodingTable.SIZE) {
+                return _chain.firstEncodedOffset(input, i, n - i);
+            }
+            if (replacements[ch] != null) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
+        final char[] in = input.array();
+        final char[] out = output.array();
+        final int inOffset = input.arrayOffset();
+        final int outOffset = output.arrayOffset();
+        int i = inOffset + input.position();
+        final int n = inOffset + input.limit();
+        int j = outOffset + output.position();
+        final int m = outOffset + output.limit();
+
+        final Tables tables = tables();
+        final char[][] replacements = tables._replacements;
+        CharBuffer window = null;
+
+        for (; i < n; ++i) {
+            final char ch = in[i];
+            if (ch < EncodingTable.SIZE) {
+                char[] replacement = replacements[ch];
+                if (replacement == null) {
+                    if (j >= m) {
+                        return overflow(input, i, output, j);
+                    }
+                    final int k = copyCleanRun(in, i, n, out, j, m);
+                    i += k - 1;
+                    j += k;
+                    continue;
+                }
+                if (replacement == LOOKAHEAD) {
+                    if (i + 1 == n && !endOfInput) {
+                        break;
+                    }
+                    replacement = lookahead(tables, ch, i + 1 < n ? in[i + 1] : -1);
+                }
+                if (replacement != null) {
+                    if (j + replacement.length > m) {
+                        return overflow(input, i, output, j);
+                    }
+                    j = EncodingTable.append(replacement, out, j);
+                    continue;
+                }
+            } else {
+                final int k = _chain.firstEncodedOffset(in, i, Math.min(n - i, m - j)) - i;
+                if (k > 0) {
+                    System.arraycopy(in, i, out, j, k);
+                    i += k - 1;
+                    j += k;
+                    continue;
+                }
+            }
+
+            // Encode through the chain up to the next character in the
+            // table, with enough after it for the chain to look ahead.
+            int end = i + 1;
+            while (end < n && in[end] >= EncodingTable.SIZE) {
+                ++end;
+            }
+            end = (int) Math.min(n, end + 2L + _chain.maxLookahead());
+            if (window == null) {
+                window = _chain.newWindow();
+            }
+            input.limit(end - inOffset).position(i - inOffset);
+            output.position(j - outOffset);
+            final CoderResult cr = _chain.encodeArrays(input, output, endOfInput && end == n, window);
+            input.limit(n - inOffset);
+            if (cr.isOverflow()) {
+                return cr;
+            }
+            final int next = inOffset + input.position();
+            j = outOffset + output.position();
+            if (next == i) {
+                // the chain waits for input past the end
+                break;
+            }
+            i = next - 1;
+        }
+
+        return underflow(input, i, output, j);
+    }
+
+    @Override
+    public String toString() {
+        return "NestedEncoder" + _chain;
+    }
+}
@@ -0,0 +1,468 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelEncode -- encodes very large inputs on the threads of a
+ * {@link ForkJoinPool}.  The input is split into chunks that are encoded
+ * as separate tasks, and the results are joined in order into one String
+ * or written in order to a Writer.  Inputs of less than a few chunks are
+ * encoded on the calling thread, as by {@link Encode}.  Example usage:
+ *
+ * <pre>
+ *     Encoder encoder = Encoders.forName(Encoders.XML_CONTENT);
+ *     ParallelEncode.encode(encoder, writer, document);
+ * </pre>
+ *
+ * <p>The input is only split after a character that the encoder can
+ * encode without seeing what follows it.  So a chunk never ends inside a
+ * surrogate pair, or inside a sequence whose encoding depends on what
+ * follows, such as the {@code "]]>"} of CDATA or the {@code "--"} of an
+ * XML comment.  Should the encoder still leave characters at the end of a
+ * chunk, the input is split again from the first of them.  The result is
+ * thus the same as encoding the input in one pass.</p>
+ *
+ * <p>Only a few chunks per thread of the pool are encoded ahead of the one
+ * being written, so writing to a Writer uses a bounded amount of memory.
+ * A channel can be written to through
+ * {@link java.nio.channels.Channels#newWriter}.</p>
+ */
+public final class ParallelEncode {
+    /**
+     * The number of characters encoded by each task.
+     */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Inputs of fewer than this many chunks are encoded on the calling
+     * thread.
+     */
+    static final int MIN_CHUNKS = 4;
+
+    /**
+     * The number of characters before the nominal end of a chunk searched
+     * for a point to split the input.
+     */
+    static final int SPLIT_SEARCH_LENGTH = 8 * Encoder.MAX_LOOKAHEAD;
+
+    /**
+     * The number of tasks per thread of the pool forked ahead of the task
+     * being joined.
+     */
+    private static final int TASKS_PER_THREAD = 2;
+
+    /**
+     * The size of the window through which a task copies its input.
+     */
+    private static final int WINDOW_SIZE = 4096;
+
+    /** Private to prevent instantiation. */
+    private ParallelEncode() {}
+
+    /**
+     * Encodes the input on the common pool.
+     *
+     * @param encoder the encoder to use
+     * @param input the input to encode, {@code null} is encoded as
+     * {@code "null"}
+     * @return the encoded input
+     */
+    public static String encode(Encoder encoder, CharSequence input) {
+        return encode(encoder, input, ForkJoinPool.commonPool(), CHUNK_SIZE);
+    }
+
+    /**
+     * Encodes the input on the given pool.
+     *
+     * @param encoder the encoder to use
+     * @param input the input to encode, {@code null} is encoded as
+     * {@code "null"}
+     * @param pool the pool to run the encoding tasks on
+     * @return the encoded input
+     */
+    public static String encode(Encoder encoder, CharSequence input, ForkJoinPool pool) {
+        return encode(encoder, input, pool, CHUNK_SIZE);
+    }
+
+    /**
+     * Encodes the input on the common pool and writes it to a writer.
+     *
+     * @param encoder the encoder to use
+     * @param out the writer to write the encoded input to
+     * @param input the input to encode, {@code null} is encoded as
+     * {@code "null"}
+     * @throws IOException if thrown by the writer
+     */
+    public static void encode(Encoder encoder, Writer out, CharSequence input)
+        throws IOException
+    {
+        encode(encoder, out, input, ForkJoinPool.commonPool(), CHUNK_SIZE);
+    }
+
+    /**
+     * Encodes the input on the given pool and writes it to a writer.
+     *
+     * @param encoder the encoder to use
+     * @param out the writer to write the encoded input to
+     * @param input the input to encode, {@code null} is encoded as
+     * {@code "null"}
+     * @param pool the pool to run the encoding tasks on
+     * @throws IOException if thrown by the writer
+     */
+    public static void encode(Encoder encoder, Writer out, CharSequence input, ForkJoinPool pool)
+        throws IOException
+    {
+        encode(encoder, out, input, pool, CHUNK_SIZE);
+    }
+
+    /**
+     * Encodes one piece of a longer input on the given pool and writes it
+     * to a writer, for inputs too large to hold in memory at once, such as
+     * a file read a region at a time.  Unless {@code endOfInput} is true,
+     * the encoder may stop short of the end of the piece, at characters it
+     * cannot encode without seeing what follows them (see
+     * {@link Encoder#encode(java.nio.CharBuffer, java.nio.CharBuffer, boolean)}).
+     * The caller passes those characters again at the start of the next
+     * piece.
+     *
+     * @param encoder the encoder to use
+     * @param out the writer to write the encoded input to
+     * @param input the piece of the input to encode
+     * @param pool the pool to run the encoding tasks on
+     * @param endOfInput true if no input follows this piece
+     * @return the number of characters of the piece encoded, which is its
+     * length if {@code endOfInput} is true
+     * @throws IOException if thrown by the writer
+     */
+    public static int encode(Encoder encoder, Writer out, CharSequence input, ForkJoinPool pool, boolean endOfInput)
+        throws IOException
+    {
+        if (input == null) {
+            throw new NullPointerException("input must not be null");
+        }
+        return encode(encoder, out, input, pool, CHUNK_SIZE, endOfInput);
+    }
+
+    /**
+     * Implementation of {@link #encode(Encoder, CharSequence, ForkJoinPool)}
+     * with a given chunk size, which tests make small.
+     *
+     * @param encoder the encoder to use
+     * @param input the input to encode
+     * @param pool the pool to run the encoding tasks on
+     * @param chunkSize the number of characters per task
+     * @return the encoded input
+     */
+    static String encode(Encoder encoder, CharSequence input, ForkJoinPool pool, int chunkSize) {
+        if (input == null || input.length() < chunkSize * MIN_CHUNKS) {
+            return Encode.encode(encoder, input);
+        }
+
+        final ChunkedOutput result = new ChunkedOutput();
+        final Tasks tasks = new Tasks(encoder, input, pool, chunkSize, true);
+        try {
+            for (ChunkTask task; (task = tasks.next()) != null; ) {
+                result.addAll(task._output);
+            }
+        } finally {
+            tasks.cancel();
+        }
+        return result.toString("", 0);
+    }
+
+    /**
+     * Implementation of
+     * {@link #encode(Encoder, Writer, CharSequence, ForkJoinPool)} with a
+     * given chunk size, which tests make small.
+     *
+     * @param encoder the encoder to use
+     * @param out the writer to write the encoded input to
+     * @param input the input to encode
+     * @param pool the pool to run the encoding tasks on
+     * @param chunkSize the number of characters per task
+     * @throws IOException if thrown by the writer
+     */
+    static void encode(Encoder encoder, Writer out, CharSequence input, ForkJoinPool pool, int chunkSize)
+        throws IOException
+    {
+        if (input == null) {
+            Encode.encode(encoder, out, null);
+        } else {
+            encode(encoder, out, input, pool, chunkSize, true);
+        }
+    }
+
+    /**
+     * Implementation of
+     * {@link #encode(Encoder, Writer, CharSequence, ForkJoinPool, boolean)}
+     * with a given chunk size, which tests make small.
+     *
+     * @param encoder the encoder to use
+     * @param out the writer to write the encoded input to
+     * @param input the piece of the input to encode
+     * @param pool the pool to run the encoding tasks on
+     * @param chunkSize the number of characters per task
+     * @param endOfInput true if no input follows this piece
+     * @return the number of characters of the piece encoded
+     * @throws IOException if thrown by the writer
+     */
+    static int encode(
+        Encoder encoder, Writer out, CharSequence input, ForkJoinPool pool, int chunkSize, boolean endOfInput)
+        throws IOException
+    {
+        final int n = input.length();
+        if (n < chunkSize * MIN_CHUNKS) {
+            if (endOfInput) {
+                Encode.encode(encoder, out, input);
+                return n;
+            }
+            final ChunkedOutput output = new ChunkedOutput();
+            final int consumed = encodeRange(encoder, input, 0, n, false, output);
+            output.writeTo(out);
+            return consumed;
+        }
+
+        final Tasks tasks = new Tasks(encoder, input, pool, chunkSize, endOfInput);
+        try {
+            int consumed = 0;
+            for (ChunkTask task; (task = tasks.next()) != null; ) {
+                task._output.writeTo(out);
+                consumed = task._consumed;
+            }
+            return consumed;
+        } finally {
+            tasks.cancel();
+        }
+    }
+
+    /**
+     * Returns where to end a chunk nominally ending at {@code end}: after
+     * the nearest character before {@code end} that the encoder consumes
+     * on its own when told more input follows.  Characters the encoder
+     * needs to see past, such as a high surrogate, a {@code "]"} in CDATA,
+     * or a control character in Java, are left to start the next chunk.
+     * If there is no such character close to {@code end}, for example in
+     * a long run of {@code "]"}, {@code end} is returned and
+     * {@link Tasks#next()} splits again where the encoder stopped.
+     *
+     * @param encoder the encoder to use
+     * @param input the input
+     * @param end the nominal end of the chunk
+     * @return the end of the chunk, no more than {@code end}
+     */
+    static int split(Encoder encoder, CharSequence input, int end) {
+        final CharBuffer in = CharBuffer.allocate(1);
+        final CharBuffer out = CharBuffer.allocate((int) encoder.maxEncodedLength(1));
+        for (int p = end; p > end - SPLIT_SEARCH_LENGTH; --p) {
+            in.clear();
+            in.put(input.charAt(p - 1)).flip();
+            out.clear();
+            encoder.encodeArrays(in, out, false);
+            if (!in.hasRemaining()) {
+                return p;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Encodes a range of the input through a small window.
+     *
+     * @param encoder the encoder to use
+     * @param input the input
+     * @param start the offset of the first character to encode
+     * @param end the offset after the last character to encode
+     * @param endOfInput true if {@code end} is the end of the input
+     * @param output the output to add the encoded characters to
+     * @return the offset after the last character consumed by the
+     * encoder, which is {@code end} unless the encoder needs to see the
+     * characters after {@code end} to encode the ones before it.
+     */
+    static int encodeRange(
+        Encoder encoder, CharSequence input, int start, int end, boolean endOfInput, ChunkedOutput output)
+    {
+        final CharBuffer in = CharBuffer.allocate(Math.min(WINDOW_SIZE, end - start));
+        CharBuffer out = CharBuffer.allocate(ChunkedOutput.MIN_CHUNK_SIZE);
+        int i = start;
+        in.limit(0);
+        do {
+            // keep the characters the encoder left, and refill after them
+            in.compact();
+            final int count = Math.min(end - i, in.remaining());
+            Encode.Buffer.getChars(input, i, i + count, in.array(), in.position());
+            i += count;
+            in.position(in.position() + count).flip();
+
+            while (encoder.encodeArrays(in, out, endOfInput && i == end).isOverflow()) {
+                out = output.next(out);
+            }
+        } while (i < end);
+        output.add(out.array(), out.position());
+        return end - in.remaining();
+    }
+
+    /**
+     * The task encoding one chunk of the input.
+     */
+    static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /** The encoder to use. */
+        private final Encoder _encoder;
+        /** The input. */
+        private final CharSequence _input;
+        /** The offset of the first character of the chunk. */
+        private final int _start;
+        /** The offset after the last character of the chunk. */
+        private final int _end;
+        /** True if this is the last chunk. */
+        private final boolean _endOfInput;
+        /** The encoded chunk. */
+        final ChunkedOutput _output = new ChunkedOutput();
+        /** The offset after the last character consumed, see {@link #encodeRange}. */
+        int _consumed;
+
+        /**
+         * Creates a task for a chunk.
+         *
+         * @param encoder the encoder to use
+         * @param input the input
+         * @param start the offset of the first character of the chunk
+         * @param end the offset after the last character of the chunk
+         * @param endOfInput true if this is the last chunk
+         */
+        ChunkTask(Encoder encoder, CharSequence input, int start, int end, boolean endOfInput) {
+            _encoder = encoder;
+            _input = input;
+            _start = start;
+            _end = end;
+            _endOfInput = endOfInput;
+        }
+
+        @Override
+        protected void compute() {
+            _consumed = encodeRange(_encoder, _input, _start, _end, _endOfInput, _output);
+        }
+    }
+
+    /**
+     * Splits the input into chunks and forks their tasks, a bounded number
+     * ahead of the one the caller joins.
+     */
+    static final class Tasks {
+        /** The encoder to use. */
+        private final Encoder _encoder;
+        /** The input. */
+        private final CharSequence _input;
+        /** The pool to run the tasks on. */
+        private final ForkJoinPool _pool;
+        /** The nominal number of characters per chunk. */
+        private final int _chunkSize;
+        /** True if no input follows this one. */
+        private final boolean _endOfInput;
+        /** The most tasks forked and not yet returned by {@link #next()}. */
+        private final int _ahead;
+        /** The forked tasks, in input order. */
+        private final ArrayDeque<ChunkTask> _forked = new ArrayDeque<ChunkTask>();
+        /** The offset of the next chunk. */
+        private int _start;
+
+        /**
+         * Creates the tasks of an input.
+         *
+         * @param encoder the encoder to use
+         * @param input the input
+         * @param pool the pool to run the tasks on
+         * @param chunkSize the nominal number of characters per chunk
+         * @param endOfInput true if no input follows this one
+         */
+        Tasks(Encoder encoder, CharSequence input, ForkJoinPool pool, int chunkSize, boolean endOfInput) {
+            _encoder = encoder;
+            _input = input;
+            _pool = pool;
+            _chunkSize = chunkSize;
+            _endOfInput = endOfInput;
+            _ahead = pool.getParallelism() * TASKS_PER_THREAD;
+        }
+
+        /**
+         * Forks tasks up to the limit, and waits for the first one.  If
+         * that task leaves characters unconsumed, the tasks after it are
+         * cancelled and the input is split again from those characters,
+         * unless the task is the last and more input follows, in which case
+         * they are left for the caller.
+         *
+         * @return the next task in input order, completed, or {@code null}
+         * after the last.
+         */
+        ChunkTask next() {
+            final int n = _input.length();
+            while (_forked.size() < _ahead && _start < n) {
+                // the last chunk takes the remainder, so it is never short
+                final int end = n - _start < 2 * _chunkSize ? n : split(_encoder, _input, _start + _chunkSize);
+                final ChunkTask task = new ChunkTask(_encoder, _input, _start, end, end == n && _endOfInput);
+                _pool.execute(task);
+                _forked.add(task);
+                _start = end;
+            }
+            final ChunkTask task = _forked.poll();
+            if (task != null) {
+                task.join();
+                if (task._consumed != task._end) {
+                    cancel();
+                    _start = task._end == n ? n : task._consumed;
+                }
+            }
+            return task;
+        }
+
+        /**
+         * Cancels the tasks not yet returned, after an error or once the
+         * rest of the input has been encoded otherwise.
+         */
+        void cancel() {
+            for (ChunkTask task; (task = _forked.poll()) != null; ) {
+                task.cancel(false);
+            }
+        }
+    }
+}
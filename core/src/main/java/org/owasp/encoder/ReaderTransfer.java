@@ -0,0 +1,220 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+
+/**
+ * ReaderTransfer -- copies the characters of a Reader to a Writer,
+ * encoding them for a context on the way.  The characters are read into
+ * a pooled buffer and encoded from it into another.  Runs of characters
+ * that need no encoding are written to the Writer straight from the
+ * buffer they were read into, so they are copied only by the Reader and
+ * the Writer themselves.
+ */
+final class ReaderTransfer {
+    /**
+     * Size of each of the buffers, in chars.
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The shortest run of characters that need no encoding that is
+     * written straight from the input buffer.  Shorter runs are copied to
+     * the output buffer by the encoder, to save calls to the Writer.
+     */
+    static final int PASS_THROUGH_MIN = EncodedWriter.PASS_THROUGH_MIN;
+
+    /**
+     * The most characters encoded by one call to the encoder, after which
+     * the input is scanned again for a run to write straight through.
+     */
+    static final int SEGMENT_SIZE = 256;
+
+    /**
+     * The buffers of a transfer.
+     */
+    static final class Buffers {
+        /**
+         * Pool of buffers, to save allocating them on every transfer.
+         */
+        static final StripedPool<Buffers> POOL = new StripedPool<Buffers>() {
+            @Override
+            Buffers create() {
+                return new Buffers();
+            }
+        };
+
+        /**
+         * Characters read, including any held back for the lookahead of
+         * the encoder.
+         */
+        final CharBuffer _input = CharBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Output of the encoder, not yet written.
+         */
+        final CharBuffer _output = CharBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /** No instances. */
+    private ReaderTransfer() {
+    }
+
+    /**
+     * Transfers and encodes the remaining characters of a Reader.  See
+     * {@link Encoders#transfer(Reader, Writer, Encoder)}.
+     *
+     * @param in the reader to read
+     * @param out the writer to write
+     * @param encoder the encoder to use
+     * @return the number of chars read and written
+     * @throws IOException from the reader or the writer
+     */
+    static TransferResult transfer(Reader in, Writer out, Encoder encoder) throws IOException {
+        if (in == null) {
+            throw new NullPointerException("reader must not be null");
+        }
+        if (out == null) {
+            throw new NullPointerException("writer must not be null");
+        }
+        if (encoder == null) {
+            throw new NullPointerException("encoder must not be null");
+        }
+
+        final Buffers buffers = Buffers.POOL.acquire();
+        try {
+            buffers._input.clear();
+            buffers._output.clear();
+            return transfer(in, out, encoder, buffers);
+        } finally {
+            Buffers.POOL.release(buffers);
+        }
+    }
+
+    /**
+     * The main loop of a transfer.
+     *
+     * @param in the reader to read
+     * @param out the writer to write
+     * @param encoder the encoder to use
+     * @param buffers the buffers to use, cleared
+     * @return the number of chars read and written
+     * @throws IOException from the reader or the writer
+     */
+    private static TransferResult transfer(Reader in, Writer out, Encoder encoder, Buffers buffers)
+        throws IOException
+    {
+        final CharBuffer input = buffers._input;
+        final CharBuffer output = buffers._output;
+        final char[] chars = input.array();
+        // a chain is called with one window for the whole transfer
+        final ChainedEncoder chain = encoder instanceof ChainedEncoder ? (ChainedEncoder) encoder : null;
+        final CharBuffer window = chain != null ? chain.newWindow() : null;
+
+        long charsRead = 0;
+        long charsWritten = 0;
+        boolean endOfInput = false;
+
+        while (!endOfInput) {
+            final int n = in.read(chars, input.position(), input.remaining());
+            if (n < 0) {
+                endOfInput = true;
+            } else {
+                charsRead += n;
+                input.position(input.position() + n);
+            }
+            input.flip();
+
+            final int limit = input.limit();
+            while (input.hasRemaining()) {
+                final int start = input.position();
+                final int clean = encoder.firstEncodedOffset(chars, start, limit - start);
+                if (clean - start >= PASS_THROUGH_MIN) {
+                    charsWritten += drain(out, output);
+                    out.write(chars, start, clean - start);
+                    charsWritten += clean - start;
+                    input.position(clean);
+                    if (clean == limit) {
+                        break;
+                    }
+                }
+
+                // encode a segment, leaving in the input whatever the
+                // encoder needs to see past it
+                final int end = Math.min(limit, input.position() + SEGMENT_SIZE);
+                final boolean last = endOfInput && end == limit;
+                input.limit(end);
+                for (;;) {
+                    final CoderResult cr = chain != null
+                        ? chain.encodeArrays(input, output, last, window)
+                        : encoder.encodeArrays(input, output, last);
+                    if (cr.isUnderflow()) {
+                        break;
+                    }
+                    charsWritten += drain(out, output);
+                }
+                input.limit(limit);
+                if (end == limit) {
+                    break;
+                }
+            }
+            input.compact();
+        }
+        charsWritten += drain(out, output);
+        return new TransferResult(charsRead, charsWritten);
+    }
+
+    /**
+     * Writes the encoded output to the writer, and clears it.
+     *
+     * @param out the writer to write
+     * @param output the encoded output
+     * @return the number of chars written
+     * @throws IOException from the writer
+     */
+    private static int drain(Writer out, CharBuffer output) throws IOException {
+        final int n = output.position();
+        if (n > 0) {
+            out.write(output.array(), 0, n);
+            output.clear();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,148 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * StripedPool -- a small lock-free pool of reusable objects.  Objects are
+ * kept in a fixed number of slots, one stripe per available processor,
+ * instead of in a {@code ThreadLocal}.  The footprint of the pool is thus
+ * bounded by the number of cores, and does not grow with the number of
+ * (possibly virtual) threads that use it.
+ *
+ * <p>An object is removed from its slot while it is in use, so a caller
+ * that re-enters the pool (e.g. a Writer that calls back into
+ * {@link Encode} while being written to) never sees an object that is
+ * already in use--it either finds another pooled object or gets a new
+ * one.  When an object is released to a slot that is already occupied,
+ * it is simply dropped and left for the garbage collector.</p>
+ *
+ * @param <T> the type of pooled object
+ */
+abstract class StripedPool<T> {
+    /**
+     * Distance between slots in the slot array.  Each slot is padded out
+     * to its own cache line (64 bytes / 4 byte compressed references) so
+     * that threads on different cores do not contend on the same line.
+     */
+    static final int SLOT_SPACING = 16;
+
+    /**
+     * Multiplier used to spread thread ids across the stripes (the 64-bit
+     * golden ratio).
+     */
+    private static final long SPREAD = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The pooled objects, one every {@link #SLOT_SPACING} elements.  A null
+     * element indicates an empty slot.
+     */
+    private final AtomicReferenceArray<T> _slots;
+
+    /**
+     * The number of stripes minus one--used to mask a hash to a stripe.
+     */
+    private final int _mask;
+
+    /**
+     * Creates a pool with one stripe per available processor.
+     */
+    StripedPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a pool with at least the specified number of stripes.  The
+     * number is rounded up to a power of 2.
+     *
+     * @param stripes the minimum number of stripes.
+     */
+    StripedPool(int stripes) {
+        int n = Integer.highestOneBit(Math.max(1, stripes));
+        if (n < stripes) {
+            n <<= 1;
+        }
+        _mask = n - 1;
+        _slots = new AtomicReferenceArray<T>(n * SLOT_SPACING);
+    }
+
+    /**
+     * Creates a new object for the pool.  Called when the stripe of the
+     * calling thread is empty.
+     *
+     * @return a new object.
+     */
+    abstract T create();
+
+    /**
+     * Returns the slot index of the calling thread.
+     *
+     * @return the index into {@link #_slots}.
+     */
+    private int slot() {
+        // Thread ids are unique and stable, hashing them spreads threads
+        // (including virtual threads) evenly across the stripes.
+        final long h = Thread.currentThread().getId() * SPREAD;
+        return ((int) (h >>> 32) & _mask) * SLOT_SPACING;
+    }
+
+    /**
+     * Takes an object out of the pool, creating a new one if the stripe
+     * of the calling thread is empty.  The caller has exclusive use of the
+     * returned object until it passes it to {@link #release(Object)}.
+     *
+     * @return a pooled or new object.
+     */
+    T acquire() {
+        T obj = _slots.getAndSet(slot(), null);
+        return obj != null ? obj : create();
+    }
+
+    /**
+     * Returns an object to the pool.  The caller must not use the object
+     * after this call.
+     *
+     * @param obj the object to return to the pool.
+     */
+    void release(T obj) {
+        final int i = slot();
+        if (_slots.get(i) == null) {
+            // a racing release may win the slot, in which case this
+            // object is dropped.
+            _slots.compareAndSet(i, null, obj);
+        }
+    }
+}
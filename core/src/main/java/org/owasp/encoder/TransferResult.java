@@ -0,0 +1,111 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+/**
+ * TransferResult -- the amount of input read and output written by a
+ * transfer: bytes for
+ * {@link Encoders#transfer(java.nio.channels.ReadableByteChannel,
+ * java.nio.charset.Charset, java.nio.channels.WritableByteChannel,
+ * java.nio.charset.Charset, Encoder)}, and chars for
+ * {@link Encoders#transfer(java.io.Reader, java.io.Writer, Encoder)}.
+ */
+public final class TransferResult {
+    /**
+     * The number of bytes or chars read.
+     */
+    private final long _read;
+
+    /**
+     * The number of bytes or chars written.
+     */
+    private final long _written;
+
+    /**
+     * Creates a result.
+     *
+     * @param read the number of bytes or chars read
+     * @param written the number of bytes or chars written
+     */
+    TransferResult(long read, long written) {
+        _read = read;
+        _written = written;
+    }
+
+    /**
+     * Returns the number of bytes or chars read, depending on the
+     * transfer.
+     *
+     * @return the number read
+     */
+    public long read() {
+        return _read;
+    }
+
+    /**
+     * Returns the number of bytes or chars written, depending on the
+     * transfer.
+     *
+     * @return the number written
+     */
+    public long written() {
+        return _written;
+    }
+
+    /**
+     * Returns the number of bytes read from the input channel of a
+     * transfer between channels.  This is the same as {@link #read()}.
+     *
+     * @return the number of bytes read
+     */
+    public long bytesRead() {
+        return _read;
+    }
+
+    /**
+     * Returns the number of bytes written to the output channel of a
+     * transfer between channels.  This is the same as {@link #written()}.
+     *
+     * @return the number of bytes written
+     */
+    public long bytesWritten() {
+        return _written;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferResult[read=" + _read + ", written=" + _written + "]";
+    }
+}
@@ -232,6 +232,17 @@ class URIEncoder extends Encoder {
      */
     private final Mode _mode;
 
+    /**
+     * The encoded form of each Latin-1 character, see {@link #latin1Table()}.
+     */
+    private final byte[][] _latin1Table;
+
+    /**
+     * The vector scan for runs of characters that do not need to be escaped,
+     * or {@code null} if not available.
+     */
+    private final VectorScan _vectorScan;
+
     /**
      * Constructor equivalent to @{code URIEncoder(Mode.FULL_URI)}.
      */
@@ -248,10 +259,12 @@ class URIEncoder extends Encoder {
         _mode = mode;
         _lowMask = mode.lowMask();
         _highMask = mode.highMask();
+        _latin1Table = buildLatin1Table(this);
+        _vectorScan = VectorScan.forMasks(_lowMask, _highMask, (char)0, (char)0);
     }
 
     @Override
-    protected int maxEncodedLength(int n) {
+    protected long maxEncodedLength(long n) {
         // '\uffff' becomes 3 UTF-8 bytes, percent encoded to 9 characters.
         //
         // Note: Surrogate pairs (2 chars) become 4 UTF-8 or 12 characters,
@@ -260,10 +273,19 @@ class URIEncoder extends Encoder {
         return n * MAX_ENCODED_CHAR_LENGTH;
     }
 
+    @Override
+    byte[][] latin1Table() {
+        return _latin1Table;
+    }
+
     @Override
     protected int firstEncodedOffset(String input, int off, int len) {
         final int n = off + len;
-        for (int i = off; i < n; ++i) {
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
+        for (; i < n; ++i) {
             char ch = input.charAt(i);
             if (ch <= Unicode.DEL) {
                 if (!(ch < LONG_BITS ? (_lowMask & (1L << ch)) != 0 : (_highMask & (1L << (ch - LONG_BITS))) != 0)) {
@@ -278,6 +300,28 @@ class URIEncoder extends Encoder {
         return n;
     }
 
+    @Override
+    protected int firstEncodedOffset(char[] input, int off, int len) {
+        final int n = off + len;
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
+        for (; i < n; ++i) {
+            char ch = input[i];
+            if (ch <= Unicode.DEL) {
+                if (!(ch < LONG_BITS ? (_lowMask & (1L << ch)) != 0 : (_highMask & (1L << (ch - LONG_BITS))) != 0)) {
+                    return i;
+//                } else {
+//                    // valid
+                }
+            } else {
+                return i;
+            }
+        }
+        return n;
+    }
+
     @Override
     protected CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
         final char[] in = input.array();
@@ -295,7 +339,9 @@ class URIEncoder extends Encoder {
                     if (j >= m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
+                    final int k = copyCleanRun(in, i, n, out, j, m);
+                    i += k - 1;
+                    j += k;
                 } else {
                     // one UTF-8 byte
                     if (j + PERCENT_ENCODED_LENGTH > m) {
@@ -0,0 +1,296 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * UTF8 -- converts between UTF-8 bytes and the characters the encoders
+ * work on.  Decoding validates the input as it goes.  The encoders only
+ * produce valid UTF-16 (invalid input is replaced), so the conversion
+ * needs none of the error handling of a {@link
+ * java.nio.charset.CharsetEncoder}, and the escapes, which are pure ASCII,
+ * are written one byte per character.
+ */
+final class UTF8 {
+    /**
+     * The maximum number of UTF-8 bytes per UTF-16 char.  BMP characters
+     * take at most 3 bytes, and a surrogate pair takes 4 bytes for 2 chars.
+     */
+    static final int MAX_BYTES_PER_CHAR = 3;
+
+    /**
+     * Replacement written for a surrogate that is not part of a pair.  This
+     * does not happen with the output of the encoders.
+     */
+    static final byte INVALID_REPLACEMENT = '?';
+
+    /**
+     * Character that malformed UTF-8 input decodes to.  A lone surrogate is
+     * invalid in every context, so each encoder replaces it with its own
+     * replacement for invalid input.  It never combines with the next
+     * character, since decoding only produces a low surrogate as the
+     * second half of a pair.
+     */
+    static final char MALFORMED_REPLACEMENT = '\ud800';
+
+    /** No instances. */
+    private UTF8() {}
+
+    /**
+     * Returns the number of bytes needed to encode a range of chars.  Each
+     * surrogate counts 2 bytes, which is exact for pairs and an upper bound
+     * for lone surrogates.
+     *
+     * @param src the characters
+     * @param off the offset of the first character
+     * @param len the number of characters
+     * @return the UTF-8 length of the characters
+     */
+    static int encodedLength(char[] src, int off, int len) {
+        final int n = off + len;
+        int length = len;
+        for (int i = off; i < n; ++i) {
+            final char ch = src[i];
+            if (ch >= 0x80) {
+                if (ch < 0x800 || Character.isSurrogate(ch)) {
+                    length += 1;
+                } else {
+                    length += 2;
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns how many chars from the start of a range encode to at most
+     * {@code space} bytes.  The count may end between the halves of a
+     * surrogate pair.
+     *
+     * @param src the characters
+     * @param off the offset of the first character
+     * @param len the number of characters
+     * @param space the number of bytes available
+     * @return the number of characters that fit
+     */
+    static int fittingLength(char[] src, int off, int len, int space) {
+        for (int i = 0; i < len; ++i) {
+            final char ch = src[off + i];
+            if (ch < 0x80) {
+                space -= 1;
+            } else if (ch < 0x800 || Character.isSurrogate(ch)) {
+                space -= 2;
+            } else {
+                space -= 3;
+            }
+            if (space < 0) {
+                return i;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Encodes a range of chars as UTF-8 into a byte array.  The array must
+     * have room for {@link #encodedLength(char[], int, int)} bytes.
+     *
+     * @param src the characters
+     * @param off the offset of the first character
+     * @param len the number of characters
+     * @param dst the array to encode into
+     * @param j the offset in {@code dst} to start at
+     * @return the offset in {@code dst} after the last byte written
+     */
+    static int encode(char[] src, int off, int len, byte[] dst, int j) {
+        final int n = off + len;
+        for (int i = off; i < n; ++i) {
+            final char ch = src[i];
+            if (ch < 0x80) {
+                dst[j++] = (byte) ch;
+            } else if (ch < 0x800) {
+                dst[j++] = (byte) (0xc0 | (ch >>> 6));
+                dst[j++] = (byte) (0x80 | (ch & 0x3f));
+            } else if (!Character.isSurrogate(ch)) {
+                dst[j++] = (byte) (0xe0 | (ch >>> 12));
+                dst[j++] = (byte) (0x80 | ((ch >>> 6) & 0x3f));
+                dst[j++] = (byte) (0x80 | (ch & 0x3f));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < n
+                    && Character.isLowSurrogate(src[i + 1]))
+            {
+                final int cp = Character.toCodePoint(ch, src[++i]);
+                dst[j++] = (byte) (0xf0 | (cp >>> 18));
+                dst[j++] = (byte) (0x80 | ((cp >>> 12) & 0x3f));
+                dst[j++] = (byte) (0x80 | ((cp >>> 6) & 0x3f));
+                dst[j++] = (byte) (0x80 | (cp & 0x3f));
+            } else {
+                dst[j++] = INVALID_REPLACEMENT;
+            }
+        }
+        return j;
+    }
+
+    /**
+     * Encodes a range of chars as UTF-8 into a byte buffer.  The buffer must
+     * have room for {@link #encodedLength(char[], int, int)} bytes.  When
+     * the buffer is not array-backed, the bytes are staged in {@code
+     * staging} and transferred with a bulk put.
+     *
+     * @param src the characters
+     * @param off the offset of the first character
+     * @param len the number of characters
+     * @param dst the buffer to encode into
+     * @param staging an array with room for the encoded bytes
+     */
+    static void put(char[] src, int off, int len, ByteBuffer dst, byte[] staging) {
+        if (dst.hasArray()) {
+            final int start = dst.arrayOffset() + dst.position();
+            final int end = encode(src, off, len, dst.array(), start);
+            dst.position(dst.position() + end - start);
+        } else {
+            dst.put(staging, 0, encode(src, off, len, staging, 0));
+        }
+    }
+
+    /**
+     * Decodes UTF-8 bytes into a window of characters, stopping when the
+     * window is full or the bytes run out.  Each maximal invalid
+     * subsequence--including overlong forms, encoded surrogates, and
+     * values beyond U+10FFFF--decodes to one {@link #MALFORMED_REPLACEMENT}.
+     * An incomplete sequence at the end of the bytes is left undecoded,
+     * unless {@code endOfInput} is true in which case it is malformed.
+     * Decoding is deterministic, so decoding the same bytes into a window
+     * limited to the first {@code k} characters finds the bytes that made
+     * up those characters.
+     *
+     * @param src the bytes to decode
+     * @param i the offset of the first byte
+     * @param n the offset after the last byte
+     * @param endOfInput true if no bytes follow {@code n}
+     * @param dst the array-backed window to decode into
+     * @return the offset in {@code src} after the last byte decoded
+     */
+    static int decode(byte[] src, int i, int n, boolean endOfInput, CharBuffer dst) {
+        final char[] out = dst.array();
+        int j = dst.arrayOffset() + dst.position();
+        final int m = dst.arrayOffset() + dst.limit();
+
+        while (i < n && j < m) {
+            final int b0 = src[i];
+            if (b0 >= 0) {
+                out[j++] = (char) b0;
+                ++i;
+                continue;
+            }
+
+            // bounds of the second byte exclude overlong forms, surrogates
+            // and values beyond U+10FFFF.
+            final int lead = b0 & 0xff;
+            int min = 0x80;
+            int max = 0xbf;
+            final int len;
+            if (lead < 0xc2) {
+                out[j++] = MALFORMED_REPLACEMENT;
+                ++i;
+                continue;
+            } else if (lead < 0xe0) {
+                len = 2;
+            } else if (lead < 0xf0) {
+                len = 3;
+                if (lead == 0xe0) {
+                    min = 0xa0;
+                } else if (lead == 0xed) {
+                    max = 0x9f;
+                }
+            } else if (lead < 0xf5) {
+                len = 4;
+                if (lead == 0xf0) {
+                    min = 0x90;
+                } else if (lead == 0xf4) {
+                    max = 0x8f;
+                }
+            } else {
+                out[j++] = MALFORMED_REPLACEMENT;
+                ++i;
+                continue;
+            }
+
+            int k = 1;
+            for (; k < len && i + k < n; ++k) {
+                final int b = src[i + k] & 0xff;
+                if (k == 1 ? b < min || b > max : (b & 0xc0) != 0x80) {
+                    break;
+                }
+            }
+
+            if (k < len) {
+                if (i + k == n && !endOfInput) {
+                    // wait for the rest of the sequence
+                    break;
+                }
+                out[j++] = MALFORMED_REPLACEMENT;
+                i += k;
+                continue;
+            }
+
+            if (len == 4 && j + 1 >= m) {
+                // no room for the surrogate pair.  This is checked only
+                // once the sequence is known to be valid, so that a
+                // malformed one decodes the same in a shorter window.
+                break;
+            }
+
+            if (len == 2) {
+                out[j++] = (char) (((lead & 0x1f) << 6) | (src[i + 1] & 0x3f));
+            } else if (len == 3) {
+                out[j++] = (char) (((lead & 0x0f) << 12)
+                    | ((src[i + 1] & 0x3f) << 6)
+                    | (src[i + 2] & 0x3f));
+            } else {
+                final int cp = ((lead & 0x07) << 18)
+                    | ((src[i + 1] & 0x3f) << 12)
+                    | ((src[i + 2] & 0x3f) << 6)
+                    | (src[i + 3] & 0x3f);
+                out[j++] = Character.highSurrogate(cp);
+                out[j++] = Character.lowSurrogate(cp);
+            }
+            i += len;
+        }
+
+        dst.position(j - dst.arrayOffset());
+        return i;
+    }
+}
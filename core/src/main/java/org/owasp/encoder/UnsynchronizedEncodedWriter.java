@@ -0,0 +1,122 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * UnsynchronizedEncodedWriter -- an {@link EncodedWriter} that does no
+ * locking at all, for a writer confined to one thread at a time (such
+ * as the output of a single request).  It avoids the cost of a monitor
+ * on every write, and never pins a virtual thread to its carrier
+ * while the wrapped writer blocks.
+ *
+ * <p>All the methods of {@code Writer} that {@code EncodedWriter}
+ * synchronizes are overridden.</p>
+ * @see Encoders#unsynchronizedWriter(Writer, Encoder)
+ */
+final class UnsynchronizedEncodedWriter extends EncodedWriter {
+
+    /**
+     * Pool of writers for {@link Encoders#acquireWriter(Writer, Encoder)}.
+     * Like the buffers of {@link Encode}, the writers are held in one
+     * slot per processor, which bounds the number kept no matter how
+     * many threads use them.
+     */
+    static final StripedPool<UnsynchronizedEncodedWriter> POOL = new StripedPool<UnsynchronizedEncodedWriter>() {
+        @Override
+        UnsynchronizedEncodedWriter create() {
+            return new UnsynchronizedEncodedWriter();
+        }
+    };
+
+    /**
+     * Creates an unsynchronized writer.  Its {@link Writer#lock} is the
+     * writer itself, not {@code out}: none of its methods lock, and
+     * anything else that synchronizes on the lock must not contend with
+     * other users of the wrapped writer.
+     *
+     * @param out the target for all writes
+     * @param encoder the encoder to use
+     */
+    UnsynchronizedEncodedWriter(Writer out, Encoder encoder) {
+        super(BUFFER_SIZE);
+        bind(out, encoder);
+    }
+
+    /**
+     * Creates an unsynchronized writer for {@link #POOL}, that must be
+     * reset before it is used.
+     */
+    private UnsynchronizedEncodedWriter() {
+        super(BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        implWrite(c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        implWrite(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        implWrite(str, off, len);
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        implAppend(csq, start, end);
+        return this;
+    }
+
+    @Override
+    public void reset(Writer out, Encoder encoder) throws IOException {
+        implReset(out, encoder);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        implFlush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        implClose();
+    }
+}
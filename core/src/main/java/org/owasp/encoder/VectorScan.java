@@ -0,0 +1,83 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+/**
+ * VectorScan -- finds the first character of a range that an encoder
+ * might need to encode, several characters at a time.  A scan is
+ * conservative: it stops at any character not known to be clean, and the
+ * encoder's own scalar loop takes over from there.  Java 8 has no vector
+ * API, so this version never creates a scan.  The Java 17 version of this
+ * class is in the multi-release part of the jar.
+ */
+abstract class VectorScan {
+    /**
+     * Returns a scan for an encoder, or {@code null} if vector scanning
+     * is not available.
+     *
+     * @param lowMask bit {@code ch} is set if ASCII {@code ch < 64} is clean
+     * @param highMask bit {@code ch-64} is set if ASCII {@code ch >= 64} is
+     * clean
+     * @param nonAsciiMin the first clean non-ASCII character
+     * @param nonAsciiLimit one past the last clean non-ASCII character, or
+     * {@code nonAsciiMin} if no non-ASCII character is clean
+     * @return the scan, or {@code null}.
+     */
+    static VectorScan forMasks(long lowMask, long highMask, char nonAsciiMin, char nonAsciiLimit) {
+        return null;
+    }
+
+    /**
+     * Returns the index of the first character in {@code [off, n)} that
+     * is not known to be clean, or {@code n} if there is none.
+     *
+     * @param input the input to scan
+     * @param off the index of the first character to scan
+     * @param n one past the index of the last character to scan
+     * @return the index of the first character that may need encoding.
+     */
+    abstract int firstEncodedOffset(char[] input, int off, int n);
+
+    /**
+     * Returns the index of the first character in {@code [off, n)} that
+     * is not known to be clean, or {@code n} if there is none.
+     *
+     * @param input the input to scan
+     * @param off the index of the first character to scan
+     * @param n one past the index of the last character to scan
+     * @return the index of the first character that may need encoding.
+     */
+    abstract int firstEncodedOffset(String input, int off, int n);
+}
@@ -64,7 +64,7 @@ class XMLCommentEncoder extends Encoder {
     // On IE, "<!--[if ..." has special interpretation
     // [2] Char ::= #x9 | #xA | #xD | [#x20-#xD7FF] | [#xE000-#xFFFD] | [#x10000-#x10FFFF]
     @Override
-    protected int maxEncodedLength(int n) {
+    protected long maxEncodedLength(long n) {
         return n;
     }
 
@@ -117,6 +117,55 @@ class XMLCommentEncoder extends Encoder {
         return n;
     }
 
+    @Override
+    protected int firstEncodedOffset(char[] input, int off, int len) {
+        final int n = off + len;
+        for (int i = off; i < n; ++i) {
+            char ch = input[i];
+            if (ch <= Unicode.MAX_ASCII) {
+                if (ch == '-') {
+                    if (i + 1 < n) {
+                        if (input[i + 1] == '-') {
+                            return i;
+//                        } else {
+//                            // valid
+                        }
+                    } else {
+                        return i;
+                    }
+                } else if (ch < ' ' && ch != '\n' && ch != '\r' && ch != '\t') {
+                    return i;
+//                } else {
+//                    // valid
+                }
+            } else if (ch < Character.MIN_HIGH_SURROGATE) {
+                if (ch <= Unicode.MAX_C1_CTRL_CHAR && ch != Unicode.NEL) {
+                    return i;
+//                } else {
+//                    // valid
+                }
+            } else if (ch <= Character.MAX_HIGH_SURROGATE) {
+                if (i + 1 < n && Character.isLowSurrogate(input[i + 1])) {
+                    int cp = Character.toCodePoint(ch, input[i + 1]);
+                    if (Unicode.isNonCharacter(cp)) {
+                        // noncharacter
+                        return i;
+                    }
+                    ++i;
+                } else {
+                    return i;
+                }
+            } else if (ch <= Character.MAX_LOW_SURROGATE || ch > '\ufffd'
+                    || ('\ufdd0' <= ch && ch <= '\ufdef'))
+            {
+                return i;
+//            } else {
+//                // valid
+            }
+        }
+        return n;
+    }
+
     @Override
     protected CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
         final char[] in = input.array();
@@ -159,7 +208,9 @@ class XMLCommentEncoder extends Encoder {
                     if (j >= m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
+                    final int k = copyCleanRun(in, i, n, out, j, m);
+                    i += k - 1;
+                    j += k;
                 } else {
                     if (j >= m) {
                         return overflow(input, i, output, j);
@@ -171,7 +222,9 @@ class XMLCommentEncoder extends Encoder {
                     return overflow(input, i, output, j);
                 }
                 if (ch > Unicode.MAX_C1_CTRL_CHAR || ch == Unicode.NEL) {
-                    out[j++] = ch;
+                    final int k = copyCleanRun(in, i, n, out, j, m);
+                    i += k - 1;
+                    j += k;
                 } else {
                     // C1 control code
                     out[j++] = XMLEncoder.INVALID_CHARACTER_REPLACEMENT;
@@ -224,7 +277,9 @@ class XMLCommentEncoder extends Encoder {
                 if (j >= m) {
                     return overflow(input, i, output, j);
                 }
-                out[j++] = ch;
+                final int k = copyCleanRun(in, i, n, out, j, m);
+                i += k - 1;
+                j += k;
             }
         }
         return underflow(input, i, output, j);
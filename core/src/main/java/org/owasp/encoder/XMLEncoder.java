@@ -72,26 +72,6 @@ class XMLEncoder extends Encoder {
      * Maximum number of encoded characters per input character.
      */
     static final int MAX_ENCODED_CHAR_LENGTH = 5;
-    /**
-     * The encoded length of an ampersand.
-     */
-    static final int AMP_LENGTH = 5;
-    /**
-     * The encoded length of a less-than sign.
-     */
-    static final int LT_LENGTH = 4;
-    /**
-     * The encoded length of a greater-than sign.
-     */
-    static final int GT_LENGTH = 4;
-    /**
-     * The encoded length of an apostrophe.
-     */
-    static final int APOS_LENGTH = 5;
-    /**
-     * The encoded length of a double-quotation character.
-     */
-    static final int QUOT_LENGTH = 5;
     /**
      * The encoded length of a control character reference (e.g., &#x01;).
      */
@@ -200,6 +180,23 @@ class XMLEncoder extends Encoder {
      */
     private final Version _version;
 
+    /**
+     * The replacements of the characters in the range 0 to 255, built from
+     * the mode and version.
+     */
+    private final char[][] _replacements;
+
+    /**
+     * The encoded form of each Latin-1 character, see {@link #latin1Table()}.
+     */
+    private final byte[][] _latin1Table;
+
+    /**
+     * The vector scan for runs of valid characters, or {@code null} if
+     * not available.
+     */
+    private final VectorScan _vectorScan;
+
     /**
      * Default constructor--equivalent to XMLEncoder(Mode.ALL, Version.XML_1_0).
      */
@@ -226,10 +223,68 @@ class XMLEncoder extends Encoder {
         _mode = mode;
         _version = version;
         _validMask = mode.validMask();
+        EncodingTable table = buildTable(_validMask, version);
+        _replacements = table.replacements();
+        _latin1Table = table.latin1Table();
+        // '>' .. '~' are valid, as are the non-ASCII characters up to the
+        // surrogates other than C1 controls.
+        _vectorScan = VectorScan.forMasks(
+            _validMask, -1L >>> 1, (char)(Unicode.MAX_C1_CTRL_CHAR + 1),
+            Character.MIN_SURROGATE);
+    }
+
+    /**
+     * Builds the replacements of the characters in the range 0 to 255.
+     *
+     * @param validMask the mask of valid characters in the range 0--63
+     * @param version the XML version
+     * @return the replacements.
+     */
+    private static EncodingTable buildTable(long validMask, Version version) {
+        final EncodingTable table = new EncodingTable();
+        for (int ch = 0; ch < EncodingTable.SIZE; ++ch) {
+            if (ch < Long.SIZE
+                ? (validMask & (1L << ch)) != 0
+                : ch < Unicode.DEL || ch > Unicode.MAX_C1_CTRL_CHAR || ch == Unicode.NEL)
+            {
+                continue;
+            }
+            switch (ch) {
+                case '&':
+                    table.replace(ch, "&amp;");
+                    break;
+                case '<':
+                    table.replace(ch, "&lt;");
+                    break;
+                case '>':
+                    table.replace(ch, "&gt;");
+                    break;
+                case '\'':
+                    // &apos; is valid in XML, but not in HTML, and numeric code is shorter
+                    table.replace(ch, "&#39;");
+                    break;
+                case '\"':
+                    // &quot; is valid in XML and HTML, but numeric code is shorter
+                    table.replace(ch, "&#34;");
+                    break;
+                default:
+                    if (version == Version.XML_1_1 && ch != 0) {
+                        // In XML 1.1, encode control characters (except null
+                        // and NEL) as character references
+                        table.replace(ch, String.format("&#x%02x;", ch));
+                    } else {
+                        // XML 1.0 (and null in XML 1.1): replace the invalid
+                        // character with a space
+                        table.replace(ch, String.valueOf(INVALID_CHARACTER_REPLACEMENT));
+                    }
+                    break;
+            }
+        }
+        return table;
     }
 
     @Override
-    public int maxEncodedLength(int n) {
+    public long maxEncodedLength(long n) {
         // "&amp;" = 5 chars, "&#x01;" = 6 chars (XML 1.1 control chars)
         if (_version == Version.XML_1_1) {
             return n * CONTROL_CHAR_REF_LENGTH;
@@ -237,11 +292,20 @@ class XMLEncoder extends Encoder {
         return n * MAX_ENCODED_CHAR_LENGTH;
     }
 
+    @Override
+    byte[][] latin1Table() {
+        return _latin1Table;
+    }
+
     @Override
     public int firstEncodedOffset(String input, int off, int len) {
         final int n = off + len;
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
 
-        for (int i = off; i < n; ++i) {
+        for (; i < n; ++i) {
             char ch = input.charAt(i);
             if (ch < Unicode.DEL) {
                 if (ch <= '>' && (_validMask & (1L << ch)) == 0) {
@@ -281,6 +345,54 @@ class XMLEncoder extends Encoder {
         return n;
     }
 
+    @Override
+    public int firstEncodedOffset(char[] input, int off, int len) {
+        final int n = off + len;
+        int i = off;
+        if (_vectorScan != null) {
+            i = _vectorScan.firstEncodedOffset(input, i, n);
+        }
+
+        for (; i < n; ++i) {
+            char ch = input[i];
+            if (ch < Unicode.DEL) {
+                if (ch <= '>' && (_validMask & (1L << ch)) == 0) {
+                    // either needs encoding or is invalid
+                    return i;
+//                } else {
+//                    // valid
+                }
+            } else if (ch < Character.MIN_HIGH_SURROGATE) {
+                if (ch <= Unicode.MAX_C1_CTRL_CHAR && ch != Unicode.NEL) {
+                    // C1 control character - needs encoding in XML 1.1 or replacement in XML 1.0
+                    return i;
+//                } else {
+//                    // valid
+                }
+            } else if (ch <= Character.MAX_HIGH_SURROGATE) {
+                if (i + 1 < n && Character.isLowSurrogate(input[i + 1])) {
+                    int cp = Character.toCodePoint(ch, input[i + 1]);
+                    if (Unicode.isNonCharacter(cp)) {
+                        // noncharacter
+                        return i;
+                    }
+                    ++i;
+                } else {
+                    return i;
+                }
+            } else if (ch <= Character.MAX_LOW_SURROGATE
+                    || ch > '\ufffd'
+                    || ('\ufdd0' <= ch && ch <= '\ufdef'))
+            {
+                return i;
+//            } else {
+//                // valid
+            }
+        }
+
+        return n;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -292,120 +404,32 @@ class XMLEncoder extends Encoder {
         int j = output.arrayOffset() + output.position();
         final int m = output.arrayOffset() + output.limit();
 
+        final char[][] replacements = _replacements;
+
         for (; i < n; ++i) {
             final char ch = in[i];
-            if (ch < Unicode.DEL) {
-                if (ch > '>' || ((_validMask & (1L << ch)) != 0)) {
-                    // Common case ('>' .. '~') reached in two branches
-                    if (j >= m) {
+            if (ch < EncodingTable.SIZE) {
+                final char[] replacement = replacements[ch];
+                if (replacement != null) {
+                    if (j + replacement.length > m) {
                         return overflow(input, i, output, j);
                     }
-                    out[j++] = ch;
-                } else {
-                    switch (ch) {
-                        case '&':
-                            if (j + AMP_LENGTH > m) {
-                                return overflow(input, i, output, j);
-                            }
-                            out[j++] = '&';
-                            out[j++] = 'a';
-                            out[j++] = 'm';
-                            out[j++] = 'p';
-                            out[j++] = ';';
-                            break;
-                        case '<':
-                            if (j + LT_LENGTH > m) {
-                                return overflow(input, i, output, j);
-                            }
-                            out[j++] = '&';
-                            out[j++] = 'l';
-                            out[j++] = 't';
-                            out[j++] = ';';
-                            break;
-                        case '>':
-                            if (j + GT_LENGTH > m) {
-                                return overflow(input, i, output, j);
-                            }
-                            out[j++] = '&';
-                            out[j++] = 'g';
-                            out[j++] = 't';
-                            out[j++] = ';';
-                            break;
-                        case '\'':
-                            // &apos; is valid in XML, but not in HTML, and numeric code is shorter
-                            if (j + APOS_LENGTH > m) {
-                                return overflow(input, i, output, j);
-                            }
-                            out[j++] = '&';
-                            out[j++] = '#';
-                            out[j++] = '3';
-                            out[j++] = '9';
-                            out[j++] = ';';
-                            break;
-                        case '\"':
-                            // &quot; is valid in XML and HTML, but numeric code is shorter
-                            if (j + QUOT_LENGTH > m) {
-                                return overflow(input, i, output, j);
-                            }
-                            out[j++] = '&';
-                            out[j++] = '#';
-                            out[j++] = '3';
-                            out[j++] = '4';
-                            out[j++] = ';';
-                            break;
-                        default:
-                            // invalid character for XML 1.0
-                            if (_version == Version.XML_1_1 && ch != 0) {
-                                // In XML 1.1, encode C0 control characters (except null) as character references
-                                if (j + CONTROL_CHAR_REF_LENGTH > m) {
-                                    return overflow(input, i, output, j);
-                                }
-                                out[j++] = '&';
-                                out[j++] = '#';
-                                out[j++] = 'x';
-                                int val = ch;
-                                out[j++] = Character.forDigit((val >> 4) & 0xF, 16);
-                                out[j++] = Character.forDigit(val & 0xF, 16);
-                                out[j++] = ';';
-                            } else {
-                                // XML 1.0: replace invalid character with space
-                                // XML 1.1: null is still invalid, replace with space
-                                if (j >= m) {
-                                    return overflow(input, i, output, j);
-                                }
-                                out[j++] = INVALID_CHARACTER_REPLACEMENT;
-                            }
-                            break;
-                    }
+                    j = EncodingTable.append(replacement, out, j);
+                    continue;
+                }
+                if (j >= m) {
+                    return overflow(input, i, output, j);
                 }
+                final int k = copyCleanRun(in, i, n, out, j, m);
+                i += k - 1;
+                j += k;
             } else if (ch < Character.MIN_HIGH_SURROGATE) {
-                if (ch > Unicode.MAX_C1_CTRL_CHAR || ch == Unicode.NEL) {
-                    if (j >= m) {
-                        return overflow(input, i, output, j);
-                    }
-                    out[j++] = ch;
-                } else {
-                    // C1 control code
-                    if (_version == Version.XML_1_1) {
-                        // In XML 1.1, encode C1 control characters (except NEL) as character references
-                        if (j + CONTROL_CHAR_REF_LENGTH > m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = '&';
-                        out[j++] = '#';
-                        out[j++] = 'x';
-                        int val = ch;
-                        out[j++] = Character.forDigit((val >> 4) & 0xF, 16);
-                        out[j++] = Character.forDigit(val & 0xF, 16);
-                        out[j++] = ';';
-                    } else {
-                        // XML 1.0: replace invalid character with space
-                        if (j >= m) {
-                            return overflow(input, i, output, j);
-                        }
-                        out[j++] = INVALID_CHARACTER_REPLACEMENT;
-                    }
+                if (j >= m) {
+                    return overflow(input, i, output, j);
                 }
+                final int k = copyCleanRun(in, i, n, out, j, m);
+                i += k - 1;
+                j += k;
             } else if (ch <= Character.MAX_HIGH_SURROGATE) {
                 if (i + 1 < n) {
                     if (Character.isLowSurrogate(in[i + 1])) {
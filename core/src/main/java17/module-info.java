@@ -0,0 +1,5 @@
+module owasp.encoder {
+    requires static jdk.incubator.vector;
+
+    exports org.owasp.encoder;
+}
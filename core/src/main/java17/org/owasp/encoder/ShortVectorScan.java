@@ -0,0 +1,187 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * ShortVectorScan -- a {@link VectorScan} over UTF-16 characters in the
+ * widest vector the platform prefers.  Each lane looks up its character
+ * in the encoder's 128-bit ASCII mask, laid out as eight 16-bit words
+ * that every group of eight lanes selects from, and characters above
+ * ASCII are range checked.  The tail of the range, shorter than a
+ * vector, is left for the encoder's scalar loop.
+ */
+final class ShortVectorScan extends VectorScan {
+    /** The vector shape used for scanning. */
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    /** The number of characters scanned at once. */
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * The number of 16-bit words in the ASCII mask.  The lookup selects
+     * from within one vector, so a vector needs at least this many lanes.
+     */
+    private static final int MASK_WORDS = 8;
+
+    /**
+     * Strings shorter than this are not worth copying out to scan, and
+     * are left to the scalar loop.
+     */
+    private static final int MIN_STRING_SCAN = 64;
+
+    /** The number of characters of a String copied out at a time. */
+    private static final int STRING_CHUNK = 256;
+
+    /**
+     * Arrays that Strings are copied out to for scanning.  Pooled so that
+     * a scan allocates nothing.
+     */
+    private static final StripedPool<char[]> CHUNKS = new StripedPool<char[]>() {
+        @Override
+        char[] create() {
+            return new char[STRING_CHUNK];
+        }
+    };
+
+    /** The ASCII mask words, repeated across the lanes. */
+    private final ShortVector _table;
+
+    /** The first clean non-ASCII character. */
+    private final short _nonAsciiMin;
+
+    /** The number of clean non-ASCII characters. */
+    private final short _nonAsciiCount;
+
+    /**
+     * Creates a scan.
+     *
+     * @param table the ASCII mask words, repeated across the lanes
+     * @param nonAsciiMin the first clean non-ASCII character
+     * @param nonAsciiLimit one past the last clean non-ASCII character
+     */
+    private ShortVectorScan(ShortVector table, char nonAsciiMin, char nonAsciiLimit) {
+        _table = table;
+        _nonAsciiMin = (short)nonAsciiMin;
+        _nonAsciiCount = (short)(nonAsciiLimit - nonAsciiMin);
+    }
+
+    /**
+     * Creates a scan, see {@link VectorScan#forMasks(long, long, char,
+     * char)}.
+     *
+     * @param lowMask the mask of clean characters below 64
+     * @param highMask the mask of clean ASCII characters at and above 64
+     * @param nonAsciiMin the first clean non-ASCII character
+     * @param nonAsciiLimit one past the last clean non-ASCII character
+     * @return the scan, or {@code null} if the platform's vectors are too
+     * narrow.
+     */
+    static VectorScan create(long lowMask, long highMask, char nonAsciiMin, char nonAsciiLimit) {
+        if (LANES < MASK_WORDS) {
+            return null;
+        }
+
+        short[] words = new short[LANES];
+        for (int i = 0; i < LANES; ++i) {
+            int w = i % MASK_WORDS;
+            long mask = w < 4 ? lowMask : highMask;
+            words[i] = (short)(mask >>> ((w & 3) * 16));
+        }
+
+        return new ShortVectorScan(
+            ShortVector.fromArray(SPECIES, words, 0), nonAsciiMin, nonAsciiLimit);
+    }
+
+    /**
+     * Returns a mask of the lanes that are not known to be clean.
+     *
+     * @param v the characters to check
+     * @return the lanes that may need encoding.
+     */
+    private VectorMask<Short> dirty(ShortVector v) {
+        ShortVector word = v.lanewise(VectorOperators.LSHR, 4)
+            .lanewise(VectorOperators.AND, (short)(MASK_WORDS - 1))
+            .selectFrom(_table);
+        VectorMask<Short> clean = word
+            .lanewise(VectorOperators.LSHR, v.lanewise(VectorOperators.AND, (short)15))
+            .lanewise(VectorOperators.AND, (short)1)
+            .compare(VectorOperators.NE, (short)0)
+            .and(v.compare(VectorOperators.UNSIGNED_LT, (short)(Unicode.DEL + 1)));
+        if (_nonAsciiCount != 0) {
+            clean = clean.or(v.sub(_nonAsciiMin)
+                .compare(VectorOperators.UNSIGNED_LT, _nonAsciiCount));
+        }
+        return clean.not();
+    }
+
+    @Override
+    int firstEncodedOffset(char[] input, int off, int n) {
+        int i = off;
+        for (final int bound = n - LANES; i <= bound; i += LANES) {
+            VectorMask<Short> dirty = dirty(ShortVector.fromCharArray(SPECIES, input, i));
+            if (dirty.anyTrue()) {
+                return i + dirty.firstTrue();
+            }
+        }
+        return i;
+    }
+
+    @Override
+    int firstEncodedOffset(String input, int off, int n) {
+        if (n - off < MIN_STRING_SCAN) {
+            return off;
+        }
+
+        final char[] chunk = CHUNKS.acquire();
+        try {
+            int i = off;
+            for (int k; (k = Math.min(STRING_CHUNK, n - i)) >= LANES; i += k) {
+                input.getChars(i, i + k, chunk, 0);
+                int j = firstEncodedOffset(chunk, 0, k);
+                if (j < k) {
+                    return i + j;
+                }
+            }
+            return i;
+        } finally {
+            CHUNKS.release(chunk);
+        }
+    }
+}
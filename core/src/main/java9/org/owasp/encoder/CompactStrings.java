@@ -0,0 +1,139 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CompactStrings -- encodes strings that are stored in the compact
+ * Latin-1 representation used by Java 9 and later.  For those strings
+ * {@link String#charAt(int)} reads straight from the one-byte-per-char
+ * value array, and a string built from ISO-8859-1 bytes adopts a copy
+ * of the bytes as its value.  Encoding into a byte array thus skips the
+ * widening to UTF-16 and the narrowing back that the char path pays for.
+ */
+final class CompactStrings {
+    /** No instances. */
+    private CompactStrings() {}
+
+    /**
+     * Encodes {@code str} one Latin-1 byte per character, or returns
+     * {@code null} so that the caller falls back to encoding chars.  The
+     * fallback is taken when the encoder has no Latin-1 table, when the
+     * string is longer than the input buffer, and when a character before
+     * {@code j} is above U+00FF.  At the first such character from
+     * {@code j} on, the bytes encoded so far are widened into the output
+     * buffer and encoding continues there with chars, so no character is
+     * encoded twice.
+     *
+     * @param encoder the encoder to use
+     * @param str the string to encode
+     * @param j the offset of the first character requiring encoding
+     * @param buffer the pooled buffer of the caller
+     * @return the encoded string, or {@code null}.
+     */
+    static String encode(Encoder encoder, String str, int j, Encode.Buffer buffer) {
+        final byte[][] table = encoder.latin1Table();
+        final int n = str.length();
+        if (table == null || n > Encode.Buffer.INPUT_BUFFER_SIZE) {
+            return null;
+        }
+
+        // The output holds at least INPUT_BUFFER_SIZE bytes, so the
+        // prefix of characters that need no encoding always fits.
+        byte[] out = buffer.bytes().array();
+        int k = 0;
+        for (int i = 0; i < j; ++i) {
+            final char ch = str.charAt(i);
+            if (ch >= Encoder.LATIN1_TABLE_SIZE) {
+                return null;
+            }
+            out[k++] = (byte) ch;
+        }
+
+        for (int i = j; i < n; ++i) {
+            final char ch = str.charAt(i);
+            if (ch >= Encoder.LATIN1_TABLE_SIZE) {
+                return resume(encoder, str, i, out, k, buffer);
+            }
+            final byte[] replacement = table[ch];
+            if (replacement == null) {
+                if (k == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                out[k++] = (byte) ch;
+            } else {
+                final int m = replacement.length;
+                if (k + m > out.length) {
+                    out = Arrays.copyOf(out, Math.max(out.length * 2, k + m));
+                }
+                System.arraycopy(replacement, 0, out, k, m);
+                k += m;
+            }
+        }
+
+        return new String(out, 0, k, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Continues encoding with chars from the first character above
+     * U+00FF.  The table encoders look at one character at a time, so the
+     * bytes already encoded are the encoded form of the characters
+     * before it.
+     *
+     * @param encoder the encoder to use
+     * @param str the string to encode
+     * @param i the offset of the character above U+00FF
+     * @param out the bytes encoded so far
+     * @param k the number of bytes encoded so far
+     * @param buffer the pooled buffer of the caller
+     * @return the encoded string, or {@code null} if the bytes encoded so
+     * far do not fit in the output buffer.
+     */
+    private static String resume(Encoder encoder, String str, int i, byte[] out, int k, Encode.Buffer buffer) {
+        final CharBuffer output = buffer._output;
+        if (k > output.capacity()) {
+            return null;
+        }
+        final char[] chars = output.array();
+        for (int m = 0; m < k; ++m) {
+            chars[m] = (char) (out[m] & 0xff);
+        }
+        output.clear().position(k);
+        return buffer.encodeBatches(encoder, str, i, 0);
+    }
+}
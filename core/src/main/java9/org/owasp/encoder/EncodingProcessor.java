@@ -0,0 +1,370 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * EncodingProcessor -- a {@link Flow.Processor} that encodes a stream of
+ * CharBuffers for a context, for reactive output such as a streamed HTTP
+ * response.  Example usage:
+ *
+ * <pre>
+ *     EncodingProcessor processor = new EncodingProcessor(
+ *         Encoders.forName(Encoders.HTML_CONTENT));
+ *     publisher.subscribe(processor);
+ *     processor.subscribe(responseBodySubscriber);
+ * </pre>
+ *
+ * <p>The processor requests one item from upstream at a time, and only
+ * while its subscriber has outstanding demand and every item encoded so
+ * far has been delivered, so a slow subscriber slows the publisher.  An
+ * item may be encoded into several output buffers, and characters whose
+ * encoding depends on what follows, such as the {@code "]]"} of
+ * {@code "]]>"} in CDATA, are held back until the next item or the end
+ * of the stream.  Items are not kept after {@code onNext} returns, so
+ * the publisher may reuse them.</p>
+ *
+ * <p>The output buffers come from a pool.  A subscriber done with a
+ * buffer may hand it back with {@link #release(CharBuffer)} to save
+ * allocating another; buffers not released are left for the garbage
+ * collector.  The processor accepts one subscriber.  An error from
+ * upstream is passed on at once, dropping any output not yet
+ * delivered.</p>
+ *
+ * <p>This class is only available on Java 9 and later.</p>
+ */
+public final class EncodingProcessor implements Flow.Processor<CharBuffer, CharBuffer> {
+    /**
+     * Encodes the items and carries held-back characters between them.
+     */
+    private final ChunkEncoder _chunks;
+
+    /**
+     * Guards the state below, which both the upstream and the subscriber
+     * threads change.
+     */
+    private final ReentrantLock _lock = new ReentrantLock();
+
+    /**
+     * Counts the calls to {@link #drain()} while one is running, so that
+     * only one thread at a time signals the subscriber, and none of its
+     * calls back recurse.
+     */
+    private final AtomicInteger _drains = new AtomicInteger();
+
+    /**
+     * Encoded output not yet delivered.
+     */
+    private final ArrayDeque<CharBuffer> _queue = new ArrayDeque<CharBuffer>();
+
+    /** The subscription to the upstream publisher, or null. */
+    private Flow.Subscription _upstream;
+    /** The subscriber, or null until it has been sent onSubscribe. */
+    private Flow.Subscriber<? super CharBuffer> _downstream;
+    /** True once a subscriber has subscribed. */
+    private boolean _subscribed;
+    /** The outstanding demand of the subscriber. */
+    private long _demand;
+    /** True while an item requested from upstream has not arrived. */
+    private boolean _requested;
+    /** True once upstream has completed or failed. */
+    private boolean _upstreamDone;
+    /** The upstream error, or the error to send the subscriber. */
+    private Throwable _error;
+    /** True once the subscriber has cancelled or been sent a terminal signal. */
+    private boolean _done;
+
+    /**
+     * Creates a processor that encodes with the specified encoder.
+     *
+     * @param encoder the encoder to use
+     * @throws NullPointerException if the encoder is null
+     */
+    public EncodingProcessor(Encoder encoder) {
+        _chunks = new ChunkEncoder(encoder);
+    }
+
+    /**
+     * Creates a processor that encodes for the named context.  This is
+     * equivalent to calling:
+     * <pre>
+     *     new EncodingProcessor(Encoders.forName(contextName));
+     * </pre>
+     *
+     * @param contextName the encoding context name.
+     * @throws UnsupportedContextException if the contextName is
+     * unrecognized or not supported.
+     */
+    public EncodingProcessor(String contextName) throws UnsupportedContextException {
+        this(Encoders.forName(contextName));
+    }
+
+    /**
+     * Hands an output buffer back to the pool, once the subscriber is
+     * done with it.  The subscriber must not use the buffer afterwards.
+     *
+     * @param buffer a buffer passed to the subscriber's {@code onNext}
+     */
+    public void release(CharBuffer buffer) {
+        ChunkEncoder.recycle(buffer);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        _lock.lock();
+        final boolean first = !_subscribed;
+        _subscribed = true;
+        _lock.unlock();
+
+        if (!first) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("processor already has a subscriber"));
+            return;
+        }
+
+        subscriber.onSubscribe(new Subscription());
+        _lock.lock();
+        _downstream = subscriber;
+        _lock.unlock();
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("subscription must not be null");
+        }
+        _lock.lock();
+        final boolean first = _upstream == null && !_done;
+        if (first) {
+            _upstream = subscription;
+        }
+        _lock.unlock();
+
+        if (!first) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(CharBuffer item) {
+        if (item == null) {
+            throw new NullPointerException("item must not be null");
+        }
+        _lock.lock();
+        try {
+            _requested = false;
+            if (!_done && !_upstreamDone) {
+                _chunks.encode(item, false, _queue);
+            }
+        } finally {
+            _lock.unlock();
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null) {
+            throw new NullPointerException("throwable must not be null");
+        }
+        _lock.lock();
+        try {
+            if (!_upstreamDone) {
+                _upstreamDone = true;
+                _error = throwable;
+                discard();
+            }
+        } finally {
+            _lock.unlock();
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        _lock.lock();
+        try {
+            if (!_upstreamDone) {
+                _upstreamDone = true;
+                if (!_done) {
+                    _chunks.encode(CharBuffer.allocate(0), true, _queue);
+                }
+            }
+        } finally {
+            _lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Delivers as much output as the subscriber has demand for, requests
+     * the next item from upstream once the output is all delivered, and
+     * passes on the end of the stream.  Signals are sent without holding
+     * the lock.
+     */
+    private void drain() {
+        if (_drains.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            for (;;) {
+                Flow.Subscriber<? super CharBuffer> subscriber;
+                CharBuffer next = null;
+                Flow.Subscription request = null;
+                Throwable error = null;
+                boolean complete = false;
+
+                _lock.lock();
+                try {
+                    subscriber = _downstream;
+                    if (_done || subscriber == null) {
+                        break;
+                    }
+                    if (_error != null) {
+                        _done = true;
+                        error = _error;
+                    } else if (!_queue.isEmpty()) {
+                        if (_demand == 0) {
+                            break;
+                        }
+                        --_demand;
+                        next = _queue.poll();
+                    } else if (_upstreamDone) {
+                        _done = true;
+                        complete = true;
+                    } else if (_demand > 0 && !_requested && _upstream != null) {
+                        _requested = true;
+                        request = _upstream;
+                    } else {
+                        break;
+                    }
+                } finally {
+                    _lock.unlock();
+                }
+
+                if (next != null) {
+                    subscriber.onNext(next);
+                } else if (error != null) {
+                    subscriber.onError(error);
+                } else if (complete) {
+                    subscriber.onComplete();
+                } else {
+                    request.request(1);
+                }
+            }
+            missed = _drains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Drops the output not yet delivered.  Callers hold the lock.
+     */
+    private void discard() {
+        for (CharBuffer buffer; (buffer = _queue.poll()) != null; ) {
+            ChunkEncoder.recycle(buffer);
+        }
+        _chunks.discard();
+    }
+
+    /**
+     * The subscription of the subscriber.
+     */
+    private final class Subscription implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            Flow.Subscription cancel = null;
+            _lock.lock();
+            try {
+                if (_done) {
+                    return;
+                }
+                if (n <= 0) {
+                    // rule 3.9 of the reactive streams specification
+                    _error = new IllegalArgumentException("non-positive request: " + n);
+                    discard();
+                    cancel = _upstream;
+                    _upstreamDone = true;
+                } else {
+                    _demand = _demand + n < 0 ? Long.MAX_VALUE : _demand + n;
+                }
+            } finally {
+                _lock.unlock();
+            }
+            if (cancel != null) {
+                cancel.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription upstream;
+            _lock.lock();
+            try {
+                if (_done) {
+                    return;
+                }
+                _done = true;
+                discard();
+                upstream = _upstream;
+            } finally {
+                _lock.unlock();
+            }
+            if (upstream != null) {
+                upstream.cancel();
+            }
+        }
+    }
+}
@@ -35,8 +35,13 @@
 package org.owasp.encoder;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -79,6 +84,20 @@ public class BenchmarkTest extends TestCase {
             double _denom = (double) (LOOPS * _samples.length);
 
             {
+                // Encode.forXml before any other context has run, while
+                // the code that every context shares has only seen the
+                // XML encoder.  Compare with Encode.forXml below, after
+                // all contexts have run.
+                addTest(new TestCase("alone") {
+                    @Override
+                    protected void runTest() throws Throwable {
+                        runBench(BENCHMARKS[0], 100, _samples, _output);
+                        long time = runBench(BENCHMARKS[0], LOOPS, _samples, _output);
+                        System.out.printf("Benchmarked %s alone: %f ns/op\n",
+                            BENCHMARKS[0], time / _denom);
+                    }
+                });
+
                 addTest(new TestCase("warmup") {
                     @Override
                     protected void runTest() throws Throwable {
@@ -105,7 +124,7 @@ public class BenchmarkTest extends TestCase {
                     addTest(new TestCase(bench.toString()) {
                         @Override
                         protected void runTest() throws Throwable {
-                            long time = runBench(bench, LOOPS, _samples, _output);
+                            long time = runBench(bench, LOOPS, _samples, _output) / bench.contexts();
 
                             double percentOnBaseline = (time - _baseline) * 100.0 / _baseline;
 
@@ -116,10 +135,244 @@ public class BenchmarkTest extends TestCase {
                         }
                     });
                 }
+
+                // Throughput on long clean and dirty inputs, in chars/ns.
+                // (Multiply by the clock rate in GHz for chars/cycle.)
+                // These show the effect of scanning several characters at
+                // a time, e.g. when run with "--add-modules
+                // jdk.incubator.vector" on Java 17 and later.
+                for (final String context : SCAN_CONTEXTS) {
+                    addTest(new TestCase("scan " + context) {
+                        @Override
+                        protected void runTest() throws Throwable {
+                            Encoder encoder = Encoders.forName(context);
+                            System.out.printf("Scanned %s: clean %.3f chars/ns, dirty %.3f chars/ns, dense %.3f chars/ns\n",
+                                context,
+                                runScan(encoder, SCAN_CLEAN),
+                                runScan(encoder, SCAN_DIRTY),
+                                runScan(encoder, SCAN_DENSE));
+                            System.out.printf("Encoded arrays %s: clean %.3f chars/ns, dirty %.3f chars/ns, dense %.3f chars/ns\n",
+                                context,
+                                runArrays(encoder, SCAN_CLEAN),
+                                runArrays(encoder, SCAN_DIRTY),
+                                runArrays(encoder, SCAN_DENSE));
+                        }
+                    });
+                }
+
+                // Many small writes to an EncodedWriter, as from a JSP.
+                // In the steady state these should allocate nothing.
+                addTest(new TestCase("small writes") {
+                    @Override
+                    protected void runTest() throws Throwable {
+                        for (String context : WRITER_CONTEXTS) {
+                            Encoder encoder = Encoders.forName(context);
+                            runWrites("EncodedWriter " + context,
+                                new EncodedWriter(NULL_WRITER, encoder), _samples);
+                            runWrites("unsynchronizedWriter " + context,
+                                Encoders.unsynchronizedWriter(NULL_WRITER, encoder), _samples);
+                        }
+                        EncodedWriter passThrough = Encoders.unsynchronizedWriter(
+                            NULL_WRITER, Encoders.forName(Encoders.HTML));
+                        passThrough.setPassThrough(true);
+                        runWrites("unsynchronizedWriter html, passing through", passThrough, _samples);
+                        runWrites("EncodedWriter javascript, html-attribute",
+                            new EncodedWriter(NULL_WRITER, Encoders.JAVASCRIPT, Encoders.HTML_ATTRIBUTE),
+                            _samples);
+                    }
+                });
             }
         };
     }
 
+    /**
+     * The contexts in the small writes benchmark.
+     */
+    static final String[] WRITER_CONTEXTS = {
+        Encoders.HTML,
+        Encoders.JAVASCRIPT,
+        Encoders.CDATA,
+    };
+
+    /**
+     * A writer that discards everything written to it.
+     */
+    static final Writer NULL_WRITER = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Writes the samples in pieces of 1 to 20 characters through each
+     * of the Writer methods, and reports the time and the bytes
+     * allocated per write.  Fails if the writes allocate once warmed
+     * up, where the JVM can count allocations by thread.
+     */
+    private static void runWrites(String name, EncodedWriter writer, String[] samples) throws IOException {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = null;
+        if (bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            allocations = (com.sun.management.ThreadMXBean) bean;
+            allocations.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        char[][] arrays = new char[samples.length][];
+        StringBuilder[] builders = new StringBuilder[samples.length];
+        for (int i=0 ; i<samples.length ; ++i) {
+            arrays[i] = samples[i].toCharArray();
+            builders[i] = new StringBuilder(samples[i]);
+        }
+
+        // warm-up, then measure
+        int loops = 200;
+        writeSamples(writer, loops, samples, arrays, builders);
+        rungc();
+        long threadId = Thread.currentThread().getId();
+        long allocated = allocations == null ? 0 : allocations.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long writes = writeSamples(writer, loops, samples, arrays, builders);
+        long time = System.nanoTime() - start;
+        if (allocations != null) {
+            allocated = allocations.getThreadAllocatedBytes(threadId) - allocated;
+        }
+        writer.close();
+
+        System.out.printf("Small writes %s: %f ns/write, %s bytes/write\n",
+            name, (double) time / writes,
+            allocations == null ? "unknown" : String.format("%.3f", (double) allocated / writes));
+
+        // allow for the measurement itself
+        assertTrue(name + " allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static long writeSamples(
+        EncodedWriter writer, int loops, String[] samples, char[][] arrays, StringBuilder[] builders)
+        throws IOException
+    {
+        long writes = 0;
+        for (int loop=0 ; loop<loops ; ++loop) {
+            for (int i=0 ; i<samples.length ; ++i) {
+                String sample = samples[i];
+                int n = sample.length();
+                int off = 0;
+                for (int piece=0 ; off < n ; ++piece) {
+                    int len = Math.min(n - off, 1 + (off * 7 + i) % 20);
+                    switch (piece & 3) {
+                    case 0:
+                        writer.write(sample, off, len);
+                        break;
+                    case 1:
+                        writer.write(arrays[i], off, len);
+                        break;
+                    case 2:
+                        writer.append(builders[i], off, off + len);
+                        break;
+                    default:
+                        writer.write(sample.charAt(off));
+                        len = 1;
+                        break;
+                    }
+                    off += len;
+                    ++writes;
+                }
+            }
+            writer.flush();
+        }
+        return writes;
+    }
+
+    /**
+     * The contexts in the scan benchmark.
+     */
+    static final String[] SCAN_CONTEXTS = {
+        Encoders.XML,
+        Encoders.HTML_UNQUOTED_ATTRIBUTE,
+        Encoders.JAVASCRIPT,
+        Encoders.CSS_STRING,
+        Encoders.URI_COMPONENT,
+    };
+
+    /**
+     * The number of characters in each scan benchmark input.
+     */
+    static final int SCAN_LENGTH = 4096;
+
+    /**
+     * A long input that no context encodes.
+     */
+    static final String SCAN_CLEAN = scanInput(0);
+
+    /**
+     * A long input with a character to encode in every 16.
+     */
+    static final String SCAN_DIRTY = scanInput(16);
+
+    /**
+     * A long input with a character to encode in every 4, where the
+     * clean runs are too short to gain from scanning ahead.
+     */
+    static final String SCAN_DENSE = scanInput(4);
+
+    static String scanInput(int dirtyEvery) {
+        final String text = "TheQuickBrownFox0123456789JumpsOverTheLazyDog";
+        StringBuilder buf = new StringBuilder(SCAN_LENGTH);
+        for (int i=0 ; i<SCAN_LENGTH ; ++i) {
+            if (dirtyEvery != 0 && i % dirtyEvery == dirtyEvery - 1) {
+                buf.append('&');
+            } else {
+                buf.append(text.charAt(i % text.length()));
+            }
+        }
+        return buf.toString();
+    }
+
+    private static double runScan(Encoder encoder, String input) {
+        // warm-up, then measure
+        int loops = 2000;
+        for (int loop=0 ; loop<loops ; ++loop) {
+            Encode.encode(encoder, input);
+        }
+        rungc();
+        long start = System.nanoTime();
+        for (int loop=0 ; loop<loops ; ++loop) {
+            Encode.encode(encoder, input);
+        }
+        return (double) loops * input.length() / (System.nanoTime() - start);
+    }
+
+    private static double runArrays(Encoder encoder, String input) {
+        // encodeArrays alone, without the scan for a clean prefix or the
+        // assembly of the result
+        final CharBuffer in = CharBuffer.wrap(input.toCharArray());
+        final CharBuffer out = CharBuffer.allocate(
+            (int) encoder.maxEncodedLength(input.length()));
+        int loops = 2000;
+        for (int loop=0 ; loop<loops ; ++loop) {
+            in.rewind();
+            out.clear();
+            encoder.encodeArrays(in, out, true);
+        }
+        rungc();
+        long start = System.nanoTime();
+        for (int loop=0 ; loop<loops ; ++loop) {
+            in.rewind();
+            out.clear();
+            encoder.encodeArrays(in, out, true);
+        }
+        return (double) loops * input.length() / (System.nanoTime() - start);
+    }
+
     static String[] loadSamples() throws Exception {
         List<String> lines = new ArrayList<String>();
         InputStream in = BenchmarkTest.class
@@ -181,6 +434,7 @@ public class BenchmarkTest extends TestCase {
         final String _name;
         public Bench(String name) {_name = name;}
         public abstract String encode(String input);
+        public int contexts() { return 1; }
         public String toString() { return _name; }
     }
 
@@ -251,6 +505,28 @@ public class BenchmarkTest extends TestCase {
                 return Encode.forXmlComment(input);
             }
         },
+        // An application uses many contexts at once.  This encodes each
+        // sample in every context above, so that no encoder is the only
+        // one seen by the code they share.  Its cost per context is
+        // comparable to the results above.
+        new Bench("Encode.forXxx, all contexts mixed") {
+            @Override
+            public String encode(String input) {
+                Encode.forXml(input);
+                Encode.forHtmlUnquotedAttribute(input);
+                Encode.forJavaScript(input);
+                Encode.forCssString(input);
+                Encode.forUriComponent(input);
+                Encode.forCDATA(input);
+                Encode.forJava(input);
+                return Encode.forXmlComment(input);
+            }
+
+            @Override
+            public int contexts() {
+                return 8;
+            }
+        },
     };
 
     public void testNothing() throws Exception {
@@ -34,6 +34,13 @@
 
 package org.owasp.encoder;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import junit.framework.Test;
 import junit.framework.TestCase;
 
@@ -44,7 +51,7 @@ import junit.framework.TestCase;
  */
 public class ChainedEncoderTest extends TestCase {
     public static Test suite() {
-        return new EncoderTestSuiteBuilder(
+        return new EncoderTestSuiteBuilder(ChainedEncoderTest.class,
             new ChainedEncoder(
                 new JavaScriptEncoder(JavaScriptEncoder.Mode.SOURCE, false),
                 new XMLEncoder()), "-safe-", "-\\&-")
@@ -69,4 +76,133 @@ public class ChainedEncoderTest extends TestCase {
             .encode("&lt;", "<")
             .build();
     }
+
+    /**
+     * Chains whose encoders look ahead, expand greatly, or are
+     * themselves chains.
+     */
+    static List<Encoder> chains() {
+        List<Encoder> chains = new ArrayList<Encoder>();
+        chains.add(Encoders.chain(
+            Encoders.forName(Encoders.JAVASCRIPT), Encoders.forName(Encoders.HTML_ATTRIBUTE)));
+        chains.add(Encoders.chain(
+            Encoders.forName(Encoders.URI_COMPONENT), Encoders.forName(Encoders.HTML_ATTRIBUTE)));
+        chains.add(Encoders.chain(
+            Encoders.forName(Encoders.CDATA), Encoders.forName(Encoders.CDATA)));
+        chains.add(Encoders.chain(
+            Encoders.forName(Encoders.XML_COMMENT), Encoders.forName(Encoders.JAVA)));
+        chains.add(Encoders.chain(
+            Encoders.forName(Encoders.JAVA), Encoders.forName(Encoders.CDATA)));
+        chains.add(Encoders.chain(
+            Encoders.chain(Encoders.forName(Encoders.CDATA), Encoders.forName(Encoders.URI_COMPONENT)),
+            Encoders.forName(Encoders.XML_COMMENT)));
+        return chains;
+    }
+
+    /**
+     * Encodes the input by applying each encoder of the chain to the
+     * whole string in turn.  This does not use the windowed chaining,
+     * which makes it a reference for testing it.
+     */
+    static String encodeInTurn(ChainedEncoder chain, String input) {
+        return encodeInTurn(chain._last, encodeInTurn(chain._first, input));
+    }
+
+    private static String encodeInTurn(Encoder encoder, String input) {
+        return encoder instanceof ChainedEncoder
+            ? encodeInTurn((ChainedEncoder) encoder, input)
+            : Encode.encode(encoder, input);
+    }
+
+    /**
+     * Encodes the input following the buffer protocol, with the input
+     * arriving in random pieces and the output drained from a small
+     * buffer of random size.
+     */
+    static String encodeInPieces(Encoder encoder, String input, Random random) {
+        final int minOutput = (int) encoder.maxEncodedLength(1 + encoder.maxLookahead());
+        CharBuffer in = CharBuffer.allocate(input.length());
+        CharBuffer out = CharBuffer.allocate(minOutput + random.nextInt(64));
+        StringBuilder result = new StringBuilder();
+        in.flip();
+        int fed = 0;
+        for (;;) {
+            int n = Math.min(random.nextInt(24), input.length() - fed);
+            in.compact();
+            in.put(input, fed, fed + n);
+            in.flip();
+            fed += n;
+
+            boolean endOfInput = fed == input.length();
+            CoderResult cr = encoder.encode(in, out, endOfInput);
+            out.flip();
+            result.append(out);
+            out.clear();
+            if (endOfInput && cr.isUnderflow()) {
+                assertFalse(in.hasRemaining());
+                return result.toString();
+            }
+        }
+    }
+
+    public void testMatchesTwoPasses() throws Exception {
+        Random random = new Random(7);
+        for (Encoder encoder : chains()) {
+            ChainedEncoder chain = (ChainedEncoder) encoder;
+            for (int k = 0; k < 50; ++k) {
+                String input = ParallelEncodeTest.randomInput(random, random.nextInt(600));
+                String expected = encodeInTurn(chain, input);
+                assertEquals(chain.toString(), expected, chain.encode(input));
+                assertEquals(chain.toString(), expected, encodeInPieces(chain, input, random));
+            }
+        }
+    }
+
+    public void testSharedBetweenThreads() throws Exception {
+        final Encoder chain = Encoders.chain(
+            Encoders.forName(Encoders.JAVASCRIPT), Encoders.forName(Encoders.HTML_ATTRIBUTE));
+        final String[] inputs = new String[4];
+        final String[] expected = new String[inputs.length];
+        final String[] actual = new String[inputs.length];
+        Random random = new Random(11);
+        for (int i = 0; i < inputs.length; ++i) {
+            inputs[i] = ParallelEncodeTest.randomInput(random, 20000);
+            expected[i] = encodeInTurn((ChainedEncoder) chain, inputs[i]);
+        }
+
+        Thread[] threads = new Thread[inputs.length];
+        for (int i = 0; i < threads.length; ++i) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    StringWriter out = new StringWriter();
+                    EncodedWriter writer = new EncodedWriter(out, chain);
+                    try {
+                        String input = inputs[index];
+                        for (int off = 0; off < input.length(); off += 100) {
+                            writer.write(input, off, Math.min(100, input.length() - off));
+                        }
+                        writer.close();
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                    actual[index] = out.toString();
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i].join();
+            assertEquals(expected[i], actual[i]);
+        }
+    }
+
+    public void testEncodedWriterChain() throws Exception {
+        StringWriter out = new StringWriter();
+        EncodedWriter writer = new EncodedWriter(out, Encoders.JAVASCRIPT, Encoders.HTML_ATTRIBUTE);
+        writer.write("alert('<&>')");
+        writer.close();
+        assertEquals(Encode.forHtmlAttribute(Encode.forJavaScript("alert('<&>')")), out.toString());
+    }
 }
@@ -0,0 +1,235 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * ChannelTransferTest -- checks that transferring between channels gives
+ * the same result as encoding the decoded input in one pass.
+ */
+public class ChannelTransferTest extends TestCase {
+    /**
+     * Fragments the inputs are built from.  Long clean runs make whole
+     * chunks that are written as they are read.
+     */
+    private static final String[] FRAGMENTS = {
+        "a", "]", "]]", "]]>", ">", "-", "--", "\ud83d\ude00", "&", "<", "\\",
+        "\1", " ", "\u2028", "\u00e9", "\"", "'", "%", "\u20ac",
+        "abcdefghijklmnopqrstuvwxyz0123456789abcdefghijklmnopqrstuvwxyz0123456789",
+    };
+
+    public static Test suite() {
+        return new TestSuite(ChannelTransferTest.class);
+    }
+
+    /**
+     * A channel that reads at most a random number of bytes at a time.
+     */
+    static final class TrickleChannel implements ReadableByteChannel {
+        private final ByteBuffer _data;
+        private final Random _random;
+        private final int _maxRead;
+
+        TrickleChannel(byte[] data, Random random, int maxRead) {
+            _data = ByteBuffer.wrap(data);
+            _random = random;
+            _maxRead = maxRead;
+        }
+
+        public int read(ByteBuffer dst) {
+            if (!_data.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(dst.remaining(), _data.remaining()), 1 + _random.nextInt(_maxRead));
+            ByteBuffer slice = _data.duplicate();
+            slice.limit(slice.position() + n);
+            dst.put(slice);
+            _data.position(_data.position() + n);
+            return n;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+
+    static String randomInput(Random random, int length) {
+        StringBuilder buf = new StringBuilder(length + 80);
+        while (buf.length() < length) {
+            buf.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return buf.toString();
+    }
+
+    private static byte[] transfer(
+        Encoder encoder, ReadableByteChannel in, Charset inCharset, Charset outCharset, int length)
+        throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransferResult result = Encoders.transfer(in, inCharset, Channels.newChannel(out), outCharset, encoder);
+        assertEquals(length, result.bytesRead());
+        assertEquals(out.size(), result.bytesWritten());
+        return out.toByteArray();
+    }
+
+    private static void checkTransfer(
+        Encoder encoder, String input, Charset inCharset, Charset outCharset, Random random)
+        throws Exception
+    {
+        byte[] bytes = input.getBytes(inCharset);
+        byte[] expected = Encode.encode(encoder, new String(bytes, inCharset)).getBytes(outCharset);
+        String message = encoder + " " + inCharset + " to " + outCharset;
+
+        byte[] actual = transfer(encoder, Channels.newChannel(new ByteArrayInputStream(bytes)),
+            inCharset, outCharset, bytes.length);
+        assertEquals(message, new String(expected, outCharset), new String(actual, outCharset));
+        assertTrue(message, java.util.Arrays.equals(expected, actual));
+
+        actual = transfer(encoder, new TrickleChannel(bytes, random, 100), inCharset, outCharset, bytes.length);
+        assertTrue(message + " (trickle)", java.util.Arrays.equals(expected, actual));
+    }
+
+    public void testMatchesEncode() throws Exception {
+        Random random = new Random(42);
+        for (Field field : Encoders.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            String contextName = (String) field.get(null);
+            Encoder encoder = Encoders.forName(contextName);
+            for (int length : new int[] { 0, 1, 100, ChannelTransfer.BUFFER_SIZE * 3 + 17 }) {
+                checkTransfer(encoder, randomInput(random, length),
+                    StandardCharsets.UTF_8, StandardCharsets.UTF_8, random);
+            }
+        }
+    }
+
+    public void testChainsMatchEncode() throws Exception {
+        Random random = new Random(43);
+        for (Encoder encoder : ChainedEncoderTest.chains()) {
+            checkTransfer(encoder, randomInput(random, 3000), StandardCharsets.UTF_8, StandardCharsets.UTF_8, random);
+        }
+    }
+
+    public void testOtherCharsets() throws Exception {
+        Random random = new Random(44);
+        Charset[] charsets = {
+            StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1,
+            StandardCharsets.US_ASCII, StandardCharsets.UTF_16BE,
+        };
+        for (String contextName : new String[] { Encoders.HTML, Encoders.CDATA, Encoders.JAVASCRIPT }) {
+            Encoder encoder = Encoders.forName(contextName);
+            for (Charset inCharset : charsets) {
+                for (Charset outCharset : charsets) {
+                    checkTransfer(encoder, randomInput(random, ChannelTransfer.BUFFER_SIZE + 500),
+                        inCharset, outCharset, random);
+                }
+            }
+        }
+    }
+
+    public void testCleanInputIsCopied() throws Exception {
+        Encoder encoder = Encoders.forName(Encoders.XML_CONTENT);
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < ChannelTransfer.BUFFER_SIZE * 4) {
+            buf.append("clean text \u00e9\ud83d\ude00 ");
+        }
+        checkTransfer(encoder, buf.toString(), StandardCharsets.UTF_8, StandardCharsets.UTF_8, new Random(45));
+        checkTransfer(encoder, buf.toString(), StandardCharsets.ISO_8859_1, StandardCharsets.ISO_8859_1,
+            new Random(46));
+    }
+
+    public void testMalformedInput() throws Exception {
+        Encoder encoder = Encoders.forName(Encoders.HTML);
+        byte[] bytes = { 'a', (byte) 0xff, '<', (byte) 0xc3 };
+        byte[] actual = transfer(encoder, Channels.newChannel(new ByteArrayInputStream(bytes)),
+            StandardCharsets.UTF_8, StandardCharsets.UTF_8, bytes.length);
+        assertEquals(Encode.encode(encoder, "a\ud800<\ud800"), new String(actual, StandardCharsets.UTF_8));
+    }
+
+    public void testMalformedInputInCleanChunk() throws Exception {
+        // JavaScript leaves the replacement of malformed input as it is,
+        // so it is replaced again by the output charset
+        Encoder encoder = Encoders.forName(Encoders.JAVASCRIPT);
+        byte[] bytes = { 'a', 'b', 'c', (byte) 0xff, 'd', 'e', 'f' };
+        byte[] actual = transfer(encoder, Channels.newChannel(new ByteArrayInputStream(bytes)),
+            StandardCharsets.UTF_8, StandardCharsets.UTF_8, bytes.length);
+        byte[] expected = Encode.encode(encoder, "abc\ud800def").getBytes(StandardCharsets.UTF_8);
+        assertTrue(java.util.Arrays.equals(expected, actual));
+    }
+
+    public void testRejectsNonBlockingAndNull() throws Exception {
+        Encoder encoder = Encoders.forName(Encoders.HTML);
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            try {
+                Encoders.transfer(pipe.source(), StandardCharsets.UTF_8,
+                    pipe.sink(), StandardCharsets.UTF_8, encoder);
+                fail("expected IllegalBlockingModeException");
+            } catch (IllegalBlockingModeException e) {
+                // expected
+            }
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+        }
+        try {
+            Encoders.transfer(Channels.newChannel(new ByteArrayInputStream(new byte[0])), StandardCharsets.UTF_8,
+                Channels.newChannel(new ByteArrayOutputStream()), StandardCharsets.UTF_8, null);
+            fail("expected NullPointerException");
+        } catch (NullPointerException e) {
+            assertEquals("encoder must not be null", e.getMessage());
+        }
+    }
+}
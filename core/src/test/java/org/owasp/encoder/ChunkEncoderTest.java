@@ -0,0 +1,141 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Random;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * ChunkEncoderTest -- checks that encoding input split into chunks of
+ * every kind of CharBuffer gives the same result as encoding it in one
+ * pass.
+ */
+public class ChunkEncoderTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite(ChunkEncoderTest.class);
+    }
+
+    /**
+     * Returns a chunk of the input as a heap, read-only or direct buffer.
+     */
+    private static CharBuffer chunk(String input, int start, int end, Random random) {
+        switch (random.nextInt(3)) {
+        case 0:
+            return CharBuffer.wrap(input.toCharArray(), start, end - start);
+        case 1:
+            return CharBuffer.wrap(input, start, end);
+        default:
+            CharBuffer direct = ByteBuffer.allocateDirect(2 * (end - start)).asCharBuffer();
+            direct.put(input, start, end).flip();
+            return direct;
+        }
+    }
+
+    private static String encodeInChunks(Encoder encoder, String input, int maxChunk, Random random) {
+        ChunkEncoder chunks = new ChunkEncoder(encoder);
+        ArrayDeque<CharBuffer> output = new ArrayDeque<CharBuffer>();
+        StringBuilder result = new StringBuilder();
+        int start = 0;
+        do {
+            int end = Math.min(input.length(), start + random.nextInt(maxChunk + 1));
+            CharBuffer chunk = chunk(input, start, end, random);
+            chunks.encode(chunk, end == input.length(), output);
+            assertFalse(chunk.hasRemaining());
+            for (CharBuffer buffer; (buffer = output.poll()) != null; ) {
+                result.append(buffer);
+                ChunkEncoder.recycle(buffer);
+            }
+            start = end;
+        } while (start < input.length());
+        return result.toString();
+    }
+
+    public void testMatchesEncode() throws Exception {
+        Random random = new Random(42);
+        for (Field field : Encoders.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            Encoder encoder = Encoders.forName((String) field.get(null));
+            for (int maxChunk : new int[] { 1, 3, 100, ChunkEncoder.BUFFER_SIZE * 2 }) {
+                String input = ChannelTransferTest.randomInput(random, 5000);
+                assertEquals(encoder + " " + maxChunk,
+                    Encode.encode(encoder, input), encodeInChunks(encoder, input, maxChunk, random));
+            }
+        }
+    }
+
+    public void testChainsMatchEncode() throws Exception {
+        Random random = new Random(43);
+        for (Encoder encoder : ChainedEncoderTest.chains()) {
+            String input = ChannelTransferTest.randomInput(random, 3000);
+            assertEquals(encoder.toString(),
+                Encode.encode(encoder, input), encodeInChunks(encoder, input, 7, random));
+        }
+    }
+
+    public void testHeldBackAcrossChunks() {
+        ChunkEncoder chunks = new ChunkEncoder(Encoders.forName(Encoders.CDATA));
+        ArrayDeque<CharBuffer> output = new ArrayDeque<CharBuffer>();
+        chunks.encode(CharBuffer.wrap("a]"), false, output);
+        assertEquals("a", output.poll().toString());
+        chunks.encode(CharBuffer.wrap("]"), false, output);
+        assertTrue(output.isEmpty());
+        chunks.encode(CharBuffer.wrap(">b"), true, output);
+        assertEquals("]]]]><![CDATA[>b", output.poll().toString());
+        assertTrue(output.isEmpty());
+    }
+
+    public void testRecycle() {
+        ChunkEncoder chunks = new ChunkEncoder(Encoders.forName(Encoders.XML));
+        ArrayDeque<CharBuffer> output = new ArrayDeque<CharBuffer>();
+        chunks.encode(CharBuffer.wrap("<"), true, output);
+        CharBuffer buffer = output.poll();
+        assertEquals("&lt;", buffer.toString());
+        ChunkEncoder.recycle(buffer);
+        assertSame(buffer, ChunkEncoder.POOL.acquire());
+        assertEquals(ChunkEncoder.BUFFER_SIZE, buffer.remaining());
+        // buffers of another size are not pooled
+        ChunkEncoder.recycle(CharBuffer.allocate(10));
+        assertEquals(ChunkEncoder.BUFFER_SIZE, ChunkEncoder.POOL.acquire().capacity());
+    }
+}
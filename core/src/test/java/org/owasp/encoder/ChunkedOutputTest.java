@@ -0,0 +1,80 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * ChunkedOutputTest -- tests the segmented output used to build encoded
+ * Strings.
+ */
+public class ChunkedOutputTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite(ChunkedOutputTest.class);
+    }
+
+    public void testToString() {
+        ChunkedOutput chunks = new ChunkedOutput();
+        for (int i = 0; i < 20; ++i) {
+            chunks.add(new char[] { (char) ('a' + i), '-' }, 1);
+        }
+        assertEquals(20, chunks.length());
+        assertEquals("xyabcdefghijklmnopqrst", chunks.toString("xyz", 2));
+        assertEquals("yzabcdefghijklmnopqrst", chunks.toString("xyz".toCharArray(), 1, 2));
+    }
+
+    public void testLengthLimit() {
+        // The chunks are retained, not copied, so these lengths only
+        // exercise the checks.
+        ChunkedOutput chunks = new ChunkedOutput();
+        chunks.add(new char[0], Encoder.MAX_ARRAY_LENGTH - 1);
+        chunks.add(new char[0], 1);
+        try {
+            chunks.add(new char[0], 1);
+            fail("expected OutOfMemoryError");
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+        assertEquals(Encoder.MAX_ARRAY_LENGTH, chunks.length());
+        try {
+            chunks.toString("x", 1);
+            fail("expected OutOfMemoryError");
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+    }
+}
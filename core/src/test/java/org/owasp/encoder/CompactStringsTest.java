@@ -0,0 +1,162 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * CompactStringsTest -- tests encoding strings in their Latin-1 form.  On
+ * Java 8, and when the tests run from the classes directory rather than
+ * the multi-release jar, CompactStrings always falls back to chars and
+ * only the results of Encode are checked.  The multi-release test run
+ * sets {@code org.owasp.encoder.multiRelease}, and the Latin-1 path must
+ * then be taken.
+ */
+public class CompactStringsTest extends TestCase {
+    /**
+     * True when running against the multi-release jar on Java 9 or later.
+     */
+    private static final boolean MULTI_RELEASE = Boolean.getBoolean("org.owasp.encoder.multiRelease");
+
+    /**
+     * Encoders that have a Latin-1 table.
+     */
+    private static final Encoder[] ENCODERS = {
+        Encoders.XML_ENCODER, Encoders.XML_ATTRIBUTE_ENCODER, Encoders.XML_11_ENCODER,
+        Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, Encoders.JAVASCRIPT_ENCODER,
+        Encoders.JAVASCRIPT_BLOCK_ENCODER, Encoders.URI_COMPONENT_ENCODER,
+    };
+
+    public static Test suite() {
+        return new TestSuite(CompactStringsTest.class);
+    }
+
+    /**
+     * Encodes through an EncodedWriter, which never takes the Latin-1
+     * path.
+     */
+    private static String encodeChars(Encoder encoder, String input) throws IOException {
+        StringWriter out = new StringWriter();
+        EncodedWriter writer = new EncodedWriter(out, encoder);
+        writer.write(input);
+        writer.close();
+        return out.toString();
+    }
+
+    /**
+     * Calls CompactStrings directly, as Encode does for a string that
+     * needs encoding.
+     */
+    private static String encodeLatin1(Encoder encoder, String input) {
+        final int j = encoder.firstEncodedOffset(input, 0, input.length());
+        final Encode.Buffer buffer = Encode.Buffer.POOL.acquire();
+        try {
+            return CompactStrings.encode(encoder, input, j, buffer);
+        } finally {
+            Encode.Buffer.POOL.release(buffer);
+        }
+    }
+
+    private static void check(Encoder encoder, String input) throws IOException {
+        check(encoder, input, true);
+    }
+
+    private static void check(Encoder encoder, String input, boolean fits) throws IOException {
+        final String expected = encodeChars(encoder, input);
+        final String latin1 = encodeLatin1(encoder, input);
+        // a wide character before the first to encode is left to chars
+        final int j = encoder.firstEncodedOffset(input, 0, input.length());
+        for (int i = 0; i < j; ++i) {
+            fits &= input.charAt(i) < Encoder.LATIN1_TABLE_SIZE;
+        }
+        if (MULTI_RELEASE && fits) {
+            assertNotNull(encoder + ": " + input, latin1);
+        }
+        if (latin1 != null) {
+            assertEquals(encoder.toString(), expected, latin1);
+        }
+        assertEquals(encoder.toString(), expected, Encode.encode(encoder, input));
+    }
+
+    public void testLatin1() throws IOException {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1024; ++i) {
+            buf.append((char) (i % 256));
+        }
+        final String all = buf.toString();
+        for (Encoder encoder : ENCODERS) {
+            check(encoder, all);
+            check(encoder, "abc\u00e9<\u00ff");
+            check(encoder, "<");
+        }
+    }
+
+    public void testResumesAfterWideCharacter() throws IOException {
+        final String escapes = "<&\"'\u00e9\u00ff\n";
+        for (Encoder encoder : ENCODERS) {
+            for (int i = 0; i < escapes.length(); ++i) {
+                final String head = escapes.substring(0, i);
+                check(encoder, head + "\u0100" + escapes);
+                check(encoder, "abc" + head + "\u4e2d");
+                check(encoder, head + "\ud83d\ude00" + head);
+            }
+            // the bytes encoded before the wide character outgrow the
+            // output buffer, so encoding starts over with chars
+            StringBuilder buf = new StringBuilder();
+            while (buf.length() < Encode.Buffer.INPUT_BUFFER_SIZE - 1) {
+                buf.append('<');
+            }
+            check(encoder, buf + "\u0100", false);
+        }
+    }
+
+    public void testFallsBack() throws IOException {
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() <= Encode.Buffer.INPUT_BUFFER_SIZE) {
+            buf.append("a<");
+        }
+        // longer than the input buffer
+        assertNull(encodeLatin1(Encoders.XML_ENCODER, buf.toString()));
+        // no Latin-1 table
+        assertNull(encodeLatin1(Encoders.CDATA_ENCODER, "]]>"));
+        // above U+00FF before the first character to encode
+        assertNull(encodeLatin1(Encoders.XML_ENCODER, "\u0100<"));
+    }
+}
@@ -34,8 +34,13 @@
 
 package org.owasp.encoder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -111,6 +116,27 @@ public class EncodeTest extends TestCase {
         assertEquals(unencodedString, out.toString());
     }
 
+    /**
+     * Tests that a writer that calls back into Encode while being written
+     * to does not corrupt the pooled buffer used by the outer call.
+     *
+     * @throws IOException not thrown
+     */
+    public void testReentrantEncodeToWriter() throws IOException {
+        final StringBuilder inner = new StringBuilder();
+        StringWriter out = new StringWriter() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                inner.append(Encode.forXml("<" + len + ">"));
+                super.write(cbuf, off, len);
+            }
+        };
+        String input = "<a href='x'>&amp;</a>";
+        Encode.forXml(out, input);
+        assertEquals(Encode.forXml(input), out.toString());
+        assertTrue(inner.length() > 0);
+    }
+
     public void testEncodeNullToWriter() throws IOException {
         StringWriter out = new StringWriter();
         Encode.forXml(out, null);
@@ -157,4 +183,498 @@ public class EncodeTest extends TestCase {
         assertEquals(40000, output.length());
         assertEquals(input.replace("&", "&amp;"), output);
     }
+
+    /**
+     * Tests encoding of inputs that are larger than the internal buffers,
+     * with long unencoded prefixes and with characters that need lookahead
+     * straddling the input batch boundaries.  The results are compared
+     * against encoding through an EncodedWriter.
+     *
+     * @throws IOException not thrown
+     */
+    public void testLargeSparseEncodeToString() throws IOException {
+        String[] specials = { "]]>", "--", "<", "\ud800\udc00", "\n1" };
+        Encoder[] encoders = {
+            Encoders.XML_ENCODER, Encoders.CDATA_ENCODER, Encoders.XML_COMMENT_ENCODER,
+            Encoders.URI_COMPONENT_ENCODER, Encoders.JAVA_ENCODER, Encoders.CSS_STRING_ENCODER,
+            Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, Encoders.JAVASCRIPT_ENCODER,
+        };
+        for (int prefix : new int[] { 0, 1023, 1024, 2047, 2048, 5000 }) {
+            for (String special : specials) {
+                StringBuilder buf = new StringBuilder();
+                for (int i = 0; i < prefix; ++i) {
+                    buf.append((char) ('a' + i % 26));
+                }
+                while (buf.length() < 20000) {
+                    buf.append(special);
+                    for (int i = 0; i < 1021; ++i) {
+                        buf.append('b');
+                    }
+                }
+                String input = buf.toString();
+                for (Encoder encoder : encoders) {
+                    StringWriter expected = new StringWriter();
+                    EncodedWriter writer = new EncodedWriter(expected, encoder);
+                    writer.write(input);
+                    writer.close();
+                    assertEquals(encoder + " prefix=" + prefix + " special=" + special,
+                        expected.toString(), Encode.encode(encoder, input));
+                }
+            }
+        }
+    }
+
+    public void testEncodedWriterLookaheadAcrossWrites() throws IOException {
+        // each "]" is held back until the characters after it arrive
+        StringWriter out = new StringWriter();
+        EncodedWriter writer = new EncodedWriter(out, Encoders.CDATA_ENCODER);
+        writer.write("]");
+        writer.write("]");
+        writer.write("]");
+        writer.write(">");
+        writer.write("]");
+        writer.close();
+        assertEquals(Encode.forCDATA("]]]>]"), out.toString());
+    }
+
+    public void testLatin1EncodeToString() throws IOException {
+        Encoder[] encoders = {
+            Encoders.XML_ENCODER, Encoders.XML_ATTRIBUTE_ENCODER, Encoders.XML_11_ENCODER,
+            Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, Encoders.JAVASCRIPT_ENCODER,
+            Encoders.JAVASCRIPT_BLOCK_ENCODER, Encoders.URI_COMPONENT_ENCODER,
+        };
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1024; ++i) {
+            buf.append((char) (i % 256));
+        }
+        String latin1 = buf.toString();
+        String[] inputs = {
+            latin1, latin1 + "x", latin1.substring(0, 1023) + "\u0100",
+            "abc\u00e9<\u00ff", "abc\u00e9<\u0100", "\u00e9",
+        };
+        for (Encoder encoder : encoders) {
+            assertNotNull(encoder.toString(), encoder.latin1Table());
+            for (String input : inputs) {
+                StringWriter expected = new StringWriter();
+                EncodedWriter writer = new EncodedWriter(expected, encoder);
+                writer.write(input);
+                writer.close();
+                assertEquals(encoder.toString(), expected.toString(), Encode.encode(encoder, input));
+            }
+        }
+    }
+
+    public void testCharSequenceAndArrayInput() throws IOException {
+        Encoder[] encoders = {
+            Encoders.XML_ENCODER, Encoders.CDATA_ENCODER, Encoders.XML_COMMENT_ENCODER,
+            Encoders.URI_COMPONENT_ENCODER, Encoders.JAVA_ENCODER, Encoders.CSS_STRING_ENCODER,
+            Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, Encoders.JAVASCRIPT_ENCODER,
+        };
+        StringBuilder longInput = new StringBuilder();
+        while (longInput.length() < 5000) {
+            longInput.append("abc]]>--<\ud800\udc00 \n1\u00e9");
+            for (int i = 0; i < 1000; ++i) {
+                longInput.append(i % 2 == 0 ? ']' : 'x');
+            }
+        }
+        StringBuilder brackets = new StringBuilder();
+        for (int i = 0; i < 300; ++i) {
+            brackets.append(']');
+        }
+        String[] inputs = {
+            "", "abc", "a<b", "]]", "abc]]>def", "\ud800", longInput.toString(),
+            brackets + ">" + brackets, "'0123456789abcdef'a",
+        };
+
+        for (Encoder encoder : encoders) {
+            for (String input : inputs) {
+                final String expected = Encode.encode(encoder, input);
+                final char[] padded = ("xy" + input + "z").toCharArray();
+                final CharSequence[] sequences = {
+                    input,
+                    new StringBuilder(input),
+                    new StringBuffer(input),
+                    CharBuffer.wrap(padded, 2, input.length()),
+                    CharBuffer.wrap(input).asReadOnlyBuffer(),
+                    new CharSequenceWrapper(input),
+                };
+                for (CharSequence seq : sequences) {
+                    final String message = encoder + " " + seq.getClass().getSimpleName();
+                    assertEquals(message, expected, Encode.encode(encoder, seq));
+
+                    StringWriter out = new StringWriter();
+                    Encode.encode(encoder, out, seq);
+                    assertEquals(message, expected, out.toString());
+
+                    StringBuilder builder = new StringBuilder("pre");
+                    Encode.encode(encoder, builder, seq);
+                    assertEquals(message, "pre" + expected, builder.toString());
+
+                    StringBuffer appendable = new StringBuffer("pre");
+                    Encode.encode(encoder, (Appendable) appendable, seq);
+                    assertEquals(message, "pre" + expected, appendable.toString());
+                }
+
+                assertEquals(encoder.toString(), expected,
+                    Encode.encode(encoder, padded, 2, input.length()));
+
+                StringWriter out = new StringWriter();
+                Encode.encode(encoder, out, padded, 2, input.length());
+                assertEquals(encoder.toString(), expected, out.toString());
+            }
+        }
+    }
+
+    public void testCharArrayRangeCheck() throws IOException {
+        char[] input = "abc".toCharArray();
+        int[][] ranges = { {-1, 1}, {0, -1}, {1, 3}, {4, 0} };
+        for (int[] range : ranges) {
+            try {
+                Encode.forXml(input, range[0], range[1]);
+                fail("expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+            try {
+                Encode.forXml(new StringWriter(), input, range[0], range[1]);
+                fail("expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+        assertEquals("", Encode.forXml(input, 3, 0));
+        assertEquals("&lt;b", Encode.forXml("a<b".toCharArray(), 1, 2));
+        assertEquals("&lt;b", Encode.forXml(new StringBuilder("<b")));
+        assertEquals("null", Encode.forXml((CharSequence) null));
+
+        StringBuilder builder = new StringBuilder();
+        Encode.forXml(builder, "a<b");
+        Encode.forJavaScript(builder, new StringBuilder("'"));
+        assertEquals("a&lt;b\\x27", builder.toString());
+    }
+
+    public void testLargeDirectBufferEncode() {
+        Encoder[] encoders = {
+            Encoders.XML_ENCODER, Encoders.CDATA_ENCODER, Encoders.XML_COMMENT_ENCODER,
+            Encoders.URI_COMPONENT_ENCODER, Encoders.JAVA_ENCODER, Encoders.CSS_STRING_ENCODER,
+            Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, Encoders.JAVASCRIPT_ENCODER,
+            new ChainedEncoder(Encoders.JAVASCRIPT_ENCODER, Encoders.XML_ENCODER),
+        };
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < 10000) {
+            buf.append("]]>--<\ud800\udc00'a\n1");
+            for (int i = 0; i < 1021; ++i) {
+                buf.append(i % 3 == 0 ? ']' : 'b');
+            }
+        }
+        final String input = buf.toString();
+        final CharBuffer in = ByteBuffer.allocateDirect(input.length() * 2).asCharBuffer();
+        in.put(input);
+
+        for (Encoder encoder : encoders) {
+            final String expected = encoder instanceof ChainedEncoder
+                ? ChainedEncoderTest.encodeInTurn((ChainedEncoder) encoder, input)
+                : Encode.encode(encoder, input);
+            for (int size : new int[] { 100, 2048, 5000 }) {
+                final CharBuffer out = ByteBuffer.allocateDirect(size * 2).asCharBuffer();
+                final StringBuilder actual = new StringBuilder();
+                in.clear();
+                while (encoder.encode(in, out, true).isOverflow()) {
+                    out.flip();
+                    actual.append(out);
+                    out.clear();
+                }
+                out.flip();
+                actual.append(out);
+                assertEquals(encoder + " size=" + size, expected, actual.toString());
+            }
+        }
+    }
+
+    public void testEncodeToOutputStream() throws IOException {
+        Encoder[] encoders = {
+            Encoders.XML_ENCODER, Encoders.CDATA_ENCODER, Encoders.XML_COMMENT_ENCODER,
+            Encoders.URI_COMPONENT_ENCODER, Encoders.JAVA_ENCODER, Encoders.CSS_STRING_ENCODER,
+            Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, Encoders.JAVASCRIPT_ENCODER,
+        };
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < 10000) {
+            buf.append("]]>--<\ud83d\ude00'a\n1\u00e9\u4e2d");
+            for (int i = 0; i < 1021; ++i) {
+                buf.append(i % 3 == 0 ? ']' : 'b');
+            }
+        }
+        final String input = buf.toString();
+        final byte[] inputBytes = input.getBytes("UTF-8");
+
+        for (Encoder encoder : encoders) {
+            final byte[] expected = Encode.encode(encoder, input).getBytes("UTF-8");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Encode.encode(encoder, out, new StringBuilder(input));
+            assertTrue(encoder.toString(), Arrays.equals(expected, out.toByteArray()));
+
+            // characters, in uneven pieces
+            out.reset();
+            EncodedOutputStream stream = new EncodedOutputStream(out, encoder);
+            for (int i = 0; i < input.length(); i += 333) {
+                stream.write(input.substring(i, Math.min(input.length(), i + 333)));
+            }
+            stream.close();
+            assertTrue(encoder.toString(), Arrays.equals(expected, out.toByteArray()));
+
+            // bytes, splitting multi-byte sequences
+            out.reset();
+            stream = new EncodedOutputStream(out, encoder);
+            for (int i = 0; i < inputBytes.length; i += 7) {
+                stream.write(inputBytes, i, Math.min(inputBytes.length - i, 7));
+            }
+            stream.close();
+            assertTrue(encoder.toString(), Arrays.equals(expected, out.toByteArray()));
+        }
+    }
+
+    public void testEncodedOutputStreamMalformedInput() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodedOutputStream stream = new EncodedOutputStream(out, Encoders.XML);
+        stream.write(new byte[] { 'a', (byte) 0xff, 'b', (byte) 0xe4 });
+        stream.write("<");
+        stream.write((byte) 0xc3);
+        stream.write((byte) 0xa9);
+        stream.close();
+        assertEquals("a b &lt;\u00e9", out.toString("UTF-8"));
+
+        out.reset();
+        Encode.forHtml(out, "\u4e2d<");
+        assertEquals("\u4e2d&lt;", out.toString("UTF-8"));
+    }
+
+    public void testEncodedOutputStreamHeldBackAtClose() throws IOException {
+        // an encoder that, against the contract, holds back its last
+        // character even at the end of input
+        Encoder holdsLast = new Encoder() {
+            @Override
+            CoderResult encodeArrays(CharBuffer input, CharBuffer output, boolean endOfInput) {
+                while (input.remaining() > 1) {
+                    if (!output.hasRemaining()) {
+                        return CoderResult.OVERFLOW;
+                    }
+                    output.put(input.get());
+                }
+                return CoderResult.UNDERFLOW;
+            }
+
+            @Override
+            long maxEncodedLength(long n) {
+                return n;
+            }
+
+            @Override
+            int firstEncodedOffset(String input, int off, int len) {
+                return off;
+            }
+
+            @Override
+            int firstEncodedOffset(char[] input, int off, int len) {
+                return off;
+            }
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodedOutputStream stream = new EncodedOutputStream(out, holdsLast);
+        stream.write("ab");
+        stream.close();
+        assertEquals("a", out.toString("UTF-8"));
+    }
+
+    public void testEncodeUTF8Bytes() throws IOException {
+        Encoder[] encoders = {
+            Encoders.XML_ENCODER, Encoders.CDATA_ENCODER, Encoders.XML_COMMENT_ENCODER,
+            Encoders.URI_COMPONENT_ENCODER, Encoders.JAVA_ENCODER, Encoders.CSS_STRING_ENCODER,
+            Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, Encoders.JAVASCRIPT_ENCODER,
+        };
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < 10000) {
+            buf.append("]]>--<\ud83d\ude00'a\n1\u00e9\u4e2d\ufffe");
+            for (int i = 0; i < 1019; ++i) {
+                buf.append(i % 3 == 0 ? ']' : i % 7 == 0 ? '\u00e9' : 'b');
+            }
+        }
+        final String input = buf.toString();
+        final byte[] inputBytes = input.getBytes("UTF-8");
+
+        for (Encoder encoder : encoders) {
+            final byte[] expected = Encode.encode(encoder, input).getBytes("UTF-8");
+
+            // all at once, from an array to an array
+            ByteBuffer out = ByteBuffer.allocate(expected.length);
+            assertTrue(encoder.encode(ByteBuffer.wrap(inputBytes), out, true).isUnderflow());
+            assertTrue(encoder.toString(), Arrays.equals(expected, Arrays.copyOf(out.array(), out.position())));
+
+            // in uneven pieces, from a direct buffer to a small buffer
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            ByteBuffer in = ByteBuffer.allocateDirect(1500);
+            out = ByteBuffer.allocate(100);
+            for (int i = 0; i <= inputBytes.length; i += 1001) {
+                in.put(inputBytes, i, Math.min(1001, inputBytes.length - i)).flip();
+                final boolean endOfInput = i + 1001 > inputBytes.length;
+                while (encoder.encode(in, out, endOfInput).isOverflow()) {
+                    stream.write(out.array(), 0, out.position());
+                    out.clear();
+                }
+                in.compact();
+            }
+            stream.write(out.array(), 0, out.position());
+            assertEquals(0, in.position());
+            assertTrue(encoder.toString(), Arrays.equals(expected, stream.toByteArray()));
+        }
+    }
+
+    public void testUTF8OutputKeepsPairsTogether() throws IOException {
+        // the JavaScript encoder copies each half of a pair on its own
+        CharBuffer in = CharBuffer.wrap("a\ud83d\ude00b");
+        ByteBuffer out = ByteBuffer.allocate(4);
+        assertTrue(Encoders.JAVASCRIPT_ENCODER.encode(in, out, true).isOverflow());
+        assertEquals(1, out.position());
+        out.clear();
+        assertTrue(Encoders.JAVASCRIPT_ENCODER.encode(in, out, true).isOverflow());
+        assertEquals("\ud83d\ude00", new String(out.array(), 0, out.position(), "UTF-8"));
+        out.clear();
+        assertTrue(Encoders.JAVASCRIPT_ENCODER.encode(in, out, true).isUnderflow());
+        assertEquals("b", new String(out.array(), 0, out.position(), "UTF-8"));
+
+        // a pair split across calls
+        out = ByteBuffer.allocate(16);
+        in = CharBuffer.wrap("a\ud83d\ude00");
+        in.limit(2);
+        assertTrue(Encoders.JAVASCRIPT_ENCODER.encode(in, out, false).isUnderflow());
+        assertEquals(1, in.position());
+        in.limit(3);
+        assertTrue(Encoders.JAVASCRIPT_ENCODER.encode(in, out, true).isUnderflow());
+        assertEquals("a\ud83d\ude00", new String(out.array(), 0, out.position(), "UTF-8"));
+    }
+
+    public void testEncodeUTF8BytesMalformedInput() throws IOException {
+        final byte[] input = {
+            'a', (byte) 0xff, 'b',
+            // overlong '/'
+            (byte) 0xc0, (byte) 0xaf,
+            // encoded surrogate
+            (byte) 0xed, (byte) 0xa0, (byte) 0x80,
+            // beyond U+10FFFF
+            (byte) 0xf4, (byte) 0x90, (byte) 0x80, (byte) 0x80,
+            // truncated sequence, then '<'
+            (byte) 0xe4, (byte) 0xb8, '<',
+            // truncated by the end of input
+            (byte) 0xf0, (byte) 0x9f, (byte) 0x98,
+        };
+        ByteBuffer out = ByteBuffer.allocate(100);
+        ByteBuffer in = ByteBuffer.wrap(input);
+
+        // without the end of input, the truncated sequence waits
+        assertTrue(Encoders.XML_ENCODER.encode(in, out, false).isUnderflow());
+        assertEquals(input.length - 3, in.position());
+        assertTrue(Encoders.XML_ENCODER.encode(in, out, true).isUnderflow());
+        assertFalse(in.hasRemaining());
+        assertEquals("a b" + "          " + "&lt; ", new String(out.array(), 0, out.position(), "UTF-8"));
+
+        // a sequence split across calls
+        out.clear();
+        in = ByteBuffer.wrap(new byte[] { (byte) 0xc3, (byte) 0xa9, '>' });
+        in.limit(1);
+        assertTrue(Encoders.XML_ENCODER.encode(in, out, false).isUnderflow());
+        assertEquals(0, in.position());
+        in.limit(3);
+        assertTrue(Encoders.XML_ENCODER.encode(in, out, true).isUnderflow());
+        assertEquals("\u00e9&gt;", new String(out.array(), 0, out.position(), "UTF-8"));
+    }
+
+    public void testEncodeUTF8BytesMalformedInClean() throws IOException {
+        // the JavaScript encoder leaves the replacement for malformed
+        // input as it is, but the malformed bytes must not be copied
+        final byte[][] inputs = {
+            { 'a', (byte) 0xff, 'b', 'c', 'd' },
+            { 'a', (byte) 0xe2, (byte) 0x82, 'b', 'c' },
+        };
+        final String[] expected = { "a?bcd", "a?bc" };
+        for (int i = 0; i < inputs.length; ++i) {
+            ByteBuffer out = ByteBuffer.allocate(100);
+            assertTrue(Encoders.JAVASCRIPT_ENCODER.encode(ByteBuffer.wrap(inputs[i]), out, true).isUnderflow());
+            assertEquals(expected[i], new String(out.array(), 0, out.position(), "UTF-8"));
+        }
+    }
+
+    public void testEncodeUTF8BytesMalformedStreams() throws IOException {
+        final byte[] malformed = {
+            'a', (byte) 0xff, '<', (byte) 0xe2, (byte) 0x82, '&', (byte) 0xf0, (byte) 0x9f, '"',
+            (byte) 0xc3, 'x', (byte) 0xed, (byte) 0xa0, (byte) 0x80, 'y', (byte) 0xf4, '\\',
+        };
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        for (int i = 0; i < 5; ++i) {
+            buf.write(malformed);
+            buf.write("abcdefghijklmnopqrstuvwxyz0123456789".getBytes("UTF-8"));
+        }
+        final byte[] input = buf.toByteArray();
+        final CharBuffer decoded = CharBuffer.allocate(input.length);
+        UTF8.decode(input, 0, input.length, true, decoded);
+        final String chars = new String(decoded.array(), 0, decoded.position());
+
+        Encoder[] encoders = {
+            Encoders.XML_ENCODER, Encoders.XML_ATTRIBUTE_ENCODER, Encoders.CSS_STRING_ENCODER,
+            Encoders.JAVASCRIPT_ENCODER, Encoders.JAVA_ENCODER, Encoders.URI_COMPONENT_ENCODER,
+            Encoders.HTML_UNQUOTED_ATTRIBUTE_ENCODER, Encoders.CDATA_ENCODER,
+        };
+        for (Encoder encoder : encoders) {
+            final byte[] expected = Encode.encode(encoder, chars).getBytes("UTF-8");
+            for (int piece : new int[] { 1, 2, 3, 7, input.length }) {
+                for (int space : new int[] { 8, 11, 100 }) {
+                    // the input arrives piece by piece, into a small output
+                    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                    ByteBuffer in = ByteBuffer.allocate(input.length);
+                    ByteBuffer out = ByteBuffer.allocate(space);
+                    in.flip();
+                    for (int i = 0; i < input.length; i += piece) {
+                        in.compact();
+                        in.put(input, i, Math.min(piece, input.length - i)).flip();
+                        while (encoder.encode(in, out, i + piece >= input.length).isOverflow()) {
+                            stream.write(out.array(), 0, out.position());
+                            out.clear();
+                        }
+                    }
+                    stream.write(out.array(), 0, out.position());
+                    assertFalse(in.hasRemaining());
+                    assertEquals(encoder + " piece=" + piece + " space=" + space,
+                        new String(expected, "UTF-8"), stream.toString("UTF-8"));
+                }
+            }
+        }
+    }
+
+    /**
+     * A CharSequence that is none of the types with a bulk copy.
+     */
+    private static final class CharSequenceWrapper implements CharSequence {
+        private final String _str;
+
+        CharSequenceWrapper(String str) {
+            _str = str;
+        }
+
+        public int length() {
+            return _str.length();
+        }
+
+        public char charAt(int index) {
+            return _str.charAt(index);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return new CharSequenceWrapper(_str.substring(start, end));
+        }
+
+        @Override
+        public String toString() {
+            return _str;
+        }
+    }
 }
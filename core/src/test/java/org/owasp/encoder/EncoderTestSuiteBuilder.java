@@ -34,10 +34,13 @@
 
 package org.owasp.encoder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CoderResult;
+import java.util.Arrays;
 import java.util.BitSet;
 import junit.framework.Assert;
 import junit.framework.Test;
@@ -53,6 +56,17 @@ import junit.framework.TestSuite;
  * @author Jeff Ichnowski
  */
 public class EncoderTestSuiteBuilder {
+    /**
+     * The minimum length of {@link #_safeRun}.
+     */
+    private static final int SAFE_RUN_LENGTH = 160;
+
+    /**
+     * The number of offsets within {@link #_safeRun} at which encoded
+     * characters are tested.
+     */
+    private static final int SAFE_RUN_OFFSETS = 67;
+
     /** This is the test suite that is being built. */
     private TestSuite _suite;
     /**
@@ -84,6 +98,15 @@ public class EncoderTestSuiteBuilder {
      * The set of all valid characters requiring escapes.
      */
     private BitSet _encoded = new BitSet();
+    /**
+     * Direct buffers reused by {@link #checkBufferEncodes(String, String)}.
+     */
+    private final CharBuffer[] _direct = new CharBuffer[2];
+    /**
+     * A run of safe characters, {@link #_safeAffix} repeated, that is long
+     * enough for the encoders to scan several characters at a time.
+     */
+    private String _safeRun;
 
     /**
      * Creates an builder for the specified encoder.
@@ -97,6 +120,7 @@ public class EncoderTestSuiteBuilder {
         _encoder = encoder;
         _safeAffix = safeAffix;
         _unsafeAffix = unsafeAffix;
+        _safeRun = repeat(safeAffix, SAFE_RUN_LENGTH);
     }
 
     /**
@@ -114,6 +138,23 @@ public class EncoderTestSuiteBuilder {
         _encoder = encoder;
         _safeAffix = safeAffix;
         _unsafeAffix = unsafeAffix;
+        _safeRun = repeat(safeAffix, SAFE_RUN_LENGTH);
+    }
+
+    /**
+     * Returns {@code str} repeated until it is at least {@code length}
+     * characters long.
+     *
+     * @param str the string to repeat
+     * @param length the minimum length
+     * @return the repeated string.
+     */
+    private static String repeat(String str, int length) {
+        StringBuilder buf = new StringBuilder(length + str.length());
+        while (buf.length() < length) {
+            buf.append(str);
+        }
+        return buf.toString();
     }
 
     /**
@@ -208,8 +249,165 @@ public class EncoderTestSuiteBuilder {
             Assert.assertEquals("encodeTo([..."+debugEncode(input)+"...],int,int,Writer)", expected, actual);
         }
 
+        // Check the writers without a monitor, which encode strings
+        // in place rather than through Writer's copy to an array
+        testWriter = new TestWriter(input);
+        encodedWriter = Encoders.unsynchronizedWriter(testWriter, _encoder);
+        encodedWriter.write(input);
+        encodedWriter.close();
+        actual = testWriter.toString();
+        if (!expected.equals(actual)) {
+            Assert.assertEquals("unsynchronizedWriter(\""+debugEncode(input)+"\")", expected, actual);
+        }
+
+        testWriter = new TestWriter(offsetInput);
+        encodedWriter = Encoders.lockingWriter(testWriter, _encoder);
+        encodedWriter.write(offsetInput, 3, input.length());
+        encodedWriter.close();
+        actual = testWriter.toString();
+        if (!expected.equals(actual)) {
+            Assert.assertEquals("lockingWriter(\"..."+debugEncode(input)+"...\",int,int)", expected, actual);
+        }
+
+        // Check passing through, which writes clean runs of the input
+        // string or array straight to the wrapped writer
+        testWriter = new TestWriter(input);
+        encodedWriter = Encoders.unsynchronizedWriter(testWriter, _encoder);
+        encodedWriter.setPassThrough(true);
+        encodedWriter.write(input);
+        encodedWriter.close();
+        actual = testWriter.toString();
+        if (!expected.equals(actual)) {
+            Assert.assertEquals("passThrough(\""+debugEncode(input)+"\")", expected, actual);
+        }
+
+        testWriter = new TestWriter(offsetInput);
+        encodedWriter = new EncodedWriter(testWriter, _encoder);
+        encodedWriter.setPassThrough(true);
+        encodedWriter.write(offsetInput.toCharArray(), 3, input.length());
+        encodedWriter.close();
+        actual = testWriter.toString();
+        if (!expected.equals(actual)) {
+            Assert.assertEquals("passThrough([..."+debugEncode(input)+"...],int,int)", expected, actual);
+        }
+
         // Check boundary conditions on CharBuffer encodes
         checkBoundaryEncodes(expected, input);
+
+        // Check encodes of buffers that are not array-backed
+        checkBufferEncodes(expected, input);
+
+        // Check encodes to UTF-8
+        checkUTF8Encodes(expected, input);
+    }
+
+    /**
+     * Checks encodes to UTF-8 bytes, to a stream and to a small direct
+     * buffer.
+     *
+     * @param expected the expected output
+     * @param input the input to encode
+     * @throws IOException not actually thrown by the in-memory stream.
+     */
+    private void checkUTF8Encodes(String expected, String input) throws IOException {
+        final byte[] expectedBytes = expected.getBytes("UTF-8");
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Encode.encode(_encoder, stream, input);
+        if (!Arrays.equals(expectedBytes, stream.toByteArray())) {
+            Assert.assertEquals("utf8(stream)", expected, stream.toString("UTF-8"));
+        }
+
+        // the longest escape, such as "%F0%9F%98%80", is 12 bytes
+        final CharBuffer in = CharBuffer.wrap(input);
+        final ByteBuffer out = ByteBuffer.allocateDirect(16);
+        stream.reset();
+        while (_encoder.encode(in, out, true).isOverflow()) {
+            drain(out, stream);
+        }
+        drain(out, stream);
+        if (!Arrays.equals(expectedBytes, stream.toByteArray())) {
+            Assert.assertEquals("utf8(buffer)", expected, stream.toString("UTF-8"));
+        }
+
+        // UTF-8 to UTF-8, for input that UTF-8 can represent
+        final byte[] inputBytes = input.getBytes("UTF-8");
+        if (input.equals(new String(inputBytes, "UTF-8"))) {
+            final ByteBuffer bytes = ByteBuffer.wrap(inputBytes);
+            stream.reset();
+            while (_encoder.encode(bytes, out, true).isOverflow()) {
+                drain(out, stream);
+            }
+            drain(out, stream);
+            if (!Arrays.equals(expectedBytes, stream.toByteArray())) {
+                Assert.assertEquals("utf8(bytes)", expected, stream.toString("UTF-8"));
+            }
+        }
+    }
+
+    /**
+     * Moves the contents of a byte buffer to a stream and clears the
+     * buffer.
+     *
+     * @param out the buffer to drain
+     * @param stream where the bytes go
+     */
+    private static void drain(ByteBuffer out, ByteArrayOutputStream stream) {
+        out.flip();
+        while (out.hasRemaining()) {
+            stream.write(out.get());
+        }
+        out.clear();
+    }
+
+    /**
+     * Returns one of two reused direct buffers, cleared and limited to
+     * {@code size}.  Allocating direct buffers for each check is slow.
+     *
+     * @param index which of the buffers
+     * @param size the required size
+     * @return the buffer
+     */
+    private CharBuffer direct(int index, int size) {
+        CharBuffer buffer = _direct[index];
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, 256) * 2).asCharBuffer();
+            _direct[index] = buffer;
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Checks encodes from direct and read-only input buffers to direct
+     * output buffers of a few sizes.
+     *
+     * @param expected the expected output
+     * @param input the input to encode
+     */
+    private void checkBufferEncodes(String expected, String input) {
+        final CharBuffer direct = direct(0, input.length());
+        direct.put(input).flip();
+        final CharBuffer[] inputs = { direct, CharBuffer.wrap(input).asReadOnlyBuffer() };
+
+        for (CharBuffer in : inputs) {
+            for (int size : new int[] { 16, expected.length() + 1 }) {
+                in.rewind();
+                final CharBuffer out = direct(1, size);
+                final StringBuilder actual = new StringBuilder();
+                while (_encoder.encode(in, out, true).isOverflow()) {
+                    out.flip();
+                    actual.append(out);
+                    out.clear();
+                }
+                out.flip();
+                actual.append(out);
+                if (!expected.equals(actual.toString())) {
+                    Assert.assertEquals("buffers(" + in.isDirect() + "," + size + ")",
+                        expected, actual.toString());
+                }
+            }
+        }
     }
 
     /**
@@ -280,6 +478,8 @@ public class EncoderTestSuiteBuilder {
                 checkEncode(expected + _safeAffix, input + _safeAffix);
                 checkEncode(_safeAffix + expected + _safeAffix,
                     _safeAffix + input + _safeAffix);
+                checkEncode(_safeRun + expected + _safeRun,
+                    _safeRun + input + _safeRun);
 
                 // test input surrounded by characters needing escape
                 String escapedAffix = Encode.encode(_encoder, _unsafeAffix);
@@ -411,6 +611,18 @@ public class EncoderTestSuiteBuilder {
                         String input = new String(chars, 0, Character.toChars(i, chars, 0));
                         checkEncode(input, input);
                     }
+
+
+                    // and the whole range in runs
+                    StringBuilder run = new StringBuilder();
+                    for (int i = finalMin; i < finalMax; ++i) {
+                        run.appendCodePoint(i);
+                        if (run.length() >= SAFE_RUN_LENGTH || i + 1 == finalMax) {
+                            String input = run.toString();
+                            assertSame(input, Encode.encode(_encoder, input));
+                            run.setLength(0);
+                        }
+                    }
                 }
             });
             min = _valid.nextSetBit(max+1);
@@ -496,6 +708,13 @@ public class EncoderTestSuiteBuilder {
                         if (actual.equals(input)) {
                             fail("input="+debugEncode(input));
                         }
+
+                        // at each offset within a run of safe characters
+                        String prefix = _safeRun.substring(0, i % SAFE_RUN_OFFSETS);
+                        input = prefix + input + _safeRun;
+                        if (Encode.encode(_encoder, input).equals(input)) {
+                            fail("input="+debugEncode(input));
+                        }
                     }
                 }
             });
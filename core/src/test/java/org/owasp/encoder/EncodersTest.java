@@ -38,8 +38,19 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * EncodersTest -- Tests for the Encoders class.
@@ -70,4 +81,417 @@ public class EncodersTest extends TestCase {
 
         assertTrue(count > 0);
     }
+
+    public void testMaxEncodedLengthDoesNotOverflow() throws Exception {
+        for (Field field : Encoders.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                String contextName = (String) field.get(null);
+                Encoder encoder = Encoders.forName(contextName);
+                long max = encoder.maxEncodedLength(Integer.MAX_VALUE);
+                assertTrue(contextName + ": " + max, max >= Integer.MAX_VALUE);
+                assertTrue(contextName, max >= encoder.maxEncodedLength(Integer.MAX_VALUE / 2));
+            }
+        }
+    }
+
+    public void testWritersMatchEncode() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            checkWritersMatchEncode(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void checkWritersMatchEncode(Executor executor) throws Exception {
+        // lookahead characters and a surrogate pair split across
+        // single character writes
+        String input = "a]]>b\ud83d\ude00<c>&\"'";
+        StringBuilder longInput = new StringBuilder();
+        while (longInput.length() < 3 * EncodedWriter.INPUT_BUFFER_SIZE) {
+            longInput.append(input);
+        }
+        for (Field field : Encoders.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                String contextName = (String) field.get(null);
+                Encoder encoder = Encoders.forName(contextName);
+                String expected = Encode.encode(encoder,
+                    input + input + input + "null" + input + longInput + longInput + input + longInput + "]]");
+
+                StringWriter[] outs = {
+                    new StringWriter(), new StringWriter(), new StringWriter(), new StringWriter(),
+                    new StringWriter() };
+                EncodedWriter[] writers = {
+                    new EncodedWriter(outs[0], encoder),
+                    Encoders.unsynchronizedWriter(outs[1], encoder),
+                    Encoders.lockingWriter(outs[2], encoder),
+                    Encoders.unsynchronizedWriter(outs[3], encoder),
+                    Encoders.asyncWriter(outs[4], encoder, executor),
+                };
+                writers[3].setPassThrough(true);
+                writers[4].setPassThrough(true);
+                for (int i = 0; i < writers.length; ++i) {
+                    for (int j = 0; j < input.length(); ++j) {
+                        writers[i].write(input.charAt(j));
+                    }
+                    writers[i].append(input, 0, 4).write(input, 4, input.length() - 4);
+                    writers[i].write(input.toCharArray());
+                    writers[i].append(null);
+                    writers[i].append(new StringBuilder(input));
+                    writers[i].flush();
+                    // long writes, encoded in place when nothing is pending
+                    writers[i].write(longInput.toString().toCharArray());
+                    writers[i].append(longInput);
+                    writers[i].write(input);
+                    // and filled first when something is
+                    writers[i].write(longInput.toString().toCharArray());
+                    writers[i].write("]]");
+                    writers[i].close();
+                    assertEquals(contextName + "[" + i + "]", expected, outs[i].toString());
+                }
+            }
+        }
+    }
+
+    public void testPassThroughMatchesEncode() throws Exception {
+        // clean runs of all lengths around the pass through minimum,
+        // between characters that need encoding in some context
+        Random rnd = new Random(3);
+        String dirty = "<>&\"']\ud800\udc00\u2028\\ \n";
+        for (Field field : Encoders.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                String contextName = (String) field.get(null);
+                Encoder encoder = Encoders.forName(contextName);
+                for (int trial = 0; trial < 20; ++trial) {
+                    StringBuilder buf = new StringBuilder();
+                    while (buf.length() < 4 * EncodedWriter.INPUT_BUFFER_SIZE) {
+                        int run = rnd.nextInt(2 * EncodedWriter.PASS_THROUGH_MIN + 2);
+                        for (int i = 0; i < run; ++i) {
+                            buf.append((char) ('a' + rnd.nextInt(26)));
+                        }
+                        buf.append(dirty.charAt(rnd.nextInt(dirty.length())));
+                    }
+                    String input = buf.toString();
+
+                    StringWriter out = new StringWriter();
+                    EncodedWriter writer = Encoders.unsynchronizedWriter(out, encoder);
+                    writer.setPassThrough(true);
+                    char[] array = input.toCharArray();
+                    int off = 0;
+                    while (off < input.length()) {
+                        int len = Math.min(input.length() - off, rnd.nextInt(3 * EncodedWriter.PASS_THROUGH_MIN));
+                        if (rnd.nextBoolean()) {
+                            writer.write(input, off, len);
+                        } else {
+                            writer.write(array, off, len);
+                        }
+                        off += len;
+                    }
+                    writer.close();
+                    assertEquals(contextName, Encode.encode(encoder, input), out.toString());
+                }
+            }
+        }
+    }
+
+    public void testPassThroughLookaheadAcrossWrites() throws Exception {
+        // a clean run ending in "]]" must not be passed through before
+        // the ">" that follows it in the next write
+        String run = "0123456789012345678901234567890123456789";
+        String[][] writes = {
+            { run + "]]", ">" },
+            { run + "]", "]>" },
+            { run + "]]]", ">" + run },
+        };
+        Encoder encoder = Encoders.forName(Encoders.CDATA);
+        for (String[] pieces : writes) {
+            for (boolean useArray : new boolean[] { false, true }) {
+                StringWriter out = new StringWriter();
+                EncodedWriter writer = Encoders.unsynchronizedWriter(out, encoder);
+                writer.setPassThrough(true);
+                StringBuilder input = new StringBuilder();
+                for (String piece : pieces) {
+                    if (useArray) {
+                        writer.write(piece.toCharArray());
+                    } else {
+                        writer.write(piece);
+                    }
+                    input.append(piece);
+                }
+                writer.close();
+                assertEquals(Encode.encode(encoder, input.toString()), out.toString());
+            }
+        }
+    }
+
+    public void testResetFinishesAndRebinds() throws Exception {
+        // ends with characters held back for lookahead in several contexts
+        String first = "a<b]]\ud83d";
+        String second = "c>d&\"'\ud83d\ude00]]>";
+        for (Field field : Encoders.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                String contextName = (String) field.get(null);
+                Encoder encoder = Encoders.forName(contextName);
+                Encoder other = Encoders.forName(Encoders.JAVASCRIPT);
+
+                StringWriter[] outs = { new StringWriter(), new StringWriter(), new StringWriter() };
+                EncodedWriter[] writers = {
+                    new EncodedWriter(outs[0], encoder),
+                    Encoders.unsynchronizedWriter(outs[1], encoder),
+                    Encoders.lockingWriter(outs[2], encoder),
+                };
+                for (int i = 0; i < writers.length; ++i) {
+                    writers[i].setPassThrough(true);
+                    writers[i].write(first);
+                    StringWriter next = new StringWriter();
+                    writers[i].reset(next, other);
+                    assertFalse(writers[i].isPassThrough());
+                    assertEquals(contextName + "[" + i + "]", Encode.encode(encoder, first), outs[i].toString());
+
+                    writers[i].write(second);
+                    writers[i].close();
+                    assertEquals(contextName + "[" + i + "]", Encode.encode(other, second), next.toString());
+                    // unchanged by the writes after the reset
+                    assertEquals(contextName + "[" + i + "]", Encode.encode(encoder, first), outs[i].toString());
+
+                    // a closed writer can be reset and used again
+                    next = new StringWriter();
+                    writers[i].reset(next, encoder);
+                    writers[i].write(second);
+                    writers[i].close();
+                    assertEquals(contextName + "[" + i + "]", Encode.encode(encoder, second), next.toString());
+                }
+            }
+        }
+    }
+
+    public void testResetChangesChains() throws Exception {
+        Encoder chain = Encoders.chain(
+            Encoders.forName(Encoders.JAVASCRIPT), Encoders.forName(Encoders.HTML_ATTRIBUTE));
+        Encoder deeper = Encoders.chain(chain, Encoders.forName(Encoders.URI_COMPONENT));
+        String input = "<a href=\"x\">'\u0100'</a>";
+        StringWriter out = new StringWriter();
+        EncodedWriter writer = Encoders.unsynchronizedWriter(out, chain);
+        writer.write(input);
+        writer.reset(out, deeper);
+        writer.write(input);
+        writer.reset(out, chain);
+        writer.write(input);
+        writer.close();
+        assertEquals(Encode.encode(chain, input) + Encode.encode(deeper, input) + Encode.encode(chain, input),
+            out.toString());
+    }
+
+    public void testAcquireAndReleaseWriter() throws Exception {
+        Encoder encoder = Encoders.forName(Encoders.CDATA);
+        StringWriter out = new StringWriter();
+        EncodedWriter writer = Encoders.acquireWriter(out, encoder);
+        writer.write("a]]");
+        Encoders.releaseWriter(writer);
+        assertEquals(Encode.forCDATA("a]]"), out.toString());
+
+        try {
+            Encoders.releaseWriter(writer);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // the same thread gets the same writer back, as new
+        out = new StringWriter();
+        EncodedWriter again = Encoders.acquireWriter(out, Encoders.forName(Encoders.HTML));
+        assertSame(writer, again);
+        again.write("<>");
+        again.write("]]>");
+        Encoders.releaseWriter(again);
+        assertEquals("&lt;&gt;]]&gt;", out.toString());
+
+        // writers that lock are not pooled
+        try {
+            Encoders.releaseWriter(Encoders.lockingWriter(out, encoder));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            Encoders.acquireWriter(null, encoder);
+            fail("expected NullPointerException");
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    public void testAsyncWriterWritesInBackground() throws Exception {
+        final List<Thread> threads = new ArrayList<Thread>();
+        StringWriter out = new StringWriter() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                synchronized (threads) {
+                    threads.add(Thread.currentThread());
+                }
+                super.write(cbuf, off, len);
+            }
+        };
+        Random rnd = new Random(5);
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < 10 * AsyncEncodedWriter.ASYNC_BUFFER_SIZE) {
+            buf.append((char) (' ' + rnd.nextInt(0x60)));
+        }
+        String input = buf.toString();
+        Encoder encoder = Encoders.forName(Encoders.HTML);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            EncodedWriter writer = Encoders.asyncWriter(out, encoder, executor);
+            for (int off = 0; off < input.length(); off += 100) {
+                writer.write(input, off, Math.min(100, input.length() - off));
+            }
+            writer.close();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(Encode.encode(encoder, input), out.toString());
+        synchronized (threads) {
+            assertTrue(threads.size() > 10);
+            assertFalse(threads.contains(Thread.currentThread()));
+        }
+    }
+
+    public void testAsyncWriterThrowsWriteFailures() throws Exception {
+        final boolean[] closed = new boolean[1];
+        Writer out = new StringWriter() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        char[] input = new char[2 * AsyncEncodedWriter.ASYNC_BUFFER_SIZE];
+        Arrays.fill(input, '<');
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            EncodedWriter writer = Encoders.asyncWriter(out, Encoders.forName(Encoders.HTML), executor);
+            try {
+                // fails once a write has to wait for the failed one
+                writer.write(input);
+                writer.flush();
+                fail("expected IOException");
+            } catch (IOException e) {
+                assertEquals("broken", e.getCause().getMessage());
+            }
+            try {
+                // as does a write that fits in the current buffer
+                writer.write('a');
+                fail("expected IOException");
+            } catch (IOException e) {
+                assertEquals("broken", e.getCause().getMessage());
+            }
+            try {
+                writer.close();
+                fail("expected IOException");
+            } catch (IOException e) {
+                assertEquals("broken", e.getCause().getMessage());
+            }
+            // the wrapped writer is closed even though its output failed
+            assertTrue(closed[0]);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testAsyncWriterWritesWhenRejected() throws Exception {
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        StringWriter out = new StringWriter();
+        char[] input = new char[3 * AsyncEncodedWriter.ASYNC_BUFFER_SIZE];
+        Arrays.fill(input, '&');
+        EncodedWriter writer = Encoders.asyncWriter(out, Encoders.forName(Encoders.HTML), rejecting);
+        writer.write(input);
+        writer.close();
+        assertEquals(Encode.forHtml(new String(input)), out.toString());
+    }
+
+    public void testWritersCheckBounds() throws Exception {
+        EncodedWriter writer = Encoders.unsynchronizedWriter(new StringWriter(), Encoders.forName(Encoders.HTML));
+        try {
+            writer.write(new char[4], 2, 3);
+            fail("expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            writer.write("abcd", -1, 2);
+            fail("expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            writer.append(new StringBuilder("abcd"), 3, 2);
+            fail("expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testLockingWriterSharedBetweenThreads() throws Exception {
+        final int threadCount = 4;
+        final int writeCount = 1000;
+        StringWriter out = new StringWriter();
+        final EncodedWriter writer = Encoders.lockingWriter(out, Encoders.forName(Encoders.HTML));
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; ++i) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < writeCount; ++j) {
+                            writer.write("<&>");
+                        }
+                    } catch (Throwable t) {
+                        synchronized (errors) {
+                            errors.add(t);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.close();
+
+        assertEquals(errors.toString(), 0, errors.size());
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < threadCount * writeCount; ++i) {
+            expected.append("&lt;&amp;&gt;");
+        }
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    public void testWritersRejectNull() throws Exception {
+        Encoder encoder = Encoders.forName(Encoders.HTML);
+        try {
+            Encoders.unsynchronizedWriter(null, encoder);
+            fail("expected NullPointerException");
+        } catch (NullPointerException e) {
+            // expected
+        }
+        try {
+            Encoders.lockingWriter(new StringWriter(), null);
+            fail("expected NullPointerException");
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
 }
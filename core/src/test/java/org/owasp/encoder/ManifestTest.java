@@ -0,0 +1,85 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+
+package org.owasp.encoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * ManifestTest -- checks the OSGi headers of the manifest next to the
+ * encoder classes, in target/classes or in the multi-release jar.
+ */
+public class ManifestTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite(ManifestTest.class);
+    }
+
+    private static Manifest readManifest() throws IOException {
+        final String classFile = "org/owasp/encoder/Encode.class";
+        final String url = Encode.class.getResource("/" + classFile).toString();
+        assertTrue(url, url.endsWith(classFile));
+        InputStream in = new URL(url.substring(0, url.length() - classFile.length())
+            + "META-INF/MANIFEST.MF").openStream();
+        try {
+            return new Manifest(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testExportPackage() throws IOException {
+        Attributes attributes = readManifest().getMainAttributes();
+        assertEquals("true", attributes.getValue("Multi-Release"));
+
+        // version attributes are quoted and hold no commas, so every
+        // comma separates two exported packages.
+        String exports = attributes.getValue("Export-Package");
+        assertNotNull(exports);
+        boolean exportsEncoder = false;
+        for (String clause : exports.split(",")) {
+            String name = clause.substring(0, clause.indexOf(';')).trim();
+            assertFalse(exports, name.startsWith("META-INF"));
+            exportsEncoder |= name.equals("org.owasp.encoder");
+        }
+        assertTrue(exports, exportsEncoder);
+    }
+}
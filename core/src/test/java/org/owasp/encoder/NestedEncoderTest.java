@@ -0,0 +1,103 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.encoder;
+
+import java.util.Random;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * NestedEncoderTest -- checks that each nested context encodes the same
+ * as the chain of the two contexts it flattens.
+ */
+public class NestedEncoderTest extends TestCase {
+    /**
+     * Each nested context, followed by the two contexts it flattens.
+     */
+    private static final String[][] NESTINGS = {
+        { Encoders.CSS_STRING_IN_HTML_ATTRIBUTE, Encoders.CSS_STRING, Encoders.HTML_ATTRIBUTE },
+        { Encoders.JAVASCRIPT_IN_HTML_ATTRIBUTE, Encoders.JAVASCRIPT, Encoders.HTML_ATTRIBUTE },
+        { Encoders.URI_COMPONENT_IN_HTML_ATTRIBUTE, Encoders.URI_COMPONENT, Encoders.HTML_ATTRIBUTE },
+    };
+
+    /**
+     * Characters placed before and after each code point, among them
+     * the ones CSS looks ahead to.
+     */
+    private static final String[] AFFIXES = { "", "a", "0", " ", "\u00e9", "\ud800", "'" };
+
+    public static Test suite() {
+        return new TestSuite(NestedEncoderTest.class);
+    }
+
+    public void testAllCodePoints() throws Exception {
+        for (String[] nesting : NESTINGS) {
+            Encoder nested = Encoders.forName(nesting[0]);
+            Encoder chain = Encoders.chain(Encoders.forName(nesting[1]), Encoders.forName(nesting[2]));
+            for (int cp = 0; cp <= Character.MAX_CODE_POINT; ++cp) {
+                String str = new String(Character.toChars(cp));
+                for (String affix : AFFIXES) {
+                    String input = affix + str + affix;
+                    assertEquals(nesting[0] + " " + Integer.toHexString(cp),
+                        Encode.encode(chain, input), Encode.encode(nested, input));
+                }
+            }
+        }
+    }
+
+    public void testRandomInputsInPieces() throws Exception {
+        Random random = new Random(5);
+        for (String[] nesting : NESTINGS) {
+            Encoder nested = Encoders.forName(nesting[0]);
+            Encoder chain = Encoders.chain(Encoders.forName(nesting[1]), Encoders.forName(nesting[2]));
+            for (int k = 0; k < 100; ++k) {
+                String input = ParallelEncodeTest.randomInput(random, random.nextInt(400));
+                String expected = Encode.encode(chain, input);
+                assertEquals(nesting[0], expected, Encode.encode(nested, input));
+                assertEquals(nesting[0], expected, ChainedEncoderTest.encodeInPieces(nested, input, random));
+            }
+        }
+    }
+
+    public void testEncodeMethods() throws Exception {
+        String input = "a'b\"c<d>&e/f\\g h\u2028i\u00e9j\ud83d\ude00k\ufffel1";
+        assertEquals(Encode.forHtmlAttribute(Encode.forCssString(input)),
+            Encode.forCssStringInHtmlAttribute(input));
+        assertEquals(Encode.forHtmlAttribute(Encode.forJavaScript(input)),
+            Encode.forJavaScriptInHtmlAttribute(input));
+        assertEquals(Encode.forHtmlAttribute(Encode.forUriComponent(input)),
+            Encode.forUriComponentInHtmlAttribute(input));
+    }
+}
@@ -0,0 +1,164 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * ParallelEncodeTest -- checks that encoding in parallel chunks gives the
+ * same result as encoding in one pass, for every context.
+ */
+public class ParallelEncodeTest extends TestCase {
+    /**
+     * Small chunks, so that the inputs have many chunk boundaries.
+     */
+    private static final int CHUNK_SIZE = 32;
+
+    /**
+     * Fragments the inputs are built from: the sequences encoders look
+     * across, surrogates, and characters with and without escapes.
+     */
+    private static final String[] FRAGMENTS = {
+        "a", "]", "]]", "]]>", ">", "-", "--", "\ud83d\ude00", "\ud800", "\udc00",
+        "&", "<", "\\", "0", "7", "\1", " ", "\u2028", "\u00e9", "\"", "'", "%",
+    };
+
+    private ForkJoinPool _pool;
+
+    public static Test suite() {
+        return new TestSuite(ParallelEncodeTest.class);
+    }
+
+    @Override
+    protected void setUp() {
+        _pool = new ForkJoinPool(3);
+    }
+
+    @Override
+    protected void tearDown() {
+        _pool.shutdown();
+    }
+
+    static String randomInput(Random random, int length) {
+        StringBuilder buf = new StringBuilder(length + 4);
+        while (buf.length() < length) {
+            buf.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return buf.toString();
+    }
+
+    public void testMatchesEncode() throws Exception {
+        Random random = new Random(42);
+        for (Field field : Encoders.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            String contextName = (String) field.get(null);
+            Encoder encoder = Encoders.forName(contextName);
+            for (int k = 0; k < 20; ++k) {
+                String input = randomInput(random, CHUNK_SIZE * (ParallelEncode.MIN_CHUNKS + k));
+                String expected = Encode.encode(encoder, input);
+
+                assertEquals(contextName, expected, ParallelEncode.encode(encoder, input, _pool, CHUNK_SIZE));
+
+                StringWriter out = new StringWriter();
+                ParallelEncode.encode(encoder, out, new StringBuilder(input), _pool, CHUNK_SIZE);
+                assertEquals(contextName, expected, out.toString());
+            }
+        }
+    }
+
+    public void testChainsMatchEncode() throws Exception {
+        Random random = new Random(43);
+        for (Encoder encoder : ChainedEncoderTest.chains()) {
+            for (int k = 0; k < 10; ++k) {
+                String input = randomInput(random, CHUNK_SIZE * (ParallelEncode.MIN_CHUNKS + k));
+                assertEquals(encoder.toString(), Encode.encode(encoder, input),
+                    ParallelEncode.encode(encoder, input, _pool, CHUNK_SIZE));
+            }
+        }
+    }
+
+    public void testPiecesMatchEncode() throws Exception {
+        Random random = new Random(44);
+        for (Field field : Encoders.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            String contextName = (String) field.get(null);
+            Encoder encoder = Encoders.forName(contextName);
+            String input = randomInput(random, CHUNK_SIZE * 40);
+
+            // encode in pieces of random length, passing the characters
+            // each piece leaves again at the start of the next
+            StringWriter out = new StringWriter();
+            int start = 0;
+            int pending = 0;
+            while (start < input.length()) {
+                int end = Math.min(input.length(), start + pending + random.nextInt(CHUNK_SIZE * 8));
+                boolean endOfInput = end == input.length();
+                int consumed = ParallelEncode.encode(
+                    encoder, out, input.subSequence(start, end), _pool, CHUNK_SIZE, endOfInput);
+                assertTrue(contextName, !endOfInput || consumed == end - start);
+                pending = end - start - consumed;
+                start += consumed;
+            }
+            assertEquals(contextName, Encode.encode(encoder, input), out.toString());
+        }
+    }
+
+    public void testLongRunsAcrossChunks() throws Exception {
+        Encoder encoder = Encoders.forName(Encoders.CDATA);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 40; ++i) {
+            input.append("x]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]>");
+        }
+        assertEquals(Encode.encode(encoder, input),
+            ParallelEncode.encode(encoder, input, _pool, CHUNK_SIZE));
+    }
+
+    public void testShortInputAndNull() {
+        Encoder encoder = Encoders.forName(Encoders.XML);
+        assertEquals("a&amp;b", ParallelEncode.encode(encoder, "a&b"));
+        assertEquals("null", ParallelEncode.encode(encoder, null, _pool));
+    }
+}
@@ -0,0 +1,175 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Random;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * ReaderTransferTest -- checks that transferring from a Reader to a
+ * Writer gives the same result as encoding the input in one pass.
+ */
+public class ReaderTransferTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite(ReaderTransferTest.class);
+    }
+
+    /**
+     * A reader that reads at most a random number of chars at a time.
+     */
+    static final class TrickleReader extends Reader {
+        private final String _data;
+        private final Random _random;
+        private final int _maxRead;
+        private int _pos;
+
+        TrickleReader(String data, Random random, int maxRead) {
+            _data = data;
+            _random = random;
+            _maxRead = maxRead;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (_pos == _data.length()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, _data.length() - _pos), 1 + _random.nextInt(_maxRead));
+            _data.getChars(_pos, _pos + n, cbuf, off);
+            _pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A writer that records the length of the longest write.
+     */
+    static final class RecordingWriter extends Writer {
+        final StringBuilder _buf = new StringBuilder();
+        int _longestWrite;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            _buf.append(cbuf, off, len);
+            _longestWrite = Math.max(_longestWrite, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void checkTransfer(Encoder encoder, String input, Random random) throws Exception {
+        String expected = Encode.encode(encoder, input);
+        String message = encoder.toString();
+
+        StringWriter out = new StringWriter();
+        TransferResult result = Encoders.transfer(new StringReader(input), out, encoder);
+        assertEquals(message, expected, out.toString());
+        assertEquals(message, input.length(), result.read());
+        assertEquals(message, expected.length(), result.written());
+
+        out = new StringWriter();
+        result = Encoders.transfer(new TrickleReader(input, random, 100), out, encoder);
+        assertEquals(message + " (trickle)", expected, out.toString());
+        assertEquals(message + " (trickle)", expected.length(), result.written());
+    }
+
+    public void testMatchesEncode() throws Exception {
+        Random random = new Random(42);
+        for (Field field : Encoders.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            Encoder encoder = Encoders.forName((String) field.get(null));
+            for (int length : new int[] { 0, 1, 100, ReaderTransfer.BUFFER_SIZE * 3 + 17 }) {
+                checkTransfer(encoder, ChannelTransferTest.randomInput(random, length), random);
+            }
+        }
+    }
+
+    public void testChainsMatchEncode() throws Exception {
+        Random random = new Random(43);
+        for (Encoder encoder : ChainedEncoderTest.chains()) {
+            checkTransfer(encoder, ChannelTransferTest.randomInput(random, 3000), random);
+        }
+    }
+
+    public void testCleanRunsAreWrittenThrough() throws Exception {
+        Encoder encoder = Encoders.forName(Encoders.XML_CONTENT);
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < ReaderTransfer.BUFFER_SIZE * 4) {
+            buf.append("clean text \u00e9\ud83d\ude00 ");
+        }
+        buf.append("<&>");
+        RecordingWriter out = new RecordingWriter();
+        TransferResult result = Encoders.transfer(new StringReader(buf.toString()), out, encoder);
+        assertEquals(Encode.forXmlContent(buf.toString()), out._buf.toString());
+        assertEquals(buf.length(), result.read());
+        // whole buffers of clean input are written in one call
+        assertEquals(ReaderTransfer.BUFFER_SIZE, out._longestWrite);
+    }
+
+    public void testRejectsNull() throws Exception {
+        try {
+            Encoders.transfer(new StringReader(""), new StringWriter(), null);
+            fail("expected NullPointerException");
+        } catch (NullPointerException e) {
+            assertEquals("encoder must not be null", e.getMessage());
+        }
+        try {
+            Encoders.transfer(null, new StringWriter(), Encoders.forName(Encoders.XML));
+            fail("expected NullPointerException");
+        } catch (NullPointerException e) {
+            assertEquals("reader must not be null", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * StripedPoolTest -- tests the striped object pool used for encode buffers.
+ */
+public class StripedPoolTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite(StripedPoolTest.class);
+    }
+
+    static StripedPool<Object> newPool(final AtomicInteger created) {
+        return new StripedPool<Object>(4) {
+            @Override
+            Object create() {
+                created.incrementAndGet();
+                return new Object();
+            }
+        };
+    }
+
+    public void testReuse() {
+        AtomicInteger created = new AtomicInteger();
+        StripedPool<Object> pool = newPool(created);
+        Object a = pool.acquire();
+        pool.release(a);
+        assertSame(a, pool.acquire());
+        assertEquals(1, created.get());
+    }
+
+    public void testNestedAcquireIsExclusive() {
+        AtomicInteger created = new AtomicInteger();
+        StripedPool<Object> pool = newPool(created);
+        Object outer = pool.acquire();
+        Object inner = pool.acquire();
+        assertNotSame(outer, inner);
+        pool.release(inner);
+        pool.release(outer);
+        assertEquals(2, created.get());
+        // only one of the two fits in the stripe, the other is dropped.
+        assertSame(inner, pool.acquire());
+        pool.acquire();
+        assertEquals(3, created.get());
+    }
+
+    public void testManyThreads() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final StripedPool<Object> pool = newPool(created);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[16];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; ++i) {
+                            String expected = Encode.forXml("<" + i + ">");
+                            assertEquals("&lt;" + i + "&gt;", expected);
+                            pool.release(pool.acquire());
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure[0]);
+        // contention may force some allocations, but most acquires must
+        // be satisfied from the pool.
+        assertTrue(created.get() < threads.length * 1000 / 2);
+    }
+}
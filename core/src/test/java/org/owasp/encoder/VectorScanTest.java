@@ -0,0 +1,115 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+
+package org.owasp.encoder;
+
+import java.util.Random;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * VectorScanTest -- checks the vector scan against a scalar scan of the
+ * same masks.  Without the Java 17 classes and the vector module no scan
+ * is created and there is nothing to check, unless the test run sets
+ * {@code org.owasp.encoder.vectorScan}, which requires a scan.
+ */
+public class VectorScanTest extends TestCase {
+    /**
+     * True when the test run must have vector scanning.
+     */
+    private static final boolean VECTOR_SCAN = Boolean.getBoolean("org.owasp.encoder.vectorScan");
+
+    /** Mask of clean characters below 64: the digits. */
+    private static final long LOW_MASK = 0x03ff000000000000L;
+
+    /** Mask of clean characters at and above 64: the letters. */
+    private static final long HIGH_MASK = 0x07fffffe07fffffeL;
+
+    public static Test suite() {
+        return new TestSuite(VectorScanTest.class);
+    }
+
+    private static boolean isClean(char ch, char nonAsciiMin, char nonAsciiLimit) {
+        if (ch < 64) {
+            return (LOW_MASK & (1L << ch)) != 0;
+        }
+        if (ch < 128) {
+            return (HIGH_MASK & (1L << (ch - 64))) != 0;
+        }
+        return ch >= nonAsciiMin && ch < nonAsciiLimit;
+    }
+
+    public void testMatchesScalarScan() {
+        final char[][] ranges = { { '\240', '\u2028' }, { '\u0100', '\u0100' } };
+        final String alphabet = "0123456789azAZ<>&\"' \0\177\200\240\u00ff\u2027\u2028\ud800";
+        final Random random = new Random(17);
+
+        for (char[] range : ranges) {
+            final VectorScan scan = VectorScan.forMasks(LOW_MASK, HIGH_MASK, range[0], range[1]);
+            if (VECTOR_SCAN) {
+                assertNotNull(scan);
+            }
+            if (scan == null) {
+                continue;
+            }
+
+            for (int k = 0; k < 2000; ++k) {
+                final char[] input = new char[random.nextInt(600)];
+                for (int i = 0; i < input.length; ++i) {
+                    // mostly clean, so the runs span several vectors
+                    input[i] = random.nextInt(40) == 0
+                        ? alphabet.charAt(random.nextInt(alphabet.length()))
+                        : alphabet.charAt(random.nextInt(14));
+                }
+                final int off = input.length == 0 ? 0 : random.nextInt(input.length);
+                int expected = off;
+                while (expected < input.length && isClean(input[expected], range[0], range[1])) {
+                    ++expected;
+                }
+
+                // a scan stops at the first character to encode, or
+                // early in the tail that is shorter than a vector
+                final int j = scan.firstEncodedOffset(input, off, input.length);
+                assertTrue(j == expected || (j < expected && input.length - j < 64));
+
+                // a short String is not scanned
+                final String str = new String(input);
+                final int s = scan.firstEncodedOffset(str, off, input.length);
+                assertTrue(s == expected || (s < expected && input.length - s < 64));
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+// Copyright (c) 2026 OWASP.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+//     * Redistributions of source code must retain the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer.
+//
+//     * Redistributions in binary form must reproduce the above
+//       copyright notice, this list of conditions and the following
+//       disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+//     * Neither the name of the OWASP nor the names of its
+//       contributors may be used to endorse or promote products
+//       derived from this software without specific prior written
+//       permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+// INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+// HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+// STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+// OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.encoder;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * EncodingProcessorTest -- checks that the processor passes demand
+ * upstream, and passes on cancellation, errors and the end of the
+ * stream, with publisher and subscriber stubs driven from the test
+ * thread.
+ */
+public class EncodingProcessorTest extends TestCase {
+    public static Test suite() {
+        return new TestSuite(EncodingProcessorTest.class);
+    }
+
+    /**
+     * The upstream subscription, which records what was asked of it.
+     */
+    static class Upstream implements Flow.Subscription {
+        long _requested;
+        boolean _cancelled;
+
+        @Override
+        public void request(long n) {
+            _requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+        }
+    }
+
+    /**
+     * A subscriber that records every signal.
+     */
+    static class Recorder implements Flow.Subscriber<CharBuffer> {
+        Flow.Subscription _subscription;
+        final StringBuilder _output = new StringBuilder();
+        final List<CharBuffer> _items = new ArrayList<CharBuffer>();
+        Throwable _error;
+        boolean _complete;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+        }
+
+        @Override
+        public void onNext(CharBuffer item) {
+            assertFalse(_complete || _error != null);
+            _items.add(item);
+            _output.append(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            assertFalse(_complete || _error != null);
+            _error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            assertFalse(_complete || _error != null);
+            _complete = true;
+        }
+    }
+
+    private EncodingProcessor _processor;
+    private Upstream _upstream;
+    private Recorder _subscriber;
+
+    @Override
+    protected void setUp() {
+        _processor = new EncodingProcessor(Encoders.CDATA);
+        _upstream = new Upstream();
+        _subscriber = new Recorder();
+        _processor.subscribe(_subscriber);
+        _processor.onSubscribe(_upstream);
+    }
+
+    public void testDemand() {
+        // nothing is requested upstream until the subscriber asks
+        assertNotNull(_subscriber._subscription);
+        assertEquals(0, _upstream._requested);
+
+        _subscriber._subscription.request(2);
+        assertEquals(1, _upstream._requested);
+
+        // "]]" is held back until what follows it arrives
+        _processor.onNext(CharBuffer.wrap("a]]"));
+        assertEquals("a", _subscriber._output.toString());
+        assertEquals(2, _upstream._requested);
+
+        _processor.onNext(CharBuffer.wrap(">b"));
+        assertEquals(Encode.forCDATA("a]]>b"), _subscriber._output.toString());
+
+        // with no demand left, the next item is not requested
+        assertEquals(2, _upstream._requested);
+        _subscriber._subscription.request(1);
+        assertEquals(3, _upstream._requested);
+
+        _processor.onComplete();
+        assertTrue(_subscriber._complete);
+        assertNull(_subscriber._error);
+    }
+
+    /**
+     * Returns an input that encodes into several output buffers.
+     */
+    private static String largeInput() {
+        StringBuilder input = new StringBuilder();
+        while (input.length() < ChunkEncoder.BUFFER_SIZE) {
+            input.append("a]]>");
+        }
+        return input.toString();
+    }
+
+    public void testDemandForLargeItem() {
+        // an item that encodes into several buffers is delivered one
+        // buffer per request, and the next item is requested only when
+        // all of them are delivered
+        String input = largeInput();
+        _subscriber._subscription.request(1);
+        _processor.onNext(CharBuffer.wrap(input));
+        assertEquals(1, _subscriber._items.size());
+        assertEquals(1, _upstream._requested);
+
+        while (_upstream._requested == 1) {
+            final int delivered = _subscriber._items.size();
+            _processor.release(_subscriber._items.get(delivered - 1));
+            _subscriber._subscription.request(1);
+            assertEquals(delivered + (_upstream._requested == 1 ? 1 : 0), _subscriber._items.size());
+        }
+        _processor.onComplete();
+        assertTrue(_subscriber._complete);
+        assertTrue(_subscriber._items.size() > 2);
+        assertEquals(Encode.forCDATA(input), _subscriber._output.toString());
+    }
+
+    public void testCancel() {
+        _subscriber._subscription.request(5);
+        _processor.onNext(CharBuffer.wrap("a]"));
+        _subscriber._subscription.cancel();
+        assertTrue(_upstream._cancelled);
+
+        // signals after the cancel are dropped, the held back "]" too
+        _processor.onNext(CharBuffer.wrap("b"));
+        _processor.onComplete();
+        assertEquals("a", _subscriber._output.toString());
+        assertFalse(_subscriber._complete);
+        assertNull(_subscriber._error);
+    }
+
+    public void testOnError() {
+        // the output of the item after its first buffer waits for
+        // demand, and is dropped
+        _subscriber._subscription.request(1);
+        _processor.onNext(CharBuffer.wrap(largeInput()));
+        assertEquals(1, _subscriber._items.size());
+        final String delivered = _subscriber._output.toString();
+
+        Exception failure = new Exception("failed");
+        _processor.onError(failure);
+        assertSame(failure, _subscriber._error);
+
+        _subscriber._subscription.request(1);
+        _processor.onComplete();
+        assertEquals(delivered, _subscriber._output.toString());
+        assertFalse(_subscriber._complete);
+    }
+
+    public void testNonPositiveRequest() {
+        _subscriber._subscription.request(0);
+        assertTrue(_subscriber._error instanceof IllegalArgumentException);
+        assertTrue(_upstream._cancelled);
+    }
+
+    public void testSecondSubscriber() {
+        Recorder second = new Recorder();
+        _processor.subscribe(second);
+        assertNotNull(second._subscription);
+        assertTrue(second._error instanceof IllegalStateException);
+
+        // the first subscriber is unaffected
+        _subscriber._subscription.request(1);
+        _processor.onNext(CharBuffer.wrap("a"));
+        _processor.onComplete();
+        assertEquals("a", _subscriber._output.toString());
+        assertTrue(_subscriber._complete);
+        assertEquals("", second._output.toString());
+    }
+
+    public void testSecondUpstreamCancelled() {
+        Upstream second = new Upstream();
+        _processor.onSubscribe(second);
+        assertTrue(second._cancelled);
+        assertFalse(_upstream._cancelled);
+    }
+}